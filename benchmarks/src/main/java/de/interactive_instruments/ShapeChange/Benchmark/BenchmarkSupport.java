@@ -0,0 +1,354 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.ShapeChangeAbortException;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.Xmi10.Xmi10Document;
+
+/**
+ * Shared setup of the benchmarks: creates synthetic models (see
+ * {@link SyntheticModelGenerator}) and ShapeChange configurations for them,
+ * and loads models.
+ * <p>
+ * The configurations use the standard configuration files (aliases, rules,
+ * map entries) and stylesheets of the ShapeChange source tree, which is
+ * identified by the system property 'shapechange.home' (default: the parent
+ * directory of the current directory, if it is a ShapeChange source tree,
+ * otherwise the current directory). Generated files are written to the
+ * directory given by the system property 'shapechange.benchmark.dir'
+ * (default: 'shapechange-benchmarks' in the temporary directory).
+ */
+public class BenchmarkSupport {
+
+	public static final String TRF_FLATTENER = "Flattener";
+	public static final String TRF_PROFILER = "Profiler";
+
+	public static final String TGT_XML_SCHEMA = "XmlSchema";
+	public static final String TGT_FEATURE_CATALOGUE = "FeatureCatalogue";
+	public static final String TGT_SQL_DDL = "SqlDdl";
+	public static final String TGT_JSON_SCHEMA = "JsonSchema";
+
+	/**
+	 * @return the root directory of the ShapeChange source tree
+	 */
+	public static File home() {
+
+		String home = System.getProperty("shapechange.home");
+
+		if (home != null) {
+			return new File(home).getAbsoluteFile();
+		} else if (new File("../src/main/resources/config/StandardRules.xml")
+				.exists()) {
+			return new File("..").getAbsoluteFile();
+		} else {
+			return new File(".").getAbsoluteFile();
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return the directory with the given name in the benchmark directory;
+	 *         it is created if necessary
+	 */
+	public static File directory(String name) {
+
+		String dir = System.getProperty("shapechange.benchmark.dir");
+		File base = dir != null ? new File(dir) : new File(
+				System.getProperty("java.io.tmpdir"),
+				"shapechange-benchmarks");
+
+		File result = new File(base, name);
+		if (!result.exists()) {
+			result.mkdirs();
+		}
+		return result;
+	}
+
+	/**
+	 * @param classes
+	 * @return the XMI file of a synthetic model with the given number of
+	 *         classes (default settings of {@link SyntheticModelGenerator});
+	 *         the file is only generated if it does not exist yet
+	 * @throws IOException
+	 */
+	public static File syntheticModel(int classes) throws IOException {
+
+		SyntheticModelGenerator generator = new SyntheticModelGenerator(
+				classes);
+		File file = new File(directory("models"),
+				"synthetic-" + generator.classes() + ".xmi");
+
+		if (!file.exists()) {
+			generator.write(file);
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a configuration that loads the given model and - optionally -
+	 * executes one transformation or one target on the input model.
+	 * 
+	 * @param name
+	 *            name of the configuration, used for the configuration file
+	 *            and the output directory
+	 * @param model
+	 *            XMI 1.0 file of the model
+	 * @param taggedValueImplementation
+	 *            value of the input parameter 'taggedValueImplementation'
+	 *            (map, array or packed)
+	 * @param transformation
+	 *            one of the TRF_ constants, can be <code>null</code>
+	 * @param target
+	 *            one of the TGT_ constants, can be <code>null</code>
+	 * @return the configuration file
+	 * @throws IOException
+	 */
+	public static File configuration(String name, File model,
+			String taggedValueImplementation, String transformation,
+			String target) throws IOException {
+
+		File home = home();
+		File output = directory("results/" + name);
+		File file = new File(directory("config"), name + ".xml");
+
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+
+		try {
+			out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			out.println("<ShapeChangeConfiguration"
+					+ " xmlns:xi=\"http://www.w3.org/2001/XInclude\""
+					+ " xmlns=\"http://www.interactive-instruments.de/ShapeChange/Configuration/1.1\">");
+
+			out.println("<input>");
+			parameter(out, "parameter", "inputModelType", "XMI10");
+			parameter(out, "parameter", "inputFile", model.getAbsolutePath());
+			parameter(out, "parameter", "appSchemaName",
+					SyntheticModelGenerator.SCHEMA_NAME);
+			parameter(out, "parameter", "publicOnly", "true");
+			parameter(out, "parameter", "checkingConstraints", "disabled");
+			parameter(out, "parameter", "sortedSchemaOutput", "true");
+			parameter(out, "parameter", "taggedValueImplementation",
+					taggedValueImplementation);
+			include(out, home, "StandardAliases.xml");
+			out.println("</input>");
+
+			out.println("<log>");
+			parameter(out, "parameter", "reportLevel", "ERROR");
+			parameter(out, "parameter", "logFile",
+					new File(output, "log.xml").getAbsolutePath());
+			out.println("</log>");
+
+			if (TRF_FLATTENER.equals(transformation)) {
+
+				out.println("<transformers><Transformer"
+						+ " class=\"de.interactive_instruments.ShapeChange.Transformation.Flattening.Flattener\""
+						+ " id=\"trf\" mode=\"enabled\"><parameters>");
+				parameter(out, "ProcessParameter", "targetNamespaceSuffix",
+						"/flat");
+				parameter(out, "ProcessParameter", "maxOccurs", "3");
+				out.println("</parameters><rules>"
+						+ "<ProcessRuleSet name=\"flattener\">"
+						+ "<rule name=\"rule-trf-prop-flatten-codelists\"/>"
+						+ "<rule name=\"rule-trf-cls-flatten-inheritance\"/>"
+						+ "<rule name=\"rule-trf-prop-flatten-multiplicity\"/>"
+						+ "<rule name=\"rule-trf-prop-flatten-types\"/>"
+						+ "<rule name=\"rule-trf-all-flatten-name\"/>"
+						+ "</ProcessRuleSet></rules>"
+						+ "</Transformer></transformers>");
+
+			} else if (TRF_PROFILER.equals(transformation)) {
+
+				out.println("<transformers><Transformer"
+						+ " class=\"de.interactive_instruments.ShapeChange.Transformation.Profiling.Profiler\""
+						+ " id=\"trf\" mode=\"enabled\"><parameters>");
+				parameter(out, "ProcessParameter", "profiles", "A");
+				parameter(out, "ProcessParameter", "constraintHandling",
+						"removeByPropertyNameInConstraintName");
+				out.println("</parameters><rules>"
+						+ "<ProcessRuleSet name=\"profiler\">"
+						+ "<rule name=\"rule-trf-profiling-preprocessing-profilesValueConsistencyCheck\"/>"
+						+ "<rule name=\"rule-trf-profiling-preprocessing-modelConsistencyCheck\"/>"
+						+ "<rule name=\"rule-trf-profiling-postprocessing-removeResidualTypes\"/>"
+						+ "<rule name=\"rule-trf-profiling-postprocessing-removeEmptyPackages\"/>"
+						+ "</ProcessRuleSet></rules>"
+						+ "</Transformer></transformers>");
+			}
+
+			out.println("<targets>");
+
+			if (TGT_XML_SCHEMA.equals(target)) {
+
+				out.println("<TargetXmlSchema"
+						+ " class=\"de.interactive_instruments.ShapeChange.Target.XmlSchema.XmlSchema\""
+						+ " mode=\"enabled\">");
+				parameter(out, "targetParameter", "outputDirectory",
+						output.getAbsolutePath());
+				parameter(out, "targetParameter", "sortedOutput", "true");
+				parameter(out, "targetParameter", "defaultEncodingRule",
+						"iso19136_2007");
+				include(out, home, "StandardRules.xml");
+				include(out, home, "StandardNamespaces.xml");
+				include(out, home, "StandardMapEntries.xml");
+				out.println("<xsdMapEntries><XsdMapEntry type=\"URI\""
+						+ " xsdEncodingRules=\"iso19136_2007\""
+						+ " xmlPropertyType=\"anyURI\" xmlType=\"anyURI\""
+						+ " xmlTypeType=\"simple\" xmlTypeContent=\"simple\"/>"
+						+ "</xsdMapEntries>");
+				out.println("</TargetXmlSchema>");
+
+			} else if (TGT_FEATURE_CATALOGUE.equals(target)) {
+
+				out.println("<Target"
+						+ " class=\"de.interactive_instruments.ShapeChange.Target.FeatureCatalogue.FeatureCatalogue\""
+						+ " mode=\"enabled\">");
+				parameter(out, "targetParameter", "outputDirectory",
+						output.getAbsolutePath());
+				parameter(out, "targetParameter", "outputFilename",
+						"synthetic");
+				parameter(out, "targetParameter", "sortedOutput", "true");
+				parameter(out, "targetParameter", "inheritedProperties",
+						"false");
+				parameter(out, "targetParameter", "outputFormat", "HTML");
+				parameter(out, "targetParameter", "name",
+						"'Synthetic application schema'");
+				parameter(out, "targetParameter", "scope", "Benchmark");
+				parameter(out, "targetParameter", "versionNumber", "n/a");
+				parameter(out, "targetParameter", "versionDate", "n/a");
+				parameter(out, "targetParameter", "producer", "ShapeChange");
+				parameter(out, "targetParameter", "xsltPfad",
+						new File(home, "src/main/resources/xslt")
+								.getAbsolutePath());
+				parameter(out, "targetParameter", "xslhtmlFile", "html.xsl");
+				out.println("</Target>");
+
+			} else if (TGT_SQL_DDL.equals(target)) {
+
+				out.println("<Target"
+						+ " class=\"de.interactive_instruments.ShapeChange.Target.SQL.SqlDdl\""
+						+ " mode=\"enabled\">");
+				parameter(out, "targetParameter", "outputDirectory",
+						output.getAbsolutePath());
+				parameter(out, "targetParameter", "defaultEncodingRule",
+						"sql");
+				parameter(out, "targetParameter", "outputFilename", "ddl");
+				parameter(out, "targetParameter", "size", "-1");
+				parameter(out, "targetParameter", "srid", "4326");
+				parameter(out, "targetParameter", "createReferences",
+						"true");
+				include(out, home, "StandardSqlMapEntries-PostgreSQL.xml");
+				out.println("</Target>");
+
+			} else if (TGT_JSON_SCHEMA.equals(target)) {
+
+				out.println("<Target"
+						+ " class=\"de.interactive_instruments.ShapeChange.Target.JSON.JsonSchema\""
+						+ " mode=\"enabled\">");
+				parameter(out, "targetParameter", "outputDirectory",
+						output.getAbsolutePath());
+				parameter(out, "targetParameter", "defaultEncodingRule",
+						"geoservices");
+				include(out, home, "StandardJsonMapEntries.xml");
+				out.println("</Target>");
+			}
+
+			out.println("</targets>");
+			out.println("</ShapeChangeConfiguration>");
+
+		} finally {
+			out.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * @param config
+	 * @return options loaded from the given configuration file
+	 * @throws ShapeChangeAbortException
+	 */
+	public static Options options(File config)
+			throws ShapeChangeAbortException {
+
+		Options options = new Options();
+		options.configFile = config.getAbsolutePath();
+		options.loadConfiguration();
+		return options;
+	}
+
+	/**
+	 * Loads the input model of the given options and prepares it for
+	 * processing, like the Converter does before executing transformations
+	 * and targets.
+	 * 
+	 * @param options
+	 * @param result
+	 * @return the model
+	 * @throws ShapeChangeAbortException
+	 */
+	public static Model loadModel(Options options, ShapeChangeResult result)
+			throws ShapeChangeAbortException {
+
+		Model model = new Xmi10Document();
+		model.initialise(result, options, options.parameter("inputFile"));
+		model.loadInformationFromExternalSources();
+		model.postprocessAfterLoadingAndValidate();
+		return model;
+	}
+
+	private static void parameter(PrintWriter out, String element,
+			String name, String value) {
+		out.println("<" + element + " name=\"" + escape(name) + "\" value=\""
+				+ escape(value) + "\"/>");
+	}
+
+	private static void include(PrintWriter out, File home, String file) {
+		out.println("<xi:include href=\""
+				+ escape(new File(home, "src/main/resources/config/" + file)
+						.toURI().toString())
+				+ "\"/>");
+	}
+
+	private static String escape(String s) {
+		return s.replace("&", "&amp;").replace("\"", "&quot;")
+				.replace("<", "&lt;");
+	}
+}
@@ -0,0 +1,601 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Creates synthetic application schemas of arbitrary size as XMI 1.0 files,
+ * in the structure exported by Enterprise Architect (see
+ * src/test/resources/test.xmi), so that they can be loaded with the XMI10
+ * input model type.
+ * <p>
+ * The schema 'SyntheticSchema' consists of packages with a configurable
+ * number of classes. Classes are created in blocks of ten: six feature types
+ * that form an inheritance chain, two data types, a code list and an
+ * enumeration. Feature types have properties with basic types, the data
+ * types, the code list and the enumeration of their block; the root feature
+ * types of consecutive blocks are connected by associations. Every class and
+ * property has a definition, a sequence number and a configurable number of
+ * additional tagged values; some of them have a 'profiles' tagged value (A
+ * or B), so that the model can be used for profiling.
+ * <p>
+ * The generated content only depends on the parameters, which makes
+ * measurements with models of the same size comparable.
+ */
+public class SyntheticModelGenerator {
+
+	public static final String SCHEMA_NAME = "SyntheticSchema";
+
+	protected static final String[] BASIC_TYPES = { "CharacterString",
+			"Integer", "Real", "Boolean", "Date", "URI" };
+
+	protected static final int BLOCK_SIZE = 10;
+
+	private final int classes;
+	private int classesPerPackage = 100;
+	private int attributesPerClass = 8;
+	private int additionalTaggedValues = 4;
+	private int distinctTaggedValues = 16;
+
+	private XMLStreamWriter w;
+
+	/** element ids, by stereotype */
+	private Map<String, List<String>> stereotypes;
+
+	/** tagged values (element id, tag, value), in document order */
+	private List<String[]> taggedValues;
+
+	/**
+	 * @param classes
+	 *            number of classes of the synthetic schema; rounded up to a
+	 *            multiple of ten
+	 */
+	public SyntheticModelGenerator(int classes) {
+		this.classes = Math.max(BLOCK_SIZE,
+				(classes + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE);
+	}
+
+	/**
+	 * @param classesPerPackage
+	 *            number of classes in each leaf package; default is 100
+	 */
+	public void setClassesPerPackage(int classesPerPackage) {
+		this.classesPerPackage = Math.max(BLOCK_SIZE,
+				classesPerPackage / BLOCK_SIZE * BLOCK_SIZE);
+	}
+
+	/**
+	 * @param attributesPerClass
+	 *            number of attributes of feature and data types (enumerations
+	 *            get half as many values); default is 8
+	 */
+	public void setAttributesPerClass(int attributesPerClass) {
+		this.attributesPerClass = Math.max(0, attributesPerClass);
+	}
+
+	/**
+	 * @param additionalTaggedValues
+	 *            number of tagged values (tag1, tag2, ...) that are added to
+	 *            each class and property, in addition to the ones used by
+	 *            ShapeChange; default is 4
+	 * @param distinctValues
+	 *            number of distinct values of these tagged values; default is
+	 *            16
+	 */
+	public void setAdditionalTaggedValues(int additionalTaggedValues,
+			int distinctValues) {
+		this.additionalTaggedValues = Math.max(0, additionalTaggedValues);
+		this.distinctTaggedValues = Math.max(1, distinctValues);
+	}
+
+	/**
+	 * @return the number of classes of the generated schema
+	 */
+	public int classes() {
+		return classes;
+	}
+
+	/**
+	 * Writes the synthetic model to the given file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+
+		OutputStream out = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the synthetic model to the given stream, using UTF-8 encoding.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(OutputStream out) throws IOException {
+
+		stereotypes = new LinkedHashMap<String, List<String>>();
+		taggedValues = new ArrayList<String[]>();
+
+		try {
+			w = XMLOutputFactory.newInstance().createXMLStreamWriter(out,
+					"UTF-8");
+
+			w.writeStartDocument("UTF-8", "1.0");
+			w.writeStartElement("XMI");
+			w.writeAttribute("xmi.version", "1.0");
+
+			w.writeStartElement("XMI.header");
+			w.writeStartElement("XMI.documentation");
+			text("XMI.exporter", "ShapeChange SyntheticModelGenerator");
+			w.writeEndElement();
+			w.writeEmptyElement("XMI.metamodel");
+			w.writeAttribute("xmi.name", "UML");
+			w.writeAttribute("xmi.version", "1.3");
+			w.writeEndElement();
+
+			w.writeStartElement("XMI.content");
+
+			w.writeStartElement("Model_Management.Model");
+			w.writeAttribute("xmi.id", "MX_SYNTHETIC");
+			text("Foundation.Core.ModelElement.name", "EA Model");
+			w.writeStartElement("Foundation.Core.Namespace.ownedElement");
+
+			startPackage("EAPK_MODEL", "Synthetic Model", null);
+			writeSchema();
+			endPackage();
+
+			for (int i = 0; i < BASIC_TYPES.length; i++) {
+				w.writeStartElement("Foundation.Core.DataType");
+				w.writeAttribute("xmi.id", basicTypeId(i));
+				text("Foundation.Core.ModelElement.name", BASIC_TYPES[i]);
+				w.writeEndElement();
+			}
+
+			w.writeEndElement();
+			w.writeEndElement();
+
+			writeStereotypes();
+			writeTaggedValues();
+
+			w.writeEndElement();
+			w.writeEndElement();
+			w.writeEndDocument();
+			w.flush();
+			w.close();
+
+		} catch (XMLStreamException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			w = null;
+			stereotypes = null;
+			taggedValues = null;
+		}
+	}
+
+	private void writeSchema() throws XMLStreamException {
+
+		startPackage("EAPK_SCHEMA", SCHEMA_NAME, "EAPK_MODEL");
+		stereotype("applicationSchema", "EAPK_SCHEMA");
+		taggedValue("EAPK_SCHEMA", "targetNamespace",
+				"http://shapechange.net/synthetic");
+		taggedValue("EAPK_SCHEMA", "xmlns", "syn");
+		taggedValue("EAPK_SCHEMA", "version", "1.0");
+		taggedValue("EAPK_SCHEMA", "xsdDocument", "synthetic.xsd");
+
+		int packages = (classes + classesPerPackage - 1) / classesPerPackage;
+
+		for (int p = 0; p < packages; p++) {
+
+			String pkgId = "EAPK_P" + p;
+			startPackage(pkgId, "Package" + p, "EAPK_SCHEMA");
+			taggedValue(pkgId, "documentation",
+					"Definition of package " + p + ".");
+
+			int first = p * classesPerPackage;
+			int last = Math.min(classes, first + classesPerPackage);
+
+			for (int i = first; i < last; i++) {
+				writeClass(i, pkgId);
+			}
+			for (int i = first; i < last; i++) {
+				if (i % BLOCK_SIZE > 0 && i % BLOCK_SIZE < 6) {
+					writeGeneralization(i, i - 1);
+				}
+			}
+			for (int i = first; i < last; i += BLOCK_SIZE) {
+				if (i + BLOCK_SIZE < classes) {
+					writeAssociation(i, i + BLOCK_SIZE);
+				}
+			}
+
+			endPackage();
+		}
+
+		endPackage();
+	}
+
+	private void writeClass(int i, String pkgId) throws XMLStreamException {
+
+		String id = classId(i);
+		int kind = i % BLOCK_SIZE;
+
+		w.writeStartElement("Foundation.Core.Class");
+		w.writeAttribute("xmi.id", id);
+		text("Foundation.Core.ModelElement.name", className(i));
+		value("Foundation.Core.ModelElement.visibility", "public");
+		value("Foundation.Core.GeneralizableElement.isAbstract",
+				kind == 0 ? "true" : "false");
+		idref("Foundation.Core.ModelElement.namespace",
+				"Model_Management.Package", pkgId);
+
+		taggedValue(id, "documentation",
+				"Definition of class " + className(i) + ".");
+		additionalTaggedValues(id, i);
+
+		if (kind < 6) {
+
+			stereotype("featureType", id);
+			if (kind == 5) {
+				taggedValue(id, "profiles", (i / BLOCK_SIZE) % 2 == 0 ? "A"
+						: "B");
+			}
+			writeAttributes(i, attributesPerClass, true);
+
+		} else if (kind < 8) {
+
+			stereotype("dataType", id);
+			writeAttributes(i, attributesPerClass, false);
+
+		} else if (kind == 8) {
+
+			stereotype("codeList", id);
+
+		} else {
+
+			stereotype("enumeration", id);
+			writeAttributes(i, Math.max(1, attributesPerClass / 2), false);
+		}
+
+		w.writeEndElement();
+	}
+
+	private void writeAttributes(int i, int count, boolean featureType)
+			throws XMLStreamException {
+
+		if (count == 0) {
+			return;
+		}
+
+		int kind = i % BLOCK_SIZE;
+		int block = i - kind;
+
+		w.writeStartElement("Foundation.Core.Classifier.feature");
+
+		for (int j = 0; j < count; j++) {
+
+			String id = classId(i) + "_A" + j;
+
+			w.writeStartElement("Foundation.Core.Attribute");
+			w.writeAttribute("xmi.id", id);
+
+			if (kind == 9) {
+
+				// enumeration value
+				text("Foundation.Core.ModelElement.name", "value" + j);
+				value("Foundation.Core.ModelElement.visibility", "public");
+				multiplicity("1", "1");
+
+			} else {
+
+				text("Foundation.Core.ModelElement.name", "att" + kind + "_"
+						+ j);
+				value("Foundation.Core.ModelElement.visibility", "public");
+
+				switch (j % 3) {
+				case 0:
+					multiplicity("1", "1");
+					break;
+				case 1:
+					multiplicity("0", "1");
+					break;
+				default:
+					multiplicity("0", "*");
+				}
+
+				if (featureType && j % 4 == 2) {
+					idref("Foundation.Core.StructuralFeature.type",
+							"Foundation.Core.Classifier",
+							classId(block + 6 + (j / 4) % 2));
+				} else if (featureType && j % 4 == 3) {
+					idref("Foundation.Core.StructuralFeature.type",
+							"Foundation.Core.Classifier",
+							classId(block + 8 + (j / 4) % 2));
+				} else {
+					idref("Foundation.Core.StructuralFeature.type",
+							"Foundation.Core.DataType",
+							basicTypeId((i + j) % BASIC_TYPES.length));
+				}
+
+				if (featureType && j % 3 == 1) {
+					taggedValue(id, "profiles", j % 2 == 0 ? "A" : "B");
+				}
+			}
+
+			taggedValue(id, "documentation",
+					"Definition of property " + j + " of " + className(i)
+							+ ".");
+			taggedValue(id, "sequenceNumber", Integer.toString(j + 1));
+			additionalTaggedValues(id, i + j);
+
+			w.writeEndElement();
+		}
+
+		w.writeEndElement();
+	}
+
+	private void writeGeneralization(int child, int parent)
+			throws XMLStreamException {
+
+		w.writeStartElement("Foundation.Core.Generalization");
+		w.writeAttribute("xmi.id", "EAID_G" + child);
+		value("Foundation.Core.ModelElement.visibility", "public");
+		idref("Foundation.Core.Generalization.child",
+				"Foundation.Core.GeneralizableElement", classId(child));
+		idref("Foundation.Core.Generalization.parent",
+				"Foundation.Core.GeneralizableElement", classId(parent));
+		w.writeEndElement();
+	}
+
+	private void writeAssociation(int source, int target)
+			throws XMLStreamException {
+
+		String id = "EAID_AS" + source;
+
+		w.writeStartElement("Foundation.Core.Association");
+		w.writeAttribute("xmi.id", id);
+		value("Foundation.Core.ModelElement.visibility", "public");
+		w.writeStartElement("Foundation.Core.Association.connection");
+		associationEnd(id + ".CE", "successor", target, "0", "1");
+		associationEnd(id + ".SE", "predecessor", source, "0", "*");
+		w.writeEndElement();
+		w.writeEndElement();
+	}
+
+	private void associationEnd(String id, String name, int type,
+			String lower, String upper) throws XMLStreamException {
+
+		w.writeStartElement("Foundation.Core.AssociationEnd");
+		w.writeAttribute("xmi.id", id);
+		text("Foundation.Core.ModelElement.name", name);
+		value("Foundation.Core.ModelElement.visibility", "public");
+		value("Foundation.Core.AssociationEnd.isNavigable", "true");
+		value("Foundation.Core.AssociationEnd.aggregation", "none");
+		w.writeStartElement("Foundation.Core.AssociationEnd.multiplicity");
+		multiplicityRange(lower, upper);
+		w.writeEndElement();
+		idref("Foundation.Core.AssociationEnd.type", "Foundation.Core.Class",
+				classId(type));
+		w.writeEndElement();
+
+		taggedValue(id, "sequenceNumber", "100");
+	}
+
+	private void writeStereotypes() throws XMLStreamException {
+
+		int s = 0;
+		for (Map.Entry<String, List<String>> e : stereotypes.entrySet()) {
+
+			w.writeStartElement("Foundation.Extension_Mechanisms.Stereotype");
+			w.writeAttribute("xmi.id", "EAST_" + s++);
+			text("Foundation.Core.ModelElement.name", e.getKey());
+			text("Foundation.Extension_Mechanisms.Stereotype.baseClass",
+					e.getKey().equals("applicationSchema") ? "Package"
+							: "Class");
+			w.writeStartElement(
+					"Foundation.Extension_Mechanisms.Stereotype.extendedElement");
+			for (String id : e.getValue()) {
+				w.writeEmptyElement("Foundation.Core.ModelElement");
+				w.writeAttribute("xmi.idref", id);
+			}
+			w.writeEndElement();
+			w.writeEndElement();
+		}
+	}
+
+	private void writeTaggedValues() throws XMLStreamException {
+
+		for (String[] tv : taggedValues) {
+			w.writeStartElement("Foundation.Extension_Mechanisms.TaggedValue");
+			text("Foundation.Extension_Mechanisms.TaggedValue.tag", tv[1]);
+			text("Foundation.Extension_Mechanisms.TaggedValue.value", tv[2]);
+			idref("Foundation.Extension_Mechanisms.TaggedValue.modelElement",
+					"Foundation.Core.ModelElement", tv[0]);
+			w.writeEndElement();
+		}
+	}
+
+	private void startPackage(String id, String name, String ownerId)
+			throws XMLStreamException {
+
+		w.writeStartElement("Model_Management.Package");
+		w.writeAttribute("xmi.id", id);
+		text("Foundation.Core.ModelElement.name", name);
+		value("Foundation.Core.ModelElement.visibility", "public");
+		if (ownerId != null) {
+			idref("Foundation.Core.ModelElement.namespace",
+					"Model_Management.Package", ownerId);
+		}
+		w.writeStartElement("Foundation.Core.Namespace.ownedElement");
+	}
+
+	private void endPackage() throws XMLStreamException {
+		w.writeEndElement();
+		w.writeEndElement();
+	}
+
+	private void multiplicity(String lower, String upper)
+			throws XMLStreamException {
+		w.writeStartElement("Foundation.Core.StructuralFeature.multiplicity");
+		multiplicityRange(lower, upper);
+		w.writeEndElement();
+	}
+
+	private void multiplicityRange(String lower, String upper)
+			throws XMLStreamException {
+		w.writeStartElement("Foundation.Data_Types.Multiplicity");
+		w.writeStartElement("Foundation.Data_Types.Multiplicity.range");
+		w.writeStartElement("Foundation.Data_Types.MultiplicityRange");
+		text("Foundation.Data_Types.MultiplicityRange.lower", lower);
+		text("Foundation.Data_Types.MultiplicityRange.upper", upper);
+		w.writeEndElement();
+		w.writeEndElement();
+		w.writeEndElement();
+	}
+
+	private void additionalTaggedValues(String id, int seed) {
+		for (int k = 1; k <= additionalTaggedValues; k++) {
+			taggedValue(id, "tag" + k,
+					"value" + ((seed + k) % distinctTaggedValues));
+		}
+	}
+
+	private void stereotype(String stereotype, String id) {
+		List<String> ids = stereotypes.get(stereotype);
+		if (ids == null) {
+			ids = new ArrayList<String>();
+			stereotypes.put(stereotype, ids);
+		}
+		ids.add(id);
+	}
+
+	private void taggedValue(String id, String tag, String value) {
+		taggedValues.add(new String[] { id, tag, value });
+	}
+
+	private void text(String element, String text) throws XMLStreamException {
+		w.writeStartElement(element);
+		w.writeCharacters(text);
+		w.writeEndElement();
+	}
+
+	private void value(String element, String value)
+			throws XMLStreamException {
+		w.writeEmptyElement(element);
+		w.writeAttribute("xmi.value", value);
+	}
+
+	private void idref(String element, String refElement, String id)
+			throws XMLStreamException {
+		w.writeStartElement(element);
+		w.writeEmptyElement(refElement);
+		w.writeAttribute("xmi.idref", id);
+		w.writeEndElement();
+	}
+
+	private String classId(int i) {
+		return "EAID_C" + i;
+	}
+
+	private String className(int i) {
+		switch (i % BLOCK_SIZE) {
+		case 6:
+		case 7:
+			return "DataType" + i;
+		case 8:
+			return "CodeList" + i;
+		case 9:
+			return "Enumeration" + i;
+		default:
+			return "FeatureType" + i;
+		}
+	}
+
+	private String basicTypeId(int i) {
+		return "EADT_" + BASIC_TYPES[i];
+	}
+
+	/**
+	 * Writes a synthetic model.
+	 * <p>
+	 * Arguments: file, number of classes[, attributes per class[, additional
+	 * tagged values per element]]
+	 * 
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("Usage: SyntheticModelGenerator <file> "
+					+ "<classes> [<attributes per class> "
+					+ "[<additional tagged values>]]");
+			System.exit(1);
+		}
+
+		SyntheticModelGenerator generator = new SyntheticModelGenerator(
+				Integer.parseInt(args[1]));
+		if (args.length > 2) {
+			generator.setAttributesPerClass(Integer.parseInt(args[2]));
+		}
+		if (args.length > 3) {
+			generator.setAdditionalTaggedValues(Integer.parseInt(args[3]),
+					16);
+		}
+
+		generator.write(new File(args[0]));
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Benchmark;
+
+import java.io.File;
+
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
+
+/**
+ * Compares the heap used by a loaded synthetic model, and by a
+ * {@link GenericModel} copy of it, for the tagged value implementations
+ * 'map', 'array' and 'packed' (see the input parameter
+ * 'taggedValueImplementation'). Heap usage is not covered by the JMH
+ * benchmarks, so this is a separate program; run it with a fixed heap size,
+ * for example:
+ * <p>
+ * <code>java -Xmx4g -cp benchmarks.jar
+ * de.interactive_instruments.ShapeChange.Benchmark.TaggedValuesFootprint
+ * 10000</code>
+ */
+public class TaggedValuesFootprint {
+
+	private static final String[] IMPLEMENTATIONS = { "map", "array",
+			"packed" };
+
+	public static void main(String[] args) throws Exception {
+
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		File file = BenchmarkSupport.syntheticModel(classes);
+
+		System.out.println("Tagged value implementation, " + classes
+				+ " classes: heap of model / of model and copy (MB)");
+
+		for (String impl : IMPLEMENTATIONS) {
+
+			File config = BenchmarkSupport.configuration("footprint-" + impl,
+					file, impl, null, null);
+
+			long before = usedHeap();
+
+			Options options = BenchmarkSupport.options(config);
+			Model model = BenchmarkSupport.loadModel(options,
+					new ShapeChangeResult(options));
+			long loaded = usedHeap();
+
+			GenericModel copy = new GenericModel(model);
+			long copied = usedHeap();
+
+			System.out.println(impl + ": " + mb(loaded - before) + " / "
+					+ mb(copied - before));
+
+			copy.shutdown();
+			model.shutdown();
+			copy = null;
+			model = null;
+			options = null;
+		}
+	}
+
+	private static long usedHeap() {
+
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private static String mb(long bytes) {
+		return String.format("%.1f", bytes / (1024.0 * 1024.0));
+	}
+}
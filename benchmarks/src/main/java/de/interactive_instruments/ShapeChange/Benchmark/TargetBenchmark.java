@@ -0,0 +1,112 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.interactive_instruments.ShapeChange.Converter;
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
+
+/**
+ * Measures the execution of a single target - XmlSchema, FeatureCatalogue
+ * (HTML), SqlDdl or JsonSchema - on the input model, including writing the
+ * output. Each invocation processes a fresh copy of the loaded model, because
+ * the Converter releases the model once it has been processed; creating the
+ * copy is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class TargetBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int classes;
+
+	@Param({ BenchmarkSupport.TGT_XML_SCHEMA,
+			BenchmarkSupport.TGT_FEATURE_CATALOGUE,
+			BenchmarkSupport.TGT_SQL_DDL, BenchmarkSupport.TGT_JSON_SCHEMA })
+	public String target;
+
+	private Options options;
+	private ShapeChangeResult result;
+	private Model model;
+	private GenericModel copy;
+
+	@Setup
+	public void setup() throws Exception {
+
+		File file = BenchmarkSupport.syntheticModel(classes);
+		File config = BenchmarkSupport.configuration(
+				"tgt-" + classes + "-" + target, file, "map", null, target);
+
+		options = BenchmarkSupport.options(config);
+		result = new ShapeChangeResult(options);
+		model = BenchmarkSupport.loadModel(options, result);
+	}
+
+	@Setup(Level.Invocation)
+	public void copyModel() {
+		copy = new GenericModel(model);
+	}
+
+	@TearDown
+	public void tearDown() {
+		model.shutdown();
+		model = null;
+	}
+
+	@Benchmark
+	public void execute() {
+		new Converter(options, result).convert(copy);
+	}
+}
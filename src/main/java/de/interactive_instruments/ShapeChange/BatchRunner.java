@@ -0,0 +1,248 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs multiple ShapeChange configurations within one process. The parsed
+ * configuration documents and the postprocessed input models are kept in
+ * memory between the runs (see {@link Options#cacheConfigurations(boolean)}
+ * and {@link Converter#keepModelsInMemory(int)}), so that configurations
+ * which use the same input model only pay for loading it once.
+ * <p>
+ * The configurations are either listed in a file (one path per line, empty
+ * lines and lines starting with '#' are ignored), or dropped into a
+ * directory that is watched until a file named {@value #STOP_FILE_NAME}
+ * appears in it. A configuration dropped into the watched directory is
+ * renamed once it has been processed, by appending
+ * {@value #SUFFIX_DONE} or - if the conversion was aborted or logged errors -
+ * {@value #SUFFIX_FAILED} to its name.
+ */
+public class BatchRunner {
+
+	/**
+	 * Default for the maximum number of input models kept in memory
+	 */
+	public static final int DEFAULT_MAX_MODELS = 5;
+
+	/**
+	 * Name of the file that stops watching a directory
+	 */
+	public static final String STOP_FILE_NAME = "shapechange.stop";
+
+	public static final String SUFFIX_DONE = ".done";
+	public static final String SUFFIX_FAILED = ".failed";
+
+	/**
+	 * Interval (in milliseconds) in which a watched directory is checked for
+	 * new configurations
+	 */
+	protected static final long POLL_INTERVAL = 2000;
+
+	/**
+	 * Minimum age (in milliseconds) of a configuration file in a watched
+	 * directory, so that files which are still being written are not picked
+	 * up
+	 */
+	protected static final long MIN_FILE_AGE = 1000;
+
+	protected List<String[]> replaceValues;
+
+	/**
+	 * @param replaceValues
+	 *            pairs of values and their replacements, applied to the
+	 *            parameters of every configuration (see
+	 *            {@link Options#setReplaceValue(String, String)})
+	 * @param maxModels
+	 *            maximum number of input models to keep in memory
+	 */
+	public BatchRunner(List<String[]> replaceValues, int maxModels) {
+
+		this.replaceValues = replaceValues;
+
+		Options.cacheConfigurations(true);
+		Converter.keepModelsInMemory(maxModels);
+	}
+
+	/**
+	 * Runs all configurations listed in the given file.
+	 * 
+	 * @param listFile
+	 * @return <code>true</code> if all configurations could be processed
+	 *         without errors, else <code>false</code>
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	public boolean runConfigurationList(File listFile) throws IOException {
+
+		List<String> configFiles = new ArrayList<String>();
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(listFile), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					configFiles.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		boolean ok = true;
+		for (String configFile : configFiles) {
+			ok &= run(configFile);
+		}
+		return ok;
+	}
+
+	/**
+	 * Watches the given directory for configuration files (files with
+	 * extension '.xml') and runs each of them, in the order of their names,
+	 * until a file named {@value #STOP_FILE_NAME} is found in the directory;
+	 * that file is deleted before this method returns.
+	 * 
+	 * @param dir
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting for new
+	 *             configurations
+	 */
+	public void watch(File dir) throws InterruptedException {
+
+		System.out.println("Watching directory '" + dir.getPath()
+				+ "' for ShapeChange configurations. Create file '"
+				+ STOP_FILE_NAME + "' in the directory to stop.");
+
+		File stopFile = new File(dir, STOP_FILE_NAME);
+
+		while (!stopFile.exists()) {
+
+			final long maxLastModified = System.currentTimeMillis()
+					- MIN_FILE_AGE;
+
+			File[] files = dir.listFiles(new FileFilter() {
+				public boolean accept(File f) {
+					return f.isFile()
+							&& f.getName().toLowerCase().endsWith(".xml")
+							&& f.lastModified() < maxLastModified;
+				}
+			});
+
+			if (files == null || files.length == 0) {
+				Thread.sleep(POLL_INTERVAL);
+				continue;
+			}
+
+			Arrays.sort(files);
+
+			for (File f : files) {
+
+				boolean ok = run(f.getPath());
+
+				File renamed = new File(f.getPath()
+						+ (ok ? SUFFIX_DONE : SUFFIX_FAILED));
+				renamed.delete();
+				if (!f.renameTo(renamed)) {
+					// do not pick up the configuration again
+					f.delete();
+				}
+
+				if (stopFile.exists()) {
+					break;
+				}
+			}
+		}
+
+		stopFile.delete();
+	}
+
+	/**
+	 * Runs a single configuration.
+	 * 
+	 * @param configFile
+	 * @return <code>true</code> if the configuration could be processed
+	 *         without errors, <code>false</code> if the conversion was
+	 *         aborted or errors were logged
+	 */
+	public boolean run(String configFile) {
+
+		long start = System.currentTimeMillis();
+
+		Options options = new Options();
+		ShapeChangeResult result = new ShapeChangeResult(options);
+
+		options.configFile = configFile;
+		for (String[] rv : replaceValues) {
+			options.setReplaceValue(rv[0], rv[1]);
+		}
+
+		Converter converter = new Converter(options, result);
+
+		try {
+			options.loadConfiguration();
+			converter.convert();
+		} catch (ShapeChangeAbortException e) {
+			System.err.println("Configuration '" + configFile
+					+ "' could not be processed: " + e.getMessage());
+			return false;
+		} catch (RuntimeException e) {
+			System.err.println("Configuration '" + configFile
+					+ "' could not be processed: " + e.getMessage());
+			e.printStackTrace(System.err);
+			return false;
+		}
+
+		if (result.errorCount() > 0) {
+			System.err.println("Configuration '" + configFile
+					+ "' processed with " + result.errorCount()
+					+ " error(s) in " + (System.currentTimeMillis() - start)
+					+ " ms.");
+			return false;
+		}
+
+		System.out.println("Configuration '" + configFile + "' processed in "
+				+ (System.currentTimeMillis() - start) + " ms.");
+		return true;
+	}
+}
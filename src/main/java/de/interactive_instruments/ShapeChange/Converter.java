@@ -33,28 +33,49 @@
 package de.interactive_instruments.ShapeChange;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.xml.sax.SAXException;
 
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
+import de.interactive_instruments.ShapeChange.Model.Constraint;
 import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.OclConstraintImpl;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
+import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
 import de.interactive_instruments.ShapeChange.Model.Transformer;
 import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModelSnapshot;
+import de.interactive_instruments.ShapeChange.Ocl.OclParser;
 import de.interactive_instruments.ShapeChange.Target.DeferrableOutputWriter;
 import de.interactive_instruments.ShapeChange.Target.SingleTarget;
 import de.interactive_instruments.ShapeChange.Target.Target;
 import de.interactive_instruments.ShapeChange.Transformation.TransformationManager;
 import de.interactive_instruments.ShapeChange.UI.StatusBoard;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
 
 public class Converter {
 
@@ -69,7 +90,48 @@ public class Converter {
 	protected ShapeChangeResult result = null;
 	protected Options options = null;
 	protected Target target = null;
-	protected Set<String> processIdsToIgnore = new HashSet<String>();
+	protected Set<String> processIdsToIgnore = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Thread pool and admission control for the parallel execution of
+	 * transformation branches; both are <code>null</code> if transformation
+	 * branches are executed sequentially.
+	 */
+	protected ExecutorService branchExecutor = null;
+	protected BranchAdmission branchAdmission = null;
+	protected ProcessMetrics metrics = null;
+
+	/**
+	 * Locks by target and transformer class name. Targets and transformers
+	 * may keep state on the class level, so two of them with the same class
+	 * must not be executed at the same time - not even in different
+	 * transformation branches (see {@link #classLock(String)}).
+	 */
+	protected ConcurrentHashMap<String, Object> classLocks = new ConcurrentHashMap<String, Object>();
+
+	/**
+	 * File to which a snapshot of the input model is written once it has
+	 * been postprocessed (see {@link Options#PARAM_MODEL_CACHE_DIRECTORY});
+	 * <code>null</code> if no snapshot shall be written.
+	 */
+	protected File modelSnapshotFile = null;
+
+	/**
+	 * Key under which a snapshot of the input model is kept in memory once it
+	 * has been postprocessed (see {@link #keepModelsInMemory(int)});
+	 * <code>null</code> if the snapshot shall not be kept.
+	 */
+	protected String modelSnapshotKey = null;
+
+	/**
+	 * Snapshots of postprocessed input models, by snapshot key (see
+	 * {@link GenericModelSnapshot#key(File, Options)}), in the order in which
+	 * they were last used; <code>null</code> if models are not kept in
+	 * memory.
+	 */
+	protected static LinkedHashMap<String, byte[]> modelsInMemory = null;
+	protected static int maxModelsInMemory = 0;
 
 	public Converter(Options o, ShapeChangeResult r) {
 		options = o;
@@ -79,12 +141,17 @@ public class Converter {
 
 	public void convert() throws ShapeChangeAbortException {
 
+		// write messages to the log file right away, if so configured
+		result.startStreaming(options.parameter("logFile"));
+
 		if (options.isOnlyDeferrableOutputWrite()) {
 
 			executeDeferrableOutputWriters();
 
 		} else {
 
+			OclParser.resetStatistics();
+
 			// process model as usual
 			Model m = getModel();
 
@@ -115,11 +182,67 @@ public class Converter {
 				e.printStackTrace(System.err);
 			}
 		} finally {
+			metrics().write(options.parameter("logFile"));
 			result.toFile(options.parameter("logFile"));
 			target = null;
 		}
 	}
 
+	/**
+	 * @return the metrics of this conversion (see
+	 *         {@link Options#PARAM_PROCESS_METRICS})
+	 */
+	public synchronized ProcessMetrics metrics() {
+		if (metrics == null) {
+			metrics = new ProcessMetrics(options, result);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Keeps snapshots of the postprocessed input models in memory, so that
+	 * subsequent conversions within the same process - for example in batch
+	 * mode - do not need to load and postprocess the same model again. As
+	 * the key of a snapshot includes the content of the input file and the
+	 * input configuration, a snapshot is not used after either has changed.
+	 * If more than the given number of snapshots would be kept, the least
+	 * recently used one is discarded.
+	 * 
+	 * @param maxModels
+	 *            maximum number of models to keep in memory; a value less
+	 *            than 1 turns this off and discards all models kept so far
+	 */
+	public static synchronized void keepModelsInMemory(int maxModels) {
+		if (maxModels < 1) {
+			modelsInMemory = null;
+		} else if (modelsInMemory == null) {
+			modelsInMemory = new LinkedHashMap<String, byte[]>(16, 0.75f,
+					true);
+		}
+		maxModelsInMemory = maxModels;
+	}
+
+	private static synchronized boolean isKeepingModelsInMemory() {
+		return modelsInMemory != null;
+	}
+
+	private static synchronized byte[] modelInMemory(String key) {
+		return modelsInMemory == null ? null : modelsInMemory.get(key);
+	}
+
+	private static synchronized void putModelInMemory(String key,
+			byte[] snapshot) {
+		if (modelsInMemory == null) {
+			return;
+		}
+		modelsInMemory.put(key, snapshot);
+		Iterator<String> iter = modelsInMemory.keySet().iterator();
+		while (modelsInMemory.size() > maxModelsInMemory && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
 	/** Convert the application schema. */
 	public void convert(Model model) {
 
@@ -129,11 +252,19 @@ public class Converter {
 				throw new ShapeChangeAbortException();
 			}
 
+			ProcessMetrics.Phase phase = metrics().start(
+					ProcessMetrics.MODEL, model.getClass().getSimpleName(),
+					"postprocess", options.getInputId());
+
 			model.loadInformationFromExternalSources();
 
 			// Prepare and check model
 			model.postprocessAfterLoadingAndValidate();
 
+			metrics().end(phase);
+
+			writeModelSnapshot(model);
+
 			// simply return if no schema is selected for processing
 			SortedSet<? extends PackageInfo> selectedSchema = model
 					.selectedSchemas();
@@ -150,6 +281,12 @@ public class Converter {
 				this.executeTargets(model, options.getInputId(),
 						options.getInputTargetConfigs());
 
+				if (options.isParallelTransformation()) {
+					branchExecutor = Executors.newCachedThreadPool();
+					branchAdmission = new BranchAdmission(options.maxThreads(),
+							options.transformationBranchMemory());
+				}
+
 				// now recursively execute the transformations (and associated
 				// targets) defined for the input model
 				this.executeTransformations(model,
@@ -181,6 +318,18 @@ public class Converter {
 				e.printStackTrace(System.err);
 			}
 		} finally {
+			if (branchExecutor != null) {
+				branchExecutor.shutdownNow();
+				branchExecutor = null;
+				branchAdmission = null;
+			}
+			long[] ocl = OclParser.getStatistics();
+			if (ocl[0] + ocl[1] > 0) {
+				result.addInfo(null, 518, Long.toString(ocl[0] + ocl[1]),
+						Long.toString(ocl[0]), Long.toString(ocl[2]),
+						Long.toString(ocl[3]));
+			}
+			metrics().write(options.parameter("logFile"));
 			result.toFile(options.parameter("logFile"));
 			target = null;
 		}
@@ -256,12 +405,19 @@ public class Converter {
 				DeferrableOutputWriter dowTarget = (DeferrableOutputWriter) theClass
 						.newInstance();
 
+				ProcessMetrics.Phase phase = metrics().start(
+						ProcessMetrics.DEFERRED_OUTPUT_WRITER,
+						theClass.getSimpleName(), "writeOutput",
+						modelProviderId);
+
 				dowTarget.initialise(options, result);
 
 				StatusBoard.getStatusBoard()
 						.statusChanged(STATUS_TARGET_DEFERRED_WRITE);
 				dowTarget.writeOutput();
 
+				metrics().end(phase);
+
 				dowTarget = null;
 
 				result.addInfo(null, 500, tgt.getClassName(), modelProviderId);
@@ -273,6 +429,11 @@ public class Converter {
 			List<TransformerConfiguration> transformerConfigs)
 					throws Exception {
 
+		if (branchExecutor != null) {
+			this.executeTransformationsInParallel(model, transformerConfigs);
+			return;
+		}
+
 		/*
 		 * First of all count the transformers that are disabled. Then subtract
 		 * this number from the length of the transformer configuration list. If
@@ -347,8 +508,12 @@ public class Converter {
 					GenericModel modelInput;
 					if (modelCopyRequired) {
 						result.addDebug("Creating GenericModel...");
+						ProcessMetrics.Phase phase = metrics().start(
+								ProcessMetrics.TRANSFORMER, trf.getId(),
+								"copyModel", trf.getInputId());
 						// create generic model from model
 						modelInput = new GenericModel(model);
+						metrics().end(phase);
 						result.addDebug("...done.");
 					} else {
 						result.addDebug(
@@ -361,8 +526,15 @@ public class Converter {
 					StatusBoard.getStatusBoard()
 							.statusChanged(STATUS_TRANSFORMER_PROCESS);
 
-					modelOutput = trfManager.process(modelInput, options, trf,
-							result);
+					ProcessMetrics.Phase phase = metrics().start(
+							ProcessMetrics.TRANSFORMER, trf.getId(), "process",
+							trf.getInputId());
+					try {
+						modelOutput = trfManager.process(modelInput, options,
+								trf, result);
+					} finally {
+						metrics().end(phase);
+					}
 
 					/*
 					 * Release the original model now if: 1) a GenericModel copy
@@ -420,144 +592,742 @@ public class Converter {
 		}
 	}
 
-	@SuppressWarnings("rawtypes")
+	/**
+	 * Executes sibling transformations - each together with its targets and
+	 * dependent transformations (i.e. its branch of the transformer tree) -
+	 * concurrently. The model copies that serve as input for the branches are
+	 * created one after another by the current thread, so that the input model
+	 * is never accessed concurrently. A new branch is only started if the
+	 * {@link BranchAdmission} permits it. Targets and transformers of the same
+	 * class are not executed concurrently by different branches (see
+	 * {@link #classLock(String)}).
+	 * 
+	 * @param model
+	 * @param transformerConfigs
+	 * @throws Exception
+	 *             the first exception that occurred while executing one of
+	 *             the branches (after all branches have been executed)
+	 */
+	private void executeTransformationsInParallel(Model model,
+			List<TransformerConfiguration> transformerConfigs)
+					throws Exception {
+
+		// see executeTransformations(..) for further details
+		int numberOfDisabledTransformers = 0;
+		String idOfLastEnabledTransformer = "UNKNOWN";
+		for (TransformerConfiguration trf : transformerConfigs) {
+			if (trf.getProcessMode() == ProcessMode.disabled) {
+				numberOfDisabledTransformers++;
+			} else {
+				idOfLastEnabledTransformer = trf.getId();
+			}
+		}
+		boolean modelCopyRequired = (transformerConfigs.size()
+				- numberOfDisabledTransformers) > 1
+				|| !(model instanceof GenericModel);
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+		for (final TransformerConfiguration trf : transformerConfigs) {
+
+			if (trf.getProcessMode() == ProcessMode.disabled) {
+
+				processIdsToIgnore.add(trf.getId());
+				result.addInfo(null, 506, trf.getId());
+
+			} else if (processIdsToIgnore.contains(trf.getInputId())) {
+
+				processIdsToIgnore.add(trf.getId());
+			}
+
+			if (processIdsToIgnore.contains(trf.getId())) {
+
+				/*
+				 * nothing to compute - just make sure that the IDs of all
+				 * dependent transformations are put on the ignore list
+				 */
+				this.executeTargets(null, trf.getId(), trf.getTargets());
+				this.executeTransformations(null, trf.getTransformers());
+				continue;
+			}
+
+			branchAdmission.acquire();
+
+			final GenericModel modelInput;
+			try {
+				result.addInfo(null, 501, trf.getId(), trf.getInputId());
+
+				if (modelCopyRequired) {
+					result.addDebug("Creating GenericModel...");
+					long usedMemoryBefore = BranchAdmission.usedMemory();
+					ProcessMetrics.Phase phase = metrics().start(
+							ProcessMetrics.TRANSFORMER, trf.getId(),
+							"copyModel", trf.getInputId());
+					modelInput = new GenericModel(model);
+					metrics().end(phase);
+					branchAdmission.recordBranchMemory(
+							BranchAdmission.usedMemory() - usedMemoryBefore);
+					result.addDebug("...done.");
+				} else {
+					result.addDebug(
+							"Creation of GenericModel is not required.");
+					modelInput = (GenericModel) model;
+				}
+
+			} catch (Exception e) {
+				branchAdmission.release();
+				throw e;
+			}
+
+			/*
+			 * all branches create their own copy of the model, thus the model
+			 * can be released once the last copy has been created
+			 */
+			if (modelCopyRequired
+					&& trf.getId().equals(idOfLastEnabledTransformer)) {
+				result.addDebug("Releasing model created by processing step: "
+						+ trf.getInputId());
+				this.release(model);
+			}
+
+			futures.add(branchExecutor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+
+					GenericModel modelOutput;
+					try {
+						modelOutput = executeTransformation(modelInput, trf);
+						executeTargets(modelOutput, trf.getId(),
+								trf.getTargets());
+					} finally {
+						// the branch no longer needs a permit while it waits
+						// for its dependent transformations
+						branchAdmission.release();
+					}
+
+					executeTransformations(modelOutput, trf.getTransformers());
+					return null;
+				}
+			}));
+		}
+
+		Exception failure = null;
+
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						failure = (Exception) cause;
+					} else {
+						failure = e;
+					}
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * @param classname
+	 *            name of a target or transformer class
+	 * @return the object to synchronize on while a target or transformer of
+	 *         the given class is executed concurrently with other targets
+	 *         and transformers
+	 */
+	protected Object classLock(String classname) {
+		Object lock = classLocks.get(classname);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = classLocks.putIfAbsent(classname, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * Executes a single transformation on the given model, using a view of the
+	 * options that is bound to the current thread. Transformations with the
+	 * same class are executed one after another, also if they belong to
+	 * different transformation branches.
+	 * 
+	 * @param modelInput
+	 * @param trf
+	 * @return the transformed model, or <code>null</code> if the
+	 *         transformation did not succeed (in that case the transformation
+	 *         has been added to the ignore list)
+	 * @throws ShapeChangeAbortException
+	 */
+	private GenericModel executeTransformation(GenericModel modelInput,
+			TransformerConfiguration trf) throws ShapeChangeAbortException {
+
+		synchronized (classLock(trf.getClassName())) {
+			return executeTransformationWithView(modelInput, trf);
+		}
+	}
+
+	private GenericModel executeTransformationWithView(
+			GenericModel modelInput, TransformerConfiguration trf)
+					throws ShapeChangeAbortException {
+
+		Options trfOptions = options.createProcessView(trf);
+		options.bindProcessView(trfOptions);
+
+		ProcessMetrics.Phase phase = metrics().start(
+				ProcessMetrics.TRANSFORMER, trf.getId(), "process",
+				trf.getInputId());
+
+		try {
+			TransformationManager trfManager = new TransformationManager();
+
+			StatusBoard.getStatusBoard()
+					.statusChanged(STATUS_TRANSFORMER_PROCESS);
+
+			GenericModel modelOutput = trfManager.process(modelInput,
+					trfOptions, trf, result);
+
+			result.addInfo(null, 502, trf.getId(), trf.getInputId());
+
+			return modelOutput;
+
+		} catch (ClassCastException e) {
+
+			processIdsToIgnore.add(trf.getId());
+
+			result.addError(null, 505, e.getMessage(), trf.getId());
+
+			StackTraceElement[] stes = e.getStackTrace();
+
+			if (stes != null) {
+
+				for (StackTraceElement ste : stes) {
+					result.addDebug(ste.toString());
+				}
+			}
+
+			return null;
+
+		} finally {
+			metrics().end(phase);
+			options.unbindProcessView();
+		}
+	}
+
 	private void executeTargets(Model model, String modelProviderId,
-			List<TargetConfiguration> targetConfigs)
-					throws ShapeChangeAbortException, ClassNotFoundException,
-					InstantiationException, IllegalAccessException,
-					NoSuchMethodException, SecurityException {
+			List<TargetConfiguration> targetConfigs) throws Exception {
 
 		if (processIdsToIgnore.contains(modelProviderId)) {
 			// do not execute this target
 			return;
 		}
 
+		/*
+		 * if OCL parsing is deferred, parse the constraints up front - and in
+		 * parallel - once a target that uses the OCL syntax trees is executed
+		 */
+		if (model != null && options.isLazyOclParsing()) {
+			for (TargetConfiguration tgt : targetConfigs) {
+				if (!tgt.getProcessMode().equals(ProcessMode.disabled)
+						&& tgt.getClassName().equals(
+								Options.TargetXmlSchemaClass)) {
+					this.parseDeferredOclConstraints(model);
+					break;
+				}
+			}
+		}
+
+		if (options.isParallelTargetExecution()
+				&& model instanceof GenericModel) {
+
+			this.executeTargetsInParallel(model, modelProviderId,
+					targetConfigs);
+
+		} else {
+
+			for (TargetConfiguration tgt : targetConfigs) {
+
+				if (tgt.getProcessMode().equals(ProcessMode.disabled))
+					continue;
+
+				if (branchExecutor != null) {
+
+					/*
+					 * transformation branches are executed concurrently, so
+					 * the options must not be reset
+					 */
+					this.executeTargetWithProcessView(model, modelProviderId,
+							tgt);
+
+				} else {
+
+					// reset options for this target
+					options.setCurrentProcessConfig(tgt);
+					options.resetFields();
+
+					this.executeTarget(model, modelProviderId, tgt, options,
+							true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses all OCL constraints of the selected schemas of the given model
+	 * whose parsing has been deferred (see {@link Options#isLazyOclParsing()}),
+	 * using up to {@link Options#maxThreads()} threads if the model is a
+	 * GenericModel, else sequentially.
+	 * 
+	 * @param model
+	 */
+	private void parseDeferredOclConstraints(Model model) {
+
+		Set<OclConstraintImpl> deferred = new LinkedHashSet<OclConstraintImpl>();
+
+		for (PackageInfo pi : model.selectedSchemas()) {
+			for (ClassInfo ci : model.classes(pi)) {
+				addDeferredOclConstraints(ci.constraints(), deferred);
+				for (PropertyInfo propi : ci.properties().values()) {
+					addDeferredOclConstraints(propi.constraints(), deferred);
+				}
+			}
+		}
+
+		if (deferred.isEmpty()) {
+			return;
+		}
+
+		final List<OclConstraintImpl> constraints = new ArrayList<OclConstraintImpl>(
+				deferred);
+		/*
+		 * parsing looks up classes and properties in the model; only a
+		 * GenericModel can safely be accessed by multiple threads
+		 */
+		final int threads = model instanceof GenericModel
+				? Math.min(options.maxThreads(), constraints.size()) : 1;
+
+		result.addDebug("Parsing " + constraints.size()
+				+ " deferred OCL constraint(s) using " + threads
+				+ " thread(s).");
+
+		if (threads <= 1) {
+			for (OclConstraintImpl con : constraints) {
+				con.syntaxTree();
+			}
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for (int i = 0; i < threads; i++) {
+
+			final int offset = i;
+
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					for (int j = offset; j < constraints.size(); j += threads) {
+						constraints.get(j).syntaxTree();
+					}
+					return null;
+				}
+			});
+		}
+
+		ParallelExecution.invokeAll(tasks, threads, model.options(), result);
+	}
+
+	private void addDeferredOclConstraints(List<Constraint> constraints,
+			Set<OclConstraintImpl> deferred) {
+
+		if (constraints != null) {
+			for (Constraint con : constraints) {
+				if (con instanceof OclConstraintImpl
+						&& ((OclConstraintImpl) con).isParsingDeferred()) {
+					deferred.add((OclConstraintImpl) con);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the given targets concurrently, on a thread pool with at most
+	 * {@link Options#maxThreads()} threads. Target configurations with the
+	 * same class are executed one after another, within the same task,
+	 * because targets may keep state on the class level. Each target is
+	 * executed with its own view of the options, which is also bound to the
+	 * executing thread so that model elements evaluate rules and parameters
+	 * for that target.
+	 * 
+	 * @param model
+	 * @param modelProviderId
+	 * @param targetConfigs
+	 * @throws Exception
+	 *             the first exception that occurred while executing one of
+	 *             the targets (after all targets have been executed)
+	 */
+	private void executeTargetsInParallel(final Model model,
+			final String modelProviderId,
+			List<TargetConfiguration> targetConfigs) throws Exception {
+
+		Map<String, List<TargetConfiguration>> targetConfigsByClass = new LinkedHashMap<String, List<TargetConfiguration>>();
+
 		for (TargetConfiguration tgt : targetConfigs) {
 
 			if (tgt.getProcessMode().equals(ProcessMode.disabled))
 				continue;
 
-			// reset options for this target
-			options.setCurrentProcessConfig(tgt);
-			options.resetFields();
+			List<TargetConfiguration> configs = targetConfigsByClass
+					.get(tgt.getClassName());
+			if (configs == null) {
+				configs = new ArrayList<TargetConfiguration>();
+				targetConfigsByClass.put(tgt.getClassName(), configs);
+			}
+			configs.add(tgt);
+		}
 
-			// now execute the target
+		if (targetConfigsByClass.isEmpty()) {
+			return;
+		}
 
-			// Prepare targets
-			resetSingleTargets();
+		int threads = Math.min(options.maxThreads(),
+				targetConfigsByClass.size());
 
-			// update the outputDirectory parameter by appending the id of the
-			// model provider
-			String outputDirectory = options.parameter(tgt.getClassName(),
-					"outputDirectory");
-			if (outputDirectory != null && outputDirectory.length() > 0) {
-				outputDirectory = outputDirectory.trim() + File.separator
-						+ modelProviderId;
-				options.setParameter(tgt.getClassName(), "outputDirectory",
-						outputDirectory);
+		result.addDebug("Executing " + targetConfigsByClass.size()
+				+ " target class(es) for model provider '" + modelProviderId
+				+ "' using " + threads + " thread(s).");
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for (final List<TargetConfiguration> configs : targetConfigsByClass
+				.values()) {
+
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+
+					for (TargetConfiguration tgt : configs) {
+						executeTargetWithProcessView(model, modelProviderId,
+								tgt);
+					}
+					return null;
+				}
+			});
+		}
+
+		ParallelExecution.invokeAll(tasks, threads, options);
+	}
+
+	/**
+	 * Executes a single target with its own view of the options, which is
+	 * bound to the current thread while the target is executed.
+	 * 
+	 * @param model
+	 * @param modelProviderId
+	 * @param tgt
+	 * @throws Exception
+	 */
+	private void executeTargetWithProcessView(Model model,
+			String modelProviderId, TargetConfiguration tgt)
+					throws Exception {
+
+		Options targetOptions = options.createProcessView(tgt);
+		Options previousView = options.view();
+
+		options.bindProcessView(targetOptions);
+		try {
+			synchronized (classLock(tgt.getClassName())) {
+				executeTarget(model, modelProviderId, tgt, targetOptions,
+						false);
 			}
+		} finally {
+			if (previousView == options) {
+				options.unbindProcessView();
+			} else {
+				options.bindProcessView(previousView);
+			}
+		}
+	}
 
-			SortedSet<? extends PackageInfo> selectedSchema = model
-					.selectedSchemas();
+	/**
+	 * Executes a single target on all selected schemas of the given model.
+	 * 
+	 * @param model
+	 * @param modelProviderId
+	 * @param tgt
+	 * @param targetOptions
+	 *            options to use for the target; must already be initialised
+	 *            for the target configuration
+	 * @param announceTarget
+	 *            <code>true</code> if the target that is currently executed
+	 *            shall be made available to StatusReaders (via
+	 *            {@link #getCurrentTargetID()}), else <code>false</code>
+	 *            (required when targets are executed in parallel)
+	 * @throws ShapeChangeAbortException
+	 * @throws ClassNotFoundException
+	 * @throws InstantiationException
+	 * @throws IllegalAccessException
+	 * @throws NoSuchMethodException
+	 * @throws SecurityException
+	 */
+	@SuppressWarnings("rawtypes")
+	private void executeTarget(Model model, String modelProviderId,
+			TargetConfiguration tgt, Options targetOptions,
+			boolean announceTarget) throws ShapeChangeAbortException,
+					ClassNotFoundException, InstantiationException,
+					IllegalAccessException, NoSuchMethodException,
+					SecurityException {
+
+		// Prepare the target
+		resetSingleTarget(tgt.getClassName());
+
+		// update the outputDirectory parameter by appending the id of the
+		// model provider
+		String outputDirectory = targetOptions.parameter(tgt.getClassName(),
+				"outputDirectory");
+		if (outputDirectory != null && outputDirectory.length() > 0) {
+			outputDirectory = outputDirectory.trim() + File.separator
+					+ modelProviderId;
+			targetOptions.setParameter(tgt.getClassName(), "outputDirectory",
+					outputDirectory);
+		}
 
-			String classname = tgt.getClassName();
-			String tmode = options.targetMode(classname);
-			Class theClass = Class.forName(classname);
-			boolean targetCalled = false;
+		SortedSet<? extends PackageInfo> selectedSchema = model
+				.selectedSchemas();
+
+		String classname = tgt.getClassName();
+		String tmode = targetOptions.targetMode(classname);
+		Class theClass = Class.forName(classname);
+		boolean targetCalled = false;
+
+		boolean isSingleTarget = false;
+		for (Class intfc : theClass.getInterfaces()) {
+			String in = intfc.getName();
+			if (in.equals(
+					"de.interactive_instruments.ShapeChange.Target.SingleTarget")) {
+				isSingleTarget = true;
+				break;
+			}
+		}
+
+		/*
+		 * in incremental mode, identify the schemas that have not changed
+		 * since the previous run of the target
+		 */
+		File fingerprintFile = null;
+		Properties previous = null;
+		Properties fingerprints = null;
+		int errorCount = result.errorCount();
+		Set<String> unchangedSchemas = new HashSet<String>();
+		// key: schema name, value: output files created for the schema
+		Map<String, List<File>> outputFiles = new HashMap<String, List<File>>();
+
+		if (targetOptions.isIncrementalRegeneration()
+				&& outputDirectory != null && outputDirectory.length() > 0
+				&& !tmode.equals(ProcessMode.disabled)
+				&& !tmode.equals(ProcessMode.diagnosticsonly)) {
+
+			fingerprintFile = SchemaFingerprints.file(theClass, tgt,
+					outputDirectory);
+			fingerprints = new Properties();
+
+			try {
+				previous = SchemaFingerprints.load(fingerprintFile);
+			} catch (IOException e) {
+				result.addWarning(null, 516, fingerprintFile.getPath(),
+						e.getMessage());
+				previous = new Properties();
+			}
+
+			SchemaFingerprints sf = new SchemaFingerprints(model, tgt,
+					targetOptions);
 
 			for (PackageInfo pi : selectedSchema) {
 
-				if (pi == null) {
+				if (pi == null || targetOptions.skipSchema(null, pi)) {
 					continue;
 				}
 
-				// Only process schemas in a namespace and name that matches a
-				// user-selected pattern
-				if (options.skipSchema(null, pi))
-					continue;
+				String fingerprint = sf.fingerprint(pi);
+				fingerprints.setProperty(pi.name(), fingerprint);
 
-				String name = pi.name();
-				String ns = pi.targetNamespace();
-				result.addInfo(null, 1012, name, ns);
+				/*
+				 * the output of an unchanged schema must still exist, it
+				 * could have been deleted since the previous run
+				 */
+				if (fingerprint.equals(previous.getProperty(pi.name()))
+						&& SchemaFingerprints.outputFilesExist(previous,
+								pi.name())) {
+					unchangedSchemas.add(pi.name());
+				}
+			}
 
-				if (tmode.equals(ProcessMode.disabled))
-					continue;
+			/*
+			 * a single target creates one output for all schemas, which must
+			 * be regenerated if any of them changed
+			 */
+			if (isSingleTarget && (unchangedSchemas.size() < fingerprints
+					.size()
+					|| !fingerprints.keySet().equals(
+							SchemaFingerprints.schemas(previous)))) {
+				unchangedSchemas.clear();
+			}
+		}
 
-				target = (Target) theClass.newInstance();
+		for (PackageInfo pi : selectedSchema) {
 
-				if (target != null) {
-					// filter additionally for target specific application
-					// schema names
-					if (options.skipSchema(target, pi))
-						continue;
+			if (pi == null) {
+				continue;
+			}
 
-					targetCalled = true;
+			// Only process schemas in a namespace and name that matches a
+			// user-selected pattern
+			if (targetOptions.skipSchema(null, pi))
+				continue;
 
-					result.addInfo(null, 503,
-							options.nameOfTarget(target.getTargetID()),
-							modelProviderId);
+			String name = pi.name();
+			String ns = pi.targetNamespace();
+			result.addInfo(null, 1012, name, ns);
 
-					StatusBoard.getStatusBoard()
-							.statusChanged(STATUS_TARGET_INITSTART);
-					target.initialise(pi, model, options, result,
-							tmode.equals(ProcessMode.diagnosticsonly));
+			if (tmode.equals(ProcessMode.disabled))
+				continue;
 
-					StatusBoard.getStatusBoard()
-							.statusChanged(STATUS_TARGET_PROCESS);
+			if (unchangedSchemas.contains(name)) {
+				result.addInfo(null, 515, name, classname);
+				continue;
+			}
 
-					ClassInfo[] classArr = classes(model, pi);
-					for (int cidx = 0; cidx < classArr.length; cidx++) {
-						ClassInfo k = classArr[cidx];
-						target.process(k);
-					}
+			Target t = (Target) theClass.newInstance();
+			if (announceTarget) {
+				target = t;
+			}
 
-					StatusBoard.getStatusBoard()
-							.statusChanged(STATUS_TARGET_WRITE);
-					target.write();
-					/*
-					 * 2016-03-05 JE: does not seem to be used by StatusReaders
-					 * StatusBoard.getStatusBoard().statusChanged(0);
-					 */
+			if (t != null) {
+				// filter additionally for target specific application
+				// schema names
+				if (targetOptions.skipSchema(t, pi))
+					continue;
+
+				targetCalled = true;
+
+				int resultCount = result.resultCount();
+
+				result.addInfo(null, 503,
+						targetOptions.nameOfTarget(t.getTargetID()),
+						modelProviderId);
+
+				String phaseName = theClass.getSimpleName() + "/" + name;
+
+				StatusBoard.getStatusBoard()
+						.statusChanged(STATUS_TARGET_INITSTART);
+				ProcessMetrics.Phase phase = metrics().start(
+						ProcessMetrics.TARGET, phaseName, "initialise",
+						modelProviderId);
+				t.initialise(pi, model, targetOptions, result,
+						tmode.equals(ProcessMode.diagnosticsonly));
+				metrics().end(phase);
+
+				StatusBoard.getStatusBoard()
+						.statusChanged(STATUS_TARGET_PROCESS);
+				phase = metrics().start(ProcessMetrics.TARGET, phaseName,
+						"process", modelProviderId);
+
+				ClassInfo[] classArr = classes(model, pi, t, targetOptions);
+				for (int cidx = 0; cidx < classArr.length; cidx++) {
+					ClassInfo k = classArr[cidx];
+					metrics().startClass(phase);
+					t.process(k);
+					metrics().endClass(phase, k.name());
 				}
+				metrics().end(phase);
 
+				StatusBoard.getStatusBoard()
+						.statusChanged(STATUS_TARGET_WRITE);
+				phase = metrics().start(ProcessMetrics.TARGET, phaseName,
+						"write", modelProviderId);
+				t.write();
+				metrics().end(phase);
+
+				outputFiles.put(name,
+						result.resultFiles(resultCount, t.getTargetID()));
+				/*
+				 * 2016-03-05 JE: does not seem to be used by StatusReaders
+				 * StatusBoard.getStatusBoard().statusChanged(0);
+				 */
+			}
+
+			if (announceTarget) {
 				target = null;
 			}
+		}
 
-			// write results for targets where the results are ready only after
-			// all schemas have been processed
-			if (!tmode.equals(ProcessMode.disabled) && targetCalled) {
-				boolean isSingleTarget = false;
-				for (Class intfc : theClass.getInterfaces()) {
-					String in = intfc.getName();
-					if (in.equals(
-							"de.interactive_instruments.ShapeChange.Target.SingleTarget")) {
-						isSingleTarget = true;
-						break;
-					}
-				}
-				if (isSingleTarget) {
-					SingleTarget starget = (SingleTarget) theClass
-							.newInstance();
+		// write results for targets where the results are ready only after
+		// all schemas have been processed
+		if (!tmode.equals(ProcessMode.disabled) && targetCalled) {
+			if (isSingleTarget) {
+				SingleTarget starget = (SingleTarget) theClass.newInstance();
 
-					/*
-					 * announce target class-wide so that StatusReaders can
-					 * inspect it ...
-					 */
+				/*
+				 * announce target class-wide so that StatusReaders can inspect
+				 * it ...
+				 */
+				if (announceTarget) {
 					target = starget;
-					if (starget != null) {
-						StatusBoard.getStatusBoard()
-								.statusChanged(STATUS_TARGET_WRITEALL);
-						starget.writeAll(result);
+				}
+				if (starget != null) {
+					int resultCount = result.resultCount();
+					StatusBoard.getStatusBoard()
+							.statusChanged(STATUS_TARGET_WRITEALL);
+					ProcessMetrics.Phase phase = metrics().start(
+							ProcessMetrics.TARGET, theClass.getSimpleName(),
+							"writeAll", modelProviderId);
+					starget.writeAll(result);
+					metrics().end(phase);
+
+					// the output belongs to all schemas
+					List<File> files = result.resultFiles(resultCount,
+							starget.getTargetID());
+					for (List<File> schemaFiles : outputFiles.values()) {
+						schemaFiles.addAll(files);
 					}
-					/*
-					 * ... now we no longer need to keep track of the target
-					 */
+				}
+				/*
+				 * ... now we no longer need to keep track of the target
+				 */
+				if (announceTarget) {
 					target = null;
 				}
 			}
-			result.addInfo(null, 504, tgt.getClassName(), modelProviderId);
 		}
 
+		/*
+		 * if errors have been logged, the output may be incomplete; keep the
+		 * previous fingerprints so that it is regenerated by the next run
+		 * (in parallel mode, errors of other targets are counted as well)
+		 */
+		if (fingerprintFile != null && result.errorCount() == errorCount) {
+			for (String schema : unchangedSchemas) {
+				SchemaFingerprints.setOutputFiles(fingerprints, schema,
+						SchemaFingerprints.outputFiles(previous, schema));
+			}
+			for (Map.Entry<String, List<File>> e : outputFiles.entrySet()) {
+				if (fingerprints.containsKey(e.getKey())) {
+					SchemaFingerprints.setOutputFiles(fingerprints,
+							e.getKey(), e.getValue());
+				}
+			}
+			try {
+				SchemaFingerprints.store(fingerprints, fingerprintFile);
+			} catch (IOException e) {
+				result.addWarning(null, 516, fingerprintFile.getPath(),
+						e.getMessage());
+			}
+		}
+
+		result.addInfo(null, 504, tgt.getClassName(), modelProviderId);
 	}
 
 	/**
@@ -567,19 +1337,22 @@ public class Converter {
 	 * 
 	 * @param model
 	 * @param pi
+	 * @param target
+	 * @param targetOptions
 	 * @return
 	 * @throws NoSuchMethodException
 	 * @throws SecurityException
 	 */
 	@SuppressWarnings("rawtypes")
-	private ClassInfo[] classes(Model model, PackageInfo pi)
-			throws NoSuchMethodException, SecurityException {
+	private ClassInfo[] classes(Model model, PackageInfo pi, Target target,
+			Options targetOptions)
+					throws NoSuchMethodException, SecurityException {
 		Set<ClassInfo> classes = model.classes(pi);
 		// Change the order of processing if requested by sortedOutput parameter
-		String sortedOpt = options.parameter(target.getClass().getName(),
-				"sortedOutput");
+		String sortedOpt = targetOptions
+				.parameter(target.getClass().getName(), "sortedOutput");
 		if (sortedOpt == null)
-			sortedOpt = options.parameter("sortedOutput");
+			sortedOpt = targetOptions.parameter("sortedOutput");
 
 		ClassInfo[] classArr = new ClassInfo[classes.size()];
 		classes.toArray(classArr);
@@ -673,37 +1446,19 @@ public class Converter {
 	 * Target instance is created for each processed schema, but for
 	 * SingleTarget instances the result can only be created after all schemas
 	 * have been processed), so they have to be reseted before a new conversion.
+	 * Only the class of the target that is about to be executed is reset:
+	 * targets of other classes may be executed concurrently, and each target
+	 * writes its result (see SingleTarget.writeAll) before it completes.
 	 */
 	@SuppressWarnings("rawtypes")
-	private void resetSingleTargets() throws ClassNotFoundException,
-			InstantiationException, IllegalAccessException {
-		Vector<String> targets = options.targets();
-		for (Iterator<String> j = targets.iterator(); j.hasNext();) {
-			String classname = j.next();
-			Class theClass = Class.forName(classname);
-			target = (Target) theClass.newInstance();
-
-			if (target != null) {
-				String tmode = options.targetMode(classname);
-				if (tmode.equals(ProcessMode.disabled))
-					continue;
-
-				boolean isSingleTarget = false;
-				for (Class intfc : theClass.getInterfaces()) {
-					String in = intfc.getName();
-					if (in.equals(
-							"de.interactive_instruments.ShapeChange.Target.SingleTarget")) {
-						isSingleTarget = true;
-						break;
-					}
-				}
-				if (isSingleTarget) {
-					SingleTarget starget = (SingleTarget) theClass
-							.newInstance();
-					if (starget != null) {
-						starget.reset();
-					}
-				}
+	private void resetSingleTarget(String classname)
+			throws ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		Class theClass = Class.forName(classname);
+		if (SingleTarget.class.isAssignableFrom(theClass)) {
+			SingleTarget starget = (SingleTarget) theClass.newInstance();
+			if (starget != null) {
+				starget.reset();
 			}
 		}
 	}
@@ -768,7 +1523,11 @@ public class Converter {
 			}
 		}
 
-		Model m = null;
+		Model m = restoreModelSnapshot(mdl, repoFileNameOrConnectionString);
+
+		if (m != null) {
+			return m;
+		}
 
 		// Get model object from reflection API
 		@SuppressWarnings("rawtypes")
@@ -799,12 +1558,18 @@ public class Converter {
 					throw new ShapeChangeAbortException();
 				}
 
+				ProcessMetrics.Phase phase = metrics().start(
+						ProcessMetrics.MODEL, theClass.getSimpleName(),
+						"load", options.getInputId());
+
 				if (user.length() == 0) {
 					m.initialise(result, options, repoConnectionInfo);
 				} else {
 					m.initialise(result, options, repoConnectionInfo, user,
 							pwd);
 				}
+
+				metrics().end(phase);
 			} else {
 				result.addFatalError(null, 17, imt);
 				throw new ShapeChangeAbortException();
@@ -822,4 +1587,224 @@ public class Converter {
 		return m;
 	}
 
+	/**
+	 * Restores the input model from its snapshot in the directory defined by
+	 * input parameter {@value Options#PARAM_MODEL_CACHE_DIRECTORY}. If the
+	 * snapshot does not exist yet (or cannot be read), the file of the
+	 * snapshot is remembered, so that the snapshot is written once the model
+	 * has been loaded and postprocessed.
+	 * 
+	 * @param inputFile
+	 *            value of input parameter 'inputFile'
+	 * @param repoFileNameOrConnectionString
+	 *            value of input parameter
+	 *            'repositoryFileNameOrConnectionString'
+	 * @return the restored model, or <code>null</code> if no snapshot is
+	 *         available or if snapshots are not used for the input model
+	 */
+	private Model restoreModelSnapshot(String inputFile,
+			String repoFileNameOrConnectionString) {
+
+		File dir = options.modelCacheDirectory();
+		boolean inMemory = isKeepingModelsInMemory();
+
+		String loadDiagrams = options.parameter("loadDiagrams");
+		String transformer = options.parameter("transformer");
+
+		if ((dir == null && !inMemory) || inputFile == null
+				|| (repoFileNameOrConnectionString != null
+						&& repoFileNameOrConnectionString.length() > 0)
+				|| (loadDiagrams != null
+						&& loadDiagrams.equalsIgnoreCase("true"))
+				|| (transformer != null && transformer.length() > 0)) {
+			return null;
+		}
+
+		File in = new File(inputFile);
+		if (!in.isFile()) {
+			return null;
+		}
+
+		String key;
+		try {
+			key = GenericModelSnapshot.key(in, options);
+		} catch (IOException e) {
+			result.addWarning(null, 513, inputFile, e.getMessage());
+			return null;
+		}
+
+		if (inMemory) {
+
+			byte[] snapshot = modelInMemory(key);
+
+			if (snapshot != null) {
+
+				ProcessMetrics.Phase phase = metrics().start(
+						ProcessMetrics.MODEL,
+						GenericModelSnapshot.class.getSimpleName(), "restore",
+						options.getInputId());
+
+				try {
+
+					GenericModel m = GenericModelSnapshot
+							.read(ByteBuffer.wrap(snapshot), options, result);
+
+					result.addInfo(null, 517, inputFile);
+					return m;
+
+				} catch (IOException e) {
+					result.addWarning(null, 513, inputFile, e.getMessage());
+				} finally {
+					metrics().end(phase);
+				}
+			}
+
+			modelSnapshotKey = key;
+		}
+
+		if (dir == null) {
+			return null;
+		}
+
+		File snapshotFile = new File(dir,
+				key + GenericModelSnapshot.FILE_EXTENSION);
+
+		if (snapshotFile.isFile()) {
+
+			ProcessMetrics.Phase phase = metrics().start(
+					ProcessMetrics.MODEL,
+					GenericModelSnapshot.class.getSimpleName(), "load",
+					options.getInputId());
+
+			try {
+
+				GenericModel m = GenericModelSnapshot.read(snapshotFile,
+						options, result);
+
+				result.addInfo(null, 511, snapshotFile.getPath());
+				return m;
+
+			} catch (IOException e) {
+				result.addWarning(null, 513, snapshotFile.getPath(),
+						e.getMessage());
+			} finally {
+				metrics().end(phase);
+			}
+		}
+
+		modelSnapshotFile = snapshotFile;
+		return null;
+	}
+
+	/**
+	 * Writes the snapshot of the given model and/or keeps it in memory, if so
+	 * requested by {@link #restoreModelSnapshot(String, String)}.
+	 * 
+	 * @param model
+	 *            the postprocessed input model
+	 */
+	private void writeModelSnapshot(Model model) {
+
+		if (modelSnapshotKey != null) {
+
+			String key = modelSnapshotKey;
+			modelSnapshotKey = null;
+
+			putModelInMemory(key, GenericModelSnapshot.toByteArray(model));
+		}
+
+		if (modelSnapshotFile == null) {
+			return;
+		}
+
+		File file = modelSnapshotFile;
+		modelSnapshotFile = null;
+
+		ProcessMetrics.Phase phase = metrics().start(ProcessMetrics.MODEL,
+				GenericModelSnapshot.class.getSimpleName(), "write",
+				options.getInputId());
+
+		try {
+
+			File dir = file.getParentFile();
+			if (dir != null && !dir.exists()) {
+				dir.mkdirs();
+			}
+
+			GenericModelSnapshot.write(model, file);
+
+			result.addInfo(null, 512, file.getPath());
+
+		} catch (IOException e) {
+			result.addWarning(null, 514, file.getPath(), e.getMessage());
+		} finally {
+			metrics().end(phase);
+		}
+	}
+
+	/**
+	 * Limits the number of transformation branches that are processed
+	 * concurrently. A branch is admitted if less than the maximum number of
+	 * branches is running and - unless no branch is running at all - if the
+	 * free heap is sufficient for another branch. The heap required by a
+	 * branch is either configured or estimated from the heap growth that was
+	 * observed while creating the model copy for a branch.
+	 */
+	protected static class BranchAdmission {
+
+		private final int maxBranches;
+		private final long configuredBranchMemory;
+		private long estimatedBranchMemory = 0;
+		private int runningBranches = 0;
+
+		/**
+		 * @param maxBranches
+		 *            maximum number of branches that may run concurrently
+		 * @param configuredBranchMemory
+		 *            heap (in bytes) required by a branch; a value less than
+		 *            or equal to 0 indicates that the required heap shall be
+		 *            estimated
+		 */
+		public BranchAdmission(int maxBranches, long configuredBranchMemory) {
+			this.maxBranches = maxBranches;
+			this.configuredBranchMemory = configuredBranchMemory;
+		}
+
+		public synchronized void acquire() throws InterruptedException {
+
+			while (runningBranches >= maxBranches || (runningBranches > 0
+					&& freeMemory() < requiredMemory())) {
+				// wake up regularly, since the garbage collector may have
+				// freed memory in the meantime
+				wait(1000);
+			}
+			runningBranches++;
+		}
+
+		public synchronized void release() {
+			runningBranches--;
+			notifyAll();
+		}
+
+		public synchronized void recordBranchMemory(long bytes) {
+			if (bytes > estimatedBranchMemory) {
+				estimatedBranchMemory = bytes;
+			}
+		}
+
+		private long requiredMemory() {
+			return configuredBranchMemory > 0 ? configuredBranchMemory
+					: estimatedBranchMemory;
+		}
+
+		public static long usedMemory() {
+			Runtime rt = Runtime.getRuntime();
+			return rt.totalMemory() - rt.freeMemory();
+		}
+
+		public static long freeMemory() {
+			return Runtime.getRuntime().maxMemory() - usedMemory();
+		}
+	}
+
 } // class ShapeChange.Converter
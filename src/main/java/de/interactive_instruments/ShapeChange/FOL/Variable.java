@@ -38,7 +38,17 @@ import de.interactive_instruments.ShapeChange.SBVR.SbvrUtil;
  */
 public class Variable extends Expression {
 
-	public static int index = 1;
+	/**
+	 * Index used for automatically named variables. The index is maintained
+	 * per thread, so that constraints can be parsed concurrently with each
+	 * parse starting at the same index (see {@link #reset()}).
+	 */
+	private static final ThreadLocal<int[]> index = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[] { 1 };
+		}
+	};
 	public static final String NAME_PREFIX = "x";
 	public static final String SELF_VARIABLE_NAME = "self";
 
@@ -55,12 +65,13 @@ public class Variable extends Expression {
 
 	/**
 	 * Ctor for Variable with automatic assignment of name ({@link #NAME_PREFIX}
-	 * + current {@link #index} [which is increased after the name has been
-	 * constructed]).
+	 * + current index of the calling thread [which is increased after the
+	 * name has been constructed]).
 	 */
 	public Variable() {
-		this.name = NAME_PREFIX + index;
-		index++;
+		int[] idx = index.get();
+		this.name = NAME_PREFIX + idx[0];
+		idx[0]++;
 	}
 
 	public Variable(String name) {
@@ -185,11 +196,11 @@ public class Variable extends Expression {
 	}
 
 	/**
-	 * Sets index to '1'.
+	 * Sets the index of the calling thread to '1'.
 	 */
 	public static void reset() {
 
-		index = 1;
+		index.get()[0] = 1;
 	}
 
 	/**
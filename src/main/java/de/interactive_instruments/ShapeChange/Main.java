@@ -32,10 +32,16 @@
 
 package de.interactive_instruments.ShapeChange;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.swing.JOptionPane;
 
 import de.interactive_instruments.ShapeChange.UI.Dialog;
 import de.interactive_instruments.ShapeChange.UI.DefaultDialog;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
 public class Main {
 
@@ -62,6 +68,12 @@ public class Main {
 
 		boolean dialog = false;
 
+		// batch mode
+		String batchFile = null;
+		String watchDir = null;
+		int maxModels = BatchRunner.DEFAULT_MAX_MODELS;
+		List<String[]> replaceValues = new ArrayList<String[]>();
+
 		// process arguments
 		String arg = null;
 		for (int i = 0; i < argv.length; i++) {
@@ -90,8 +102,36 @@ public class Main {
 						else
 							x2 = argv[i];
 					}
-					if (x2!=null)
+					if (x2!=null) {
 						options.setReplaceValue(x1,x2); 
+						replaceValues.add(new String[] { x1, x2 });
+					}
+					continue;
+				}
+				if (option.equals("b")) {
+					if (++i == argv.length) {
+						result.addError(null,111, "-b");
+					} else
+						batchFile = argv[i];
+					continue;
+				}
+				if (option.equals("w")) {
+					if (++i == argv.length) {
+						result.addError(null,111, "-w");
+					} else
+						watchDir = argv[i];
+					continue;
+				}
+				if (option.equals("m")) {
+					if (++i == argv.length) {
+						result.addError(null,111, "-m");
+					} else {
+						try {
+							maxModels = Integer.parseInt(argv[i]);
+						} catch (NumberFormatException e) {
+							result.addError(null,111, "-m");
+						}
+					}
 					continue;
 				}
 				if (option.equals("d")) {
@@ -101,6 +141,23 @@ public class Main {
 			}
 		}	
 		
+		if (batchFile != null || watchDir != null) {
+			BatchRunner runner = new BatchRunner(replaceValues, maxModels);
+			boolean ok = true;
+			try {
+				if (batchFile != null)
+					ok = runner.runConfigurationList(new File(batchFile));
+				if (watchDir != null)
+					runner.watch(new File(watchDir));
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			System.exit(ok ? 0 : 1);
+		}
+
 		// if no configuration file is provided, invoke the dialog
 		if (options.configFile==null) {
 			dialog = true;
@@ -180,8 +237,27 @@ public class Main {
  		System.err.println("            any parameter values '$dir$' in the configuration.");
  		System.err.println("            file with './result/xsd'.");
  		System.err.println(" -d         Invokes the user interface.");
+ 		System.err.println(" -b list    Batch mode: runs all configuration files listed");
+ 		System.err.println("            in the file 'list' (one per line). Parsed");
+ 		System.err.println("            configurations and input models are kept in");
+ 		System.err.println("            memory between the runs.");
+ 		System.err.println(" -w dir     Batch mode: watches directory 'dir' and runs");
+ 		System.err.println("            every configuration file (*.xml) dropped into");
+ 		System.err.println("            it, until a file named '"+BatchRunner.STOP_FILE_NAME+"'");
+ 		System.err.println("            is created in the directory.");
+ 		System.err.println(" -m n       Maximum number of input models kept in memory");
+ 		System.err.println("            in batch mode. The default is "+BatchRunner.DEFAULT_MAX_MODELS+".");
  		System.err.println(" -h         This help screen.");
  		System.err.println();
+ 		System.err.println("system properties (-Dname=value):");
+ 		System.err.println(" "+ResourceResolver.PROPERTY_OFFLINE+"=true");
+ 		System.err.println("            Never fetches remote resources; bundled copies,");
+ 		System.err.println("            the XML catalog and the resource cache are used.");
+ 		System.err.println(" "+ResourceResolver.PROPERTY_CATALOG+"=file");
+ 		System.err.println("            XML catalog mapping remote URIs to local ones.");
+ 		System.err.println(" "+ResourceResolver.PROPERTY_CACHE_DIRECTORY+"=dir");
+ 		System.err.println("            Directory in which fetched resources are cached.");
+ 		System.err.println();
 
  	} // printUsage()
     
@@ -407,12 +407,16 @@ public abstract class ClassInfoImpl extends InfoImpl implements ClassInfo {
 	public boolean isSubtype(ClassInfo ci) {
 		if(this==ci) 
 			return true;
+		TypeHierarchyIndex index = typeHierarchyIndex();
+		if(index!=null)
+			return index.isSubtype(this, ci);
 		SortedSet<String> idsuper = supertypes();
 		for(String sid : idsuper) {
 			ClassInfo sci = model().classById(sid);
 			if(sci==null)
 				continue;
-			return sci.isSubtype(ci);
+			if(sci.isSubtype(ci))
+				return true;
 		}
 		return false;
 	} // isSubtype()
@@ -421,10 +425,15 @@ public abstract class ClassInfoImpl extends InfoImpl implements ClassInfo {
 	 * @see de.interactive_instruments.ShapeChange.Model.ClassInfo#isKindOf(java.lang.String)
 	 */
 	public boolean isKindOf(String supertype) {
+		TypeHierarchyIndex index = typeHierarchyIndex();
+		if (index!=null)
+			return index.isKindOf(this, supertype);
 		SortedSet<String> st = supertypes();
 		if (st!=null) {
 			for (Iterator<String> i = st.iterator(); i.hasNext();) {
 				ClassInfo sti = model().classById(i.next());
+				if (sti==null)
+					continue;
 				if (sti.name().equals(supertype))
 					return true;
 				if (sti.isKindOf(supertype))
@@ -434,6 +443,17 @@ public abstract class ClassInfoImpl extends InfoImpl implements ClassInfo {
 		return false;
 	}
 
+	/**
+	 * @return the memoized generalization hierarchy of the model this class
+	 *         belongs to, or <code>null</code> if it is not available (yet)
+	 */
+	protected TypeHierarchyIndex typeHierarchyIndex() {
+		Model m = model();
+		if (m instanceof ModelImpl)
+			return ((ModelImpl) m).typeHierarchyIndex();
+		return null;
+	}
+
 	/** Determine whether this is a 'suppressed' class. A suppressed class 
 	 * is for attaching constraints to its next direct or indirect unsuppressed
 	 * superclass. */
@@ -764,6 +784,11 @@ public abstract class ClassInfoImpl extends InfoImpl implements ClassInfo {
 	@Override
 	public SortedSet<String> subtypesInCompleteSubtypeHierarchy() {
 		
+		TypeHierarchyIndex index = typeHierarchyIndex();
+		if(index != null) {
+			return index.subtypesInCompleteSubtypeHierarchy(this);
+		}
+		
 		SortedSet<String> result = new TreeSet<String>();
 		
 		result.addAll(this.subtypes());
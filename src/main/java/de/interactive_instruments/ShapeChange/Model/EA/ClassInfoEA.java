@@ -759,6 +759,7 @@ public class ClassInfoEA extends ClassInfoImpl implements ClassInfo {
 		}
 		// invalidate cache
 		taggedValuesCache = null;
+		taggedValuesChanged();
 	} // taggedValue()
 
 	/** Determine whether the class is tagged as being an abstract class */
@@ -828,9 +829,10 @@ public class ClassInfoEA extends ClassInfoImpl implements ClassInfo {
 						// !encodingRule("xsd").equals(Options.ISO19136_2007_INSPIRE)
 						OclConstraintEA ocl = new OclConstraintEA(document,
 								this, constr);
-						if (ocl.syntaxTree() == null)
+						if (!ocl.isParsingDeferred()
+								&& ocl.syntaxTree() == null)
 							// Text constraint is a fallback in case of parsing
-							// issues
+							// issues (not known yet if parsing is deferred)
 							oc = new TextConstraintEA(document, this, constr);
 						else
 							oc = ocl;
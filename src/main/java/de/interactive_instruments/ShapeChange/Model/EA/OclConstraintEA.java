@@ -32,7 +32,6 @@
 
 package de.interactive_instruments.ShapeChange.Model.EA;
 
-import java.io.StringReader;
 import org.sparx.AttributeConstraint;
 
 import de.interactive_instruments.ShapeChange.ShapeChangeResult;
@@ -87,54 +86,11 @@ public class OclConstraintEA
 				EADocument.removeSpuriousEA75EntitiesFromStrings(
 						constraintText);
 		
-		// Compiler
-		syntaxTree = null;
-		Readable instream = new StringReader(constraintText);
-		MessageCollection messages;
-		OclParser parse = new OclParser();
-		
-		// Parse the constraint
-		document.result.addDebug(null, 10006, ci.name(), constraintName);
-		syntaxTree = 
-			parse.parseOcl(instream, contextModelElmt);
-		
-		// Get condition type.
-		if(syntaxTree!=null)
-			conditionType = syntaxTree.expressionType;
-		
-		// Get the comments
-		comments = parse.getComments();
-		
-		// Syntax tree as debug output + comments
-		if(document.options.parameter("reportLevel").equals("DEBUG")) {
-			document.result.addDebug(null, 10024, parse.debugTempNodes());
-			if(syntaxTree!=null)
-				document.result.addDebug(null, 10024, parse.debugOclNodes());
-			String[] comments = parse.getComments();
-			for(String c : comments) {
-				document.result.addDebug(null, 10025, c);			
-			}
-		}
-		
-		// Output error messages, if there are ones
-		if(parse.getNumberOfMessages()>0) {
-			ShapeChangeResult.MessageContext messctx =
-				document.result.addError(
-					null, 133, ci.name(), constraintName, "class");
-			if( messctx!=null ) {
-				messages = parse.getMessageCollection();
-				MessageCollection.Message[] msg = messages.getMessages();
-				for(MessageCollection.Message m : msg) {
-					final String[] del = {"/","-",","};
-					String sr = m.getFormattedSourceReferences(1, 1, del);
-					String ms = m.getMessageText();
-					messctx.addDetail(null, 134, sr, ms);
-				}
-				String includeConstraintInMessages = document.options.parameter("includeConstraintInMessages");			
-				if (includeConstraintInMessages!=null && includeConstraintInMessages.equals("true"))
-					messctx.addDetail("Constraint: "+constraintText);
-			}
-		}
+		// Compiler - parsing may be deferred until first access
+		if(document.options.isLazyOclParsing())
+			parsingDeferred = true;
+		else
+			compile();
 	}
 
 	/** Ctor from attribute context */
@@ -169,17 +125,35 @@ public class OclConstraintEA
 				EADocument.removeSpuriousEA75EntitiesFromStrings(
 						constraintText);
 	
+		// Compiler - parsing may be deferred until first access
+		if(document.options.isLazyOclParsing())
+			parsingDeferred = true;
+		else
+			compile();
+	}
+
+	/** Parse the constraint text in its class or attribute context. */
+	protected void compile() {
+		
+		String contextName;
+		String contextKind;
+		if(contextModelElmtType==ModelElmtContextType.CLASS) {
+			contextName = contextClass.name();
+			contextKind = "class";
+		} else {
+			contextName = contextClass.name()+"."+contextModelElmt.name();
+			contextKind = "property";
+		}
+		
 		// Compiler
 		syntaxTree = null;
-		Readable instream = new StringReader(constraintText);
 		MessageCollection messages;
 		OclParser parse = new OclParser();
 		
 		// Parse the constraint
-		document.result.addDebug(
-			null, 10006, contextClass.name()+"."+pi.name(), constraintName);
+		document.result.addDebug(null, 10006, contextName, constraintName);
 		syntaxTree = 
-			parse.parseOcl(instream, contextModelElmt);
+			parse.parseOcl(constraintText, contextModelElmt);
 		
 		// Get condition type.
 		if(syntaxTree!=null)
@@ -203,8 +177,7 @@ public class OclConstraintEA
 		if(parse.getNumberOfMessages()>0) {
 			ShapeChangeResult.MessageContext messctx =
 				document.result.addError(
-					null, 133, contextClass.name()+"."+pi.name(), 
-					constraintName, "property");
+					null, 133, contextName, constraintName, contextKind);
 			if( messctx!=null ) {
 				messages = parse.getMessageCollection();
 				MessageCollection.Message[] msg = messages.getMessages();
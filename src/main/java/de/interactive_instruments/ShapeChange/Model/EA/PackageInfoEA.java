@@ -380,5 +380,6 @@ public class PackageInfoEA extends PackageInfoImpl implements PackageInfo {
 		}
 		// invalidate cache
 		taggedValuesCache = null;
+		taggedValuesChanged();
 	} // taggedValue()
 }
@@ -826,6 +826,7 @@ public class PropertyInfoEA extends PropertyInfoImpl implements PropertyInfo {
 		}
 		// invalidate cache
 		taggedValuesCache = null;
+		taggedValuesChanged();
 	} // taggedValue()
 
 	/** Return id and name of type of property */
@@ -1010,10 +1011,12 @@ public class PropertyInfoEA extends PropertyInfoImpl implements PropertyInfo {
 						if (types.length() > 0 && type.matches(types)) {
 							OclConstraintEA ocl = new OclConstraintEA(document,
 									this, constr);
-							if (ocl.syntaxTree() == null)
+							if (!ocl.isParsingDeferred()
+									&& ocl.syntaxTree() == null)
 								// Text constraint is a fallback in case of
 								// parsing
-								// issues
+								// issues (not known yet if parsing is
+								// deferred)
 								oc = new TextConstraintEA(document, this,
 										constr);
 							else
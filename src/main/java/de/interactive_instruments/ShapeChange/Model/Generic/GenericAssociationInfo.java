@@ -386,6 +386,7 @@ public class GenericAssociationInfo extends AssociationInfoImpl {
 	public void setTaggedValues(TaggedValues taggedValues) {
 		// clone tagged values
 		taggedValuesCache = options().taggedValueFactory(taggedValues);
+		taggedValuesChanged();
 	}
 
 	/**
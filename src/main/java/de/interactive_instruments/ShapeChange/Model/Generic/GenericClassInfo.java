@@ -235,6 +235,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 	 */
 	public void setSupertypes(TreeSet<String> supertypes) {
 		this.supertypes = supertypes;
+		hierarchyChanged();
 	}
 
 	/**
@@ -243,6 +244,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 	 */
 	public void setSubtypes(TreeSet<String> subtypes) {
 		this.subtypes = subtypes;
+		hierarchyChanged();
 	}
 
 	/**
@@ -505,6 +507,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 	 */
 	public void setId(String id) {
 		this.id = id;
+		hierarchyChanged();
 
 	}
 
@@ -528,6 +531,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		hierarchyChanged();
 
 	}
 
@@ -603,6 +607,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 
 		// clone tagged values
 		taggedValuesCache = options().taggedValueFactory(taggedValues);
+		taggedValuesChanged();
 
 		// Now update fields, if they are affected by tagged values
 		if (updateFields && !taggedValuesCache.isEmpty()) {
@@ -983,6 +988,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 
 	public void removeSubtype(String subtypeId) {
 		this.subtypes.remove(subtypeId);
+		hierarchyChanged();
 	}
 
 	/**
@@ -996,6 +1002,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 			return;
 		else
 			this.supertypes.remove(supertypeId);
+		hierarchyChanged();
 	}
 
 	/**
@@ -1244,6 +1251,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 		if (subtypes != null && subtypes.contains(currentId)) {
 			subtypes.remove(currentId);
 			subtypes.add(newId);
+			hierarchyChanged();
 		}
 	}
 
@@ -1257,6 +1265,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 		if (supertypes != null && supertypes.contains(currentId)) {
 			supertypes.remove(currentId);
 			supertypes.add(newId);
+			hierarchyChanged();
 		}
 	}
 
@@ -1668,6 +1677,7 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 		validateTaggedValuesCache();
 
 		taggedValuesCache.put(tvName, tvValue);
+		taggedValuesChanged();
 
 		if (updateFields) {
 			updateFieldsForTaggedValue(tvName, tvValue);
@@ -1704,5 +1714,16 @@ public class GenericClassInfo extends ClassInfoImpl implements MessageSource {
 			}
 			this.supertypes = tmp_supertypes;
 		}
+
+		hierarchyChanged();
+	}
+
+	/**
+	 * Discards the memoized generalization hierarchy of the model, because
+	 * supertypes, subtypes, id or name of this class have changed.
+	 */
+	protected void hierarchyChanged() {
+		if (model != null)
+			model.invalidateTypeHierarchyIndex();
 	}
 }
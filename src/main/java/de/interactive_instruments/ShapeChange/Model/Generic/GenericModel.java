@@ -61,6 +61,7 @@ import de.interactive_instruments.ShapeChange.Model.OclConstraint;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
 import de.interactive_instruments.ShapeChange.Model.TextConstraint;
+import de.interactive_instruments.ShapeChange.Model.TypeHierarchyIndex;
 
 /**
  * @author echterhoff
@@ -138,6 +139,84 @@ public class GenericModel extends ModelImpl {
 		OVERWRITE
 	}
 
+	/**
+	 * Index of the properties of the model by the id of their value type.
+	 * <p>
+	 * NOTE: The value type of a property can be changed directly through its
+	 * {@link de.interactive_instruments.ShapeChange.Type} object, which the
+	 * index cannot track. The index is therefore only used while removing a
+	 * set of classes, where the model is not modified by other parties.
+	 * Properties that are removed from the model in the process must be
+	 * removed from the index as well.
+	 */
+	protected static class TypeUsageIndex {
+
+		/**
+		 * key: id of the value type, value: properties with that value type,
+		 * by property id
+		 */
+		private Map<String, Map<String, GenericPropertyInfo>> propertiesByTypeId = new HashMap<String, Map<String, GenericPropertyInfo>>();
+
+		protected TypeUsageIndex(Collection<GenericPropertyInfo> properties) {
+
+			for (GenericPropertyInfo genPi : properties) {
+
+				String typeId = genPi.typeInfo().id;
+
+				Map<String, GenericPropertyInfo> propsWithType = propertiesByTypeId
+						.get(typeId);
+				if (propsWithType == null) {
+					propsWithType = new HashMap<String, GenericPropertyInfo>();
+					propertiesByTypeId.put(typeId, propsWithType);
+				}
+				propsWithType.put(genPi.id(), genPi);
+			}
+		}
+
+		/**
+		 * @param typeId
+		 * @return the properties whose value type has the given id; the
+		 *         collection is a copy and can be empty but not
+		 *         <code>null</code>
+		 */
+		protected Collection<GenericPropertyInfo> propertiesWithType(
+				String typeId) {
+
+			Map<String, GenericPropertyInfo> propsWithType = propertiesByTypeId
+					.get(typeId);
+
+			if (propsWithType == null) {
+				return new ArrayList<GenericPropertyInfo>(0);
+			} else {
+				return new ArrayList<GenericPropertyInfo>(
+						propsWithType.values());
+			}
+		}
+
+		protected void remove(GenericPropertyInfo genPi) {
+
+			Map<String, GenericPropertyInfo> propsWithType = propertiesByTypeId
+					.get(genPi.typeInfo().id);
+
+			if (propsWithType != null) {
+				propsWithType.remove(genPi.id());
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty model. Used by {@link GenericModelSnapshot} to restore
+	 * a model from a snapshot.
+	 *
+	 * @param options
+	 * @param result
+	 */
+	protected GenericModel(Options options, ShapeChangeResult result) {
+
+		this.options = options;
+		this.result = result;
+	}
+
 	public GenericModel(Model model) {
 
 		this.options = model.options();
@@ -549,6 +628,13 @@ public class GenericModel extends ModelImpl {
 
 			updateAssociationInfoContent(gai);
 		}
+
+		/*
+		 * the input model has been postprocessed, thus the generalization
+		 * hierarchy of the copy is complete
+		 */
+		invalidateTypeHierarchyIndex();
+		typeHierarchyIndexEnabled = true;
 	}
 
 	private GenericPropertyInfo createAssociationEndCopy(
@@ -575,6 +661,7 @@ public class GenericModel extends ModelImpl {
 	public void register(GenericClassInfo genCi) {
 		this.genClassInfosById.put(genCi.id, genCi);
 		this.genClassInfosByName.put(genCi.name, genCi);
+		invalidateTypeHierarchyIndex();
 	}
 
 	/**
@@ -912,6 +999,8 @@ public class GenericModel extends ModelImpl {
 
 		this.genClassInfosByName.put(genCi.name(), genCi);
 
+		invalidateTypeHierarchyIndex();
+
 		if (!(genCi.pkg() instanceof GenericPackageInfo)) {
 			result.addError(null, 30310, genCi.pkg().name(), genCi.name());
 			return;
@@ -1069,7 +1158,13 @@ public class GenericModel extends ModelImpl {
 	 */
 	public boolean isKindOf(ClassInfo childCi, ClassInfo parentCi) {
 
-		if (childCi.id().equals(parentCi.id())) {
+		TypeHierarchyIndex index = typeHierarchyIndex();
+
+		if (index != null) {
+
+			return index.isInSubtypeHierarchy(childCi, parentCi);
+
+		} else if (childCi.id().equals(parentCi.id())) {
 
 			return true;
 
@@ -1248,7 +1343,19 @@ public class GenericModel extends ModelImpl {
 	 *      postprocessAfterLoadingAndValidate()
 	 */
 	public void postprocessAfterLoadingAndValidate() {
-		// nothing to do here
+		typeHierarchyIndexEnabled = true;
+	}
+
+	/**
+	 * Marks this model as postprocessed, so that neither postprocessing nor
+	 * loading of information from external sources is executed again. Used
+	 * for models restored from a {@link GenericModelSnapshot}, which has been
+	 * created from a postprocessed model.
+	 */
+	protected void markPostprocessed() {
+		postprocessed = true;
+		invalidateTypeHierarchyIndex();
+		typeHierarchyIndexEnabled = true;
 	}
 
 	/**
@@ -1484,7 +1591,7 @@ public class GenericModel extends ModelImpl {
 	 * @param ciToRemove
 	 */
 	public void remove(GenericClassInfo ciToRemove) {
-		remove(ciToRemove, false);
+		remove(ciToRemove, false, null);
 	}
 
 	/**
@@ -1496,6 +1603,24 @@ public class GenericModel extends ModelImpl {
 	 */
 	private void remove(GenericClassInfo ciToRemove,
 			boolean keepAssociationProperties) {
+		remove(ciToRemove, keepAssociationProperties, null);
+	}
+
+	/**
+	 * @param ciToRemove
+	 * @param keepAssociationProperties
+	 *            true if navigable properties of the association that the given
+	 *            class may be an association class for shall not be removed
+	 *            from the model, else false
+	 * @param typeUsage
+	 *            index of the properties by the id of their value type, used
+	 *            when removing a number of classes at once; can be
+	 *            <code>null</code>, in which case all properties of the model
+	 *            are searched for those whose value type is the class to
+	 *            remove
+	 */
+	private void remove(GenericClassInfo ciToRemove,
+			boolean keepAssociationProperties, TypeUsageIndex typeUsage) {
 
 		if (ciToRemove == null || !this.isInAppSchema(ciToRemove))
 			return;
@@ -1526,7 +1651,11 @@ public class GenericModel extends ModelImpl {
 		}
 
 		// Then get all app schema properties whose type is the class to remove.
-		for (PropertyInfo piToRemove : this.genPropertiesById.values()) {
+		Collection<GenericPropertyInfo> propsWithType = typeUsage == null
+				? this.genPropertiesById.values()
+				: typeUsage.propertiesWithType(ciToRemove.id());
+
+		for (PropertyInfo piToRemove : propsWithType) {
 
 			if (piToRemove.typeInfo().id.equals(ciToRemove.id())) {
 
@@ -1571,6 +1700,10 @@ public class GenericModel extends ModelImpl {
 
 				this.genPropertiesById.remove(propToRemove.id());
 
+				if (typeUsage != null) {
+					typeUsage.remove(propToRemove);
+				}
+
 				/*
 				 * This works also in case that the property is non-navigable
 				 * and belongs to an association but is not contained in the
@@ -1616,7 +1749,8 @@ public class GenericModel extends ModelImpl {
 
 				if (assocClass instanceof GenericClassInfo) {
 
-					this.remove((GenericClassInfo) assoToRemove.assocClass());
+					this.remove((GenericClassInfo) assoToRemove.assocClass(),
+							false, typeUsage);
 
 				} else {
 
@@ -1711,11 +1845,16 @@ public class GenericModel extends ModelImpl {
 		// remove references to ciToRemove in model maps
 		genClassInfosById.remove(ciToRemove.id());
 		genClassInfosByName.remove(ciToRemove.name());
+
+		invalidateTypeHierarchyIndex();
 	}
 
 	/**
-	 * Removes the given classes from the model. Internally calls the
-	 * remove(GenericClassInfo) method.
+	 * Removes the given classes from the model. The result is the same as
+	 * calling the remove(GenericClassInfo) method for each class. However, the
+	 * properties whose value type is one of the classes are identified via an
+	 * index that is created once for all classes to remove, instead of
+	 * searching all properties of the model for each class.
 	 * 
 	 * @param cisToRemove
 	 */
@@ -1724,9 +1863,17 @@ public class GenericModel extends ModelImpl {
 		if (cisToRemove == null || cisToRemove.size() == 0)
 			return;
 
+		if (cisToRemove.size() == 1) {
+			remove(cisToRemove.iterator().next());
+			return;
+		}
+
+		TypeUsageIndex typeUsage = new TypeUsageIndex(
+				genPropertiesById.values());
+
 		for (GenericClassInfo ciToRemove : cisToRemove) {
 
-			remove(ciToRemove);
+			remove(ciToRemove, false, typeUsage);
 		}
 	}
 
@@ -1912,14 +2059,16 @@ public class GenericModel extends ModelImpl {
 
 	public void removeByClassCategory(int classCategory) {
 
-		for (GenericClassInfo genCi : genClassInfosById.values().toArray(
-				new GenericClassInfo[genClassInfosById.values().size()])) {
+		List<GenericClassInfo> cisToRemove = new ArrayList<GenericClassInfo>();
+
+		for (GenericClassInfo genCi : genClassInfosById.values()) {
 
 			if (genCi.category() == classCategory) {
-				remove(genCi);
+				cisToRemove.add(genCi);
 			}
 		}
 
+		remove(cisToRemove);
 	}
 
 	/**
@@ -2541,6 +2690,7 @@ public class GenericModel extends ModelImpl {
 	public void setGenClassInfosById(
 			Map<String, GenericClassInfo> genClassInfosById) {
 		this.genClassInfosById = genClassInfosById;
+		invalidateTypeHierarchyIndex();
 	}
 
 	/**
@@ -2550,6 +2700,7 @@ public class GenericModel extends ModelImpl {
 	public void setGenClassInfosByName(
 			Map<String, GenericClassInfo> genClassInfosByName) {
 		this.genClassInfosByName = genClassInfosByName;
+		invalidateTypeHierarchyIndex();
 	}
 
 	/**
@@ -2627,6 +2778,7 @@ public class GenericModel extends ModelImpl {
 			tmp_genClassInfosById.put(newId, e.getValue());
 		}
 		genClassInfosById = tmp_genClassInfosById;
+		invalidateTypeHierarchyIndex();
 
 		// update genPackageInfosById
 		Map<String, GenericPackageInfo> tmp_genPackageInfosById = new HashMap<String, GenericPackageInfo>();
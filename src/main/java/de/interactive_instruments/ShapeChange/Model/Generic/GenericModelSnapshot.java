@@ -0,0 +1,1339 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Model.Generic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import de.interactive_instruments.ShapeChange.InputConfiguration;
+import de.interactive_instruments.ShapeChange.Multiplicity;
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.PackageInfoConfiguration;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.StructuredNumber;
+import de.interactive_instruments.ShapeChange.Type;
+import de.interactive_instruments.ShapeChange.FOL.FolExpression;
+import de.interactive_instruments.ShapeChange.Model.AssociationInfo;
+import de.interactive_instruments.ShapeChange.Model.ClassInfo;
+import de.interactive_instruments.ShapeChange.Model.Constraint;
+import de.interactive_instruments.ShapeChange.Model.Constraint.ModelElmtContextType;
+import de.interactive_instruments.ShapeChange.Model.FolConstraint;
+import de.interactive_instruments.ShapeChange.Model.Info;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.OclConstraint;
+import de.interactive_instruments.ShapeChange.Model.PackageInfo;
+import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Model.Stereotypes;
+import de.interactive_instruments.ShapeChange.Model.TaggedValues;
+import de.interactive_instruments.ShapeChange.Model.TextConstraint;
+import de.interactive_instruments.ShapeChange.SBVR.Sbvr2FolParser;
+import de.interactive_instruments.ShapeChange.SBVR.SbvrConstants;
+
+/**
+ * Binary snapshot of a postprocessed model, used to skip loading and
+ * postprocessing of an input model that has not changed since the snapshot
+ * was created (see {@link Options#PARAM_MODEL_CACHE_DIRECTORY}).
+ * <p>
+ * A snapshot contains the same information that is copied by
+ * {@link GenericModel#GenericModel(Model)}: packages, classes, properties
+ * (including association ends that do not belong to a class), associations
+ * and constraints. Strings are stored once, in a table at the start of the
+ * file; all other values are stored as variable length integers. Model
+ * elements reference each other by id. OCL and first order logic
+ * constraints are stored as text, and parsed when the snapshot is read.
+ * Operations and diagrams are not contained in a snapshot.
+ * <p>
+ * The snapshot file is read completely into a heap buffer, from which the
+ * {@link GenericModel} is created; snapshots larger than 2 GB are therefore
+ * not supported.
+ */
+public class GenericModelSnapshot {
+
+	/**
+	 * Identifies a snapshot file ('SCMS')
+	 */
+	protected static final int MAGIC = 0x53434d53;
+
+	/**
+	 * Version of the snapshot format; must be incremented whenever the
+	 * content or layout of a snapshot changes.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * File extension of snapshot files
+	 */
+	public static final String FILE_EXTENSION = ".scmodel";
+
+	/**
+	 * Hashes of the content of input files, by canonical path of the file;
+	 * only relevant if the same file is used by multiple runs within one
+	 * process.
+	 */
+	private static final Map<String, ContentDigest> contentDigests = new HashMap<String, ContentDigest>();
+
+	protected static final int CONSTRAINT_TEXT = 0;
+	protected static final int CONSTRAINT_OCL = 1;
+	protected static final int CONSTRAINT_FOL = 2;
+
+	/**
+	 * Computes the key that identifies the snapshot of a model. It is the
+	 * SHA-256 hash of the content of the input file, of the input
+	 * configuration (parameters, stereotype and tag aliases, descriptor
+	 * sources and package infos), of the snapshot format version and of the
+	 * ShapeChange version. Input parameter
+	 * {@value Options#PARAM_MODEL_CACHE_DIRECTORY} is not included.
+	 * 
+	 * @param inputFile
+	 *            the file from which the model is loaded
+	 * @param options
+	 * @return the key, as hexadecimal string
+	 * @throws IOException
+	 *             if the input file could not be read
+	 */
+	public static String key(File inputFile, Options options)
+			throws IOException {
+
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		update(md, "ShapeChange model snapshot");
+		update(md, String.valueOf(FORMAT_VERSION));
+		update(md, Options.class.getPackage().getImplementationVersion());
+
+		md.update(contentDigest(inputFile));
+
+		InputConfiguration inputConfig = options.getInputConfig();
+
+		if (inputConfig != null) {
+
+			Map<String, String> params = new TreeMap<String, String>();
+			if (inputConfig.getParameters() != null) {
+				params.putAll(inputConfig.getParameters());
+			}
+			params.remove(Options.PARAM_MODEL_CACHE_DIRECTORY);
+
+			update(md, "parameters", params);
+			update(md, "stereotypeAliases",
+					inputConfig.getStereotypeAliases());
+			update(md, "tagAliases", inputConfig.getTagAliases());
+			update(md, "descriptorSources",
+					inputConfig.getDescriptorSources());
+
+			Map<String, PackageInfoConfiguration> packageInfos = inputConfig
+					.getPackageInfos();
+
+			if (packageInfos != null) {
+
+				for (String name : new TreeSet<String>(
+						packageInfos.keySet())) {
+
+					PackageInfoConfiguration pic = packageInfos.get(name);
+
+					update(md, name);
+					update(md, pic.getNsabr());
+					update(md, pic.getNs());
+					update(md, pic.getXsdDocument());
+					update(md, pic.getVersion());
+				}
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : md.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param inputFile
+	 * @return the SHA-256 hash of the content of the given file; it is only
+	 *         computed again if the modification time or the length of the
+	 *         file has changed since the previous call for the file
+	 * @throws IOException
+	 *             if the file could not be read
+	 */
+	private static byte[] contentDigest(File inputFile) throws IOException {
+
+		String path = inputFile.getCanonicalPath();
+		long lastModified = inputFile.lastModified();
+		long length = inputFile.length();
+
+		synchronized (contentDigests) {
+			ContentDigest cd = contentDigests.get(path);
+			if (cd != null && cd.lastModified == lastModified
+					&& cd.length == length) {
+				return cd.digest;
+			}
+		}
+
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+
+		InputStream in = new FileInputStream(inputFile);
+		try {
+			byte[] buffer = new byte[65536];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				md.update(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+
+		ContentDigest cd = new ContentDigest();
+		cd.lastModified = lastModified;
+		cd.length = length;
+		cd.digest = md.digest();
+
+		synchronized (contentDigests) {
+			contentDigests.put(path, cd);
+		}
+		return cd.digest;
+	}
+
+	private static void update(MessageDigest md, String name,
+			Map<String, String> map) {
+
+		update(md, name);
+
+		if (map != null) {
+			for (Map.Entry<String, String> e : new TreeMap<String, String>(
+					map).entrySet()) {
+				update(md, e.getKey());
+				update(md, e.getValue());
+			}
+		}
+	}
+
+	private static void update(MessageDigest md, String s) {
+
+		if (s != null) {
+			try {
+				md.update(s.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+			}
+		}
+		md.update((byte) 0);
+	}
+
+	/**
+	 * Writes a snapshot of the given model to the given file. The model must
+	 * have been postprocessed. The snapshot is written to a temporary file in
+	 * the same directory first, which then replaces the given file, so that a
+	 * snapshot file is either complete or does not exist - also if multiple
+	 * processes write the snapshot at the same time.
+	 * 
+	 * @param model
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(Model model, File file) throws IOException {
+
+		Encoder enc = encode(model);
+
+		File tmp = File.createTempFile(file.getName() + ".", ".tmp",
+				file.getAbsoluteFile().getParentFile());
+		try {
+			OutputStream out = new FileOutputStream(tmp);
+			try {
+				enc.writeTo(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			tmp.delete();
+			throw e;
+		}
+
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException(
+						"Could not rename '" + tmp + "' to '" + file + "'.");
+			}
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the given model in memory. The model must have
+	 * been postprocessed.
+	 * 
+	 * @param model
+	 * @return the content of the snapshot, in the same format as written by
+	 *         {@link #write(Model, File)}
+	 */
+	public static byte[] toByteArray(Model model) {
+
+		Encoder enc = encode(model);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			enc.writeTo(out);
+		} catch (IOException e) {
+			// cannot occur when writing to a byte array
+		}
+		return out.toByteArray();
+	}
+
+	private static Encoder encode(Model model) {
+
+		Encoder enc = new Encoder();
+
+		/*
+		 * Determine the model elements to write, in the same way as the
+		 * GenericModel copy constructor does.
+		 */
+		List<PackageInfo> packages = new ArrayList<PackageInfo>(
+				model.packages());
+
+		List<ClassInfo> classes = new ArrayList<ClassInfo>();
+		Map<String, PropertyInfo> properties = new LinkedHashMap<String, PropertyInfo>();
+
+		for (PackageInfo pi : packages) {
+
+			SortedSet<ClassInfo> packageClasses = model.classes(pi);
+			for (PackageInfo childPackage : pi.containedPackages()) {
+				packageClasses.removeAll(model.classes(childPackage));
+			}
+			classes.addAll(packageClasses);
+		}
+
+		for (ClassInfo ci : classes) {
+
+			SortedMap<StructuredNumber, PropertyInfo> classProperties = ci
+					.properties();
+
+			if (classProperties != null) {
+				for (PropertyInfo propi : classProperties.values()) {
+					if (!properties.containsKey(propi.id())) {
+						properties.put(propi.id(), propi);
+					}
+				}
+			}
+		}
+
+		Map<String, AssociationInfo> associations = new LinkedHashMap<String, AssociationInfo>();
+		Map<String, PropertyInfo> associationEnds = new LinkedHashMap<String, PropertyInfo>();
+
+		for (PropertyInfo propi : properties.values()) {
+
+			AssociationInfo ai = propi.association();
+
+			if (ai == null || associations.containsKey(ai.id())) {
+				continue;
+			}
+
+			associations.put(ai.id(), ai);
+
+			for (PropertyInfo end : new PropertyInfo[] { ai.end1(),
+					ai.end2() }) {
+				if (end != null && !properties.containsKey(end.id())) {
+					associationEnds.put(end.id(), end);
+				}
+			}
+		}
+
+		// model
+		enc.writeString(model.characterEncoding());
+		List<String> selectedSchemaIds = new ArrayList<String>();
+		for (PackageInfo pi : model.selectedSchemas()) {
+			selectedSchemaIds.add(pi.id());
+		}
+		enc.writeStrings(selectedSchemaIds);
+
+		// packages
+		enc.writeInt(packages.size());
+		for (PackageInfo pi : packages) {
+
+			enc.writeString(pi.id());
+			enc.writeString(pi.name());
+			writeInfo(enc, pi);
+
+			enc.writeString(pi.targetNamespace());
+			enc.writeString(pi.xmlns());
+			enc.writeString(pi.xsdDocument());
+			enc.writeString(pi.gmlProfileSchema());
+			enc.writeString(pi.version());
+			enc.writeString(pi.schemaId());
+			enc.writeBoolean(pi.isAppSchema());
+			enc.writeBoolean(pi.isSchema());
+
+			enc.writeString(pi.owner() == null ? null : pi.owner().id());
+			enc.writeString(pi.rootPackage() == null ? null
+					: pi.rootPackage().id());
+
+			List<String> childIds = new ArrayList<String>();
+			for (PackageInfo childPackage : pi.containedPackages()) {
+				childIds.add(childPackage.id());
+			}
+			enc.writeStrings(childIds);
+			enc.writeStrings(pi.supplierIds());
+		}
+
+		// classes
+		enc.writeInt(classes.size());
+		for (ClassInfo ci : classes) {
+
+			enc.writeString(ci.id());
+			enc.writeString(ci.name());
+			enc.writeInt(ci.category());
+			writeInfo(enc, ci);
+
+			enc.writeString(ci.globalId());
+			enc.writeString(ci.xmlSchemaType());
+			enc.writeBoolean(ci.includePropertyType());
+			enc.writeBoolean(ci.includeByValuePropertyType());
+			enc.writeBoolean(ci.isCollection());
+			enc.writeBoolean(ci.asDictionary());
+			enc.writeBoolean(ci.asGroup());
+			enc.writeBoolean(ci.asCharacterString());
+			enc.writeBoolean(ci.hasNilReason());
+			enc.writeString(ci.pkg() == null ? null : ci.pkg().id());
+			enc.writeBoolean(ci.isAbstract());
+			enc.writeBoolean(ci.isLeaf());
+			enc.writeString(ci.isAssocClass() == null ? null
+					: ci.isAssocClass().id());
+			enc.writeStrings(ci.supertypes());
+			enc.writeStrings(ci.subtypes());
+			enc.writeString(
+					ci.baseClass() == null ? null : ci.baseClass().id());
+			enc.writeBoolean(ci.suppressed());
+			enc.writeBoolean(ci.asDictionaryGml33());
+
+			List<String> propertyIds = new ArrayList<String>();
+			if (ci.properties() != null) {
+				for (PropertyInfo propi : ci.properties().values()) {
+					propertyIds.add(propi.id());
+				}
+			}
+			enc.writeStrings(propertyIds);
+
+			writeConstraints(enc, ci.constraints());
+		}
+
+		// properties
+		enc.writeInt(properties.size() + associationEnds.size());
+		for (PropertyInfo propi : properties.values()) {
+			writeProperty(enc, propi, false);
+		}
+		for (PropertyInfo propi : associationEnds.values()) {
+			writeProperty(enc, propi, true);
+		}
+
+		// associations
+		enc.writeInt(associations.size());
+		for (AssociationInfo ai : associations.values()) {
+
+			enc.writeString(ai.id());
+			enc.writeString(ai.name());
+			writeInfo(enc, ai);
+
+			enc.writeString(ai.globalId());
+			enc.writeString(ai.end1() == null ? null : ai.end1().id());
+			enc.writeString(ai.end2() == null ? null : ai.end2().id());
+			enc.writeString(ai.assocClass() == null ? null
+					: ai.assocClass().id());
+		}
+
+		return enc;
+	}
+
+	private static void writeProperty(Encoder enc, PropertyInfo propi,
+			boolean associationEndOnly) {
+
+		enc.writeString(propi.id());
+		enc.writeString(propi.name());
+		enc.writeInt(propi.categoryOfValue());
+		writeInfo(enc, propi);
+
+		enc.writeBoolean(associationEndOnly);
+		enc.writeString(propi.globalId());
+		enc.writeBoolean(propi.isDerived());
+		enc.writeBoolean(propi.isReadOnly());
+		enc.writeBoolean(propi.isAttribute());
+		Type ti = propi.typeInfo();
+		enc.writeString(ti == null ? null : ti.id);
+		enc.writeString(ti == null ? null : ti.name);
+		enc.writeBoolean(propi.isNavigable());
+		enc.writeBoolean(propi.isOrdered());
+		enc.writeBoolean(propi.isComposition());
+		enc.writeBoolean(propi.isAggregation());
+		Multiplicity m = propi.cardinality();
+		enc.writeInt(m.minOccurs);
+		enc.writeInt(m.maxOccurs);
+		enc.writeString(propi.initialValue());
+		enc.writeString(propi.inlineOrByReference());
+		enc.writeString(propi.defaultCodeSpace());
+		enc.writeBoolean(propi.isMetadata());
+		enc.writeString(propi.reverseProperty() == null ? null
+				: propi.reverseProperty().id());
+		enc.writeString(
+				propi.inClass() == null ? null : propi.inClass().id());
+		enc.writeString(propi.sequenceNumber().getString());
+		enc.writeBoolean(propi.implementedByNilReason());
+		enc.writeBoolean(propi.voidable());
+		enc.writeString(propi.association() == null ? null
+				: propi.association().id());
+		enc.writeBoolean(propi.isRestriction());
+		enc.writeBoolean(propi.nilReasonAllowed());
+
+		writeConstraints(enc, propi.constraints());
+	}
+
+	private static void writeInfo(Encoder enc, Info i) {
+
+		TaggedValues tvs = i.taggedValuesAll();
+		SortedMap<String, List<String>> tvMap = tvs == null
+				? new TreeMap<String, List<String>>() : tvs.asMap();
+
+		enc.writeInt(tvMap.size());
+		for (Map.Entry<String, List<String>> e : tvMap.entrySet()) {
+			enc.writeString(e.getKey());
+			enc.writeStrings(e.getValue());
+		}
+
+		enc.writeString(i.aliasName());
+		enc.writeString(i.definition());
+		enc.writeString(i.description());
+		enc.writeString(i.primaryCode());
+		enc.writeString(i.language());
+		enc.writeString(i.legalBasis());
+		enc.writeStrings(i.dataCaptureStatements());
+		enc.writeStrings(i.examples());
+		Stereotypes st = i.stereotypes();
+		enc.writeStrings(st == null ? null : st.asArray());
+	}
+
+	private static void writeConstraints(Encoder enc,
+			List<Constraint> constraints) {
+
+		List<Constraint> cons = new ArrayList<Constraint>();
+
+		if (constraints != null) {
+			for (Constraint con : constraints) {
+				/*
+				 * constraints without context are omitted by the
+				 * GenericModel copy constructor as well
+				 */
+				if (con.contextModelElmt() != null
+						&& (con instanceof TextConstraint
+								|| con instanceof OclConstraint)) {
+					cons.add(con);
+				}
+			}
+		}
+
+		enc.writeInt(cons.size());
+		for (Constraint con : cons) {
+
+			if (con instanceof FolConstraint) {
+				enc.writeInt(CONSTRAINT_FOL);
+			} else if (con instanceof TextConstraint) {
+				enc.writeInt(CONSTRAINT_TEXT);
+			} else {
+				enc.writeInt(CONSTRAINT_OCL);
+			}
+			enc.writeInt(con.contextModelElmtType().ordinal());
+			enc.writeString(con.contextModelElmt().id());
+			enc.writeString(con.name());
+			enc.writeString(con.status());
+			enc.writeString(con.text());
+			if (con instanceof FolConstraint) {
+				enc.writeString(((FolConstraint) con).sourceType());
+			}
+		}
+	}
+
+	/**
+	 * Reads the snapshot from the given file.
+	 * 
+	 * @param file
+	 * @param options
+	 * @param result
+	 * @return the model restored from the snapshot; it is marked as
+	 *         postprocessed
+	 * @throws IOException
+	 *             if the file could not be read, if it is larger than 2 GB,
+	 *             or if it is not a snapshot with the current format version
+	 */
+	public static GenericModel read(File file, Options options,
+			ShapeChangeResult result) throws IOException {
+
+		/*
+		 * the file is read into a heap buffer rather than mapped, because a
+		 * mapped file cannot be renamed or deleted on Windows until the
+		 * mapping has been garbage collected
+		 */
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Model snapshot '" + file
+						+ "' is too large to be read.");
+			}
+			buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Unexpected end of model snapshot '"
+							+ file + "'.");
+				}
+			}
+			buffer.flip();
+		} finally {
+			raf.close();
+		}
+
+		return read(buffer, options, result);
+	}
+
+	/**
+	 * Reads the snapshot from the given buffer, for example one that wraps
+	 * the result of {@link #toByteArray(Model)}.
+	 * 
+	 * @param buffer
+	 *            buffer positioned at the start of the snapshot
+	 * @param options
+	 * @param result
+	 * @return the model restored from the snapshot; it is marked as
+	 *         postprocessed
+	 * @throws IOException
+	 *             if the buffer does not contain a snapshot with the current
+	 *             format version
+	 */
+	public static GenericModel read(ByteBuffer buffer, Options options,
+			ShapeChangeResult result) throws IOException {
+
+		Decoder dec = new Decoder(buffer);
+
+		GenericModel model = new GenericModel(options, result);
+
+		model.characterEncoding = dec.readString();
+		model.selectedSchemaPackageIds.addAll(dec.readStringList());
+
+		Map<String, String[]> packageRefs = new HashMap<String, String[]>();
+		Map<String, String[]> classRefs = new HashMap<String, String[]>();
+		Map<String, String[]> propertyRefs = new HashMap<String, String[]>();
+		Map<String, String[]> associationRefs = new HashMap<String, String[]>();
+
+		Map<Info, List<ConstraintRecord>> constraintRecords = new LinkedHashMap<Info, List<ConstraintRecord>>();
+
+		// packages
+		int count = dec.readInt();
+		for (int n = 0; n < count; n++) {
+
+			GenericPackageInfo genPi = new GenericPackageInfo();
+
+			genPi.setOptions(options);
+			genPi.setResult(result);
+			genPi.setModel(model);
+
+			String id = dec.readString();
+			String name = dec.readString();
+			InfoRecord info = new InfoRecord(dec, options);
+
+			genPi.setTaggedValues(info.taggedValues, false);
+
+			genPi.setId(id);
+			genPi.setName(name);
+			genPi.setAliasName(info.aliasName);
+			genPi.setDefinition(info.definition);
+			genPi.setDescription(info.description);
+			genPi.setPrimaryCode(info.primaryCode);
+			genPi.setLanguage(info.language);
+			genPi.setLegalBasis(info.legalBasis);
+			genPi.setDataCaptureStatements(info.dataCaptureStatements);
+			genPi.setExamples(info.examples);
+			genPi.setStereotypes(info.stereotypes);
+
+			genPi.setTargetNamespace(dec.readString());
+			genPi.setXmlns(dec.readString());
+			genPi.setXsdDocument(dec.readString());
+			genPi.setGmlProfileSchema(dec.readString());
+			genPi.setVersion(dec.readString());
+			genPi.setSchemaId(dec.readString());
+			genPi.setIsAppSchema(dec.readBoolean());
+			genPi.setIsSchema(dec.readBoolean());
+
+			String ownerId = dec.readString();
+			String rootId = dec.readString();
+			packageRefs.put(id, new String[] { ownerId, rootId });
+
+			List<String> childIds = dec.readStringList();
+			packageRefs.put(id + "#children",
+					childIds.toArray(new String[childIds.size()]));
+
+			genPi.setSupplierIds(new TreeSet<String>(dec.readStringList()));
+
+			model.genPackageInfosById.put(id, genPi);
+		}
+
+		// classes
+		count = dec.readInt();
+		for (int n = 0; n < count; n++) {
+
+			String id = dec.readString();
+			String name = dec.readString();
+			int category = dec.readInt();
+
+			GenericClassInfo genCi = new GenericClassInfo(model, id, name,
+					category);
+
+			InfoRecord info = new InfoRecord(dec, options);
+
+			genCi.setTaggedValues(info.taggedValues, false);
+			genCi.setAliasName(info.aliasName);
+			genCi.setDefinition(info.definition);
+			genCi.setDescription(info.description);
+			genCi.setPrimaryCode(info.primaryCode);
+			genCi.setLanguage(info.language);
+			genCi.setLegalBasis(info.legalBasis);
+			genCi.setDataCaptureStatements(info.dataCaptureStatements);
+			genCi.setExamples(info.examples);
+			genCi.setStereotypes(info.stereotypes);
+
+			genCi.setGlobalId(dec.readString());
+			genCi.setXmlSchemaType(dec.readString());
+			genCi.setIncludePropertyType(dec.readBoolean());
+			genCi.setIncludeByValuePropertyType(dec.readBoolean());
+			genCi.setIsCollection(dec.readBoolean());
+			genCi.setAsDictionary(dec.readBoolean());
+			genCi.setAsGroup(dec.readBoolean());
+			genCi.setAsCharacterString(dec.readBoolean());
+			genCi.setHasNilReason(dec.readBoolean());
+			String pkgId = dec.readString();
+			genCi.setIsAbstract(dec.readBoolean());
+			genCi.setIsLeaf(dec.readBoolean());
+			String assocClassId = dec.readString();
+			genCi.setSupertypes(new TreeSet<String>(dec.readStringList()));
+			genCi.setSubtypes(new TreeSet<String>(dec.readStringList()));
+			String baseClassId = dec.readString();
+			genCi.setSuppressed(dec.readBoolean());
+			genCi.setAsDictionaryGml33(dec.readBoolean());
+
+			classRefs.put(id, new String[] { pkgId, assocClassId,
+					baseClassId });
+
+			List<String> propertyIds = dec.readStringList();
+			classRefs.put(id + "#properties",
+					propertyIds.toArray(new String[propertyIds.size()]));
+
+			constraintRecords.put(genCi, readConstraints(dec));
+
+			model.register(genCi);
+		}
+
+		// properties
+		count = dec.readInt();
+		for (int n = 0; n < count; n++) {
+
+			String id = dec.readString();
+			String name = dec.readString();
+			int categoryOfValue = dec.readInt();
+
+			GenericPropertyInfo genPi = new GenericPropertyInfo(model, id,
+					name, categoryOfValue);
+
+			InfoRecord info = new InfoRecord(dec, options);
+
+			genPi.setTaggedValues(info.taggedValues, false);
+			genPi.setAliasName(info.aliasName);
+			genPi.setDefinition(info.definition);
+			genPi.setDescription(info.description);
+			genPi.setPrimaryCode(info.primaryCode);
+			genPi.setLanguage(info.language);
+			genPi.setLegalBasis(info.legalBasis);
+			genPi.setDataCaptureStatements(info.dataCaptureStatements);
+			genPi.setExamples(info.examples);
+			genPi.setStereotypes(info.stereotypes);
+
+			// association end that does not belong to one of the classes
+			dec.readBoolean();
+
+			genPi.setGlobalId(dec.readString());
+			genPi.setDerived(dec.readBoolean());
+			genPi.setReadOnly(dec.readBoolean());
+			genPi.setAttribute(dec.readBoolean());
+			Type ti = new Type();
+			ti.id = dec.readString();
+			ti.name = dec.readString();
+			genPi.copyTypeInfo(ti);
+			genPi.setNavigable(dec.readBoolean());
+			genPi.setOrdered(dec.readBoolean());
+			genPi.setComposition(dec.readBoolean());
+			genPi.setAggregation(dec.readBoolean());
+			Multiplicity m = new Multiplicity();
+			m.minOccurs = dec.readInt();
+			m.maxOccurs = dec.readInt();
+			genPi.setCardinality(m);
+			genPi.setInitialValue(dec.readString());
+			genPi.setInlineOrByReference(dec.readString());
+			genPi.setDefaultCodeSpace(dec.readString());
+			genPi.setMetadata(dec.readBoolean());
+			String reversePropertyId = dec.readString();
+			String inClassId = dec.readString();
+			genPi.setSequenceNumber(new StructuredNumber(dec.readString()),
+					true);
+			genPi.setImplementedByNilReason(dec.readBoolean());
+			genPi.setVoidable(dec.readBoolean());
+			String associationId = dec.readString();
+			genPi.setRestriction(dec.readBoolean());
+			genPi.setNilReasonAllowed(dec.readBoolean());
+
+			propertyRefs.put(id, new String[] { reversePropertyId, inClassId,
+					associationId });
+
+			constraintRecords.put(genPi, readConstraints(dec));
+
+			model.genPropertiesById.put(id, genPi);
+		}
+
+		// associations
+		count = dec.readInt();
+		for (int n = 0; n < count; n++) {
+
+			GenericAssociationInfo genAi = new GenericAssociationInfo();
+
+			genAi.setOptions(options);
+			genAi.setResult(result);
+			genAi.setModel(model);
+
+			String id = dec.readString();
+			String name = dec.readString();
+			InfoRecord info = new InfoRecord(dec, options);
+
+			genAi.setId(id);
+			genAi.setGlobalId(dec.readString());
+			genAi.setTaggedValues(info.taggedValues);
+			genAi.setName(name);
+			genAi.setAliasName(info.aliasName);
+			genAi.setDefinition(info.definition);
+			genAi.setDescription(info.description);
+			genAi.setPrimaryCode(info.primaryCode);
+			genAi.setLanguage(info.language);
+			genAi.setLegalBasis(info.legalBasis);
+			genAi.setDataCaptureStatements(info.dataCaptureStatements);
+			genAi.setExamples(info.examples);
+			genAi.setStereotypes(info.stereotypes);
+
+			associationRefs.put(id, new String[] { dec.readString(),
+					dec.readString(), dec.readString() });
+
+			model.genAssociationInfosById.put(id, genAi);
+		}
+
+		/*
+		 * now that all model elements exist, set the references between them
+		 */
+		for (GenericPackageInfo genPi : model.genPackageInfosById.values()) {
+
+			String[] refs = packageRefs.get(genPi.id());
+			genPi.setOwner(packageById(model, refs[0]));
+			genPi.setRootPackage(packageById(model, refs[1]));
+
+			SortedSet<GenericPackageInfo> children = new TreeSet<GenericPackageInfo>();
+			for (String childId : packageRefs.get(genPi.id() + "#children")) {
+				GenericPackageInfo child = packageById(model, childId);
+				if (child != null) {
+					children.add(child);
+				}
+			}
+			genPi.setContainedPackages(children);
+		}
+
+		Map<String, SortedSet<GenericClassInfo>> classesByPackageId = new HashMap<String, SortedSet<GenericClassInfo>>();
+
+		for (GenericClassInfo genCi : model.genClassInfosById.values()) {
+
+			String[] refs = classRefs.get(genCi.id());
+			genCi.setPkg(packageById(model, refs[0]));
+			genCi.setAssocInfo(associationById(model, refs[1]));
+			genCi.setBaseClass(classById(model, refs[2]));
+
+			SortedMap<StructuredNumber, PropertyInfo> classProperties = new TreeMap<StructuredNumber, PropertyInfo>();
+
+			for (String propertyId : classRefs.get(genCi.id() + "#properties")) {
+
+				GenericPropertyInfo genPi = model.genPropertiesById
+						.get(propertyId);
+
+				if (genPi != null) {
+					classProperties.put(genPi.sequenceNumber(), genPi);
+				}
+			}
+			genCi.setProperties(classProperties);
+
+			if (refs[0] != null) {
+				SortedSet<GenericClassInfo> packageClasses = classesByPackageId
+						.get(refs[0]);
+				if (packageClasses == null) {
+					packageClasses = new TreeSet<GenericClassInfo>();
+					classesByPackageId.put(refs[0], packageClasses);
+				}
+				packageClasses.add(genCi);
+			}
+		}
+
+		for (GenericPackageInfo genPi : model.genPackageInfosById.values()) {
+
+			SortedSet<GenericClassInfo> packageClasses = classesByPackageId
+					.get(genPi.id());
+			genPi.setClasses(packageClasses == null
+					? new TreeSet<GenericClassInfo>() : packageClasses);
+		}
+
+		for (GenericPropertyInfo genPi : model.genPropertiesById.values()) {
+
+			String[] refs = propertyRefs.get(genPi.id());
+			genPi.setReverseProperty(propertyById(model, refs[0]));
+			genPi.setInClass(classById(model, refs[1]));
+			genPi.setAssociation(associationById(model, refs[2]));
+		}
+
+		for (GenericAssociationInfo genAi : model.genAssociationInfosById
+				.values()) {
+
+			String[] refs = associationRefs.get(genAi.id());
+			genAi.setEnd1(propertyById(model, refs[0]));
+			genAi.setEnd2(propertyById(model, refs[1]));
+			genAi.setAssocClass(classById(model, refs[2]));
+		}
+
+		model.markPostprocessed();
+
+		/*
+		 * finally, create the constraints; OCL and FOL constraints are parsed,
+		 * which requires a complete model
+		 */
+		boolean parseFol = options.parameter("checkingConstraints") == null
+				|| options.parameter("checkingConstraints")
+						.equalsIgnoreCase("enabled");
+		Sbvr2FolParser sbvrParser = null;
+
+		for (Map.Entry<Info, List<ConstraintRecord>> e : constraintRecords
+				.entrySet()) {
+
+			Vector<Constraint> cons = new Vector<Constraint>();
+
+			for (ConstraintRecord cr : e.getValue()) {
+
+				Info context;
+				if (cr.contextType == ModelElmtContextType.CLASS) {
+					context = classById(model, cr.contextId);
+				} else {
+					context = propertyById(model, cr.contextId);
+				}
+
+				if (context == null) {
+					continue;
+				}
+
+				if (cr.kind == CONSTRAINT_OCL) {
+
+					if (context instanceof GenericClassInfo) {
+						cons.add(new GenericOclConstraint(
+								(GenericClassInfo) context, cr.name,
+								cr.status, cr.text));
+					} else {
+						cons.add(new GenericOclConstraint(
+								(PropertyInfo) context, cr.name, cr.status,
+								cr.text));
+					}
+
+				} else if (cr.kind == CONSTRAINT_FOL) {
+
+					ClassInfo contextClass = context instanceof ClassInfo
+							? (ClassInfo) context
+							: ((PropertyInfo) context).inClass();
+
+					GenericFolConstraint folCon = new GenericFolConstraint(
+							contextClass, cr.name, cr.status, cr.sourceType,
+							cr.text);
+					folCon.setContextModelElmt(context);
+					folCon.setContextModelElmtType(cr.contextType);
+
+					if (parseFol && SbvrConstants.FOL_SOURCE_TYPE
+							.equals(cr.sourceType)) {
+
+						if (sbvrParser == null) {
+							sbvrParser = new Sbvr2FolParser(model);
+						}
+
+						folCon.setComments(new String[] { cr.text });
+
+						FolExpression folExpr = sbvrParser.parse(folCon);
+						if (folExpr != null) {
+							folCon.setFolExpression(folExpr);
+						}
+					}
+
+					cons.add(folCon);
+
+				} else {
+
+					cons.add(new GenericTextConstraint(context,
+							cr.contextType, cr.name, cr.status, cr.text));
+				}
+			}
+
+			if (e.getKey() instanceof GenericClassInfo) {
+				((GenericClassInfo) e.getKey()).setConstraints(cons);
+			} else {
+				((GenericPropertyInfo) e.getKey()).setConstraints(cons);
+			}
+		}
+
+		return model;
+	}
+
+	private static List<ConstraintRecord> readConstraints(Decoder dec) {
+
+		int count = dec.readInt();
+		List<ConstraintRecord> records = new ArrayList<ConstraintRecord>(
+				count);
+
+		for (int n = 0; n < count; n++) {
+
+			ConstraintRecord cr = new ConstraintRecord();
+			cr.kind = dec.readInt();
+			cr.contextType = ModelElmtContextType.values()[dec.readInt()];
+			cr.contextId = dec.readString();
+			cr.name = dec.readString();
+			cr.status = dec.readString();
+			cr.text = dec.readString();
+			if (cr.kind == CONSTRAINT_FOL) {
+				cr.sourceType = dec.readString();
+			}
+			records.add(cr);
+		}
+
+		return records;
+	}
+
+	private static GenericPackageInfo packageById(GenericModel model,
+			String id) {
+		return id == null ? null : model.genPackageInfosById.get(id);
+	}
+
+	private static GenericClassInfo classById(GenericModel model, String id) {
+		return id == null ? null : model.genClassInfosById.get(id);
+	}
+
+	private static GenericPropertyInfo propertyById(GenericModel model,
+			String id) {
+		return id == null ? null : model.genPropertiesById.get(id);
+	}
+
+	private static GenericAssociationInfo associationById(GenericModel model,
+			String id) {
+		return id == null ? null : model.genAssociationInfosById.get(id);
+	}
+
+	/**
+	 * The fields of a model element that are common to all kinds of Info
+	 * objects.
+	 */
+	protected static class InfoRecord {
+
+		TaggedValues taggedValues;
+		String aliasName;
+		String definition;
+		String description;
+		String primaryCode;
+		String language;
+		String legalBasis;
+		String[] dataCaptureStatements;
+		String[] examples;
+		Stereotypes stereotypes;
+
+		InfoRecord(Decoder dec, Options options) {
+
+			int count = dec.readInt();
+			taggedValues = options.taggedValueFactory(count);
+			for (int n = 0; n < count; n++) {
+				String tag = dec.readString();
+				taggedValues.put(tag, dec.readStringList());
+			}
+
+			aliasName = dec.readString();
+			definition = dec.readString();
+			description = dec.readString();
+			primaryCode = dec.readString();
+			language = dec.readString();
+			legalBasis = dec.readString();
+			dataCaptureStatements = dec.readStringArray();
+			examples = dec.readStringArray();
+
+			stereotypes = options.stereotypesFactory();
+			String[] st = dec.readStringArray();
+			if (st != null) {
+				for (String s : st) {
+					stereotypes.add(s);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A constraint as stored in a snapshot.
+	 */
+	protected static class ConstraintRecord {
+
+		int kind;
+		ModelElmtContextType contextType;
+		String contextId;
+		String name;
+		String status;
+		String text;
+		String sourceType;
+	}
+
+	protected static class ContentDigest {
+		long lastModified;
+		long length;
+		byte[] digest;
+	}
+
+	/**
+	 * Encodes the content of a snapshot. Strings are replaced by their index
+	 * in the string table (0 represents <code>null</code>); integers are
+	 * written as zigzag encoded variable length integers.
+	 */
+	protected static class Encoder {
+
+		private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+
+		private byte[] body = new byte[65536];
+		private int length = 0;
+
+		void writeInt(int i) {
+
+			int v = (i << 1) ^ (i >> 31);
+
+			if (length + 5 > body.length) {
+				byte[] larger = new byte[body.length * 2];
+				System.arraycopy(body, 0, larger, 0, length);
+				body = larger;
+			}
+
+			while ((v & ~0x7F) != 0) {
+				body[length++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			body[length++] = (byte) v;
+		}
+
+		void writeBoolean(boolean b) {
+			writeInt(b ? 1 : 0);
+		}
+
+		void writeString(String s) {
+
+			if (s == null) {
+				writeInt(0);
+				return;
+			}
+
+			Integer id = stringIds.get(s);
+			if (id == null) {
+				strings.add(s);
+				id = strings.size();
+				stringIds.put(s, id);
+			}
+			writeInt(id);
+		}
+
+		void writeStrings(String[] values) {
+
+			if (values == null) {
+				writeInt(-1);
+			} else {
+				writeInt(values.length);
+				for (String s : values) {
+					writeString(s);
+				}
+			}
+		}
+
+		void writeStrings(Iterable<String> values) {
+
+			if (values == null) {
+				writeInt(-1);
+			} else {
+				List<String> list = new ArrayList<String>();
+				for (String s : values) {
+					list.add(s);
+				}
+				writeStrings(list.toArray(new String[list.size()]));
+			}
+		}
+
+		void writeTo(OutputStream os) throws IOException {
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(os, 65536));
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(length);
+			out.write(body, 0, length);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Decodes the content of a snapshot, as written by {@link Encoder}.
+	 */
+	protected static class Decoder {
+
+		private final ByteBuffer buffer;
+		private final String[] strings;
+
+		Decoder(ByteBuffer buffer) throws IOException {
+
+			this.buffer = buffer;
+
+			if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+				throw new IOException("Not a model snapshot.");
+			}
+
+			int version = buffer.getInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot format version "
+						+ version + ".");
+			}
+
+			strings = new String[buffer.getInt() + 1];
+			for (int i = 1; i < strings.length; i++) {
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, "UTF-8");
+			}
+
+			int length = buffer.getInt();
+			if (buffer.remaining() != length) {
+				throw new IOException("Incomplete model snapshot.");
+			}
+		}
+
+		int readInt() {
+
+			int v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get();
+				v |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		boolean readBoolean() {
+			return readInt() != 0;
+		}
+
+		String readString() {
+			return strings[readInt()];
+		}
+
+		String[] readStringArray() {
+
+			int count = readInt();
+			if (count < 0) {
+				return null;
+			}
+			String[] values = new String[count];
+			for (int i = 0; i < count; i++) {
+				values[i] = readString();
+			}
+			return values;
+		}
+
+		List<String> readStringList() {
+
+			String[] values = readStringArray();
+			List<String> list = new ArrayList<String>();
+			if (values != null) {
+				for (String s : values) {
+					list.add(s);
+				}
+			}
+			return list;
+		}
+	}
+}
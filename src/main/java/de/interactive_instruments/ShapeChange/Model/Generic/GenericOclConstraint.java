@@ -31,8 +31,6 @@
  */
 package de.interactive_instruments.ShapeChange.Model.Generic;
 
-import java.io.StringReader;
-
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.Constraint;
 import de.interactive_instruments.ShapeChange.Model.Info;
@@ -101,12 +99,27 @@ public class GenericOclConstraint extends OclConstraintImpl {
 		constraintName = constrName;
 		constraintStatus = constrStatus;
 		constraintText = constrText;
-		
+
+		/*
+		 * Parsing may be deferred until the syntax tree is first accessed; it
+		 * then uses the context that is current at that time.
+		 */
+		if (contextModelElement != null
+				&& contextModelElement.options() != null
+				&& contextModelElement.options().isLazyOclParsing()) {
+			parsingDeferred = true;
+		} else {
+			compile();
+		}
+	}
+
+	@Override
+	protected void compile() {
+
 		syntaxTree = null;
-		Readable instream = new StringReader(constraintText);
 		OclParser parse = new OclParser();
 
-		syntaxTree = parse.parseOcl(instream, contextModelElmt);
+		syntaxTree = parse.parseOcl(constraintText, contextModelElmt);
 
 		if (syntaxTree != null)
 			conditionType = syntaxTree.expressionType;
@@ -532,6 +532,7 @@ public class GenericPackageInfo extends PackageInfoImpl {
 
 		// clone tagged values
 		taggedValuesCache = options().taggedValueFactory(taggedValues);
+		taggedValuesChanged();
 
 		// Now update fields, if they are affected by tagged values
 
@@ -793,6 +793,7 @@ public class GenericPropertyInfo extends PropertyInfoImpl
 
 		// clone tagged values
 		taggedValuesCache = options().taggedValueFactory(taggedValues);
+		taggedValuesChanged();
 
 		// Now update fields, if they are affected by tagged values
 		if (updateFields && !taggedValuesCache.isEmpty()) {
@@ -931,6 +932,7 @@ public class GenericPropertyInfo extends PropertyInfoImpl
 		validateTaggedValuesCache();
 
 		taggedValuesCache.put(tvName, tvValue);
+		taggedValuesChanged();
 
 		if (updateFields) {
 			updateFieldsForTaggedValue(tvName, tvValue);
@@ -107,6 +107,26 @@ public class GenericTextConstraint extends TextConstraintImpl {
 		constraintStatus = origCon.status();
 		constraintText = origCon.text();
 	}
+
+	/**
+	 * @param contextModelElmt
+	 *            context model element of the new constraint
+	 * @param contextModelElmtType
+	 *            type of the context model element
+	 * @param name
+	 * @param status
+	 * @param text
+	 */
+	public GenericTextConstraint(Info contextModelElmt,
+			ModelElmtContextType contextModelElmtType, String name,
+			String status, String text) {
+		super();
+		this.contextModelElmt = contextModelElmt;
+		this.contextModelElmtType = contextModelElmtType;
+		constraintName = name;
+		constraintStatus = status;
+		constraintText = text;
+	}
 //
 //	public String name() {
 //		return name;
@@ -33,6 +33,7 @@
 package de.interactive_instruments.ShapeChange.Model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,7 @@ import java.util.regex.Pattern;
 
 import de.interactive_instruments.ShapeChange.MessageSource;
 import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.RuleTable;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
 
 public abstract class InfoImpl
@@ -60,6 +62,20 @@ public abstract class InfoImpl
 	protected String[] dataCaptureStatements = null;
 	protected TaggedValues taggedValuesCache = null;
 	protected Stereotypes stereotypesCache = null;
+	/**
+	 * Effective rules of this element, one entry per rule table (i.e. per
+	 * process specific view of the options) - see
+	 * {@link #effectiveRules(RuleTable, int)}; the array is replaced, never
+	 * modified
+	 */
+	protected volatile RuleTable.EffectiveRules[] effectiveRulesCache = null;
+
+	/**
+	 * Maximum number of rule tables for which the effective rules of an
+	 * element are cached
+	 */
+	protected static final int MAX_EFFECTIVE_RULES_CACHES = 8;
+
 	private static final Pattern langPattern = Pattern
 			.compile("^\"(.*)\"@([a-zA-Z0-9\\-]{2,})$");
 
@@ -107,8 +123,17 @@ public abstract class InfoImpl
 		// Validate tagged values cache first
 		validateTaggedValuesCache();
 
-		// create clone
-		TaggedValues copy = options().taggedValueFactory(taggedValuesCache);
+		/*
+		 * create clone; the cache is shared with the clone until one of them
+		 * is modified, so that copying a model does not copy all tagged
+		 * values
+		 */
+		TaggedValues cache = taggedValuesCache;
+		if (!(cache instanceof TaggedValuesCopyOnWrite)) {
+			cache = new TaggedValuesCopyOnWrite(cache, options());
+			taggedValuesCache = cache;
+		}
+		TaggedValues copy = options().taggedValueFactory(cache);
 		return copy;
 	}
 
@@ -581,21 +606,26 @@ public abstract class InfoImpl
 		return s;
 	} // encodingRule()
 
+	/**
+	 * Determines whether the given rule applies to this model element. The
+	 * rule is evaluated against the compiled rule configuration (see
+	 * {@link Options#ruleTable()}); the rules contained in the encoding rules
+	 * that apply to this element are cached per rule table and platform,
+	 * until tagged values of the model change.
+	 * 
+	 * @see de.interactive_instruments.ShapeChange.Model.Info#matches(java.lang.String)
+	 */
 	public boolean matches(String rule) {
-		String encRule = null;
-		String[] ra = rule.toLowerCase().split("-", 4);
-		/*
-		 * test if the rule has the correct format
-		 */
-		if (ra.length != 4) {
-			result().addError(null, 21, rule);
-			return false;
-		}
+
+		RuleTable table = options().ruleTable();
+		RuleTable.Rule r = table.rule(rule);
+
 		/*
-		 * test if the rule is known, if not it cannot match
+		 * test if the rule has the correct format and is known, if not it
+		 * cannot match
 		 */
-		if (!options().hasRule(rule)) {
-			result().addError(null, 164, rule);
+		if (r.error() != 0) {
+			result().addError(null, r.error(), rule);
 			return false;
 		}
 
@@ -604,139 +634,125 @@ public abstract class InfoImpl
 		 * i.e. is 'enabled' for rules and not 'disabled' for requirements and
 		 * recommendations.
 		 */
-		if (ra[0].equals("rule") && !ra[1].equals("all")) {
-			if (!options().targetMode(options().targetClassName(rule))
-					.equals("enabled"))
-				return false;
-		}
-
-		if (ra[0].matches("re[cq]") && !ra[1].equals("all")) {
-			if (options().targetMode(options().targetClassName(rule))
-					.equals("disabled"))
-				return false;
-		}
+		if (!r.isActive())
+			return false;
 
-		if (ra[2].equals("all")) {
-			// nothing to test, applies to all elements
-		} else if (ra[2].equals("pkg")) {
-			if (!(this instanceof PackageInfo))
-				return false;
-		} else if (ra[2].equals("cls")) {
-			if (!(this instanceof ClassInfo))
-				return false;
-		} else if (ra[2].equals("prop")) {
-			if (!(this instanceof PropertyInfo))
-				return false;
-		} else if (ra[2].equals("rel")) {
-			if (!(this instanceof AssociationInfo))
-				return false;
-		} else if (ra[2].equals("op")) {
-			if (!(this instanceof OperationInfo))
-				return false;
-		} else {
-			result().addError(null, 21, rule);
+		if (!r.inScope(this))
 			return false;
-		}
 
-		/*
-		 * support
-		 */
-		String param;
-		if (rule.equals("rule-xsd-cls-local-enumeration")) {
-			param = options().parameter(Options.TargetXmlSchemaClass,
-					"enumStyle");
-			if (param != null && param.equalsIgnoreCase("local"))
-				return true;
-		}
-		if (rule.equals("rule-xsd-cls-local-basictype")) {
-			param = options().parameter(Options.TargetXmlSchemaClass,
-					"basicTypeStyle");
-			if (param != null && param.equalsIgnoreCase("local"))
-				return true;
-		}
-		if (rule.equals("rule-xsd-pkg-schematron")) {
-			param = options().parameter(Options.TargetXmlSchemaClass,
-					"schematron");
-			if (param != null && param.equalsIgnoreCase("true"))
-				return true;
-		}
-		if (rule.equals("rule-xsd-prop-exclude-derived")) {
-			param = options().parameter(Options.TargetXmlSchemaClass,
-					"includeDerivedProperties");
-			if (param != null && param.equalsIgnoreCase("false"))
-				return true;
-		}
+		// the rule may be enforced by a parameter
+		if (r.isEnforced())
+			return true;
 
 		/*
 		 * check if the rule has been configured for the encoding rule that
 		 * applies to the element
 		 */
-		if (ra[1].equals("all")) {
-			boolean res = false;
-
-			encRule = encodingRule("xsd");
-			if (encRule != null)
-				res = res || options().hasRule(rule, encRule);
-
-			encRule = encodingRule("json");
-			if (encRule != null)
-				res = res || options().hasRule(rule, encRule);
-
-			encRule = encodingRule("rdf");
-			if (encRule != null)
-				res = res || options().hasRule(rule, encRule);
+		if (r.appliesToAllPlatforms()) {
 
-			encRule = encodingRule("fc");
-			if (encRule != null)
-				res = res || options().hasRule(rule, encRule);
-
-			encRule = encodingRule("sch");
-			if (encRule != null)
-				res = res || options().hasRule(rule, encRule);
-
-			return res;
+			for (int platform : table.allPlatforms()) {
+				if (effectiveRules(table, platform).get(r.id()))
+					return true;
+			}
+			return false;
 
 		} else {
 
-			// determine if the applicable encoding rule contains the given rule
-			encRule = encodingRule(ra[1]).toLowerCase();
+			BitSet rules = effectiveRules(table, r.platform());
 
-			if (encRule != null) {
-
-				boolean encRuleHasRule = options().hasRule(rule, encRule);
-
-				if (encRuleHasRule) {
+			// TODO do something else if we do not find an encoding rule?
+			if (rules == RuleTable.NO_ENCODING_RULE)
+				return false;
 
-					// now cover cases in which a rule may be overwritten by a
-					// parameter
-					if (rule.equals("rule-xsd-all-no-documentation")) {
+			/*
+			 * if the encoding rule does not contain the given rule then there
+			 * is no match; otherwise the rule may still be overwritten by a
+			 * parameter
+			 */
+			return rules.get(r.id()) && !r.isOverwritten();
+		}
+	}
 
-						// if the XML Schema target parameter
-						// 'includeDocumentation' is set to true the rule is
-						// overwritten
-						param = options().parameter(
-								Options.TargetXmlSchemaClass,
-								"includeDocumentation");
-						if (param != null && param.equalsIgnoreCase("true"))
-							return false;
-						else
-							return true;
-					}
+	/**
+	 * @param table
+	 * @param platform
+	 *            index of the platform in the rule table
+	 * @return the ids of the rules contained in the encoding rule that applies
+	 *         to this element for the given platform
+	 */
+	protected BitSet effectiveRules(RuleTable table, int platform) {
 
-					// no special case applies:
-					return true;
+		/*
+		 * Encoding rules are given by tagged values and are inherited by the
+		 * contained elements, so any change of tagged values in the model
+		 * invalidates the cache. Without a ModelImpl changes cannot be
+		 * tracked, so nothing is cached.
+		 */
+		Model m = model();
+		if (!(m instanceof ModelImpl)) {
+			return table.rulesInEncodingRule(
+					encodingRule(table.platform(platform)));
+		}
 
-				} else {
+		long generation = ((ModelImpl) m).taggedValuesGeneration();
+		RuleTable.EffectiveRules[] caches = effectiveRulesCache;
+		RuleTable.EffectiveRules cache = null;
+		int index = -1;
 
-					// if the encoding rule does not contain the given rule then
-					// there is no match
-					return false;
+		if (caches != null) {
+			for (int i = 0; i < caches.length; i++) {
+				if (caches[i].table() == table) {
+					cache = caches[i];
+					index = i;
+					break;
 				}
 			}
-			// TODO do something else if we do not find an encoding rule?
 		}
 
-		return false;
+		if (cache == null || cache.model() != m
+				|| cache.taggedValuesGeneration() != generation) {
+
+			cache = table.createEffectiveRules(m, generation);
+
+			RuleTable.EffectiveRules[] tmp;
+			if (caches == null) {
+				tmp = new RuleTable.EffectiveRules[] { cache };
+			} else if (index >= 0) {
+				tmp = caches.clone();
+				tmp[index] = cache;
+			} else if (caches.length < MAX_EFFECTIVE_RULES_CACHES) {
+				tmp = new RuleTable.EffectiveRules[caches.length + 1];
+				System.arraycopy(caches, 0, tmp, 0, caches.length);
+				tmp[caches.length] = cache;
+			} else {
+				// drop the cache that was added first
+				tmp = new RuleTable.EffectiveRules[caches.length];
+				System.arraycopy(caches, 1, tmp, 0, caches.length - 1);
+				tmp[caches.length - 1] = cache;
+			}
+			effectiveRulesCache = tmp;
+		}
+
+		BitSet rules = cache.get(platform);
+
+		if (rules == null) {
+			rules = table.rulesInEncodingRule(
+					encodingRule(table.platform(platform)));
+			cache.put(platform, rules);
+		}
+		return rules;
+	}
+
+	/**
+	 * Must be called whenever tagged values of a model element are changed,
+	 * so that the effective rules cached by the elements of its model are
+	 * computed again.
+	 */
+	protected void taggedValuesChanged() {
+		Model m = model();
+		if (m instanceof ModelImpl) {
+			((ModelImpl) m).taggedValuesChanged();
+		}
 	}
 
 	/**
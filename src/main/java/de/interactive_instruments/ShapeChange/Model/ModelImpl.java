@@ -38,6 +38,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
 import de.interactive_instruments.ShapeChange.Options;
 import de.interactive_instruments.ShapeChange.ShapeChangeAbortException;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult;
@@ -54,6 +56,20 @@ public abstract class ModelImpl implements Model {
 	 */
 	protected boolean postprocessed = false;
 
+	/*
+	 * memoized generalization hierarchy; only used once the hierarchy can no
+	 * longer change as part of loading the model
+	 */
+	private TypeHierarchyIndex typeHierarchyIndex = null;
+	protected boolean typeHierarchyIndexEnabled = false;
+
+	/*
+	 * counts the changes of tagged values of the elements of this model; the
+	 * elements use it to invalidate the effective rules they have cached
+	 * (see InfoImpl)
+	 */
+	private final AtomicLong taggedValuesGeneration = new AtomicLong();
+
 	/*
 	 * the list of tagged values specified by ISO 19109 (2015)
 	 * 
@@ -143,6 +159,50 @@ public abstract class ModelImpl implements Model {
 			postprocessPackage(pi, true);
 		}
 		postprocessed = true;
+		typeHierarchyIndexEnabled = true;
+	}
+
+	/**
+	 * @return the index of the generalization hierarchy of this model, or
+	 *         <code>null</code> if the model has not been postprocessed yet
+	 *         (during loading, the hierarchy is still being established)
+	 */
+	public synchronized TypeHierarchyIndex typeHierarchyIndex() {
+
+		if (!typeHierarchyIndexEnabled)
+			return null;
+
+		if (typeHierarchyIndex == null)
+			typeHierarchyIndex = new TypeHierarchyIndex(this);
+
+		return typeHierarchyIndex;
+	}
+
+	/**
+	 * Discards the index of the generalization hierarchy. Must be called
+	 * whenever classes are added to or removed from the model, or when
+	 * supertypes, subtypes, ids or names of classes change. The index is
+	 * rebuilt lazily the next time it is needed.
+	 */
+	public synchronized void invalidateTypeHierarchyIndex() {
+		typeHierarchyIndex = null;
+	}
+
+	/**
+	 * @return the number of changes of tagged values of the elements of this
+	 *         model so far
+	 */
+	public long taggedValuesGeneration() {
+		return taggedValuesGeneration.get();
+	}
+
+	/**
+	 * Must be called whenever tagged values of an element of this model are
+	 * changed, so that the effective rules cached by the elements of this
+	 * model are computed again.
+	 */
+	public void taggedValuesChanged() {
+		taggedValuesGeneration.incrementAndGet();
 	}
 
 	private void postprocessFolConstraints() {
@@ -71,8 +71,41 @@ public abstract class OclConstraintImpl implements OclConstraint {
 	/** Comments contained in the constraint */
 	protected String[] comments = null;
 	
+	/** Set if parsing the constraint text has been deferred until the syntax
+	 * tree, the condition type or the comments are first inquired (see
+	 * {@link de.interactive_instruments.ShapeChange.Options#isLazyOclParsing()}).
+	 */
+	protected volatile boolean parsingDeferred = false;
+	
+	/** Parse the constraint text, setting the syntax tree, the condition type
+	 * and the comments. Implementations that defer parsing (by setting 
+	 * {@link #parsingDeferred}) must override this method. It is invoked at 
+	 * most once per deferral. */
+	protected void compile() {
+	} // compile()
+	
+	/** Parse the constraint text if that has been deferred. Constraints may
+	 * be inquired from multiple threads, so parsing is synchronized. */
+	protected void compileIfDeferred() {
+		if (parsingDeferred) {
+			synchronized (this) {
+				if (parsingDeferred) {
+					compile();
+					parsingDeferred = false;
+				}
+			}
+		}
+	} // compileIfDeferred()
+	
+	/** Find out whether parsing the constraint text has been deferred and
+	 * has not yet happened. */
+	public boolean isParsingDeferred() {
+		return parsingDeferred;
+	} // isParsingDeferred()
+	
 	/** Inquire the condition type. */
 	public ConditionType conditionType() {
+		compileIfDeferred();
 		return conditionType;
 	} // conditionType()
 
@@ -112,11 +145,13 @@ public abstract class OclConstraintImpl implements OclConstraint {
 	
 	/** If compilation went well, this returns the OCL syntax tree. */
 	public OclNode.Expression syntaxTree() {
+		compileIfDeferred();
 		return syntaxTree;
 	} // syntaxTree()
 	
 	/** The comments contained in the OCL expression */
 	public String[] comments() {
+		compileIfDeferred();
 		return comments;
 	}
 }
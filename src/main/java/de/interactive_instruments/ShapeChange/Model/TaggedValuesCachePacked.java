@@ -0,0 +1,388 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.interactive_instruments.ShapeChange.Options;
+
+/**
+ * Cache for tagged values that stores the tagged values of a model element in
+ * a single int array. Tag names and values are replaced by their ids in
+ * model-wide pools (see {@link Options#tagNamePool()} and
+ * {@link Options#tagValuePool()}), so each distinct string is stored only
+ * once.
+ * <p>
+ * The array contains one entry per tagged value: the id of the tag name, the
+ * number of values, followed by the ids of the values (-1 for a
+ * <code>null</code> value). Arrays are never modified once they have been
+ * assigned to a cache; each modification creates a new array. Copies of a
+ * cache (e.g. when a GenericModel is created, or via
+ * {@link Info#taggedValuesAll()}) can therefore share the array of the
+ * original, which makes copying cheap and avoids duplicate storage until
+ * one of them is modified.
+ */
+public class TaggedValuesCachePacked extends TaggedValuesImpl {
+
+	private static final int[] EMPTY = new int[0];
+
+	private final TaggedValuesPool names;
+	private final TaggedValuesPool values;
+
+	private int[] entries = EMPTY;
+
+	public TaggedValuesCachePacked(Options options) {
+		this.options = options;
+		this.names = options.tagNamePool();
+		this.values = options.tagValuePool();
+	}
+
+	public TaggedValuesCachePacked(TaggedValues original, Options options) {
+
+		this(options);
+
+		if (original instanceof TaggedValuesCachePacked
+				&& ((TaggedValuesCachePacked) original).names == names
+				&& ((TaggedValuesCachePacked) original).values == values) {
+
+			// share the (immutable) array of the original
+			entries = ((TaggedValuesCachePacked) original).entries;
+
+		} else if (original != null && !original.isEmpty()) {
+
+			initialize(original.asMap());
+		}
+	}
+
+	public TaggedValuesCachePacked(TaggedValues original, String tagList,
+			Options options) {
+
+		this(options);
+
+		if (original != null && !original.isEmpty()) {
+
+			// identify tags from tagList
+			SortedSet<String> tagsAsSet = new TreeSet<String>();
+			for (String tag : tagList.split(",")) {
+				if (tag.trim().length() != 0) {
+					tagsAsSet.add(tag.trim());
+				}
+			}
+
+			SortedMap<String, List<String>> tvs = new TreeMap<String, List<String>>();
+			for (String tag : tagsAsSet) {
+				String[] vals = original.get(tag);
+				if (vals != null) {
+					tvs.put(tag, Arrays.asList(vals));
+				}
+			}
+
+			initialize(tvs);
+		}
+	}
+
+	private void initialize(SortedMap<String, List<String>> tvs) {
+
+		int length = 0;
+		for (List<String> vals : tvs.values()) {
+			length += 2 + vals.size();
+		}
+
+		int[] result = new int[length];
+		int i = 0;
+		for (String tag : tvs.keySet()) {
+			List<String> vals = tvs.get(tag);
+			result[i++] = names.id(options.internalize(tag));
+			result[i++] = vals.size();
+			for (String v : vals) {
+				result[i++] = valueId(v);
+			}
+		}
+
+		entries = result;
+	}
+
+	private int valueId(String value) {
+		return value == null ? -1 : values.id(options.internalize(value));
+	}
+
+	private String value(int id) {
+		return id < 0 ? null : values.string(id);
+	}
+
+	/**
+	 * @param tag
+	 * @return the index of the entry for the given tag in the given array, -1
+	 *         if the array does not contain the tag
+	 */
+	private int indexOf(int[] es, String tag) {
+
+		int tagId = names.lookup(tag);
+
+		if (tagId >= 0) {
+			for (int i = 0; i < es.length; i += 2 + es[i + 1]) {
+				if (es[i] == tagId) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param es
+	 * @param tag
+	 * @return a copy of the given array without the entry for the given tag
+	 */
+	private int[] without(int[] es, String tag) {
+
+		int i = indexOf(es, tag);
+
+		if (i < 0) {
+			return es;
+		}
+
+		int entryLength = 2 + es[i + 1];
+		if (entryLength == es.length) {
+			return EMPTY;
+		}
+
+		int[] result = new int[es.length - entryLength];
+		System.arraycopy(es, 0, result, 0, i);
+		System.arraycopy(es, i + entryLength, result, i,
+				es.length - i - entryLength);
+		return result;
+	}
+
+	/**
+	 * @param es
+	 * @param tag
+	 * @param vals
+	 * @return a copy of the given array with an additional entry for the
+	 *         given tag and values
+	 */
+	private int[] with(int[] es, String tag, List<String> vals) {
+
+		int[] result = Arrays.copyOf(es, es.length + 2 + vals.size());
+		int i = es.length;
+		result[i++] = names.id(options.internalize(tag));
+		result[i++] = vals.size();
+		for (String v : vals) {
+			result[i++] = valueId(v);
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		int[] es = entries;
+		int count = 0;
+		for (int i = 0; i < es.length; i += 2 + es[i + 1]) {
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return entries.length == 0;
+	}
+
+	@Override
+	public boolean containsKey(String tag) {
+		return indexOf(entries, tag) >= 0;
+	}
+
+	@Override
+	public String[] get(String tag) {
+
+		int[] es = entries;
+		int i = indexOf(es, tag);
+
+		if (i < 0) {
+			return null;
+		}
+
+		String[] result = new String[es[i + 1]];
+		for (int j = 0; j < result.length; j++) {
+			result[j] = value(es[i + 2 + j]);
+		}
+		return result;
+	}
+
+	@Override
+	public String getFirstValue(String tag) {
+
+		int[] es = entries;
+		int i = indexOf(es, tag);
+
+		if (i < 0 || es[i + 1] == 0) {
+			return null;
+		}
+		return value(es[i + 2]);
+	}
+
+	@Override
+	public SortedMap<String, List<String>> asMap() {
+
+		SortedMap<String, List<String>> result = new TreeMap<String, List<String>>();
+
+		int[] es = entries;
+		for (int i = 0; i < es.length; i += 2 + es[i + 1]) {
+			List<String> vals = new ArrayList<String>(es[i + 1]);
+			for (int j = 0; j < es[i + 1]; j++) {
+				vals.add(value(es[i + 2 + j]));
+			}
+			result.put(names.string(es[i]), vals);
+		}
+		return result;
+	}
+
+	@Override
+	public SortedSet<String> keySet() {
+
+		SortedSet<String> result = new TreeSet<String>();
+
+		int[] es = entries;
+		for (int i = 0; i < es.length; i += 2 + es[i + 1]) {
+			result.add(names.string(es[i]));
+		}
+		return result;
+	}
+
+	@Override
+	public void put(String tag, String value) {
+		if (tag != null) {
+			List<String> vals = new ArrayList<String>(1);
+			vals.add(value);
+			put(tag, vals);
+		}
+	}
+
+	@Override
+	public void put(String tag, String[] values) {
+		if (tag != null) {
+			put(tag, Arrays.asList(values));
+		}
+	}
+
+	@Override
+	public void put(String tag, List<String> values) {
+		if (tag != null) {
+			entries = with(without(entries, tag), tag, values);
+		}
+	}
+
+	@Override
+	public void add(String tag, String value) {
+
+		if (tag == null) {
+			return;
+		}
+
+		int[] es = entries;
+		int i = indexOf(es, tag);
+
+		if (i < 0) {
+
+			List<String> vals = new ArrayList<String>(1);
+			vals.add(value);
+			entries = with(es, tag, vals);
+
+		} else {
+
+			// insert the value at the end of the existing entry
+			int end = i + 2 + es[i + 1];
+			int[] result = new int[es.length + 1];
+			System.arraycopy(es, 0, result, 0, end);
+			result[end] = valueId(value);
+			System.arraycopy(es, end, result, end + 1, es.length - end);
+			result[i + 1]++;
+			entries = result;
+		}
+	}
+
+	@Override
+	public SortedMap<String, String> getFirstValues() {
+
+		SortedMap<String, String> result = new TreeMap<String, String>();
+
+		int[] es = entries;
+		for (int i = 0; i < es.length; i += 2 + es[i + 1]) {
+			result.put(names.string(es[i]),
+					es[i + 1] == 0 ? null : value(es[i + 2]));
+		}
+		return result;
+	}
+
+	@Override
+	public SortedMap<String, String> getFirstValues(String tagList) {
+
+		SortedMap<String, String> result = new TreeMap<String, String>();
+
+		if (tagList != null && !tagList.trim().isEmpty()) {
+
+			for (String tag : tagList.split(",")) {
+				tag = tag.trim();
+				if (tag.length() != 0 && containsKey(tag)) {
+					result.put(tag, getFirstValue(tag));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void remove(String tvName) {
+		if (tvName != null) {
+			entries = without(entries, tvName);
+		}
+	}
+
+	@Override
+	public void remove(Set<String> tvNames) {
+		if (tvNames != null) {
+			int[] es = entries;
+			for (String tvName : tvNames) {
+				es = without(es, tvName);
+			}
+			entries = es;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import de.interactive_instruments.ShapeChange.Options;
+
+/**
+ * Tagged values that can be copied without copying their content. All
+ * copies created via {@link #share()} read the same underlying tagged values;
+ * the first modification of a copy (or of the original, once it has been
+ * shared) replaces the underlying tagged values of that copy with a private
+ * copy, created with {@link Options#taggedValueFactory(TaggedValues)}.
+ * <p>
+ * InfoImpl uses this class to implement {@link Info#taggedValuesAll()}, which
+ * is called for every model element when a GenericModel is created. Copies
+ * of a model therefore only store the tagged values of those elements whose
+ * tagged values are modified, for example by a transformation. The model
+ * elements themselves are still copied.
+ */
+public class TaggedValuesCopyOnWrite extends TaggedValuesImpl {
+
+	/**
+	 * the underlying tagged values; never modified once {@link #shared} has
+	 * been set
+	 */
+	private volatile TaggedValues delegate;
+
+	private boolean shared = false;
+
+	/**
+	 * @param delegate
+	 *            the tagged values to wrap; they must no longer be modified
+	 *            directly
+	 * @param options
+	 */
+	public TaggedValuesCopyOnWrite(TaggedValues delegate, Options options) {
+		this.options = options;
+		if (delegate instanceof TaggedValuesCopyOnWrite) {
+			TaggedValuesCopyOnWrite other = (TaggedValuesCopyOnWrite) delegate;
+			synchronized (other) {
+				other.shared = true;
+				this.delegate = other.delegate;
+			}
+			this.shared = true;
+		} else {
+			this.delegate = delegate;
+		}
+	}
+
+	/**
+	 * @return a copy of these tagged values that shares the underlying tagged
+	 *         values until one of them is modified
+	 */
+	public synchronized TaggedValuesCopyOnWrite share() {
+		return new TaggedValuesCopyOnWrite(this, options);
+	}
+
+	/**
+	 * @return the underlying tagged values, copied first if they are shared
+	 */
+	private TaggedValues writable() {
+		if (shared) {
+			delegate = options.taggedValueFactory(delegate);
+			shared = false;
+		}
+		return delegate;
+	}
+
+	@Override
+	public int size() {
+		return delegate.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return delegate.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(String tag) {
+		return delegate.containsKey(tag);
+	}
+
+	@Override
+	public String[] get(String tag) {
+		return delegate.get(tag);
+	}
+
+	@Override
+	public String getFirstValue(String tag) {
+		return delegate.getFirstValue(tag);
+	}
+
+	@Override
+	public SortedMap<String, List<String>> asMap() {
+		return delegate.asMap();
+	}
+
+	@Override
+	public SortedSet<String> keySet() {
+		return delegate.keySet();
+	}
+
+	@Override
+	public SortedMap<String, String> getFirstValues() {
+		return delegate.getFirstValues();
+	}
+
+	@Override
+	public SortedMap<String, String> getFirstValues(String tagList) {
+		return delegate.getFirstValues(tagList);
+	}
+
+	@Override
+	public synchronized void put(String tag, String value) {
+		writable().put(tag, value);
+	}
+
+	@Override
+	public synchronized void put(String tag, String[] values) {
+		writable().put(tag, values);
+	}
+
+	@Override
+	public synchronized void put(String tag, List<String> values) {
+		writable().put(tag, values);
+	}
+
+	@Override
+	public synchronized void add(String tag, String value) {
+		writable().add(tag, value);
+	}
+
+	@Override
+	public synchronized void remove(String tvName) {
+		writable().remove(tvName);
+	}
+
+	@Override
+	public synchronized void remove(Set<String> tvNames) {
+		writable().remove(tvNames);
+	}
+}
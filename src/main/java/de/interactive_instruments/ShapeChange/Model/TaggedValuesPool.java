@@ -0,0 +1,133 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary that assigns int ids to strings. It is used by
+ * {@link TaggedValuesCachePacked} for the names and the values of tagged
+ * values, so that each distinct string is stored only once for the whole
+ * model and each tagged value can be represented by ints.
+ * <p>
+ * Ids are never reused; strings are kept until the pool is discarded. Lookups
+ * do not block; new strings are added under a lock. This allows model
+ * elements in different threads (e.g. parallel targets or transformation
+ * branches) to share the pool.
+ */
+public class TaggedValuesPool {
+
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/**
+	 * strings by id; replaced (not modified) when it needs to grow, so that
+	 * readers always see a consistent array
+	 */
+	private volatile String[] strings;
+
+	private int size = 0;
+
+	public TaggedValuesPool() {
+		this(256);
+	}
+
+	public TaggedValuesPool(int initialCapacity) {
+		int capacity = Math.max(16, initialCapacity);
+		ids = new ConcurrentHashMap<String, Integer>(capacity);
+		strings = new String[capacity];
+	}
+
+	/**
+	 * @param s
+	 * @return the id of the given string; if the string is not contained in
+	 *         the pool yet, it is added
+	 */
+	public int id(String s) {
+
+		Integer id = ids.get(s);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+
+			id = ids.get(s);
+			if (id != null) {
+				return id;
+			}
+
+			if (size == strings.length) {
+				strings = Arrays.copyOf(strings, size * 2);
+			}
+			strings[size] = s;
+			id = size++;
+
+			/*
+			 * publish the id only after the string has been stored, so that
+			 * readers that find the id also find the string
+			 */
+			ids.put(s, id);
+			return id;
+		}
+	}
+
+	/**
+	 * @param s
+	 * @return the id of the given string, -1 if the string is not contained in
+	 *         the pool
+	 */
+	public int lookup(String s) {
+
+		if (s == null) {
+			return -1;
+		}
+
+		Integer id = ids.get(s);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 * @return the string with the given id
+	 */
+	public String string(int id) {
+		return strings[id];
+	}
+
+	/**
+	 * @return the number of strings in the pool
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
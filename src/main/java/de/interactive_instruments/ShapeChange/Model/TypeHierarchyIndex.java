@@ -0,0 +1,261 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Memoizes the generalization hierarchy of the classes in a model, so that
+ * repeated calls of {@link ClassInfo#isKindOf(String)},
+ * {@link ClassInfo#isSubtype(ClassInfo)} and
+ * {@link ClassInfo#subtypesInCompleteSubtypeHierarchy()} do not walk the
+ * hierarchy again and again.
+ * <p>
+ * Each class id that is encountered gets an ordinal number. The transitive
+ * closures of the supertypes and subtypes of a class are stored as bit sets
+ * over these ordinals. They are computed lazily, the first time they are
+ * needed, and reused for all classes further up or down in the hierarchy.
+ * <p>
+ * The index reflects the state of the model at the time the closures were
+ * computed. It must therefore only be used once the model has been
+ * postprocessed, and it must be discarded whenever the hierarchy changes (see
+ * {@link ModelImpl#invalidateTypeHierarchyIndex()}).
+ */
+public class TypeHierarchyIndex {
+
+	protected Model model;
+
+	/**
+	 * key: class id, value: ordinal of the class in the index
+	 */
+	protected Map<String, Integer> ordinalById = new HashMap<String, Integer>();
+
+	/**
+	 * class ids by ordinal
+	 */
+	protected List<String> idByOrdinal = new ArrayList<String>();
+
+	/**
+	 * key: class name, value: ordinals of all classes with that name that
+	 * have been resolved so far
+	 */
+	protected Map<String, BitSet> ordinalsByName = new HashMap<String, BitSet>();
+
+	/**
+	 * key: class ordinal, value: ordinals of all direct and indirect supertypes
+	 */
+	protected Map<Integer, BitSet> ancestors = new HashMap<Integer, BitSet>();
+
+	/**
+	 * key: class ordinal, value: ordinals of all direct and indirect subtypes
+	 */
+	protected Map<Integer, BitSet> descendants = new HashMap<Integer, BitSet>();
+
+	public TypeHierarchyIndex(Model model) {
+		this.model = model;
+	}
+
+	/**
+	 * @param ci
+	 * @param supertypeName
+	 * @return <code>true</code> if one of the direct or indirect supertypes of
+	 *         the given class has the given name, else <code>false</code>
+	 */
+	public synchronized boolean isKindOf(ClassInfo ci, String supertypeName) {
+
+		BitSet anc = ancestors(ordinal(ci));
+
+		/*
+		 * all supertypes have been resolved while computing the closure, thus
+		 * their names are known at this point
+		 */
+		BitSet named = ordinalsByName.get(supertypeName);
+
+		return named != null && anc.intersects(named);
+	}
+
+	/**
+	 * @param ci
+	 * @param supertype
+	 * @return <code>true</code> if ci is the given supertype or a direct or
+	 *         indirect subtype of it, else <code>false</code>
+	 */
+	public synchronized boolean isSubtype(ClassInfo ci, ClassInfo supertype) {
+
+		if (ci == supertype)
+			return true;
+		if (supertype == null)
+			return false;
+
+		Integer superOrdinal = ordinalById.get(supertype.id());
+
+		return superOrdinal != null
+				&& ancestors(ordinal(ci)).get(superOrdinal);
+	}
+
+	/**
+	 * @param ci
+	 * @return the ids of all direct and indirect subtypes of the given class;
+	 *         the set is a new instance and can be modified by the caller
+	 */
+	public synchronized SortedSet<String> subtypesInCompleteSubtypeHierarchy(
+			ClassInfo ci) {
+
+		BitSet desc = descendants(ordinal(ci));
+
+		SortedSet<String> result = new TreeSet<String>();
+		for (int i = desc.nextSetBit(0); i >= 0; i = desc.nextSetBit(i + 1)) {
+			result.add(idByOrdinal.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @param subtype
+	 * @param supertype
+	 * @return <code>true</code> if subtype is the same class as supertype or
+	 *         can be reached from supertype by following the subtype
+	 *         relationships, else <code>false</code>
+	 */
+	public synchronized boolean isInSubtypeHierarchy(ClassInfo subtype,
+			ClassInfo supertype) {
+
+		if (subtype.id().equals(supertype.id()))
+			return true;
+
+		Integer subOrdinal = ordinalById.get(subtype.id());
+
+		if (subOrdinal == null) {
+			/*
+			 * the subtype is not known yet; computing the closure of the
+			 * supertype will register it if it is part of the hierarchy
+			 */
+			BitSet desc = descendants(ordinal(supertype));
+			subOrdinal = ordinalById.get(subtype.id());
+			return subOrdinal != null && desc.get(subOrdinal);
+		}
+
+		return descendants(ordinal(supertype)).get(subOrdinal);
+	}
+
+	protected int ordinal(ClassInfo ci) {
+
+		int ordinal = ordinal(ci.id());
+
+		String name = ci.name();
+		if (name != null) {
+			BitSet named = ordinalsByName.get(name);
+			if (named == null) {
+				named = new BitSet();
+				ordinalsByName.put(name, named);
+			}
+			named.set(ordinal);
+		}
+		return ordinal;
+	}
+
+	protected int ordinal(String id) {
+
+		Integer ordinal = ordinalById.get(id);
+
+		if (ordinal == null) {
+			ordinal = idByOrdinal.size();
+			idByOrdinal.add(id);
+			ordinalById.put(id, ordinal);
+		}
+		return ordinal;
+	}
+
+	protected BitSet ancestors(int ordinal) {
+
+		BitSet result = ancestors.get(ordinal);
+
+		if (result == null) {
+
+			result = new BitSet();
+			/*
+			 * register the (still incomplete) closure before descending, so
+			 * that a cyclic hierarchy does not result in endless recursion
+			 */
+			ancestors.put(ordinal, result);
+
+			ClassInfo ci = model.classById(idByOrdinal.get(ordinal));
+
+			if (ci != null && ci.supertypes() != null) {
+				for (String supertypeId : ci.supertypes()) {
+					ClassInfo sci = model.classById(supertypeId);
+					if (sci == null)
+						continue;
+					int superOrdinal = ordinal(sci);
+					result.set(superOrdinal);
+					result.or(ancestors(superOrdinal));
+				}
+			}
+		}
+		return result;
+	}
+
+	protected BitSet descendants(int ordinal) {
+
+		BitSet result = descendants.get(ordinal);
+
+		if (result == null) {
+
+			result = new BitSet();
+			descendants.put(ordinal, result);
+
+			ClassInfo ci = model.classById(idByOrdinal.get(ordinal));
+
+			if (ci != null && ci.subtypes() != null) {
+				for (String subtypeId : ci.subtypes()) {
+					ClassInfo sci = model.classById(subtypeId);
+					/*
+					 * ids of subtypes that cannot be resolved are part of the
+					 * result nevertheless
+					 */
+					int subOrdinal = sci == null ? ordinal(subtypeId)
+							: ordinal(sci);
+					result.set(subOrdinal);
+					if (sci != null)
+						result.or(descendants(subOrdinal));
+				}
+			}
+		}
+		return result;
+	}
+}
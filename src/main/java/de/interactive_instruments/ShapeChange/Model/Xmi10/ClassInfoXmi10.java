@@ -436,7 +436,7 @@ public class ClassInfoXmi10 extends ClassInfoImpl implements ClassInfo {
 					// Compile. If o.k., store away ...
 					OclConstraintXmi10 ocl = new OclConstraintXmi10(doc, this,
 							c);
-					if (ocl.syntaxTree() != null)
+					if (ocl.isParsingDeferred() || ocl.syntaxTree() != null)
 						constraints.add(ocl);
 					// If the constraint has a name, add it to the filter which
 					// blocks inheritance of constraints
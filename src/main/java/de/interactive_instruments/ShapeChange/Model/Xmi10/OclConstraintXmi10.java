@@ -32,7 +32,6 @@
 
 package de.interactive_instruments.ShapeChange.Model.Xmi10;
 
-import java.io.StringReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,12 +69,6 @@ public class OclConstraintXmi10 extends OclConstraintImpl implements
 		contextModelElmtType = ModelElmtContextType.CLASS;
 		contextModelElmt = ci;
 			
-		// Compiler
-		syntaxTree = null;
-		Readable instream = new StringReader(constraintText);
-		MessageCollection messages;
-		OclParser parse = new OclParser();
-		
 		// Obtain the name of the constraint if any
 		constraintName = null;
 		Pattern pat = Pattern.compile("inv\\s*(\\w*)\\s*:");
@@ -89,10 +82,25 @@ public class OclConstraintXmi10 extends OclConstraintImpl implements
 			constraintName = constraintText.trim();
 		this.constraintText = constraintText;
 
+		// Compiler - parsing may be deferred until first access
+		if(document.options.isLazyOclParsing())
+			parsingDeferred = true;
+		else
+			compile();
+	}
+
+	/** Parse the constraint text in its class context. */
+	protected void compile() {
+		
+		// Compiler
+		syntaxTree = null;
+		MessageCollection messages;
+		OclParser parse = new OclParser();
+		
 		// Parse the constraint
-		document.result.addDebug(null, 10006, ci.name(), constraintName);
+		document.result.addDebug(null, 10006, contextClass.name(), constraintName);
 		syntaxTree = 
-			parse.parseOcl(instream, contextModelElmt);
+			parse.parseOcl(constraintText, contextModelElmt);
 		
 		// Get condition type.
 		if(syntaxTree!=null)
@@ -116,7 +124,7 @@ public class OclConstraintXmi10 extends OclConstraintImpl implements
 		if(parse.getNumberOfMessages()>0) {
 			ShapeChangeResult.MessageContext messctx =
 				document.result.addError(
-					null, 133, ci.name(), constraintName, "class");
+					null, 133, contextClass.name(), constraintName, "class");
 			if(messctx!=null) {
 				messages = parse.getMessageCollection();
 				MessageCollection.Message[] msg = messages.getMessages();
@@ -33,14 +33,20 @@
 package de.interactive_instruments.ShapeChange.Ocl;
 
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -117,6 +123,41 @@ public class OclParser {
 	// Final OclNode tree
 	OclNode.Expression oclNodeTree = null;
 	
+	// Result of the first phase for an OCL text that was parsed without 
+	// errors. It does not depend on the model, so it can be shared by all 
+	// constraints with the same text - in particular by the copies of a 
+	// constraint in the models created by transformations. Only the second
+	// phase (connecting to the model) is executed for each of them.
+	static class SyntaxTree {
+		final TempNode.Expression tree;
+		final String[] comments;
+		SyntaxTree( TempNode.Expression tree, String[] comments ) {
+			this.tree = tree; this.comments = comments;
+		}
+	}
+	
+	// Maximum number of syntax trees kept in the cache
+	static final int MAX_CACHED_SYNTAX_TREES = 10000;
+	
+	// Cache of syntax trees, by OCL text (prefixed by condition type and 
+	// name, if given separately), least recently used first
+	static final Map<String,SyntaxTree> syntaxTrees = 
+		Collections.synchronizedMap( 
+			new LinkedHashMap<String,SyntaxTree>( 256, 0.75f, true ) {
+				private static final long serialVersionUID = 1L;
+				protected boolean removeEldestEntry(
+					Map.Entry<String,SyntaxTree> eldest ) {
+					return size() > MAX_CACHED_SYNTAX_TREES;
+				}
+			} );
+	
+	// Statistics of the syntax tree cache and of the time spent in both 
+	// phases (in nanoseconds)
+	static final AtomicLong cacheHits = new AtomicLong();
+	static final AtomicLong cacheMisses = new AtomicLong();
+	static final AtomicLong syntaxNanos = new AtomicLong();
+	static final AtomicLong connectNanos = new AtomicLong();
+	
 	// Additional operations added by addOperation function
 	static class AddedOperationSignature {
 		String name;
@@ -244,6 +285,104 @@ public class OclParser {
 	}
 
 	
+	/**
+	 * <p>Perform a full parse of the given OCL expression, like 
+	 * {@link #parseOcl(Readable, Info)}. If an expression with the same text
+	 * has already been parsed without errors, its syntax tree is reused and
+	 * only connected to the model.</p>
+	 * @param ocl The OCL expression
+	 * @param ctx Object context in UML model, mostly ClassInfo
+	 * @return OclNode.OclExpression object being the starting point of a
+	 * syntax tree. In case of error this is null.
+	 */
+	public OclNode.Expression parseOcl( String ocl, Info ctx ) {
+		return parseOclCached( ocl, ctx, null, null, false );
+	}
+	
+	/**
+	 * <p>Perform a full parse of the given pure OCL statement, like
+	 * {@link #parseOcl(Readable, Info, String, String)}. If a statement with
+	 * the same text, condition type and name has already been parsed without
+	 * errors, its syntax tree is reused and only connected to the model.</p>
+	 * @param ocl The OCL statement
+	 * @param ctx Object context in UML model, mostly ClassInfo
+	 * @param type Condition type, such as inv, init, derive ...
+	 * @param name The name of the constraint (may be empty) 
+	 * @return OclNode.OclExpression object being the starting point of a
+	 * syntax tree. In case of error this is null.
+	 */
+	public OclNode.Expression parseOcl( 
+		String ocl, Info ctx, String type, String name ) {
+		return parseOclCached( ocl, ctx, type, name, true );
+	}
+	
+	private OclNode.Expression parseOclCached( 
+		String ocl, Info ctx, String type, String name, boolean typed ) {
+		
+		// Perform the required initializations
+		inLex = null;
+		messages = new MessageCollection();
+		comments = new ArrayList<String>( 1 );
+		tempNodeTree = null;
+		oclNodeTree = null;
+		
+		String key = typed ? type + "\0" + name + "\0" + ocl : ocl;
+		SyntaxTree cached = ocl==null ? null : syntaxTrees.get( key );
+		
+		if( cached!=null ) {
+			cacheHits.incrementAndGet();
+			tempNodeTree = cached.tree;
+			comments.addAll( Arrays.asList( cached.comments ) );
+		} else {
+			// First phase: Create the TempNode syntax tree
+			cacheMisses.incrementAndGet();
+			long start = System.nanoTime();
+			inLex = new Lexer( new StringReader( ocl ) );
+			tempNodeTree = 
+				typed ? parseExpression( type, name ) : parseExpression();
+			syntaxNanos.addAndGet( System.nanoTime()-start );
+			if( messages.getNumberOfMessages()==0 && tempNodeTree!=null )
+				syntaxTrees.put( key, 
+					new SyntaxTree( tempNodeTree, getComments() ) );
+		}
+
+		// If this was o.k., trigger the second phase
+		if( messages.getNumberOfMessages()==0 ) {
+			// Connect to the model
+			long start = System.nanoTime();
+			oclNodeTree = tempNodeTree.connectToModelWithContext( this, ctx );
+			connectNanos.addAndGet( System.nanoTime()-start );
+			if( messages.getNumberOfMessages()!=0 )
+				oclNodeTree = null;
+		}
+		return oclNodeTree;
+	}
+	
+	/**
+	 * <p>Inquire the statistics of the syntax tree cache used by 
+	 * {@link #parseOcl(String, Info)} and 
+	 * {@link #parseOcl(String, Info, String, String)}, accumulated since the
+	 * last call of {@link #resetStatistics()}.</p>
+	 * @return Array with the number of cache hits, the number of cache 
+	 * misses, the time spent in creating syntax trees and the time spent in
+	 * connecting them to the model (both in milliseconds).
+	 */
+	public static long[] getStatistics() {
+		return new long[] { cacheHits.get(), cacheMisses.get(), 
+			syntaxNanos.get()/1000000, connectNanos.get()/1000000 };
+	}
+	
+	/**
+	 * Resets the statistics of the syntax tree cache to zero. The cached
+	 * syntax trees are kept.
+	 */
+	public static void resetStatistics() {
+		cacheHits.set( 0 );
+		cacheMisses.set( 0 );
+		syntaxNanos.set( 0 );
+		connectNanos.set( 0 );
+	}
+	
 	/**
 	 * This inquires the number of comments encountered in the OCL expression.
 	 * @return Number of comments in expression.
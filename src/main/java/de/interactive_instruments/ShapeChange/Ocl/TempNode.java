@@ -203,21 +203,28 @@ abstract class TempNode {
 				return null;				
 			}
 			
+			// The syntax tree may be shared by multiple constraints (see
+			// OclParser), so the context is established on a copy of this
+			// node, leaving the tree itself unchanged.
+			Expression bound = 
+				new Expression( expressionType, expressionName, expression );
+			bound.sourceReferences = sourceReferences;
+
 			// Establish the class and model context
-			classContext = null;
+			bound.classContext = null;
 			if( ctx instanceof ClassInfo ) {
-				classContext = (ClassInfo)ctx;
+				bound.classContext = (ClassInfo)ctx;
 			} else if( ctx instanceof PropertyInfo ) {
-				classContext = ((PropertyInfo)ctx).inClass();
+				bound.classContext = ((PropertyInfo)ctx).inClass();
 			} else if( ctx instanceof OperationInfo ) {
 				// TODO To-class function currently not available
-				classContext = null;
+				bound.classContext = null;
 			}
-			Model model = classContext.model();
-			generalContext = ctx;
+			Model model = bound.classContext.model();
+			bound.generalContext = ctx;
 
 			// Pass to general connect function
-			OclNode res = connectToModel( p, model, null );
+			OclNode res = bound.connectToModel( p, model, null );
 			if( res!=null )
 				return (OclNode.Expression) res;
 			else
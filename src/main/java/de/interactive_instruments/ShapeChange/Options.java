@@ -70,10 +70,15 @@ import de.interactive_instruments.ShapeChange.Model.StereotypesCacheSet;
 import de.interactive_instruments.ShapeChange.Model.TaggedValues;
 import de.interactive_instruments.ShapeChange.Model.TaggedValuesCacheArray;
 import de.interactive_instruments.ShapeChange.Model.TaggedValuesCacheMap;
+import de.interactive_instruments.ShapeChange.Model.TaggedValuesCachePacked;
+import de.interactive_instruments.ShapeChange.Model.TaggedValuesCopyOnWrite;
+import de.interactive_instruments.ShapeChange.Model.TaggedValuesPool;
 import de.interactive_instruments.ShapeChange.Target.Target;
 import de.interactive_instruments.ShapeChange.Target.FeatureCatalogue.FeatureCatalogue;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
-public class Options {
+public class Options implements Cloneable {
 
 	//
 	// Constants
@@ -224,6 +229,11 @@ public class Options {
 	 * maximum amount of memory you can assign to the Java process in which
 	 * ShapeChange is running. On Windows machines that were used for
 	 * development, that limit was near 1.1GB.
+	 * <p>
+	 * If set to “packed”, tagged values are stored as int arrays that refer to
+	 * model-wide pools of tag names and values. This has the smallest memory
+	 * footprint; copies of a model (e.g. for transformations) share the tagged
+	 * values of the original until they are modified.
 	 */
 	public static final String PARAM_TAGGED_VALUE_IMPL = "taggedValueImplementation";
 
@@ -251,6 +261,136 @@ public class Options {
 	 */
 	public static final String PARAM_LOAD_CONSTRAINT_FOR_SEL_SCHEMAS_ONLY = "loadConstraintsForSelectedSchemasOnly";
 
+	/**
+	 * Set this input parameter to <code>true</code> to execute the targets
+	 * that depend on the same model provider (the input or a transformer)
+	 * concurrently. Each target is executed with its own view of the
+	 * configuration (see {@link #createProcessView(ProcessConfiguration)}).
+	 * Targets of the same class are still executed one after another, because
+	 * targets (especially SingleTargets) keep state on the class level.
+	 * <p>
+	 * Parallel execution is only supported for GenericModel instances; targets
+	 * that directly process an EA or XMI model are always executed
+	 * sequentially. Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_TARGET_EXECUTION = "parallelTargetExecution";
+
+	/**
+	 * Maximum number of threads that are used for parallel processing. Default
+	 * is the number of processors available to the Java virtual machine.
+	 */
+	public static final String PARAM_MAX_THREADS = "maxThreads";
+
+	/**
+	 * Set this input parameter to <code>true</code> to execute sibling
+	 * transformations - each together with its targets and dependent
+	 * transformations - concurrently. The number of branches that are
+	 * processed at the same time is limited by {@value #PARAM_MAX_THREADS}
+	 * and by the available heap (see
+	 * {@value #PARAM_TRANSFORMATION_BRANCH_MEMORY}). Default is
+	 * <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_TRANSFORMATION = "parallelTransformation";
+
+	/**
+	 * Heap (in megabytes) that must be free before an additional
+	 * transformation branch is started in parallel mode. If this input
+	 * parameter is not set, the required heap is estimated from the size of
+	 * the model copies that are created for the branches.
+	 */
+	public static final String PARAM_TRANSFORMATION_BRANCH_MEMORY = "transformationBranchMemory";
+
+	/**
+	 * Set this input parameter to <code>true</code> to write messages to the
+	 * log file as they arrive, instead of keeping all of them in memory until
+	 * the end of the conversion. The log file is completed (result code, end
+	 * time, result files) and transformed to HTML at the end of the run.
+	 * Default is <code>false</code>.
+	 */
+	public static final String PARAM_STREAMING_LOG = "streamingLog";
+
+	/**
+	 * Set this input parameter to <code>true</code> to write the messages of
+	 * a streaming log (see {@value #PARAM_STREAMING_LOG}) also as JSON lines,
+	 * to a file next to the log file with file extension '.jsonl'. Default is
+	 * <code>false</code>.
+	 */
+	public static final String PARAM_LOG_JSON = "logJson";
+
+	/**
+	 * Maximum number of distinct messages that are remembered to suppress
+	 * repeated messages (messages starting with '??') in a streaming log (see
+	 * {@value #PARAM_STREAMING_LOG}). If the limit is reached, the least
+	 * recently logged messages are forgotten. Default is 100000.
+	 */
+	public static final String PARAM_LOG_DUPLICATE_CHECK_SIZE = "logDuplicateCheckSize";
+
+	/**
+	 * Set this input parameter to <code>true</code> to measure the duration,
+	 * heap change and allocations of loading the model and of every
+	 * transformation, target step (initialise, process, write, writeAll) and
+	 * deferred output write, as well as the processing time of each class by
+	 * each target. Each measurement is logged (info level) and reported to
+	 * the StatusBoard; all of them are written as JSON to a file next to the
+	 * log file with file extension '.profile.json'. Default is
+	 * <code>false</code>.
+	 */
+	public static final String PARAM_PROCESS_METRICS = "processMetrics";
+
+	/**
+	 * Path of a directory in which binary snapshots of postprocessed input
+	 * models are kept. A snapshot is identified by a hash of the input file
+	 * and of the input configuration. If a snapshot for the current input
+	 * exists, the model is restored from it, instead of loading and
+	 * postprocessing the input file; otherwise, a snapshot is created once
+	 * the model has been loaded and postprocessed. Only applies if the model
+	 * is loaded from a file; not used if diagrams shall be loaded or if a
+	 * 'transformer' is configured. Changes of external sources read while
+	 * loading the model (for example constraint files referenced by input
+	 * parameters) are not detected; remove the snapshot in that case. By
+	 * default, no snapshots are used.
+	 */
+	public static final String PARAM_MODEL_CACHE_DIRECTORY = "modelCacheDirectory";
+
+	/**
+	 * Set this input parameter to <code>true</code> to execute a target only
+	 * for the schemas that changed since the previous run of the target with
+	 * the same output directory. Changes are detected by comparing
+	 * fingerprints of the schemas (see {@link SchemaFingerprints}), which are
+	 * kept in the output directory. A target that creates a single output for
+	 * all schemas (a SingleTarget) is executed for all schemas if one of them
+	 * changed. Targets without output directory are always executed. If a
+	 * target logs errors, its fingerprints are not updated, so that the next
+	 * run regenerates the output. Default is <code>false</code>.
+	 */
+	public static final String PARAM_INCREMENTAL_REGENERATION = "incrementalRegeneration";
+
+	/**
+	 * Set this input parameter to <code>true</code> to write the XML output of
+	 * DOM based targets (XML Schema, Schematron, RDF, Definitions, code list
+	 * dictionaries, Excel mapping, application configuration and replication
+	 * schema) with a StAX based writer (see {@link StreamingXmlWriter}) instead
+	 * of the Xalan serializer. Targets that create one document per class then
+	 * write each document as soon as it is complete, instead of keeping all of
+	 * them in memory until the end. Default is <code>false</code>.
+	 */
+	public static final String PARAM_STREAMING_XML_OUTPUT = "streamingXmlOutput";
+
+	/**
+	 * Set this input parameter to <code>true</code> to defer parsing OCL
+	 * constraints until their syntax tree is first needed. Constraints then
+	 * only keep their text while the model is loaded, and are not parsed at
+	 * all if no target uses them (for example when only a feature catalogue
+	 * or SQL DDL is derived). If a target that uses the syntax trees (the XML
+	 * Schema target, for Schematron) is executed, the constraints are parsed
+	 * up front, on up to {@link #maxThreads()} threads if the model is a
+	 * generic model (otherwise sequentially). Note that a constraint
+	 * which cannot be parsed then remains an OCL constraint (without syntax
+	 * tree), instead of being loaded as a text constraint. Default is
+	 * <code>false</code>.
+	 */
+	public static final String PARAM_LAZY_OCL_PARSING = "lazyOclParsing";
+
 	// Application schema defaults (namespace and version)
 	public String xmlNamespaceDefault = "FIXME";
 	public String xmlNamespaceAbbreviationDefault = "FIXME";
@@ -259,6 +399,19 @@ public class Options {
 	// Name of the configuration file
 	public String configFile = null;
 
+	/**
+	 * Parsed configuration documents, by canonical path of the configuration
+	 * file; <code>null</code> if configurations are not cached (see
+	 * {@link #cacheConfigurations(boolean)}).
+	 */
+	protected static Map<String, CachedConfiguration> configurations = null;
+
+	protected static class CachedConfiguration {
+		long lastModified;
+		long length;
+		Document document;
+	}
+
 	/** GML core namespaces */
 	public String GML_NS = "http://www.opengis.net/gml/3.2";
 	public static String GMLEXR_NS = "http://www.opengis.net/gml/3.3/exr";
@@ -390,6 +543,9 @@ public class Options {
 	/** Hash table for encoding rule extensions */
 	protected HashMap<String, String> fExtendsEncRule = new HashMap<String, String>();
 
+	/** Compiled form of the rule configuration, see {@link #ruleTable()} */
+	protected RuleTable fRuleTable = null;
+
 	/** documentation separators */
 	protected String extractSeparator = null;
 	protected String definitionSeparator = null;
@@ -476,6 +632,13 @@ public class Options {
 	protected boolean ignoreEncodingRuleTaggedValues = false;
 
 	protected boolean useStringInterning = false;
+
+	/**
+	 * Pools of tag names and values used by {@link TaggedValuesCachePacked};
+	 * shared by all process views.
+	 */
+	protected final TaggedValuesPool tagNamePool = new TaggedValuesPool();
+	protected final TaggedValuesPool tagValuePool = new TaggedValuesPool(4096);
 	protected boolean loadGlobalIds = false;
 	protected String language = "en";
 
@@ -489,6 +652,13 @@ public class Options {
 	protected Map<String, String> dialogParameters = null;
 	protected Map<String, String> logParameters = null;
 	protected ProcessConfiguration currentProcessConfig = null;
+
+	/**
+	 * Process specific view of this Options object that is bound to the
+	 * current thread (while a target is executed in parallel mode), or
+	 * <code>null</code> if no view is bound.
+	 */
+	private ThreadLocal<Options> processView = new ThreadLocal<Options>();
 	protected List<TargetConfiguration> inputTargetConfigs = new ArrayList<TargetConfiguration>();
 	protected List<TransformerConfiguration> inputTransformerConfigs = new ArrayList<TransformerConfiguration>();
 	private String inputId = null;
@@ -551,6 +721,169 @@ public class Options {
 						.equalsIgnoreCase("true");
 	}
 
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_PARALLEL_TARGET_EXECUTION} with value
+	 *         'true' (ignoring case), else <code>false</code>.
+	 */
+	public boolean isParallelTargetExecution() {
+		return this.parameter(PARAM_PARALLEL_TARGET_EXECUTION) != null
+				&& this.parameter(PARAM_PARALLEL_TARGET_EXECUTION)
+						.equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_PARALLEL_TRANSFORMATION} with value
+	 *         'true' (ignoring case), else <code>false</code>.
+	 */
+	public boolean isParallelTransformation() {
+		return this.parameter(PARAM_PARALLEL_TRANSFORMATION) != null
+				&& this.parameter(PARAM_PARALLEL_TRANSFORMATION)
+						.equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return the heap (in bytes) that must be free before an additional
+	 *         transformation branch is started, as defined by input parameter
+	 *         {@value #PARAM_TRANSFORMATION_BRANCH_MEMORY}; 0 if the parameter
+	 *         is not set or invalid
+	 */
+	public long transformationBranchMemory() {
+		String s = this.parameter(PARAM_TRANSFORMATION_BRANCH_MEMORY);
+		if (s != null) {
+			try {
+				long mb = Long.parseLong(s.trim());
+				if (mb > 0) {
+					return mb * 1024 * 1024;
+				}
+			} catch (NumberFormatException e) {
+				// ignore - estimate the required memory
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_STREAMING_LOG} with value 'true'
+	 *         (ignoring case), else <code>false</code>.
+	 */
+	public boolean isStreamingLog() {
+		return this.parameter(PARAM_STREAMING_LOG) != null
+				&& this.parameter(PARAM_STREAMING_LOG).equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_LOG_JSON} with value 'true' (ignoring
+	 *         case), else <code>false</code>.
+	 */
+	public boolean isLogJson() {
+		return this.parameter(PARAM_LOG_JSON) != null
+				&& this.parameter(PARAM_LOG_JSON).equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_PROCESS_METRICS} with value 'true'
+	 *         (ignoring case), else <code>false</code>.
+	 */
+	public boolean isProcessMetrics() {
+		return this.parameter(PARAM_PROCESS_METRICS) != null && this
+				.parameter(PARAM_PROCESS_METRICS).equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_INCREMENTAL_REGENERATION} with value
+	 *         'true' (ignoring case), else <code>false</code>.
+	 */
+	public boolean isIncrementalRegeneration() {
+		return this.parameter(PARAM_INCREMENTAL_REGENERATION) != null
+				&& this.parameter(PARAM_INCREMENTAL_REGENERATION)
+						.equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_STREAMING_XML_OUTPUT} with value 'true'
+	 *         (ignoring case), else <code>false</code>.
+	 */
+	public boolean isStreamingXmlOutput() {
+		return this.parameter(PARAM_STREAMING_XML_OUTPUT) != null
+				&& this.parameter(PARAM_STREAMING_XML_OUTPUT)
+						.equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return <code>true</code> if the input configuration element has
+	 *         parameter {@value #PARAM_LAZY_OCL_PARSING} with value 'true'
+	 *         (ignoring case), else <code>false</code>.
+	 */
+	public boolean isLazyOclParsing() {
+		return this.parameter(PARAM_LAZY_OCL_PARSING) != null
+				&& this.parameter(PARAM_LAZY_OCL_PARSING)
+						.equalsIgnoreCase("true");
+	}
+
+	/**
+	 * @return the directory defined by input parameter
+	 *         {@value #PARAM_MODEL_CACHE_DIRECTORY}, or <code>null</code> if
+	 *         the parameter is not set
+	 */
+	public File modelCacheDirectory() {
+		String s = this.parameter(PARAM_MODEL_CACHE_DIRECTORY);
+		if (s == null || s.trim().length() == 0) {
+			return null;
+		} else {
+			return new File(s.trim());
+		}
+	}
+
+	/**
+	 * @return the maximum number of messages to remember for suppressing
+	 *         repeated messages in a streaming log, as defined by input
+	 *         parameter {@value #PARAM_LOG_DUPLICATE_CHECK_SIZE}; 100000 if the
+	 *         parameter is not set or invalid
+	 */
+	public int logDuplicateCheckSize() {
+		String s = this.parameter(PARAM_LOG_DUPLICATE_CHECK_SIZE);
+		if (s != null) {
+			try {
+				int i = Integer.parseInt(s.trim());
+				if (i > 0) {
+					return i;
+				}
+			} catch (NumberFormatException e) {
+				// ignore - use the default
+			}
+		}
+		return 100000;
+	}
+
+	/**
+	 * @return the maximum number of threads to use for parallel processing,
+	 *         as defined by input parameter {@value #PARAM_MAX_THREADS}; the
+	 *         number of available processors if the parameter is not set or
+	 *         invalid
+	 */
+	public int maxThreads() {
+		int max = Runtime.getRuntime().availableProcessors();
+		String s = this.parameter(PARAM_MAX_THREADS);
+		if (s != null) {
+			try {
+				int i = Integer.parseInt(s.trim());
+				if (i > 0) {
+					max = i;
+				}
+			} catch (NumberFormatException e) {
+				// ignore - use default
+			}
+		}
+		return max;
+	}
+
 	/**
 	 * @return True, if xxxEncodingRule tagged values shall be ignored (because
 	 *         the model is wrong and needs cleanup), else false.
@@ -569,24 +902,24 @@ public class Options {
 
 	/** A map entry. */
 	protected void addTypeMapEntry(String k1, String k2, String s1, String s2) {
-		fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
+		view().fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
 	}
 
 	protected void addTypeMapEntry(String k1, String k2, String s1, String s2,
 			String s3) {
-		fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
+		view().fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
 	}
 
 	protected void addTypeMapEntry(String k1, String k2, String s1, String s2,
 			String s3, String s4) {
-		fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3, s4));
+		view().fTypeMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3, s4));
 	}
 
 	public MapEntry typeMapEntry(String k1, String k2) {
 		String rule = k2;
 		MapEntry me = null;
 		while (me == null && rule != null) {
-			me = fTypeMap.get(k1 + "#" + rule);
+			me = view().fTypeMap.get(k1 + "#" + rule);
 			rule = extendsEncRule(rule);
 		}
 		return me;
@@ -594,16 +927,16 @@ public class Options {
 
 	public void addTargetTypeMapEntry(String cls, String type, String rule,
 			String ttype, String param) {
-		HashMap<String, MapEntry> fclass = fTargetTypeMap.get(cls);
+		HashMap<String, MapEntry> fclass = view().fTargetTypeMap.get(cls);
 		if (fclass == null) {
 			fclass = new HashMap<String, MapEntry>();
-			fTargetTypeMap.put(cls, fclass);
+			view().fTargetTypeMap.put(cls, fclass);
 		}
 		fclass.put(type + "#" + rule, new MapEntry(rule, ttype, param));
 	}
 
 	public MapEntry targetTypeMapEntry(String cls, String type, String rule) {
-		HashMap<String, MapEntry> fclass = fTargetTypeMap.get(cls);
+		HashMap<String, MapEntry> fclass = view().fTargetTypeMap.get(cls);
 		if (fclass == null)
 			return null;
 		MapEntry me = null;
@@ -615,7 +948,7 @@ public class Options {
 	}
 
 	protected void addBaseMapEntry(String k1, String k2, String s1, String s2) {
-		fBaseMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
+		view().fBaseMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
 	}
 
 	/**
@@ -643,7 +976,7 @@ public class Options {
 	 */
 	protected void addBaseMapEntry(String k1, String k2, String s1, String s2,
 			String s3) {
-		fBaseMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
+		view().fBaseMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
 	}
 
 	/**
@@ -661,7 +994,7 @@ public class Options {
 		String rule = k2;
 		MapEntry me = null;
 		while (me == null && rule != null) {
-			me = fBaseMap.get(k1 + "#" + rule);
+			me = view().fBaseMap.get(k1 + "#" + rule);
 			rule = extendsEncRule(rule);
 		}
 		return me;
@@ -669,59 +1002,60 @@ public class Options {
 
 	protected void addElementMapEntry(String k1, String k2, String s1,
 			String s2) {
-		fElementMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
+		view().fElementMap.put(k1 + "#" + k2, new MapEntry(s1, s2));
 	}
 
 	protected void addElementMapEntry(String k1, String k2, String s1,
 			String s2, String s3) {
-		fElementMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
+		view().fElementMap.put(k1 + "#" + k2, new MapEntry(s1, s2, s3));
 	}
 
 	public MapEntry elementMapEntry(String k1, String k2) {
 		String rule = k2;
 		MapEntry me = null;
 		while (me == null && rule != null) {
-			me = fElementMap.get(k1 + "#" + rule);
+			me = view().fElementMap.get(k1 + "#" + rule);
 			rule = extendsEncRule(rule);
 		}
 		return me;
 	}
 
 	protected void addAttributeMapEntry(String k1, String k2, String s1) {
-		fAttributeMap.put(k1 + "#" + k2, new MapEntry(s1));
+		view().fAttributeMap.put(k1 + "#" + k2, new MapEntry(s1));
 	}
 
 	public MapEntry attributeMapEntry(String k1, String k2) {
 		String rule = k2;
 		MapEntry me = null;
 		while (me == null && rule != null) {
-			me = fAttributeMap.get(k1 + "#" + rule);
+			me = view().fAttributeMap.get(k1 + "#" + rule);
 			rule = extendsEncRule(rule);
 		}
 		return me;
 	}
 
 	protected void addAttributeGroupMapEntry(String k1, String k2, String s1) {
-		fAttributeGroupMap.put(k1 + "#" + k2, new MapEntry(s1));
+		view().fAttributeGroupMap.put(k1 + "#" + k2, new MapEntry(s1));
 	}
 
 	public MapEntry attributeGroupMapEntry(String k1, String k2) {
 		String rule = k2;
 		MapEntry me = null;
 		while (me == null && rule != null) {
-			me = fAttributeGroupMap.get(k1 + "#" + rule);
+			me = view().fAttributeGroupMap.get(k1 + "#" + rule);
 			rule = extendsEncRule(rule);
 		}
 		return me;
 	}
 
 	protected void addTarget(String k1, String k2) {
-		fTargets.put(k1, k2);
+		view().fTargets.put(k1, k2);
+		view().fRuleTable = null;
 	}
 
 	public Vector<String> targets() {
 		Vector<String> res = new Vector<String>();
-		for (String t : fTargets.keySet()) {
+		for (String t : view().fTargets.keySet()) {
 			res.add(t);
 		}
 		return res;
@@ -731,7 +1065,7 @@ public class Options {
 		if (tn == null)
 			return "disabled";
 
-		String s = fTargets.get(tn);
+		String s = view().fTargets.get(tn);
 		if (s == null)
 			return "disabled";
 
@@ -739,7 +1073,8 @@ public class Options {
 	}
 
 	public String setTargetMode(String tn, String mode) {
-		return fTargets.put(tn, mode);
+		view().fRuleTable = null;
+		return view().fTargets.put(tn, mode);
 	}
 
 	/**
@@ -748,18 +1083,18 @@ public class Options {
 	 *         <code>null</code> if the parameter does not exist
 	 */
 	public String parameter(String k1) {
-		return fParameters.get(k1);
+		return view().fParameters.get(k1);
 	}
 
 	public String parameter(String t, String k1) {
-		return fParameters.get(t + "::" + k1);
+		return view().fParameters.get(t + "::" + k1);
 	}
 
 	/** This returns the names of all parms whose names match a regex pattern */
 	public String[] parameterNamesByRegex(String t, String regex) {
 		HashSet<String> pnames = new HashSet<String>();
 		int lt2 = t.length() + 2;
-		for (Entry<String, String> e : fParameters.entrySet()) {
+		for (Entry<String, String> e : view().fParameters.entrySet()) {
 			String key = e.getKey();
 			if (key.startsWith(t + "::")) {
 				if (Pattern.matches(regex, key.substring(lt2)))
@@ -770,19 +1105,21 @@ public class Options {
 	}
 
 	public void setParameter(String k1, String s1) {
+		view().fRuleTable = null;
 		String s = replaceValue(s1);
 		if (s != null)
-			fParameters.put(k1, s);
+			view().fParameters.put(k1, s);
 		else
-			fParameters.put(k1, s1);
+			view().fParameters.put(k1, s1);
 	}
 
 	public void setParameter(String t, String k1, String s1) {
+		view().fRuleTable = null;
 		String s = replaceValue(s1);
 		if (s != null)
-			fParameters.put(t + "::" + k1, s);
+			view().fParameters.put(t + "::" + k1, s);
 		else
-			fParameters.put(t + "::" + k1, s1);
+			view().fParameters.put(t + "::" + k1, s1);
 	}
 
 	public String replaceValue(String k1) {
@@ -803,7 +1140,7 @@ public class Options {
 	 *            maps
 	 */
 	protected void addStereotypeAlias(String alias, String wellknown) {
-		fStereotypeAliases.put(alias, wellknown);
+		view().fStereotypeAliases.put(alias, wellknown);
 	}
 
 	/**
@@ -819,7 +1156,7 @@ public class Options {
 	 *         <code>null</code> if no such mapping exists
 	 */
 	public String stereotypeAlias(String alias) {
-		return fStereotypeAliases.get(alias.toLowerCase());
+		return view().fStereotypeAliases.get(alias.toLowerCase());
 	}
 
 	/**
@@ -832,7 +1169,7 @@ public class Options {
 	 *            maps
 	 */
 	protected void addTagAlias(String alias, String wellknown) {
-		fTagAliases.put(alias, wellknown);
+		view().fTagAliases.put(alias, wellknown);
 	}
 
 	/**
@@ -848,7 +1185,7 @@ public class Options {
 	 *         <code>null</code> if no such mapping exists
 	 */
 	public String tagAlias(String alias) {
-		return fTagAliases.get(alias.toLowerCase());
+		return view().fTagAliases.get(alias.toLowerCase());
 	}
 
 	/**
@@ -860,7 +1197,7 @@ public class Options {
 	 *            - the source (in lower case) 
 	 */
 	protected void addDescriptorSource(String descriptor, String source) {
-		fDescriptorSources.put(descriptor, source);
+		view().fDescriptorSources.put(descriptor, source);
 	}
 
 	/**
@@ -875,7 +1212,7 @@ public class Options {
 	 *         <code>null</code> if no such mapping exists
 	 */
 	public String descriptorSource(String descriptor) {
-		return fDescriptorSources.get(descriptor.toLowerCase());
+		return view().fDescriptorSources.get(descriptor.toLowerCase());
 	}
 
 	/**
@@ -887,29 +1224,42 @@ public class Options {
 	 *            location
 	 */
 	protected void addNamespace(String k1, String s1, String s2) {
-		fNamespaces.put(k1, new MapEntry(s1, s2));
+		view().fNamespaces.put(k1, new MapEntry(s1, s2));
 	}
 
 	protected void addRule(String rule) {
-		fAllRules.add(rule.toLowerCase());
+		view().fAllRules.add(rule.toLowerCase());
+		view().fRuleTable = null;
 	}
 
 	public boolean hasRule(String rule) {
-		return fAllRules.contains(rule.toLowerCase());
+		return view().fAllRules.contains(rule.toLowerCase());
 	}
 
 	protected void addRule(String rule, String encRule) {
-		fRulesInEncRule.add(rule.toLowerCase() + "#" + encRule.toLowerCase());
+		view().fRulesInEncRule.add(rule.toLowerCase() + "#" + encRule.toLowerCase());
+		view().fRuleTable = null;
 	}
 
 	public boolean hasRule(String rule, String encRule) {
-		boolean res = false;
-		while (!res && encRule != null) {
-			res = fRulesInEncRule
-					.contains(rule.toLowerCase() + "#" + encRule.toLowerCase());
-			encRule = extendsEncRule(encRule);
+		if (encRule == null)
+			return false;
+		return ruleTable().hasRule(rule, encRule);
+	}
+
+	/**
+	 * @return the compiled form of the current rule configuration, used to
+	 *         evaluate rules without string manipulation; the table is
+	 *         created lazily and discarded whenever rules, encoding rules,
+	 *         targets or parameters change
+	 */
+	public RuleTable ruleTable() {
+		Options v = view();
+		synchronized (v) {
+			if (v.fRuleTable == null)
+				v.fRuleTable = new RuleTable(v);
+			return v.fRuleTable;
 		}
-		return res;
 	}
 
 	public boolean matchesEncRule(String encRule, String baseRule) {
@@ -922,16 +1272,17 @@ public class Options {
 	}
 
 	protected void addExtendsEncRule(String rule1, String rule2) {
-		fExtendsEncRule.put(rule1.toLowerCase(), rule2.toLowerCase());
+		view().fExtendsEncRule.put(rule1.toLowerCase(), rule2.toLowerCase());
+		view().fRuleTable = null;
 	}
 
 	protected String extendsEncRule(String rule1) {
-		return fExtendsEncRule.get(rule1.toLowerCase());
+		return view().fExtendsEncRule.get(rule1.toLowerCase());
 	}
 
 	protected void addPackage(String k1, String s1, String s2, String s3,
 			String s4) {
-		fPackages.put(k1, new MapEntry(s1, s2, s3, s4));
+		view().fPackages.put(k1, new MapEntry(s1, s2, s3, s4));
 	}
 
 	/**
@@ -943,7 +1294,7 @@ public class Options {
 	public void addSchemaLocation(String k1, String s1) {
 		// This will overwrite any previously existing value for the given key
 		// k1. Order of schema location additions thus is important.
-		fSchemaLocations.put(k1, s1);
+		view().fSchemaLocations.put(k1, s1);
 	}
 
 	/**
@@ -953,7 +1304,7 @@ public class Options {
 	 *         location as 'p1') - or <code>null</code> if the nsabr is unknown
 	 */
 	protected MapEntry namespace(String k1) {
-		MapEntry me = fNamespaces.get(k1);
+		MapEntry me = view().fNamespaces.get(k1);
 		return me;
 	}
 
@@ -967,8 +1318,8 @@ public class Options {
 	 */
 	public String nsabrForNamespace(String ns) {
 
-		for (String nsabr : fNamespaces.keySet()) {
-			MapEntry me = fNamespaces.get(nsabr);
+		for (String nsabr : view().fNamespaces.keySet()) {
+			MapEntry me = view().fNamespaces.get(nsabr);
 			if (me.rule.equals(ns)) {
 				return nsabr;
 			}
@@ -982,7 +1333,7 @@ public class Options {
 	 * @return the full namespace
 	 */
 	public String fullNamespace(String k1) {
-		MapEntry me = fNamespaces.get(k1);
+		MapEntry me = view().fNamespaces.get(k1);
 		if (me != null) {
 			return me.rule;
 		}
@@ -990,7 +1341,7 @@ public class Options {
 	}
 
 	public String nsOfPackage(String k1) {
-		MapEntry me = fPackages.get(k1);
+		MapEntry me = view().fPackages.get(k1);
 		if (me != null) {
 			return me.rule;
 		}
@@ -998,7 +1349,7 @@ public class Options {
 	}
 
 	public String nsabrOfPackage(String k1) {
-		MapEntry me = fPackages.get(k1);
+		MapEntry me = view().fPackages.get(k1);
 		if (me != null) {
 			return me.p1;
 		}
@@ -1006,7 +1357,7 @@ public class Options {
 	}
 
 	public String xsdOfPackage(String k1) {
-		MapEntry me = fPackages.get(k1);
+		MapEntry me = view().fPackages.get(k1);
 		if (me != null) {
 			return me.p2;
 		}
@@ -1014,7 +1365,7 @@ public class Options {
 	}
 
 	public String versionOfPackage(String k1) {
-		MapEntry me = fPackages.get(k1);
+		MapEntry me = view().fPackages.get(k1);
 		if (me != null) {
 			return me.p3;
 		}
@@ -1027,7 +1378,7 @@ public class Options {
 	 * @return schema location, if defined, else <code>null</code>
 	 */
 	public String schemaLocationOfNamespace(String k1) {
-		String loc = fSchemaLocations.get(k1);
+		String loc = view().fSchemaLocations.get(k1);
 		/*
 		 * note, schema location may be omitted / null; example: DGIWG spatial
 		 * profile is not available online
@@ -1087,8 +1438,72 @@ public class Options {
 		// return "Unknown (" + targetId + ")";
 	}
 
+	/**
+	 * Keeps the parsed configuration documents in memory, so that loading
+	 * the same configuration file again within the same process - for
+	 * example in batch mode - does not require parsing, validating and
+	 * resolving XIncludes again. A cached document is used as long as the
+	 * modification time and length of the configuration file are unchanged.
+	 * Note that changes to files included via XInclude are not detected.
+	 * 
+	 * @param cache
+	 *            <code>true</code> to cache configurations, <code>false</code>
+	 *            to discard all cached configurations
+	 */
+	public static synchronized void cacheConfigurations(boolean cache) {
+		if (!cache) {
+			configurations = null;
+		} else if (configurations == null) {
+			configurations = new HashMap<String, CachedConfiguration>();
+		}
+	}
+
+	/**
+	 * @param file
+	 * @return the cached configuration document for the given file, if it is
+	 *         still up-to-date; otherwise <code>null</code>
+	 */
+	private static synchronized Document cachedConfiguration(File file) {
+
+		if (configurations == null || file == null || !file.isFile()) {
+			return null;
+		}
+
+		try {
+			CachedConfiguration cc = configurations
+					.get(file.getCanonicalPath());
+			if (cc != null && cc.lastModified == file.lastModified()
+					&& cc.length == file.length()) {
+				return cc.document;
+			}
+		} catch (IOException e) {
+			// ignore - the configuration is parsed again
+		}
+		return null;
+	}
+
+	private static synchronized void cacheConfiguration(File file,
+			Document document) {
+
+		if (configurations == null || file == null || !file.isFile()) {
+			return;
+		}
+
+		try {
+			CachedConfiguration cc = new CachedConfiguration();
+			cc.lastModified = file.lastModified();
+			cc.length = file.length();
+			cc.document = document;
+			configurations.put(file.getCanonicalPath(), cc);
+		} catch (IOException e) {
+			// ignore - the configuration is not cached
+		}
+	}
+
 	public void loadConfiguration() throws ShapeChangeAbortException {
 
+		File cacheFile = null;
+
 		InputStream configStream = null;
 		if (configFile == null) {
 			// load minimal configuration, if no configuration file has been
@@ -1107,11 +1522,10 @@ public class Options {
 										+ configFile);
 					}
 				else {
-					URL url;
 					String configURL = "http://shapechange.net/resources/config/minimal.xml";
 					try {
-						url = new URL(configURL);
-						configStream = url.openStream();
+						configStream = ResourceResolver.getInstance()
+								.open(configURL);
 					} catch (MalformedURLException e) {
 						throw new ShapeChangeAbortException(
 								"Minimal configuration file not accessible from: "
@@ -1127,7 +1541,8 @@ public class Options {
 			File file = new File(configFile);
 			if (file == null || !file.exists()) {
 				try {
-					configStream = (new URL(configFile)).openStream();
+					configStream = ResourceResolver.getInstance()
+							.open(configFile);
 				} catch (MalformedURLException e) {
 					throw new ShapeChangeAbortException(
 							"No configuration file found at " + configFile
@@ -1144,6 +1559,7 @@ public class Options {
 					throw new ShapeChangeAbortException(
 							"No configuration file found at " + configFile);
 				}
+				cacheFile = file;
 			}
 			if (configStream == null) {
 				throw new ShapeChangeAbortException(
@@ -1171,6 +1587,8 @@ public class Options {
 			builder = factory.newDocumentBuilder();
 			handler = new ShapeChangeErrorHandler();
 			builder.setErrorHandler(handler);
+			// resolve XIncludes and schemas via local copies, if available
+			builder.setEntityResolver(ResourceResolver.getInstance());
 		} catch (FactoryConfigurationError e) {
 			throw new ShapeChangeAbortException(
 					"Unable to get a document builder factory.");
@@ -1181,10 +1599,16 @@ public class Options {
 
 		// parse file
 		try {
-			Document document = builder.parse(configStream);
-			if (handler.errorsFound()) {
-				throw new ShapeChangeAbortException(
-						"Invalid configuration file.");
+			Document document = cachedConfiguration(cacheFile);
+			if (document == null) {
+				document = builder.parse(configStream);
+				if (handler.errorsFound()) {
+					throw new ShapeChangeAbortException(
+							"Invalid configuration file.");
+				}
+				cacheConfiguration(cacheFile, document);
+			} else {
+				configStream.close();
 			}
 
 			// parse input element specific content
@@ -1625,6 +2049,7 @@ public class Options {
 		fAllRules = new HashSet<String>();
 		fRulesInEncRule = new HashSet<String>();
 		fExtendsEncRule = new HashMap<String, String>();
+		fRuleTable = null;
 
 		// repopulate fields
 
@@ -3055,7 +3480,78 @@ public class Options {
 	 * @return the currentProcessConfig
 	 */
 	public ProcessConfiguration getCurrentProcessConfig() {
-		return currentProcessConfig;
+		return view().currentProcessConfig;
+	}
+
+	/**
+	 * Creates a copy of this Options object with all process specific fields
+	 * (parameters, map entries, rules, namespaces etc.) initialised for the
+	 * given process configuration. Information loaded from the configuration
+	 * (input, dialog and log parameters, target and transformer
+	 * configurations) is shared with this object, but changes to process
+	 * specific fields of the copy - for example setting the
+	 * 'outputDirectory' parameter - do not affect this object, and vice versa.
+	 * 
+	 * @param config
+	 *            the process configuration for which the view shall be created
+	 * @return the new view
+	 */
+	public Options createProcessView(ProcessConfiguration config) {
+
+		Options view;
+		try {
+			view = (Options) super.clone();
+		} catch (CloneNotSupportedException e) {
+			// cannot happen, because this class implements Cloneable
+			throw new IllegalStateException(e);
+		}
+
+		view.processView = new ThreadLocal<Options>();
+		view.currentProcessConfig = config;
+		view.resetFields();
+
+		return view;
+	}
+
+	/**
+	 * Binds the given process view to the current thread. Until
+	 * {@link #unbindProcessView()} is called, all process specific lookups on
+	 * this Options object that are performed by the current thread - for
+	 * example by model elements that check if a rule matches - are delegated
+	 * to the view.
+	 * 
+	 * @param view
+	 *            a view created via
+	 *            {@link #createProcessView(ProcessConfiguration)}
+	 */
+	public void bindProcessView(Options view) {
+		processView.set(view);
+	}
+
+	/**
+	 * Removes the process view that is bound to the current thread (if any).
+	 */
+	public void unbindProcessView() {
+		processView.remove();
+	}
+
+	/**
+	 * @return the process view that is bound to the current thread, or
+	 *         <code>null</code> if no such view exists; a thread that works on
+	 *         behalf of the current thread can bind the view to itself, via
+	 *         {@link #bindProcessView(Options)}
+	 */
+	public Options boundProcessView() {
+		return processView.get();
+	}
+
+	/**
+	 * @return the process view that is bound to the current thread, or this
+	 *         object if no such view exists
+	 */
+	protected Options view() {
+		Options view = processView.get();
+		return view == null ? this : view;
 	}
 
 	public List<TargetConfiguration> getTargetConfigurations() {
@@ -3072,6 +3568,14 @@ public class Options {
 		return inputId;
 	}
 
+	/**
+	 * @return the configuration of the input model, or <code>null</code> if
+	 *         the configuration has not been loaded yet
+	 */
+	public InputConfiguration getInputConfig() {
+		return inputConfig;
+	}
+
 	/**
 	 * @return the temporary directory for the ShapeChange run; will be created
 	 *         if it does not already exist
@@ -3236,17 +3740,39 @@ public class Options {
 
 	/**
 	 * Depending on the tagged value implementation we want (map: default;
-	 * array: better memory footprint for large models) this returns the one
-	 * selected in the configuration.
+	 * array: better memory footprint for large models; packed: smallest
+	 * memory footprint) this returns the one selected in the configuration.
 	 */
 	private boolean useTaggedValuesArray() {
 		String tvImpl = parameter(PARAM_TAGGED_VALUE_IMPL);
 		return (tvImpl != null && tvImpl.equalsIgnoreCase("array"));
 	}
 
+	private boolean useTaggedValuesPacked() {
+		String tvImpl = parameter(PARAM_TAGGED_VALUE_IMPL);
+		return (tvImpl != null && tvImpl.equalsIgnoreCase("packed"));
+	}
+
+	/**
+	 * @return the pool of tag names used by {@link TaggedValuesCachePacked}
+	 */
+	public TaggedValuesPool tagNamePool() {
+		return tagNamePool;
+	}
+
+	/**
+	 * @return the pool of tagged values used by
+	 *         {@link TaggedValuesCachePacked}
+	 */
+	public TaggedValuesPool tagValuePool() {
+		return tagValuePool;
+	}
+
 	public TaggedValues taggedValueFactory() {
 		TaggedValues result;
-		if (useTaggedValuesArray()) {
+		if (useTaggedValuesPacked()) {
+			result = new TaggedValuesCachePacked(this);
+		} else if (useTaggedValuesArray()) {
 			result = new TaggedValuesCacheArray(this);
 		} else {
 			result = new TaggedValuesCacheMap(this);
@@ -3256,7 +3782,9 @@ public class Options {
 
 	public TaggedValues taggedValueFactory(int size) {
 		TaggedValues result;
-		if (useTaggedValuesArray()) {
+		if (useTaggedValuesPacked()) {
+			result = new TaggedValuesCachePacked(this);
+		} else if (useTaggedValuesArray()) {
 			result = size < 0 ? new TaggedValuesCacheArray(this)
 					: new TaggedValuesCacheArray(size, this);
 		} else {
@@ -3274,7 +3802,9 @@ public class Options {
 	public TaggedValues taggedValueFactory(TaggedValues original,
 			String tagList) {
 		TaggedValues result;
-		if (useTaggedValuesArray()) {
+		if (useTaggedValuesPacked()) {
+			result = new TaggedValuesCachePacked(original, tagList, this);
+		} else if (useTaggedValuesArray()) {
 			result = new TaggedValuesCacheArray(original, tagList, this);
 		} else {
 			result = new TaggedValuesCacheMap(original, tagList, this);
@@ -3284,11 +3814,17 @@ public class Options {
 
 	/**
 	 * @param original
-	 * @return can be empty but not <code>null</code>
+	 * @return can be empty but not <code>null</code>; if the original is a
+	 *         {@link TaggedValuesCopyOnWrite}, the copy shares its content
+	 *         until one of them is modified
 	 */
 	public TaggedValues taggedValueFactory(TaggedValues original) {
 		TaggedValues result;
-		if (useTaggedValuesArray()) {
+		if (original instanceof TaggedValuesCopyOnWrite) {
+			result = ((TaggedValuesCopyOnWrite) original).share();
+		} else if (useTaggedValuesPacked()) {
+			result = new TaggedValuesCachePacked(original, this);
+		} else if (useTaggedValuesArray()) {
 			result = new TaggedValuesCacheArray(original, this);
 		} else {
 			result = new TaggedValuesCacheMap(original, this);
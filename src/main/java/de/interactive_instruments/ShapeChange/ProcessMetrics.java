@@ -0,0 +1,372 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import de.interactive_instruments.ShapeChange.UI.StatusBoard;
+
+/**
+ * Records the duration, the heap change and - if supported by the JVM - the
+ * bytes allocated by the executing thread for the phases of a conversion:
+ * loading the model, transformations, target steps and deferred output
+ * writes. For target processing, the time and allocations per class are
+ * recorded as well.
+ * <p>
+ * Measurements are only taken if input parameter
+ * {@value Options#PARAM_PROCESS_METRICS} is <code>true</code>; otherwise
+ * {@link #start(String, String, String, String)} returns <code>null</code>
+ * and all other methods do nothing. Completed phases are logged, reported to
+ * the {@link StatusBoard} and, at the end of the conversion, written as JSON
+ * (see {@link #write(String)}).
+ * <p>
+ * The heap change is the difference of the used heap at the start and the
+ * end of a phase, without garbage collection in between; it is therefore
+ * only an indication, especially if phases are executed in parallel.
+ */
+public class ProcessMetrics {
+
+	public static final String MODEL = "model";
+	public static final String TRANSFORMER = "transformer";
+	public static final String TARGET = "target";
+	public static final String DEFERRED_OUTPUT_WRITER = "deferredOutputWriter";
+
+	/**
+	 * A phase that is being or has been measured.
+	 */
+	public static class Phase {
+
+		protected final String category;
+		protected final String name;
+		protected final String step;
+		protected final String inputId;
+		protected final String thread;
+		protected final long startTime;
+		protected final long startNanos;
+		protected final long startHeap;
+		protected final long startAllocated;
+
+		protected long durationNanos = -1;
+		protected long heapDelta = 0;
+		protected long allocated = -1;
+
+		/** class name, duration (ns) and allocated bytes, per class */
+		protected List<Object[]> classes = null;
+
+		private long classStartNanos;
+		private long classStartAllocated;
+
+		protected Phase(String category, String name, String step,
+				String inputId) {
+			this.category = category;
+			this.name = name;
+			this.step = step;
+			this.inputId = inputId;
+			this.thread = Thread.currentThread().getName();
+			this.startTime = System.currentTimeMillis();
+			this.startHeap = usedHeap();
+			this.startAllocated = allocatedBytes();
+			this.startNanos = System.nanoTime();
+		}
+	}
+
+	private final Options options;
+	private final ShapeChangeResult result;
+	private final boolean enabled;
+	private final long start = System.currentTimeMillis();
+
+	private final List<Phase> phases = new ArrayList<Phase>();
+
+	public ProcessMetrics(Options options, ShapeChangeResult result) {
+		this.options = options;
+		this.result = result;
+		this.enabled = options.isProcessMetrics();
+	}
+
+	/**
+	 * @return <code>true</code> if measurements are taken, else
+	 *         <code>false</code>
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts the measurement of a phase.
+	 * 
+	 * @param category
+	 *            one of {@link #MODEL}, {@link #TRANSFORMER},
+	 *            {@link #TARGET}, {@link #DEFERRED_OUTPUT_WRITER}
+	 * @param name
+	 *            name of the model type, the transformer or the target
+	 * @param step
+	 *            the processing step, for example 'initialise' or 'write'
+	 * @param inputId
+	 *            id of the model provider; can be <code>null</code>
+	 * @return the phase, to be passed to {@link #end(Phase)};
+	 *         <code>null</code> if measurements are disabled
+	 */
+	public Phase start(String category, String name, String step,
+			String inputId) {
+		return enabled ? new Phase(category, name, step, inputId) : null;
+	}
+
+	/**
+	 * Ends the measurement of the given phase, logs it and reports it to the
+	 * StatusBoard.
+	 * 
+	 * @param phase
+	 *            can be <code>null</code> (then nothing happens)
+	 */
+	public void end(Phase phase) {
+
+		if (phase == null || phase.durationNanos >= 0) {
+			return;
+		}
+
+		phase.durationNanos = System.nanoTime() - phase.startNanos;
+		phase.heapDelta = usedHeap() - phase.startHeap;
+		long allocated = allocatedBytes();
+		if (allocated >= 0 && phase.startAllocated >= 0) {
+			phase.allocated = allocated - phase.startAllocated;
+		}
+
+		synchronized (phases) {
+			phases.add(phase);
+		}
+
+		result.addInfo(null, 508,
+				phase.category + " '" + phase.name + "', step '" + phase.step
+						+ "'",
+				Long.toString(phase.durationNanos / 1000000),
+				Long.toString(phase.heapDelta / 1024),
+				phase.allocated < 0 ? "n/a"
+						: Long.toString(phase.allocated / 1024));
+
+		StatusBoard.getStatusBoard().phaseCompleted(phase.category,
+				phase.name, phase.step, phase.durationNanos, phase.heapDelta);
+	}
+
+	/**
+	 * Marks the start of processing a class within the given phase. Classes
+	 * of a phase must be processed one after the other by the thread that
+	 * executes the phase.
+	 * 
+	 * @param phase
+	 *            can be <code>null</code> (then nothing happens)
+	 */
+	public void startClass(Phase phase) {
+		if (phase != null) {
+			phase.classStartAllocated = allocatedBytes();
+			phase.classStartNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Records the processing of a class within the given phase, since the
+	 * last call of {@link #startClass(Phase)}.
+	 * 
+	 * @param phase
+	 *            can be <code>null</code> (then nothing happens)
+	 * @param className
+	 */
+	public void endClass(Phase phase, String className) {
+
+		if (phase == null) {
+			return;
+		}
+
+		long nanos = System.nanoTime() - phase.classStartNanos;
+		long allocated = allocatedBytes();
+		allocated = allocated >= 0 && phase.classStartAllocated >= 0
+				? allocated - phase.classStartAllocated : -1;
+
+		if (phase.classes == null) {
+			phase.classes = new ArrayList<Object[]>();
+		}
+		phase.classes.add(new Object[] { className, nanos, allocated });
+	}
+
+	/**
+	 * Writes all completed phases as JSON to a file next to the given log
+	 * file, with file extension '.profile.json'.
+	 * 
+	 * @param logFile
+	 *            path of the log file
+	 */
+	public void write(String logFile) {
+
+		if (!enabled || logFile == null) {
+			return;
+		}
+
+		File log = new File(logFile).getAbsoluteFile();
+		String name = log.getName();
+		int idx = name.lastIndexOf('.');
+		if (idx > 0) {
+			name = name.substring(0, idx);
+		}
+		File file = new File(log.getParentFile(), name + ".profile.json");
+
+		List<Phase> completed;
+		synchronized (phases) {
+			completed = new ArrayList<Phase>(phases);
+		}
+
+		Writer out = null;
+		try {
+			File dir = file.getParentFile();
+			if (dir != null && !dir.exists()) {
+				dir.mkdirs();
+			}
+
+			out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(file), "UTF-8"));
+
+			StringBuilder sb = new StringBuilder();
+			sb.append("{\n\"config\":");
+			ShapeChangeResult.appendJsonString(sb,
+					options.configFile == null ? "" : options.configFile);
+			sb.append(",\n\"start\":");
+			ShapeChangeResult.appendJsonString(sb,
+					new Date(start).toString());
+			sb.append(",\n\"durationMillis\":")
+					.append(System.currentTimeMillis() - start);
+			sb.append(",\n\"phases\":[");
+			out.write(sb.toString());
+
+			for (int i = 0; i < completed.size(); i++) {
+				sb.setLength(0);
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append('\n');
+				appendPhase(sb, completed.get(i));
+				out.write(sb.toString());
+			}
+
+			out.write("\n]\n}\n");
+
+			result.addInfo(null, 509, file.getPath());
+
+		} catch (IOException e) {
+			result.addError(null, 510, file.getPath(), e.getMessage());
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private void appendPhase(StringBuilder sb, Phase phase) {
+
+		sb.append("{\"category\":");
+		ShapeChangeResult.appendJsonString(sb, phase.category);
+		sb.append(",\"name\":");
+		ShapeChangeResult.appendJsonString(sb, phase.name);
+		sb.append(",\"step\":");
+		ShapeChangeResult.appendJsonString(sb, phase.step);
+		if (phase.inputId != null) {
+			sb.append(",\"input\":");
+			ShapeChangeResult.appendJsonString(sb, phase.inputId);
+		}
+		sb.append(",\"thread\":");
+		ShapeChangeResult.appendJsonString(sb, phase.thread);
+		sb.append(",\"startMillis\":").append(phase.startTime - start);
+		sb.append(",\"durationMillis\":")
+				.append(phase.durationNanos / 1000000.0);
+		sb.append(",\"heapDeltaBytes\":").append(phase.heapDelta);
+		if (phase.allocated >= 0) {
+			sb.append(",\"allocatedBytes\":").append(phase.allocated);
+		}
+
+		if (phase.classes != null) {
+			sb.append(",\"classes\":[");
+			boolean first = true;
+			for (Object[] c : phase.classes) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				sb.append("\n {\"name\":");
+				ShapeChangeResult.appendJsonString(sb, (String) c[0]);
+				sb.append(",\"durationMicros\":")
+						.append(((Long) c[1]) / 1000);
+				if (((Long) c[2]) >= 0) {
+					sb.append(",\"allocatedBytes\":").append(c[2]);
+				}
+				sb.append('}');
+			}
+			sb.append(']');
+		}
+		sb.append('}');
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread so far; -1
+	 *         if the JVM does not support this
+	 */
+	private static long allocatedBytes() {
+		try {
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				return ((com.sun.management.ThreadMXBean) bean)
+						.getThreadAllocatedBytes(
+								Thread.currentThread().getId());
+			}
+		} catch (LinkageError e) {
+			// not supported by this JVM
+		} catch (UnsupportedOperationException e) {
+			// not supported by this JVM
+		}
+		return -1;
+	}
+}
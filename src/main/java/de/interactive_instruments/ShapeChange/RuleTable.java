@@ -0,0 +1,514 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.interactive_instruments.ShapeChange.Model.AssociationInfo;
+import de.interactive_instruments.ShapeChange.Model.ClassInfo;
+import de.interactive_instruments.ShapeChange.Model.Info;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.OperationInfo;
+import de.interactive_instruments.ShapeChange.Model.PackageInfo;
+import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+
+/**
+ * Compiled form of the rule configuration of an {@link Options} object (or
+ * one of its process specific views), used to evaluate
+ * {@link Info#matches(String)} without string manipulation.
+ * <p>
+ * All rules known to the configuration are interned into numeric ids. For
+ * each encoding rule, the set of rules it contains - including the rules of
+ * the encoding rules it extends - is kept as a bit set over these ids.
+ * Information that {@link Info#matches(String)} derives from the name of a
+ * rule and the configuration (target mode, scope, parameters that enforce or
+ * overwrite a rule) is determined once per rule.
+ * <p>
+ * A rule table reflects the configuration at the time it was created. The
+ * Options discard it whenever rules, encoding rules, targets or parameters
+ * change; {@link Options#ruleTable()} then creates a new one.
+ */
+public class RuleTable {
+
+	public static final int SCOPE_ALL = 0;
+	public static final int SCOPE_PKG = 1;
+	public static final int SCOPE_CLS = 2;
+	public static final int SCOPE_PROP = 3;
+	public static final int SCOPE_REL = 4;
+	public static final int SCOPE_OP = 5;
+
+	/**
+	 * Platforms of the encoding rules that are checked for rules which apply
+	 * to all platforms (i.e. 'rule-all-...').
+	 */
+	protected static final String[] ALL_PLATFORMS = { "xsd", "json", "rdf",
+			"fc", "sch" };
+
+	/**
+	 * Represents the result of evaluating a rule, independent of a specific
+	 * model element.
+	 */
+	public static class Rule {
+
+		/**
+		 * the numeric id of the rule, -1 if it is not known
+		 */
+		protected int id = -1;
+
+		/**
+		 * number of the error message to log when the rule is tested, 0 if
+		 * the rule is valid
+		 */
+		protected int error = 0;
+
+		/**
+		 * <code>false</code> if the rule cannot match because the target it
+		 * belongs to is not active
+		 */
+		protected boolean active = true;
+
+		protected int scope = SCOPE_ALL;
+
+		/**
+		 * <code>true</code> if a parameter enforces the rule, regardless of
+		 * encoding rules
+		 */
+		protected boolean enforced = false;
+
+		/**
+		 * <code>true</code> if a parameter overwrites the rule, i.e. the rule
+		 * does not match even if it is contained in the encoding rule
+		 */
+		protected boolean overwritten = false;
+
+		/**
+		 * index of the platform of the rule, -1 for rules that apply to all
+		 * platforms
+		 */
+		protected int platform = -1;
+
+		public int id() {
+			return id;
+		}
+
+		public int error() {
+			return error;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public boolean isEnforced() {
+			return enforced;
+		}
+
+		public boolean isOverwritten() {
+			return overwritten;
+		}
+
+		public int platform() {
+			return platform;
+		}
+
+		public boolean appliesToAllPlatforms() {
+			return platform == -1;
+		}
+
+		/**
+		 * @param i
+		 * @return <code>true</code> if the scope of the rule includes the kind
+		 *         of the given model element, else <code>false</code>
+		 */
+		public boolean inScope(Info i) {
+
+			switch (scope) {
+			case SCOPE_PKG:
+				return i instanceof PackageInfo;
+			case SCOPE_CLS:
+				return i instanceof ClassInfo;
+			case SCOPE_PROP:
+				return i instanceof PropertyInfo;
+			case SCOPE_REL:
+				return i instanceof AssociationInfo;
+			case SCOPE_OP:
+				return i instanceof OperationInfo;
+			default:
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Per model element cache of the rules contained in the encoding rules
+	 * that apply to the element, by platform index. It is only valid for the
+	 * rule table and the model it has been created for, and as long as no
+	 * tagged values have been changed in that model since it was created.
+	 */
+	public static class EffectiveRules {
+
+		protected RuleTable table;
+		protected Model model;
+		protected long taggedValuesGeneration;
+		protected BitSet[] byPlatform;
+
+		protected EffectiveRules(RuleTable table, Model model,
+				long taggedValuesGeneration) {
+			this.table = table;
+			this.model = model;
+			this.taggedValuesGeneration = taggedValuesGeneration;
+			this.byPlatform = new BitSet[table.platforms.size()];
+		}
+
+		public RuleTable table() {
+			return table;
+		}
+
+		/**
+		 * @return the model of the element the cache has been created for
+		 */
+		public Model model() {
+			return model;
+		}
+
+		/**
+		 * @return the tagged values generation (see
+		 *         {@link #createEffectiveRules(Model, long)}) for which the
+		 *         cache has been created
+		 */
+		public long taggedValuesGeneration() {
+			return taggedValuesGeneration;
+		}
+
+		/**
+		 * @param platform
+		 * @return the cached rules for the given platform index, or
+		 *         <code>null</code> if they have not been cached yet
+		 */
+		public synchronized BitSet get(int platform) {
+			return platform < byPlatform.length ? byPlatform[platform] : null;
+		}
+
+		public synchronized void put(int platform, BitSet rules) {
+			if (platform >= byPlatform.length) {
+				BitSet[] tmp = new BitSet[table.platforms.size()];
+				System.arraycopy(byPlatform, 0, tmp, 0, byPlatform.length);
+				byPlatform = tmp;
+			}
+			byPlatform[platform] = rules;
+		}
+	}
+
+	/**
+	 * Placeholder for the rules of an element that has no encoding rule for a
+	 * platform.
+	 */
+	public static final BitSet NO_ENCODING_RULE = new BitSet(0);
+
+	protected Options options;
+
+	/**
+	 * key: rule name in lower case, value: rule id
+	 */
+	protected Map<String, Integer> ruleIds = new HashMap<String, Integer>();
+
+	/**
+	 * key: rule name (as used by the caller), value: compiled rule
+	 */
+	protected Map<String, Rule> rules = new HashMap<String, Rule>();
+
+	/**
+	 * key: encoding rule name in lower case, value: ids of the rules that
+	 * have been added to the encoding rule itself
+	 */
+	protected Map<String, BitSet> directRulesInEncRule = new HashMap<String, BitSet>();
+
+	/**
+	 * key: encoding rule name (as used by the caller), value: ids of the rules
+	 * in the encoding rule, including those from extended encoding rules
+	 */
+	protected Map<String, BitSet> rulesInEncRule = new HashMap<String, BitSet>();
+
+	protected List<String> platforms = new ArrayList<String>();
+	protected Map<String, Integer> platformIndexes = new HashMap<String, Integer>();
+	protected int[] allPlatforms;
+
+	/**
+	 * @param options
+	 *            the Options object or process specific view, whose rule
+	 *            configuration shall be compiled
+	 */
+	protected RuleTable(Options options) {
+
+		this.options = options;
+
+		for (String rule : options.fAllRules) {
+			ruleId(rule);
+		}
+
+		for (String ruleInEncRule : options.fRulesInEncRule) {
+
+			int idx = ruleInEncRule.lastIndexOf('#');
+			int id = ruleId(ruleInEncRule.substring(0, idx));
+			String encRule = ruleInEncRule.substring(idx + 1);
+
+			BitSet ids = directRulesInEncRule.get(encRule);
+			if (ids == null) {
+				ids = new BitSet();
+				directRulesInEncRule.put(encRule, ids);
+			}
+			ids.set(id);
+		}
+
+		allPlatforms = new int[ALL_PLATFORMS.length];
+		for (int i = 0; i < ALL_PLATFORMS.length; i++) {
+			allPlatforms[i] = platformIndex(ALL_PLATFORMS[i]);
+		}
+	}
+
+	protected int ruleId(String lowerCaseRule) {
+
+		Integer id = ruleIds.get(lowerCaseRule);
+
+		if (id == null) {
+			id = ruleIds.size();
+			ruleIds.put(lowerCaseRule, id);
+		}
+		return id;
+	}
+
+	protected synchronized int platformIndex(String platform) {
+
+		Integer idx = platformIndexes.get(platform);
+
+		if (idx == null) {
+			idx = platforms.size();
+			platforms.add(platform);
+			platformIndexes.put(platform, idx);
+		}
+		return idx;
+	}
+
+	/**
+	 * @param platform
+	 * @return the name of the platform with given index
+	 */
+	public synchronized String platform(int platform) {
+		return platforms.get(platform);
+	}
+
+	/**
+	 * @return indexes of the platforms whose encoding rules are checked for
+	 *         rules that apply to all platforms
+	 */
+	public int[] allPlatforms() {
+		return allPlatforms;
+	}
+
+	/**
+	 * @param model
+	 *            the model of the element
+	 * @param taggedValuesGeneration
+	 *            counter of the changes of tagged values in the model at the
+	 *            time the cache is created
+	 * @return a new, empty cache of the effective rules of a model element
+	 */
+	public EffectiveRules createEffectiveRules(Model model,
+			long taggedValuesGeneration) {
+		return new EffectiveRules(this, model, taggedValuesGeneration);
+	}
+
+	/**
+	 * @param rule
+	 * @return the compiled form of the given rule; never <code>null</code>
+	 */
+	public synchronized Rule rule(String rule) {
+
+		Rule r = rules.get(rule);
+
+		if (r == null) {
+			r = compile(rule);
+			rules.put(rule, r);
+		}
+		return r;
+	}
+
+	protected Rule compile(String rule) {
+
+		Rule r = new Rule();
+
+		String lowerCaseRule = rule.toLowerCase();
+		String[] ra = lowerCaseRule.split("-", 4);
+
+		Integer id = ruleIds.get(lowerCaseRule);
+		if (id != null)
+			r.id = id;
+
+		// test if the rule has the correct format
+		if (ra.length != 4) {
+			r.error = 21;
+			return r;
+		}
+
+		// test if the rule is known, if not it cannot match
+		if (!options.fAllRules.contains(lowerCaseRule)) {
+			r.error = 164;
+			return r;
+		}
+
+		/*
+		 * If the test is target-specific match only if the target is active,
+		 * i.e. is 'enabled' for rules and not 'disabled' for requirements and
+		 * recommendations.
+		 */
+		if (!ra[1].equals("all")) {
+			String mode = targetMode(options.targetClassName(rule));
+			if (ra[0].equals("rule") && !mode.equals("enabled"))
+				r.active = false;
+			else if (ra[0].matches("re[cq]") && mode.equals("disabled"))
+				r.active = false;
+		}
+
+		if (ra[2].equals("all")) {
+			r.scope = SCOPE_ALL;
+		} else if (ra[2].equals("pkg")) {
+			r.scope = SCOPE_PKG;
+		} else if (ra[2].equals("cls")) {
+			r.scope = SCOPE_CLS;
+		} else if (ra[2].equals("prop")) {
+			r.scope = SCOPE_PROP;
+		} else if (ra[2].equals("rel")) {
+			r.scope = SCOPE_REL;
+		} else if (ra[2].equals("op")) {
+			r.scope = SCOPE_OP;
+		} else if (r.active) {
+			r.error = 21;
+			return r;
+		}
+
+		// rules that are enforced by a parameter
+		if (rule.equals("rule-xsd-cls-local-enumeration")) {
+			r.enforced = parameterEquals("enumStyle", "local");
+		} else if (rule.equals("rule-xsd-cls-local-basictype")) {
+			r.enforced = parameterEquals("basicTypeStyle", "local");
+		} else if (rule.equals("rule-xsd-pkg-schematron")) {
+			r.enforced = parameterEquals("schematron", "true");
+		} else if (rule.equals("rule-xsd-prop-exclude-derived")) {
+			r.enforced = parameterEquals("includeDerivedProperties", "false");
+		}
+
+		// rules that may be overwritten by a parameter
+		if (rule.equals("rule-xsd-all-no-documentation")) {
+			r.overwritten = parameterEquals("includeDocumentation", "true");
+		}
+
+		if (!ra[1].equals("all"))
+			r.platform = platformIndex(ra[1]);
+
+		return r;
+	}
+
+	protected String targetMode(String targetClassName) {
+
+		String mode = targetClassName == null ? null
+				: options.fTargets.get(targetClassName);
+
+		return mode == null ? "disabled" : mode;
+	}
+
+	/**
+	 * @param name
+	 * @param value
+	 * @return <code>true</code> if the XML Schema target parameter with given
+	 *         name has the given value (ignoring case)
+	 */
+	protected boolean parameterEquals(String name, String value) {
+
+		String param = options.fParameters
+				.get(Options.TargetXmlSchemaClass + "::" + name);
+
+		return param != null && param.equalsIgnoreCase(value);
+	}
+
+	/**
+	 * @param encRule
+	 *            name of an encoding rule, can be <code>null</code>
+	 * @return the ids of all rules contained in the encoding rule, including
+	 *         those of the encoding rules it extends;
+	 *         {@link #NO_ENCODING_RULE} if the given encoding rule is
+	 *         <code>null</code>. The result must not be modified.
+	 */
+	public synchronized BitSet rulesInEncodingRule(String encRule) {
+
+		if (encRule == null)
+			return NO_ENCODING_RULE;
+
+		BitSet result = rulesInEncRule.get(encRule);
+
+		if (result == null) {
+
+			result = new BitSet();
+
+			Set<String> visited = new HashSet<String>();
+			String er = encRule.toLowerCase();
+
+			while (er != null && visited.add(er)) {
+				BitSet direct = directRulesInEncRule.get(er);
+				if (direct != null)
+					result.or(direct);
+				er = options.fExtendsEncRule.get(er);
+			}
+
+			rulesInEncRule.put(encRule, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @param rule
+	 * @param encRule
+	 * @return <code>true</code> if the encoding rule - or one of the encoding
+	 *         rules it extends - contains the given rule
+	 */
+	public boolean hasRule(String rule, String encRule) {
+
+		int id = rule(rule).id;
+
+		return id >= 0 && rulesInEncodingRule(encRule).get(id);
+	}
+}
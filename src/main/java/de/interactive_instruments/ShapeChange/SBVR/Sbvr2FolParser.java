@@ -38,7 +38,11 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
@@ -108,6 +112,37 @@ public class Sbvr2FolParser implements MessageSource {
 	 */
 	public FolExpression parse(FolConstraint con) {
 
+		SbvrParsingResult parsingResult = parseConstraint(con);
+
+		logParsingResult(parsingResult);
+
+		if (parsingResult.hasFirstOrderLogicExpression()) {
+			return parsingResult.getFirstOrderLogicExpression();
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses a first order logic expression from the given constraint, without
+	 * logging anything. The outcome can be logged via
+	 * {@link #logParsingResult(SbvrParsingResult)}.
+	 * <p>
+	 * The parser helper and the vocabulary (nouns and verbs) are only read
+	 * while parsing, and variable names are assigned per thread. This method
+	 * can therefore be invoked concurrently for different constraints.
+	 * <p>
+	 * Parsing is first attempted with the faster SLL prediction mode, bailing
+	 * out on the first syntax error. Only if that fails is the constraint
+	 * parsed again with full LL prediction, which then also reports the
+	 * syntax errors. SLL either produces the same parse tree as LL or fails,
+	 * so the result does not depend on which stage succeeded.
+	 * 
+	 * @param con
+	 * @return the result of parsing the constraint, never <code>null</code>
+	 */
+	public SbvrParsingResult parseConstraint(FolConstraint con) {
+
 		Variable.reset();
 
 		SbvrParsingResult parsingResult = new SbvrParsingResult();
@@ -126,14 +161,35 @@ public class Sbvr2FolParser implements MessageSource {
 		parser.helper = helper;
 
 		/*
-		 * remove ConsoleErrorListener and add our own
+		 * first stage: SLL prediction, without error reporting and recovery
 		 */
 		parser.removeErrorListeners();
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(new BailErrorStrategy());
+
 		SbvrErrorListener parsingErrorListener = new SbvrErrorListener();
-		parser.addErrorListener(parsingErrorListener);
 
-		// execute parsing, starting with rule 'sentence'
-		ParseTree tree = parser.sentence();
+		ParseTree tree;
+
+		try {
+
+			// execute parsing, starting with rule 'sentence'
+			tree = parser.sentence();
+
+		} catch (ParseCancellationException e) {
+
+			/*
+			 * second stage: rewind and parse with full LL prediction, using
+			 * our own error listener to gather syntax errors
+			 */
+			tokens.seek(0);
+			parser.reset();
+			parser.addErrorListener(parsingErrorListener);
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			parser.setErrorHandler(new DefaultErrorStrategy());
+
+			tree = parser.sentence();
+		}
 
 		// get rule invocation stack for debugging
 		parsingResult.setRuleInvocationStack(tree.toStringTree(parser));
@@ -169,10 +225,12 @@ public class Sbvr2FolParser implements MessageSource {
 
 				if (folExpr == null) {
 
+					/*
+					 * if the visitor did not report errors either, this is
+					 * logged as message 1 by logParsingResult(...)
+					 */
 					if (folVisitor.hasErrors()) {
 						parsingResult.addErrors(folVisitor.getErrors());
-					} else {
-						result.addError(this, 1);
 					}
 
 				} else {
@@ -181,16 +239,15 @@ public class Sbvr2FolParser implements MessageSource {
 			}
 		}
 
-		logParsingResult(parsingResult);
-
-		if (parsingResult.hasFirstOrderLogicExpression()) {
-			return parsingResult.getFirstOrderLogicExpression();
-		} else {
-			return null;
-		}
+		return parsingResult;
 	}
 
-	private void logParsingResult(SbvrParsingResult parsingResult) {
+	/**
+	 * Logs the given result of parsing an SBVR constraint.
+	 * 
+	 * @param parsingResult
+	 */
+	public void logParsingResult(SbvrParsingResult parsingResult) {
 
 		if (parsingResult != null) {
 
@@ -221,6 +278,8 @@ public class Sbvr2FolParser implements MessageSource {
 						SbvrUtil.printErrors(ei, con.text(), result);
 						// printErrors(ei, con.text());
 					}
+				} else {
+					result.addError(this, 1);
 				}
 			}
 
@@ -0,0 +1,551 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.interactive_instruments.ShapeChange.Model.ClassInfo;
+import de.interactive_instruments.ShapeChange.Model.Constraint;
+import de.interactive_instruments.ShapeChange.Model.Info;
+import de.interactive_instruments.ShapeChange.Model.Model;
+import de.interactive_instruments.ShapeChange.Model.PackageInfo;
+import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Model.Stereotypes;
+import de.interactive_instruments.ShapeChange.Model.TaggedValues;
+
+/**
+ * Fingerprints of the schemas of a model, used to regenerate the output of a
+ * target only for the schemas that changed since the previous run (see
+ * {@link Options#PARAM_INCREMENTAL_REGENERATION}).
+ * <p>
+ * The fingerprint of a schema is a SHA-256 hash of its packages and classes,
+ * including their tagged values, stereotypes, documentation, supertypes,
+ * constraints and properties. The fingerprint that is compared between runs
+ * also covers the schemas that the schema depends on - i.e. the schemas
+ * containing supertypes and value types of its classes, transitively - as
+ * well as the configuration of the target, the input configuration and the
+ * ShapeChange version.
+ * <p>
+ * Fingerprints of a target are kept in a properties file in the output
+ * directory of the target, with the schema name as key. The name of the file
+ * is derived from the target configuration, so that multiple targets of the
+ * same class can write to the same output directory. The file also lists the
+ * output files that were created for each schema; a schema is only
+ * considered unchanged if all of them still exist.
+ */
+public class SchemaFingerprints {
+
+	/**
+	 * Prefix of the name of the file in which the fingerprints of a target
+	 * are kept; the name of the target class, a hash of the target
+	 * configuration and file extension '.properties' are appended.
+	 */
+	public static final String FILE_NAME_PREFIX = ".fingerprints-";
+
+	/**
+	 * Suffix of the keys under which the output files of a schema are kept,
+	 * separated by the platform path separator
+	 */
+	public static final String OUTPUT_FILES_KEY_SUFFIX = "#outputFiles";
+
+	protected final Model model;
+	protected final String configuration;
+
+	/**
+	 * key: package id, value: fingerprint of the package, its child packages
+	 * and their classes
+	 */
+	protected final Map<String, String> ownFingerprints = new HashMap<String, String>();
+
+	/**
+	 * key: package id, value: ids of the schema packages that contain the
+	 * supertypes and value types of the classes of the package
+	 */
+	protected final Map<String, SortedSet<String>> dependencies = new HashMap<String, SortedSet<String>>();
+
+	/**
+	 * @param model
+	 *            the model that is processed by the target
+	 * @param tgt
+	 *            the configuration of the target
+	 * @param options
+	 *            the options used for the target
+	 */
+	public SchemaFingerprints(Model model, TargetConfiguration tgt,
+			Options options) {
+		this.model = model;
+		this.configuration = configuration(tgt, options);
+	}
+
+	/**
+	 * @param tgt
+	 * @param options
+	 * @return hash of the target configuration, the input configuration
+	 *         (parameters, stereotype and tag aliases, descriptor sources and
+	 *         package infos) and the ShapeChange version; any change of them
+	 *         changes all fingerprints
+	 */
+	protected static String configuration(TargetConfiguration tgt,
+			Options options) {
+
+		Digest d = new Digest();
+		d.add(Options.class.getPackage().getImplementationVersion());
+		d.add(tgt.toString());
+
+		InputConfiguration inputConfig = options.getInputConfig();
+
+		if (inputConfig != null) {
+
+			d.add("parameters", inputConfig.getParameters());
+			d.add("stereotypeAliases", inputConfig.getStereotypeAliases());
+			d.add("tagAliases", inputConfig.getTagAliases());
+			d.add("descriptorSources", inputConfig.getDescriptorSources());
+
+			Map<String, PackageInfoConfiguration> packageInfos = inputConfig
+					.getPackageInfos();
+
+			if (packageInfos != null) {
+
+				for (String name : new TreeSet<String>(
+						packageInfos.keySet())) {
+
+					PackageInfoConfiguration pic = packageInfos.get(name);
+
+					d.add(name);
+					d.add(pic.getNsabr());
+					d.add(pic.getNs());
+					d.add(pic.getXsdDocument());
+					d.add(pic.getVersion());
+				}
+			}
+		}
+
+		return d.hex();
+	}
+
+	/**
+	 * @param targetClass
+	 * @param tgt
+	 * @param outputDirectory
+	 * @return the file in which the fingerprints of the schemas processed by
+	 *         the given target are kept
+	 */
+	public static File file(Class<?> targetClass, TargetConfiguration tgt,
+			String outputDirectory) {
+
+		Digest d = new Digest();
+		d.add(tgt.toString());
+
+		return new File(outputDirectory,
+				FILE_NAME_PREFIX + targetClass.getSimpleName() + "-"
+						+ d.hex().substring(0, 16) + ".properties");
+	}
+
+	/**
+	 * @param file
+	 * @return the fingerprints stored in the given file; empty if the file
+	 *         does not exist
+	 * @throws IOException
+	 */
+	public static Properties load(File file) throws IOException {
+
+		Properties fingerprints = new Properties();
+
+		if (file.isFile()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				fingerprints.load(in);
+			} finally {
+				in.close();
+			}
+		}
+
+		return fingerprints;
+	}
+
+	/**
+	 * Writes the given fingerprints to the given file; the parent directory
+	 * is created if necessary.
+	 * 
+	 * @param fingerprints
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void store(Properties fingerprints, File file)
+			throws IOException {
+
+		File dir = file.getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+
+		OutputStream out = new FileOutputStream(file);
+		try {
+			fingerprints.store(out,
+					"ShapeChange schema fingerprints - do not edit");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @param fingerprints
+	 * @return the names of the schemas for which the given properties contain
+	 *         a fingerprint
+	 */
+	public static Set<String> schemas(Properties fingerprints) {
+
+		Set<String> schemas = new HashSet<String>();
+		for (String key : fingerprints.stringPropertyNames()) {
+			if (!key.endsWith(OUTPUT_FILES_KEY_SUFFIX)) {
+				schemas.add(key);
+			}
+		}
+		return schemas;
+	}
+
+	/**
+	 * Records the output files that were created for the given schema.
+	 * 
+	 * @param fingerprints
+	 * @param schema
+	 * @param files
+	 */
+	public static void setOutputFiles(Properties fingerprints, String schema,
+			Collection<File> files) {
+
+		StringBuilder sb = new StringBuilder();
+		for (File f : files) {
+			if (sb.length() > 0) {
+				sb.append(File.pathSeparatorChar);
+			}
+			sb.append(f.getAbsolutePath());
+		}
+		fingerprints.setProperty(schema + OUTPUT_FILES_KEY_SUFFIX,
+				sb.toString());
+	}
+
+	/**
+	 * @param fingerprints
+	 * @param schema
+	 * @return the output files that were created for the given schema;
+	 *         <code>null</code> if they are not known
+	 */
+	public static List<File> outputFiles(Properties fingerprints,
+			String schema) {
+
+		String s = fingerprints.getProperty(schema + OUTPUT_FILES_KEY_SUFFIX);
+		if (s == null) {
+			return null;
+		}
+
+		List<File> files = new ArrayList<File>();
+		for (String path : s.split(File.pathSeparator)) {
+			if (path.length() > 0) {
+				files.add(new File(path));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @param fingerprints
+	 * @param schema
+	 * @return <code>true</code> if the output files that were created for the
+	 *         given schema are known and all of them still exist, else
+	 *         <code>false</code>
+	 */
+	public static boolean outputFilesExist(Properties fingerprints,
+			String schema) {
+
+		List<File> files = outputFiles(fingerprints, schema);
+		if (files == null) {
+			return false;
+		}
+		for (File f : files) {
+			if (!f.exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param schema
+	 * @return the fingerprint of the given schema, covering the schemas it
+	 *         depends on and the target configuration
+	 */
+	public String fingerprint(PackageInfo schema) {
+
+		// collect the schemas the schema depends on, transitively
+		SortedSet<String> closure = new TreeSet<String>();
+		List<String> open = new ArrayList<String>();
+		open.add(schema.id());
+
+		while (!open.isEmpty()) {
+			String id = open.remove(open.size() - 1);
+			PackageInfo pi = model.packageById(id);
+			if (pi != null && closure.add(id)) {
+				ownFingerprint(pi);
+				open.addAll(dependencies.get(id));
+			}
+		}
+
+		Digest d = new Digest();
+		d.add(configuration);
+		for (String id : closure) {
+			d.add(id);
+			d.add(ownFingerprints.get(id));
+		}
+		return d.hex();
+	}
+
+	/**
+	 * @param pi
+	 * @return the fingerprint of the given package, its child packages and
+	 *         their classes
+	 */
+	protected String ownFingerprint(PackageInfo pi) {
+
+		String fingerprint = ownFingerprints.get(pi.id());
+		if (fingerprint != null) {
+			return fingerprint;
+		}
+
+		Digest d = new Digest();
+		SortedSet<String> deps = new TreeSet<String>();
+
+		addPackage(d, pi);
+
+		for (ClassInfo ci : model.classes(pi)) {
+
+			addClass(d, ci);
+
+			for (String supertypeId : ci.supertypes()) {
+				addDependency(deps, model.classById(supertypeId));
+			}
+			if (ci.properties() == null) {
+				continue;
+			}
+			for (PropertyInfo propi : ci.properties().values()) {
+				Type ti = propi.typeInfo();
+				if (ti != null && ti.id != null) {
+					addDependency(deps, model.classById(ti.id));
+				}
+			}
+		}
+
+		deps.remove(pi.id());
+
+		fingerprint = d.hex();
+		ownFingerprints.put(pi.id(), fingerprint);
+		dependencies.put(pi.id(), deps);
+
+		return fingerprint;
+	}
+
+	private void addDependency(SortedSet<String> deps, ClassInfo ci) {
+
+		if (ci == null || ci.pkg() == null) {
+			return;
+		}
+
+		PackageInfo pi = ci.pkg();
+		while (!pi.isSchema() && pi.owner() != null) {
+			pi = pi.owner();
+		}
+		deps.add(pi.id());
+	}
+
+	private void addPackage(Digest d, PackageInfo pi) {
+
+		d.add("package");
+		addInfo(d, pi);
+		d.add(pi.targetNamespace());
+		d.add(pi.xmlns());
+		d.add(pi.xsdDocument());
+		d.add(pi.version());
+
+		for (PackageInfo child : pi.containedPackages()) {
+			addPackage(d, child);
+		}
+	}
+
+	private void addClass(Digest d, ClassInfo ci) {
+
+		d.add("class");
+		addInfo(d, ci);
+		d.add(String.valueOf(ci.category()));
+		d.add(String.valueOf(ci.isAbstract()));
+		d.add(ci.pkg() == null ? null : ci.pkg().id());
+		d.add(ci.supertypes().toString());
+		d.add(ci.subtypes().toString());
+		addConstraints(d, ci.constraints());
+
+		if (ci.properties() == null) {
+			return;
+		}
+
+		for (PropertyInfo propi : ci.properties().values()) {
+
+			d.add("property");
+			addInfo(d, propi);
+			d.add(propi.sequenceNumber().getString());
+			Type ti = propi.typeInfo();
+			d.add(ti == null ? null : ti.id);
+			d.add(ti == null ? null : ti.name);
+			d.add(propi.cardinality().toString());
+			d.add(propi.isAttribute() + "|" + propi.isNavigable() + "|"
+					+ propi.isOrdered() + "|" + propi.isDerived() + "|"
+					+ propi.isReadOnly() + "|" + propi.isComposition() + "|"
+					+ propi.isAggregation() + "|" + propi.isRestriction()
+					+ "|" + propi.voidable() + "|" + propi.nilReasonAllowed());
+			d.add(propi.initialValue());
+			d.add(propi.reverseProperty() == null ? null
+					: propi.reverseProperty().id());
+			addConstraints(d, propi.constraints());
+		}
+	}
+
+	private void addInfo(Digest d, Info i) {
+
+		d.add(i.id());
+		d.add(i.name());
+		d.add(i.aliasName());
+		d.add(i.definition());
+		d.add(i.description());
+		d.add(i.primaryCode());
+		d.add(i.language());
+		d.add(i.legalBasis());
+
+		Stereotypes st = i.stereotypes();
+		if (st != null) {
+			d.add(new TreeSet<String>(Arrays.asList(st.asArray())).toString());
+		}
+
+		TaggedValues tvs = i.taggedValuesAll();
+		if (tvs != null) {
+			SortedMap<String, List<String>> tvMap = tvs.asMap();
+			for (Map.Entry<String, List<String>> e : tvMap.entrySet()) {
+				d.add(e.getKey());
+				d.add(e.getValue().toString());
+			}
+		}
+	}
+
+	private void addConstraints(Digest d, List<Constraint> constraints) {
+
+		if (constraints == null) {
+			return;
+		}
+
+		for (Constraint con : constraints) {
+			d.add("constraint");
+			d.add(con.name());
+			d.add(con.status());
+			d.add(con.text());
+		}
+	}
+
+	/**
+	 * SHA-256 digest of a sequence of strings.
+	 */
+	protected static class Digest {
+
+		private final MessageDigest md;
+
+		Digest() {
+			try {
+				md = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				// every Java platform supports SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void add(String s) {
+
+			if (s != null) {
+				try {
+					md.update(s.getBytes("UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					// UTF-8 is always supported
+				}
+			}
+			md.update((byte) 0);
+		}
+
+		void add(String name, Map<String, String> map) {
+
+			add(name);
+
+			if (map != null) {
+				for (Map.Entry<String, String> e : new TreeMap<String, String>(
+						map).entrySet()) {
+					add(e.getKey());
+					add(e.getValue());
+				}
+			}
+		}
+
+		String hex() {
+
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		}
+	}
+}
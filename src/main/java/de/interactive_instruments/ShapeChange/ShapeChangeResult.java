@@ -32,20 +32,40 @@
 
 package de.interactive_instruments.ShapeChange;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
@@ -60,6 +80,10 @@ import org.apache.xml.serializer.Serializer;
 import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
 /** The result is xxx as an XML file. */
 public class ShapeChangeResult {
@@ -72,7 +96,39 @@ public class ShapeChangeResult {
 			.getDefaultMethodProperties("xml");
 	protected Options options = null;
 
-	protected HashSet<String> duplicateMessageCheck;
+	protected Set<String> duplicateMessageCheck;
+
+	/**
+	 * Replaces duplicateMessageCheck in a streaming log: the most recently
+	 * logged repeatable messages, in access order, limited to
+	 * {@link Options#logDuplicateCheckSize()} entries
+	 */
+	protected LinkedHashMap<String, Boolean> recentMessages = null;
+
+	/**
+	 * number of errors and fatal errors that have been logged
+	 */
+	protected int errorCount = 0;
+
+	/**
+	 * files added via {@link #addResult(int, String, String, String)}, in the
+	 * order in which they were added, and the ids of the targets that created
+	 * them
+	 */
+	protected List<File> addedResultFiles = new ArrayList<File>();
+	protected List<Integer> addedResultTargets = new ArrayList<Integer>();
+
+	/*
+	 * Streaming log (see Options.PARAM_STREAMING_LOG): messages are written to
+	 * the log file as they arrive. The element of the last message is kept
+	 * until the next message arrives, so that details can still be added.
+	 */
+	protected File logFile = null;
+	protected OutputStream logStream = null;
+	protected XMLStreamWriter logWriter = null;
+	protected Writer jsonWriter = null;
+	protected Element pendingMessage = null;
+	protected int unflushedMessages = 0;
 
 	protected static boolean printDateTime = false;
 	protected static DateFormat dateFormat = new SimpleDateFormat(
@@ -102,9 +158,9 @@ public class ShapeChangeResult {
 			System.err.println(level.substring(0, 1) + " "
 					+ (printDateTime ? dateTime() + " " : "") + mtext);
 			message = result.document.createElementNS(Options.SCRS_NS, level);
-			result.messages.appendChild(message);
 			message.setAttribute("message",
 					(printDateTime ? dateTime() + " " : "") + mtext);
+			result.appendMessage(message);
 
 		}
 
@@ -112,9 +168,10 @@ public class ShapeChangeResult {
 		public void addDetail(String mtext) {
 			System.err.println(level.substring(0, 1) + " ... " + mtext);
 			if (message != null) {
-				Element detail = result.document.createElement("Detail");
-				detail.setAttribute("message", mtext);
-				message.appendChild(detail);
+				// targets may be executed in parallel; guard the shared DOM
+				synchronized (result) {
+					result.appendDetail(message, mtext);
+				}
 			}
 		}
 
@@ -196,6 +253,28 @@ public class ShapeChangeResult {
 		duplicateMessageCheck = new HashSet<String>(50);
 	}
 
+	/**
+	 * @param key
+	 *            level and text of a repeatable message
+	 * @return <code>true</code> if the message has not been logged before,
+	 *         else <code>false</code>; in a streaming log, a message that is
+	 *         seen again becomes the most recently used one, so that the least
+	 *         recently seen messages are forgotten first
+	 */
+	private boolean isNewMessage(String key) {
+
+		if (recentMessages == null) {
+			return duplicateMessageCheck.add(key);
+		}
+
+		// get() moves an existing entry to the end of the access order
+		if (recentMessages.get(key) != null) {
+			return false;
+		}
+		recentMessages.put(key, Boolean.TRUE);
+		return true;
+	}
+
 	private String safe(String s) {
 		if (s == null) {
 			return "<null>";
@@ -234,14 +313,14 @@ public class ShapeChangeResult {
 		return addDebug(m);
 	};
 
-	public MessageContext addDebug(String m) {
+	public synchronized MessageContext addDebug(String m) {
 		if (document == null
 				|| !options.parameter("reportLevel").equals("DEBUG")) {
 			return null;
 		}
 		if (m.startsWith("??")) {
 			m = m.substring(2);
-			if (!duplicateMessageCheck.add("D " + m))
+			if (!isNewMessage("D " + m))
 				return null;
 		}
 		return new MessageContext(this, "Debug", m);
@@ -277,14 +356,14 @@ public class ShapeChangeResult {
 		return addInfo(m);
 	};
 
-	public MessageContext addInfo(String m) {
+	public synchronized MessageContext addInfo(String m) {
 		String l = options.parameter("reportLevel");
 		if (document == null || !l.equals("DEBUG") && !l.equals("INFO")) {
 			return null;
 		}
 		if (m.startsWith("??")) {
 			m = m.substring(2);
-			if (!duplicateMessageCheck.add("I " + m))
+			if (!isNewMessage("I " + m))
 				return null;
 		}
 		return new MessageContext(this, "Info", m);
@@ -320,7 +399,7 @@ public class ShapeChangeResult {
 		return addWarning(m);
 	};
 
-	public MessageContext addWarning(String m) {
+	public synchronized MessageContext addWarning(String m) {
 		String l = options.parameter("reportLevel");
 		if (document == null || !l.equals("DEBUG") && !l.equals("INFO")
 				&& !l.equals("WARNING")) {
@@ -328,7 +407,7 @@ public class ShapeChangeResult {
 		}
 		if (m.startsWith("??")) {
 			m = m.substring(2);
-			if (!duplicateMessageCheck.add("W " + m))
+			if (!isNewMessage("W " + m))
 				return null;
 		}
 		return new MessageContext(this, "Warning", m);
@@ -372,13 +451,14 @@ public class ShapeChangeResult {
 		return addError(m);
 	};
 
-	public MessageContext addError(String m) {
+	public synchronized MessageContext addError(String m) {
+		errorCount++;
 		if (document == null) {
 			return null;
 		}
 		if (m.startsWith("??")) {
 			m = m.substring(2);
-			if (!duplicateMessageCheck.add("E " + m))
+			if (!isNewMessage("E " + m))
 				return null;
 		}
 		return new MessageContext(this, "Error", m);
@@ -416,27 +496,30 @@ public class ShapeChangeResult {
 		return ex;
 	};
 
-	public MessageContext addFatalError(String m) {
+	public synchronized MessageContext addFatalError(String m) {
+		errorCount++;
 		if (document == null) {
 			return null;
 		}
 		if (m.startsWith("??")) {
 			m = m.substring(2);
-			if (!duplicateMessageCheck.add("F " + m))
+			if (!isNewMessage("F " + m))
 				return null;
 		}
 		return new MessageContext(this, "FatalError", m);
 	}
 
-	public void addResult(int targetId, String dname, String fname,
-			String scope) {
+	public synchronized void addResult(int targetId, String dname,
+			String fname, String scope) {
+		File file = new File(dname + "/" + fname);
+		addedResultFiles.add(file);
+		addedResultTargets.add(targetId);
 		if (document == null) {
 			return;
 		}
 		Element resfile = document.createElementNS(Options.SCRS_NS, "Result");
 		resultFiles.appendChild(resfile);
 		resfile.setAttribute("target", options.nameOfTarget(targetId));
-		File file = new File(dname + "/" + fname);
 		String path = file.toURI().toASCIIString();
 		resfile.setAttribute("href", path);
 		if (scope != null)
@@ -444,7 +527,39 @@ public class ShapeChangeResult {
 		resfile.appendChild(document.createTextNode(fname));
 	}
 
-	public void setResultCode(int rc) {
+	/**
+	 * @return the number of result files that have been added so far
+	 */
+	public synchronized int resultCount() {
+		return addedResultFiles.size();
+	}
+
+	/**
+	 * @param from
+	 *            number of result files that had been added before (see
+	 *            {@link #resultCount()})
+	 * @param targetId
+	 * @return the result files that the given target added since then
+	 */
+	public synchronized List<File> resultFiles(int from, int targetId) {
+		List<File> files = new ArrayList<File>();
+		for (int i = from; i < addedResultFiles.size(); i++) {
+			if (addedResultTargets.get(i).intValue() == targetId) {
+				files.add(addedResultFiles.get(i));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * @return the number of errors and fatal errors that have been logged so
+	 *         far
+	 */
+	public synchronized int errorCount() {
+		return errorCount;
+	}
+
+	public synchronized void setResultCode(int rc) {
 		if (document == null) {
 			return;
 		}
@@ -455,7 +570,368 @@ public class ShapeChangeResult {
 		return options;
 	}
 
-	public void toFile(String filename) {
+	/**
+	 * Adds the given message element to the log. If the log is streamed, the
+	 * previous message is written to the log file and the given one is kept
+	 * until the next message arrives.
+	 */
+	protected synchronized void appendMessage(Element message) {
+
+		if (logWriter == null) {
+			messages.appendChild(message);
+		} else {
+			writePendingMessage();
+			pendingMessage = message;
+		}
+	}
+
+	/**
+	 * Adds a detail to the given message element. If the log is streamed and
+	 * the message has already been written to the log file, the detail is
+	 * logged as a separate message with the same level.
+	 */
+	protected synchronized void appendDetail(Element message, String mtext) {
+
+		Element detail = document.createElement("Detail");
+		detail.setAttribute("message", mtext);
+
+		if (logWriter == null || message == pendingMessage) {
+			message.appendChild(detail);
+		} else {
+			Element late = document.createElementNS(Options.SCRS_NS,
+					message.getLocalName());
+			late.setAttribute("message", mtext);
+			appendMessage(late);
+		}
+	}
+
+	/**
+	 * Starts writing messages to the given log file as they arrive, if this
+	 * has been requested via input parameter
+	 * {@value Options#PARAM_STREAMING_LOG}. Messages that have been logged
+	 * before are written first. From then on, messages are no longer kept in
+	 * memory and repeated messages are suppressed using a bounded cache (see
+	 * {@value Options#PARAM_LOG_DUPLICATE_CHECK_SIZE}).
+	 * 
+	 * @param filename
+	 *            path of the log file
+	 */
+	public synchronized void startStreaming(String filename) {
+
+		if (document == null || logWriter != null || filename == null
+				|| !options.isStreamingLog()) {
+			return;
+		}
+
+		try {
+			logFile = new File(filename);
+			File dir = logFile.getAbsoluteFile().getParentFile();
+			if (dir != null && !dir.exists()) {
+				FileUtils.forceMkdir(dir);
+			}
+
+			logStream = new BufferedOutputStream(
+					new FileOutputStream(logFile));
+			logWriter = XMLOutputFactory.newInstance()
+					.createXMLStreamWriter(logStream, "UTF-8");
+
+			logWriter.writeStartDocument("UTF-8", "1.0");
+			newLine(0);
+			logWriter.writeStartElement("r", "ShapeChangeResult",
+					Options.SCRS_NS);
+			logWriter.writeNamespace("r", Options.SCRS_NS);
+			logWriter.writeAttribute("start", root.getAttribute("start"));
+			logWriter.writeAttribute("version", root.getAttribute("version"));
+			newLine(1);
+			logWriter.writeStartElement("r", "Messages", Options.SCRS_NS);
+
+			if (options.isLogJson()) {
+				jsonWriter = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(jsonLogFile(logFile)), "UTF-8"));
+			}
+
+			// write the messages logged so far, and release them
+			List<Element> logged = new ArrayList<Element>();
+			for (Node n = messages.getFirstChild(); n != null; n = n
+					.getNextSibling()) {
+				if (n instanceof Element) {
+					logged.add((Element) n);
+				}
+			}
+			for (Element message : logged) {
+				messages.removeChild(message);
+				writeMessage(message);
+			}
+			flushLog();
+
+			final int limit = options.logDuplicateCheckSize();
+			recentMessages = new LinkedHashMap<String, Boolean>(1024, 0.75f,
+					true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, Boolean> eldest) {
+					return size() > limit;
+				}
+			};
+			for (String key : duplicateMessageCheck) {
+				recentMessages.put(key, Boolean.TRUE);
+			}
+
+		} catch (Exception e) {
+			System.err.println("Error: log file " + filename
+					+ " cannot be streamed: " + e.getMessage());
+			closeLog();
+			logFile = null;
+		}
+	}
+
+	private static File jsonLogFile(File logFile) {
+		String name = logFile.getName();
+		int idx = name.lastIndexOf('.');
+		if (idx > 0) {
+			name = name.substring(0, idx);
+		}
+		return new File(logFile.getAbsoluteFile().getParentFile(),
+				name + ".jsonl");
+	}
+
+	private void writePendingMessage() {
+
+		if (pendingMessage == null) {
+			return;
+		}
+
+		try {
+			String level = pendingMessage.getLocalName();
+			writeMessage(pendingMessage);
+			pendingMessage = null;
+
+			/*
+			 * flush regularly, and immediately for errors, so that the log
+			 * is (almost) complete if the process terminates unexpectedly
+			 */
+			if (++unflushedMessages >= 100 || level.equals("Error")
+					|| level.equals("FatalError")) {
+				flushLog();
+			}
+		} catch (Exception e) {
+			System.err.println("Error: " + e.getMessage());
+		}
+	}
+
+	private void writeMessage(Element message)
+			throws XMLStreamException, IOException {
+
+		newLine(2);
+		logWriter.writeStartElement("r", message.getLocalName(),
+				Options.SCRS_NS);
+		writeAttributes(message);
+
+		boolean hasDetails = false;
+		for (Node n = message.getFirstChild(); n != null; n = n
+				.getNextSibling()) {
+			if (n instanceof Element) {
+				newLine(3);
+				logWriter.writeEmptyElement(n.getNodeName());
+				writeAttributes((Element) n);
+				hasDetails = true;
+			}
+		}
+		if (hasDetails) {
+			newLine(2);
+		}
+		logWriter.writeEndElement();
+
+		if (jsonWriter != null) {
+			StringBuilder sb = new StringBuilder();
+			sb.append("{\"level\":");
+			appendJsonString(sb, message.getLocalName());
+			sb.append(",\"message\":");
+			appendJsonString(sb, message.getAttribute("message"));
+			if (hasDetails) {
+				sb.append(",\"details\":[");
+				boolean first = true;
+				for (Node n = message.getFirstChild(); n != null; n = n
+						.getNextSibling()) {
+					if (n instanceof Element) {
+						if (!first) {
+							sb.append(',');
+						}
+						appendJsonString(sb,
+								((Element) n).getAttribute("message"));
+						first = false;
+					}
+				}
+				sb.append(']');
+			}
+			sb.append("}\n");
+			jsonWriter.write(sb.toString());
+		}
+	}
+
+	private void writeAttributes(Element e) throws XMLStreamException {
+		NamedNodeMap atts = e.getAttributes();
+		for (int i = 0; i < atts.getLength(); i++) {
+			Node att = atts.item(i);
+			logWriter.writeAttribute(att.getNodeName(), att.getNodeValue());
+		}
+	}
+
+	static void appendJsonString(StringBuilder sb, String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+
+	private void newLine(int indent) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder("\n");
+		for (int i = 0; i < indent; i++) {
+			sb.append("  ");
+		}
+		logWriter.writeCharacters(sb.toString());
+	}
+
+	private void flushLog() throws XMLStreamException, IOException {
+		logWriter.flush();
+		if (jsonWriter != null) {
+			jsonWriter.flush();
+		}
+		unflushedMessages = 0;
+	}
+
+	private void closeLog() {
+		try {
+			if (logWriter != null) {
+				logWriter.close();
+			}
+		} catch (XMLStreamException e) {
+			// ignore
+		}
+		logWriter = null;
+		try {
+			if (logStream != null) {
+				logStream.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+		logStream = null;
+		try {
+			if (jsonWriter != null) {
+				jsonWriter.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+		jsonWriter = null;
+	}
+
+	/**
+	 * Completes a streamed log: writes the remaining message and the result
+	 * files, and then sets the attributes of the root element that are only
+	 * known at the end of the run. The latter is done by streaming the log
+	 * file into a new file, so that memory consumption does not depend on the
+	 * size of the log.
+	 */
+	private void completeStreamedLog() throws Exception {
+
+		writePendingMessage();
+
+		logWriter.writeEndElement(); // Messages
+		newLine(1);
+		logWriter.writeStartElement("r", "Results", Options.SCRS_NS);
+		for (Node n = resultFiles.getFirstChild(); n != null; n = n
+				.getNextSibling()) {
+			if (n instanceof Element) {
+				newLine(2);
+				logWriter.writeStartElement("r", "Result", Options.SCRS_NS);
+				writeAttributes((Element) n);
+				logWriter.writeCharacters(n.getTextContent());
+				logWriter.writeEndElement();
+			}
+		}
+		newLine(1);
+		logWriter.writeEndElement(); // Results
+		newLine(0);
+		logWriter.writeEndElement(); // ShapeChangeResult
+		logWriter.writeEndDocument();
+		closeLog();
+
+		File tmp = new File(logFile.getPath() + ".tmp");
+
+		InputStream in = new FileInputStream(logFile);
+		OutputStream out = new BufferedOutputStream(
+				new FileOutputStream(tmp));
+		try {
+			XMLEventReader reader = XMLInputFactory.newInstance()
+					.createXMLEventReader(in);
+			XMLEventWriter writer = XMLOutputFactory.newInstance()
+					.createXMLEventWriter(out, "UTF-8");
+			XMLEventFactory ef = XMLEventFactory.newInstance();
+
+			boolean rootFound = false;
+			while (reader.hasNext()) {
+				XMLEvent ev = reader.nextEvent();
+				if (!rootFound && ev.isStartElement()) {
+					rootFound = true;
+					List<Attribute> atts = new ArrayList<Attribute>();
+					atts.add(ef.createAttribute("resultCode",
+							root.getAttribute("resultCode")));
+					atts.add(ef.createAttribute("start",
+							root.getAttribute("start")));
+					atts.add(ef.createAttribute("version",
+							root.getAttribute("version")));
+					atts.add(ef.createAttribute("config",
+							root.getAttribute("config")));
+					atts.add(ef.createAttribute("end",
+							root.getAttribute("end")));
+					writer.add(ef.createStartElement("r", Options.SCRS_NS,
+							"ShapeChangeResult", atts.iterator(),
+							ev.asStartElement().getNamespaces()));
+				} else {
+					writer.add(ev);
+				}
+			}
+			writer.close();
+			reader.close();
+		} finally {
+			in.close();
+			out.close();
+		}
+
+		if (!logFile.delete() || !tmp.renameTo(logFile)) {
+			throw new Exception("Cannot replace " + logFile.getPath());
+		}
+	}
+
+	public synchronized void toFile(String filename) {
 		if (document == null) {
 			return;
 		}
@@ -463,19 +939,32 @@ public class ShapeChangeResult {
 			root.setAttribute("config", options.configFile);
 			root.setAttribute("end", (new Date()).toString());
 
-			// check that directory exists and create it if necessary
-			File f = new File(filename);
-			f = f.getParentFile();
-			if (f != null && !f.exists()) {
-				FileUtils.forceMkdir(f);
-			}
+			Source xmlSource;
 
-			FileWriter outputXML = new FileWriter(filename);
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
-			outputXML.close();
+			if (logWriter != null) {
+
+				// the log has been streamed to logFile
+				completeStreamedLog();
+				xmlSource = new StreamSource(logFile);
+
+			} else {
+
+				// check that directory exists and create it if necessary
+				File f = new File(filename);
+				f = f.getParentFile();
+				if (f != null && !f.exists()) {
+					FileUtils.forceMkdir(f);
+				}
+
+				FileWriter outputXML = new FileWriter(filename);
+				Serializer serializer = SerializerFactory
+						.getSerializer(outputFormat);
+				serializer.setWriter(outputXML);
+				serializer.asDOMSerializer().serialize(document);
+				outputXML.close();
+
+				xmlSource = new DOMSource(document);
+			}
 
 			String xsltfileName = options.parameter("xsltFile");
 			if (xsltfileName != null && !xsltfileName.isEmpty()) {
@@ -483,10 +972,8 @@ public class ShapeChangeResult {
 				StreamSource xsltSource;
 				if (xsltfileName.toLowerCase().startsWith("http")) {
 					// get xslt via URL
-					URL url = new URL(xsltfileName);
-					URLConnection urlConnection = url.openConnection();
-					xsltSource = new StreamSource(
-							urlConnection.getInputStream());
+					xsltSource = new StreamSource(ResourceResolver
+							.getInstance().open(xsltfileName), xsltfileName);
 				} else {
 					InputStream stream = getClass()
 							.getResourceAsStream("/xslt/result.xsl");
@@ -510,11 +997,11 @@ public class ShapeChangeResult {
 				FileWriter outputHTML = new FileWriter(outHTML);
 
 				if (xsltSource != null) {
-					Source xmlSource = new DOMSource(document);
 					Result res = new StreamResult(outputHTML);
 
 					TransformerFactory transFact = TransformerFactory
 							.newInstance();
+					transFact.setURIResolver(ResourceResolver.getInstance());
 					Transformer trans = transFact.newTransformer(xsltSource);
 					trans.transform(xmlSource, res);
 				}
@@ -522,6 +1009,8 @@ public class ShapeChangeResult {
 
 		} catch (Exception e) {
 			System.err.println("Error: " + e.getMessage());
+		} finally {
+			closeLog();
 		}
 	}
 
@@ -818,6 +1307,28 @@ public class ShapeChangeResult {
 			return "(Converter.java) Transformation with ID '$1$' is disabled (via the configuration). All transformations and targets that depend on this transformation will not be executed.";
 		case 507:
 			return "(Converter.java) None of the packages contained in the model is a schema selected for processing. Make sure that the schema you want to process are configured to be a schema (via the 'targetNamespace' tagged value or via a PackageInfo element in the configuration) and also selected for processing (if you use one of the input parameters appSchemaName, appSchemaNameRegex, appSchemaNamespaceRegex, ensure that they include the schema). Execution will stop now.";
+		case 508:
+			return "(Converter.java) Metrics for $1$: $2$ ms, heap change $3$ KB, allocated $4$ KB.";
+		case 509:
+			return "(Converter.java) Process metrics written to '$1$'.";
+		case 510:
+			return "(Converter.java) Process metrics could not be written to '$1$'. Exception message: '$2$'.";
+		case 511:
+			return "(Converter.java) Model restored from snapshot '$1$'.";
+		case 512:
+			return "(Converter.java) Snapshot of the model written to '$1$'.";
+		case 513:
+			return "(Converter.java) Snapshot '$1$' could not be read; the model is loaded from the input. Exception message: '$2$'.";
+		case 514:
+			return "(Converter.java) Snapshot of the model could not be written to '$1$'. Exception message: '$2$'.";
+		case 515:
+			return "(Converter.java) Schema '$1$' has not changed since the previous run of target '$2$'. The target is not executed for the schema.";
+		case 516:
+			return "(Converter.java) Schema fingerprints could not be read from or written to '$1$'; all schemas are processed. Exception message: '$2$'.";
+		case 517:
+			return "(Converter.java) Model '$1$' restored from memory.";
+		case 518:
+			return "(Converter.java) $1$ OCL constraint(s) parsed, $2$ of them using a cached syntax tree. Time spent creating syntax trees: $3$ ms; connecting them to the model: $4$ ms.";
 
 		// 600 - 699 Messages known to be used by multiple targets			
 		case 600:
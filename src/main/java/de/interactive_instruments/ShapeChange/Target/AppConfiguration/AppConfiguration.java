@@ -42,8 +42,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -60,6 +58,7 @@ import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
 import de.interactive_instruments.ShapeChange.TargetIdentification;
 import de.interactive_instruments.ShapeChange.Target.Target;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 /**
  * Creates an application configuration file.
@@ -202,8 +201,55 @@ public class AppConfiguration implements Target, MessageSource {
 		addAttribute(doc, root, "xmlns:xsi",
 				"http://www.w3.org/2001/XMLSchema-instance");
 
-		documentMap.put(ci.name(), doc);
+		if (options.isStreamingXmlOutput() && !diagnosticsOnly) {
 
+			// the document is complete, so it can be written right away
+			try {
+				writeDocument(ci.name(), doc, outputFormat());
+			} catch (Exception e) {
+				String m = e.getMessage();
+				result.addError(m != null ? m : e.toString());
+			}
+
+		} else {
+			documentMap.put(ci.name(), doc);
+		}
+	}
+
+	/**
+	 * @return the output properties for writing the documents
+	 */
+	private Properties outputFormat() {
+
+		Properties outputFormat = OutputPropertiesFactory
+				.getDefaultMethodProperties("xml");
+		outputFormat.setProperty("indent", "yes");
+		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
+				"2");
+		outputFormat.setProperty("encoding", "UTF-8");
+
+		return outputFormat;
+	}
+
+	/**
+	 * Writes the given document to the file with the given class name (plus
+	 * ".xml") in the output directory.
+	 * 
+	 * @param className
+	 * @param doc
+	 * @param outputFormat
+	 * @throws Exception
+	 */
+	private void writeDocument(String className, Document doc,
+			Properties outputFormat) throws Exception {
+
+		FileWriter outputXML = new FileWriter(outputDirectory + "/"
+				+ className + ".xml");
+		StreamingXmlWriter.serialize(doc, outputXML, outputFormat,
+				options.isStreamingXmlOutput());
+		outputXML.close();
+		result.addResult(getTargetID(), outputDirectory, className + ".xml",
+				null);
 	}
 
 	private Element createTypeElement(Document doc, ClassInfo ci) {
@@ -484,31 +530,16 @@ public class AppConfiguration implements Target, MessageSource {
 			return;
 		}
 
-		Properties outputFormat = OutputPropertiesFactory
-				.getDefaultMethodProperties("xml");
-		outputFormat.setProperty("indent", "yes");
-		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
-				"2");
-		outputFormat.setProperty("encoding", "UTF-8");
+		Properties outputFormat = outputFormat();
 
 		try {
 
-			FileWriter outputXML;
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-
 			for (String className : documentMap.keySet()) {
 
 				Document doc = documentMap.get(className);
 
 				if (doc != null) {
-					outputXML = new FileWriter(outputDirectory + "/"
-							+ className + ".xml");
-					serializer.setWriter(outputXML);
-					serializer.asDOMSerializer().serialize(doc);
-					outputXML.close();
-					result.addResult(getTargetID(), outputDirectory, className
-							+ ".xml", null);
+					writeDocument(className, doc, outputFormat);
 				}
 			}
 		} catch (Exception e) {
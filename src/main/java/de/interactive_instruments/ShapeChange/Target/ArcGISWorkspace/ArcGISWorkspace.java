@@ -34,7 +34,6 @@ package de.interactive_instruments.ShapeChange.Target.ArcGISWorkspace;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -76,6 +75,7 @@ import de.interactive_instruments.ShapeChange.Target.Target;
 import de.interactive_instruments.ShapeChange.Util.EAException;
 import de.interactive_instruments.ShapeChange.Util.EAModelUtil;
 import de.interactive_instruments.ShapeChange.Util.EATaggedValue;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
 /**
  * @author Johannes Echterhoff
@@ -516,8 +516,8 @@ public class ArcGISWorkspace implements Target, MessageSource {
 		// copy template file either from remote or local URI
 		if (workspaceTemplateFilePath.toLowerCase().startsWith("http")) {
 			try {
-				URL templateUrl = new URL(workspaceTemplateFilePath);
-				FileUtils.copyURLToFile(templateUrl, outputFile);
+				ResourceResolver.getInstance()
+						.copyToFile(workspaceTemplateFilePath, outputFile);
 			} catch (MalformedURLException e1) {
 				result.addFatalError(this, 6, workspaceTemplateFilePath,
 						e1.getMessage());
@@ -46,8 +46,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -63,6 +61,7 @@ import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 public class CodelistDictionaries implements Target {
 
@@ -165,8 +164,6 @@ public class CodelistDictionaries implements Target {
 		addAttribute(cDocument, ec, "xsi:schemaLocation", options.GML_NS
 					+ " " + options.schemaLocationOfNamespace(options.GML_NS));		
 		addAttribute(cDocument, ec, "gml:id", ci.name());
-
-		documentMap.put(ci.id(), cDocument);
 		
 		String s = ci.derivedDocumentation(documentationTemplate, documentationNoValue);
 		if (s != null && !s.isEmpty()) {
@@ -222,7 +219,23 @@ public class CodelistDictionaries implements Target {
 				}		
 			}
 		}
-	
+
+		if (options.isStreamingXmlOutput() && !diagnosticsOnly) {
+
+			// the dictionary is complete, so it can be written right away
+			try {
+				writeDictionary(ci, cDocument, outputFormat());
+			} catch (Exception e) {
+				String m = e.getMessage();
+				if (m != null) {
+					result.addError(m);
+				}
+				e.printStackTrace(System.err);
+			}
+
+		} else {
+			documentMap.put(ci.id(), cDocument);
+		}
 	}
 
 	private Element createEntry(Document lDocument,
@@ -313,37 +326,13 @@ public class CodelistDictionaries implements Target {
 		}
 
 		try {
-			Properties outputFormat = OutputPropertiesFactory.getDefaultMethodProperties("xml");
-			outputFormat.setProperty("indent", "yes");
-			outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
-					"2");
-			outputFormat.setProperty("encoding", "UTF-8");
+			Properties outputFormat = outputFormat();
 
-	        Serializer serializer = SerializerFactory.getSerializer(outputFormat);
 			for (Iterator<ClassInfo> i = model.classes(pi).iterator(); i.hasNext();) {
 				ClassInfo ci = i.next();
 				Document cDocument = documentMap.get(ci.id());
 				if (cDocument != null) {
-					String dir = options.parameter(this.getClass().getName(),"outputDirectory");
-					if (dir==null)
-						dir = options.parameter("outputDirectory");
-					if (dir==null)
-						dir = options.parameter(".");
-
-		            File outDir = new File(dir);
-		            if(!outDir.exists())
-		            	outDir.mkdirs();
-		            
-					/*
-					 * SO: Used OutputStreamWriter instead of FileWriter to set character encoding
-					 * (see doc in Serializer.setWriter and FileWriter) 
-					 */
-					OutputStream fout= new FileOutputStream(dir + "/" + ci.name() + ".xml");
-			        OutputStreamWriter outputXML = new OutputStreamWriter(fout, outputFormat.getProperty("encoding"));
-					serializer.setWriter(outputXML);
-					serializer.asDOMSerializer().serialize(cDocument);
-					outputXML.close();
-					result.addResult(getTargetID(), dir, ci.name()+".xml", ci.qname());
+					writeDictionary(ci, cDocument, outputFormat);
 				}
 			}
 		} catch (Exception e) {
@@ -357,6 +346,52 @@ public class CodelistDictionaries implements Target {
 		printed = true;
 	}
 
+	/**
+	 * @return the output properties for writing the dictionaries
+	 */
+	private Properties outputFormat() {
+		Properties outputFormat = OutputPropertiesFactory.getDefaultMethodProperties("xml");
+		outputFormat.setProperty("indent", "yes");
+		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
+				"2");
+		outputFormat.setProperty("encoding", "UTF-8");
+		return outputFormat;
+	}
+
+	/**
+	 * Writes the code list dictionary of the given class to the output
+	 * directory.
+	 * 
+	 * @param ci
+	 * @param cDocument
+	 * @param outputFormat
+	 * @throws Exception
+	 */
+	private void writeDictionary(ClassInfo ci, Document cDocument,
+			Properties outputFormat) throws Exception {
+
+		String dir = options.parameter(this.getClass().getName(),"outputDirectory");
+		if (dir==null)
+			dir = options.parameter("outputDirectory");
+		if (dir==null)
+			dir = options.parameter(".");
+
+		File outDir = new File(dir);
+		if(!outDir.exists())
+			outDir.mkdirs();
+
+		/*
+		 * SO: Used OutputStreamWriter instead of FileWriter to set character encoding
+		 * (see doc in Serializer.setWriter and FileWriter) 
+		 */
+		OutputStream fout= new FileOutputStream(dir + "/" + ci.name() + ".xml");
+		OutputStreamWriter outputXML = new OutputStreamWriter(fout, outputFormat.getProperty("encoding"));
+		StreamingXmlWriter.serialize(cDocument, outputXML, outputFormat,
+				options.isStreamingXmlOutput());
+		outputXML.close();
+		result.addResult(getTargetID(), dir, ci.name()+".xml", ci.qname());
+	}
+
 	public int getTargetID(){
 		return TargetIdentification.CODELIST_DICTIONARY.getId();
 	}
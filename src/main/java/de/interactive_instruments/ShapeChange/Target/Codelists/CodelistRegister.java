@@ -33,37 +33,38 @@
 package de.interactive_instruments.ShapeChange.Target.Codelists;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.URI;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -74,6 +75,7 @@ import de.interactive_instruments.ShapeChange.ShapeChangeResult;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
 import de.interactive_instruments.ShapeChange.TargetIdentification;
 import de.interactive_instruments.ShapeChange.Target.SingleTarget;
+import de.interactive_instruments.ShapeChange.Target.FeatureCatalogue.XsltWriter;
 import de.interactive_instruments.ShapeChange.Model.Info;
 import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
@@ -83,9 +85,34 @@ import de.interactive_instruments.ShapeChange.ModelDiff.DiffElement;
 import de.interactive_instruments.ShapeChange.ModelDiff.Differ;
 import de.interactive_instruments.ShapeChange.ModelDiff.DiffElement.ElementType;
 import de.interactive_instruments.ShapeChange.ModelDiff.DiffElement.Operation;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 public class CodelistRegister implements SingleTarget {
 
+	/**
+	 * If set to <code>true</code>, the register documents are written - and
+	 * transformed to HTML, SKOS and GML - in parallel, using up to the number
+	 * of threads given by the <code>maxThreads</code> input parameter.
+	 * Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_DOCUMENT_OUTPUT = "parallelDocumentOutput";
+
+	/**
+	 * A register document together with the location it is written to.
+	 */
+	protected static class DocumentOutput {
+		protected String path;
+		protected Document document;
+		protected String dir;
+		protected String fname;
+		protected int level;
+		/** Files written for the document: directory, file name and scope */
+		protected List<String[]> files = new ArrayList<String[]>();
+	}
+
+
 	private Model model = null;
 	private Options options = null;
 	private ShapeChangeResult result = null;
@@ -120,6 +147,7 @@ public class CodelistRegister implements SingleTarget {
 	private static String xslhtmlfileName = "clr-html.xsl";
 	private static String xslskosfileName = "clr-skos.xsl";
 	private static String xslgmlfileName = "clr-gml.xsl";
+	private static boolean parallelOutput = false;
 
 	private static final String ATOM_NS = "http://www.w3.org/2005/Atom";
 	private static final boolean html = true;
@@ -208,6 +236,10 @@ public class CodelistRegister implements SingleTarget {
 			s = options.parameter(this.getClass().getName(),"xslTransformerFactory");
 			if (s!=null && s.length()>0)
 				xslTransformerFactory = s;
+
+			s = options.parameter(this.getClass().getName(),PARAM_PARALLEL_DOCUMENT_OUTPUT);
+			if (s!=null && s.trim().equalsIgnoreCase("true"))
+				parallelOutput = true;
 			
 			s = options.parameter(this.getClass().getName(),"xslhtmlFile");
 			if (s!=null && s.length()>0)
@@ -1049,13 +1081,14 @@ public class CodelistRegister implements SingleTarget {
 		}
 
 		try {
-			Properties outputFormat = OutputPropertiesFactory.getDefaultMethodProperties("xml");
+			final Properties outputFormat = OutputPropertiesFactory.getDefaultMethodProperties("xml");
 			outputFormat.setProperty("indent", "yes");
 			outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount", "2");
 			outputFormat.setProperty("encoding", "UTF-8");
 
-	        Serializer serializer = SerializerFactory.getSerializer(outputFormat);
-	        
+			// determine where each document is written to
+			List<DocumentOutput> outputs = new ArrayList<DocumentOutput>();
+			
 	        for (Entry<String, Document> mapentry : documentMap.entrySet()) {
 				Document cDocument = mapentry.getValue();
 				if (cDocument != null) {
@@ -1082,40 +1115,67 @@ public class CodelistRegister implements SingleTarget {
 		            	}
 		            	i++;
 		            }
-		            
-					OutputStream fout= new FileOutputStream(dir + "/" + fname + ".atom");
-			        OutputStreamWriter outputXML = new OutputStreamWriter(fout, outputFormat.getProperty("encoding"));
-					serializer.setWriter(outputXML);
-					serializer.asDOMSerializer().serialize(cDocument);
-					outputXML.close();
-					result.addResult(getTargetID(), dir, fname + ".atom", path);
-					
-					if (html && xslhtmlfileName!=null)
-						xsltWrite(dir, fname+".atom", "/"+xslhtmlfileName, fname+".html", i);
-					if (skos && i>0 && xslskosfileName!=null)
-						xsltWrite(dir, fname+".atom", "/"+xslskosfileName, fname+".rdf", i);
-					if( gml && xslgmlfileName!=null)
-						xsltWrite(dir, fname+".atom", "/"+xslgmlfileName, fname+".gml", i);
-
-					fout= new FileOutputStream(dir + "/" + fname + ".var");
-			        OutputStreamWriter outputVAR = new OutputStreamWriter(fout);
-			        outputVAR.write("URI: "+fname+"\n\n");
-			        outputVAR.write("URI: "+fname+".atom\n");
-			        outputVAR.write("Content-type: application/atom+xml\n\n");
-			        if (gml) {
-				        outputVAR.write("URI: "+fname+".gml\n");
-				        outputVAR.write("Content-type: application/gml+xml\n\n");
-			        }
-					if (html) {
-				        outputVAR.write("URI: "+fname+".html\n");
-				        outputVAR.write("Content-type: text/html\n\n");
-					}
-					if (skos && i>0) {
-				        outputVAR.write("URI: "+fname+".rdf\n");
-				        outputVAR.write("Content-type: application/rdf+xml\n\n");
-					}
-					outputVAR.close();
-				}	        	
+
+		            DocumentOutput out = new DocumentOutput();
+		            out.path = path;
+		            out.document = cDocument;
+		            out.dir = dir;
+		            out.fname = fname;
+		            out.level = i;
+		            outputs.add(out);
+				}
+	        }
+
+	        int threads = options == null ? 1 : Math.min(options.maxThreads(), outputs.size());
+
+	        if (parallelOutput && threads > 1) {
+
+	        	/*
+	        	 * Documents that are written to the same file are written by
+	        	 * the same task, in the same order as when writing sequentially.
+	        	 */
+	        	Map<String, List<DocumentOutput>> outputsByFile = new LinkedHashMap<String, List<DocumentOutput>>();
+	        	for (DocumentOutput out : outputs) {
+	        		String key = out.dir + "/" + out.fname;
+	        		List<DocumentOutput> l = outputsByFile.get(key);
+	        		if (l == null) {
+	        			l = new ArrayList<DocumentOutput>();
+	        			outputsByFile.put(key, l);
+	        		}
+	        		l.add(out);
+	        	}
+
+	        	threads = Math.min(threads, outputsByFile.size());
+
+	        	result.addDebug("Writing " + outputs.size()
+	        			+ " code list register document(s) using " + threads
+	        			+ " thread(s).");
+
+	        	List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	        	for (final List<DocumentOutput> l : outputsByFile.values()) {
+	        		tasks.add(new Callable<Void>() {
+	        			public Void call() throws Exception {
+	        				for (DocumentOutput out : l) {
+	        					writeDocument(out, outputFormat);
+	        				}
+	        				return null;
+	        			}
+	        		});
+	        	}
+
+	        	ParallelExecution.invokeAll(tasks, threads, options, result);
+
+	        	// report the files in the same order as when writing sequentially
+	        	for (DocumentOutput out : outputs) {
+	        		addResults(out);
+	        	}
+
+	        } else {
+
+	        	for (DocumentOutput out : outputs) {
+	        		writeDocument(out, outputFormat);
+	        		addResults(out);
+	        	}
 	        }
 		} catch (Exception e) {
 			String m = e.getMessage();
@@ -1128,6 +1188,61 @@ public class CodelistRegister implements SingleTarget {
 		printed = true;
 	}
 
+	/**
+	 * Writes a register document as Atom feed and transforms it - directly
+	 * from the DOM - to HTML, SKOS and GML. The files that have been written
+	 * are recorded with the output, see {@link #addResults(DocumentOutput)}.
+	 * Different documents can be written concurrently.
+	 */
+	private void writeDocument(DocumentOutput out, Properties outputFormat)
+			throws Exception {
+
+		String dir = out.dir;
+		String fname = out.fname;
+		int i = out.level;
+
+		File atomFile = new File(dir, fname + ".atom");
+		OutputStream fout= new FileOutputStream(atomFile);
+        OutputStreamWriter outputXML = new OutputStreamWriter(fout, outputFormat.getProperty("encoding"));
+		StreamingXmlWriter.serialize(out.document, outputXML, outputFormat,
+				options != null && options.isStreamingXmlOutput());
+		outputXML.close();
+		out.files.add(new String[] { dir, fname + ".atom", out.path });
+		
+		if (html && xslhtmlfileName!=null)
+			xsltWrite(out, atomFile, "/"+xslhtmlfileName, fname+".html");
+		if (skos && i>0 && xslskosfileName!=null)
+			xsltWrite(out, atomFile, "/"+xslskosfileName, fname+".rdf");
+		if( gml && xslgmlfileName!=null)
+			xsltWrite(out, atomFile, "/"+xslgmlfileName, fname+".gml");
+
+		fout= new FileOutputStream(dir + "/" + fname + ".var");
+        OutputStreamWriter outputVAR = new OutputStreamWriter(fout);
+        outputVAR.write("URI: "+fname+"\n\n");
+        outputVAR.write("URI: "+fname+".atom\n");
+        outputVAR.write("Content-type: application/atom+xml\n\n");
+        if (gml) {
+	        outputVAR.write("URI: "+fname+".gml\n");
+	        outputVAR.write("Content-type: application/gml+xml\n\n");
+        }
+		if (html) {
+	        outputVAR.write("URI: "+fname+".html\n");
+	        outputVAR.write("Content-type: text/html\n\n");
+		}
+		if (skos && i>0) {
+	        outputVAR.write("URI: "+fname+".rdf\n");
+	        outputVAR.write("Content-type: application/rdf+xml\n\n");
+		}
+		outputVAR.close();
+	}
+
+	private void addResults(DocumentOutput out) {
+		for (String[] f : out.files) {
+			result.addResult(getTargetID(), f[0], f[1], f[2]);
+		}
+		out.files.clear();
+	}
+
 	public int getTargetID(){
 		return TargetIdentification.CODELIST_REGISTER.getId();
 	}
@@ -1155,64 +1270,82 @@ public class CodelistRegister implements SingleTarget {
 		xslhtmlfileName = "clr-html.xsl";
 		xslskosfileName = "clr-skos.xsl";
 		xslgmlfileName = "clr-gml.xsl";
+		parallelOutput = false;
 	}
 	
-   public void xsltWrite(String outputDirectory, String xmlName, String xsltfileName, String outfileName, int level){
-	   try{
-			// Setup directories
-            File outDir = new File(outputDirectory);
-
-            // Setup input and output files
-            File xmlFile = new File(outDir, xmlName);	        
-           	if(!xmlFile.canRead()){
-            	result.addError(null, 301, xmlFile.getName(), outfileName);
-            	return;
-            }
-
-           	File outFile = new File(outDir, outfileName);
-
-           	InputStream stream = null;
-           	if (xsltPath.toLowerCase().startsWith("http")) {
-           		URL url = new URL(xsltPath+"/"+xsltfileName);
-           		URLConnection urlConnection = url.openConnection();
-           		stream = urlConnection.getInputStream();
-           	} else {
-           		File xsl = new File(xsltPath+"/"+xsltfileName);
-           		if (xsl.exists())
-           			stream = new FileInputStream(xsl);
-           		else {
-           			result.addError("XSLT stylesheet "+xsl.getAbsolutePath()+" not found.");
-           			return;
-           		}
-           	}
-    		    		
-		    Source xsltSource = new StreamSource(stream);		    
-		    Source xmlSource = new StreamSource(xmlFile);
-		    Result res = new StreamResult(outFile);
-		 
-		    // create an instance of TransformerFactory		   
-			if (xslTransformerFactory != null) {
-				// use TransformerFactory specified in configuration
-				System.setProperty("javax.xml.transform.TransformerFactory", xslTransformerFactory);
+	/**
+	 * Transforms a register document - directly from the DOM - with the given
+	 * stylesheet.
+	 * 
+	 * @param out
+	 *            the document and its output location
+	 * @param xmlFile
+	 *            the file the document has been written to; it is used as
+	 *            the system id of the document
+	 * @param xsltfileName
+	 * @param outfileName
+	 */
+	private void xsltWrite(DocumentOutput out, File xmlFile,
+			String xsltfileName, String outfileName) {
+		try {
+			Templates templates = stylesheet(xsltfileName);
+			if (templates == null)
+				return;
+
+			Source xmlSource = new DOMSource(out.document, xmlFile.toURI()
+					.toString());
+			Result res = new StreamResult(new File(out.dir, outfileName));
+
+			Transformer trans = templates.newTransformer();
+			trans.setURIResolver(ResourceResolver.getInstance());
+			trans.setParameter("baseuri", baseURI);
+			trans.setParameter("level", "" + out.level);
+			trans.setParameter("language", language);
+			trans.transform(xmlSource, res);
+
+			out.files.add(new String[] { out.dir, outfileName, null });
+
+		} catch (Exception e) {
+			String m = e.getMessage();
+			result.addError(m != null ? m : e.toString());
+		}
+	}
+
+	/**
+	 * Returns the compiled form of the given stylesheet. Compiled stylesheets
+	 * are cached by the {@link XsltWriter} and can be used by multiple
+	 * threads.
+	 * 
+	 * @param xsltfileName
+	 * @return the compiled stylesheet, <code>null</code> if it is not
+	 *         available (the reason has been logged)
+	 */
+	private Templates stylesheet(String xsltfileName) {
+
+		String location = xsltPath + "/" + xsltfileName;
+
+		try {
+			URI uri;
+			if (xsltPath.toLowerCase().startsWith("http")) {
+				uri = new URI(location);
 			} else {
-				// use TransformerFactory determined by system
+				File xsl = new File(location);
+				if (!xsl.exists()) {
+					result.addError("XSLT stylesheet " + xsl.getAbsolutePath()
+							+ " not found.");
+					return null;
+				}
+				uri = xsl.toURI();
 			}
-			TransformerFactory transFact = TransformerFactory.newInstance();
-		    Transformer trans = transFact.newTransformer(xsltSource);
-		    trans.setParameter("baseuri", baseURI);
-		    trans.setParameter("level", ""+level);
-		    trans.setParameter("language", language);
-		    trans.transform(xmlSource, res);
-		    
-			result.addResult(getTargetID(), outputDirectory, outfileName, null);
-
-	   } catch (Exception e) {
+
+			XsltWriter writer = new XsltWriter(xslTransformerFactory,
+					new HashMap<String, URI>(), null, result);
+			return writer.templates(uri);
+
+		} catch (Exception e) {
 			String m = e.getMessage();
-			if (m != null) {
-				result.addError(m);
-			}
-	       e.printStackTrace(System.err);
-	   }	
-		    
-	}	
+			result.addError(m != null ? m : e.toString());
+			return null;
+		}
+	}
 }
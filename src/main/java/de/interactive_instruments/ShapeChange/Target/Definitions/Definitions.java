@@ -44,8 +44,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -61,6 +59,7 @@ import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 public class Definitions implements Target {
 
@@ -244,7 +243,19 @@ public class Definitions implements Target {
 			addAttribute(cDocument, ec, "xsi:schemaLocation", Options.DEF_NS
 					+ " ShapeChangeDefinitions.xsd");
 
-			documentMap.put(ci.id(), cDocument);
+			if (options.isStreamingXmlOutput() && !diagnosticsOnly) {
+
+				// the document is complete, so it can be written right away
+				try {
+					writeTypeDefinition(ci, cDocument, outputFormat());
+				} catch (Exception e) {
+					String m = e.getMessage();
+					result.addError(m != null ? m : e.toString());
+				}
+
+			} else {
+				documentMap.put(ci.id(), cDocument);
+			}
 
 			Element e1 = document.createElementNS(options.GML_NS,
 					"dictionaryEntry");
@@ -605,21 +616,14 @@ public class Definitions implements Target {
 		if (aborted)
 			return;
 
-		Properties outputFormat = OutputPropertiesFactory
-				.getDefaultMethodProperties("xml");
-		outputFormat.setProperty("indent", "yes");
-		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
-				"2");
-		outputFormat.setProperty("encoding", "UTF-8");
+		Properties outputFormat = outputFormat();
 
 		try {
 			File file = new File(outputDirectory + "/index." + pi.xmlns()
 					+ ".definitions.xml");
 			FileWriter outputXML = new FileWriter(file);
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
+			StreamingXmlWriter.serialize(document, outputXML, outputFormat,
+					options.isStreamingXmlOutput());
 			outputXML.close();
 			result.addResult(getTargetID(), outputDirectory, "index." + pi.xmlns() + ".definitions.xml", pi.targetNamespace());
 
@@ -628,11 +632,7 @@ public class Definitions implements Target {
 					ClassInfo ci = i.next();
 					Document cDocument = documentMap.get(ci.id());
 					if (cDocument != null) {
-						outputXML = new FileWriter(outputDirectory + "/" + ci.name() + ".definitions.xml");
-						serializer.setWriter(outputXML);
-						serializer.asDOMSerializer().serialize(cDocument);
-						outputXML.close();
-						result.addResult(getTargetID(), outputDirectory, ci.name() + ".definitions.xml", ci.qname());
+						writeTypeDefinition(ci, cDocument, outputFormat);
 					}
 				}
 			}
@@ -647,6 +647,40 @@ public class Definitions implements Target {
 		printed = true;
 	}
 
+	/**
+	 * @return the output properties for writing the documents
+	 */
+	private Properties outputFormat() {
+
+		Properties outputFormat = OutputPropertiesFactory
+				.getDefaultMethodProperties("xml");
+		outputFormat.setProperty("indent", "yes");
+		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
+				"2");
+		outputFormat.setProperty("encoding", "UTF-8");
+
+		return outputFormat;
+	}
+
+	/**
+	 * Writes the type definition document of the given class to the output
+	 * directory.
+	 * 
+	 * @param ci
+	 * @param cDocument
+	 * @param outputFormat
+	 * @throws Exception
+	 */
+	private void writeTypeDefinition(ClassInfo ci, Document cDocument,
+			Properties outputFormat) throws Exception {
+
+		FileWriter outputXML = new FileWriter(outputDirectory + "/" + ci.name() + ".definitions.xml");
+		StreamingXmlWriter.serialize(cDocument, outputXML, outputFormat,
+				options.isStreamingXmlOutput());
+		outputXML.close();
+		result.addResult(getTargetID(), outputDirectory, ci.name() + ".definitions.xml", ci.qname());
+	}
+
 	public int getTargetID(){
 		return TargetIdentification.DEFINITIONS.getId();
 	}
@@ -38,6 +38,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -58,6 +59,8 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
@@ -69,13 +72,15 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 import name.fraser.neil.plaintext.diff_match_patch;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullWriter;
 import org.apache.commons.lang.StringUtils;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
@@ -90,6 +95,7 @@ import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
@@ -120,6 +126,8 @@ import de.interactive_instruments.ShapeChange.Target.SingleTarget;
 import de.interactive_instruments.ShapeChange.Transformation.TransformationConstants;
 import de.interactive_instruments.ShapeChange.UI.StatusBoard;
 import de.interactive_instruments.ShapeChange.Util.ZipHandler;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
 /**
  * @author Clemens Portele (portele <at> interactive-instruments <dot> de)
@@ -188,6 +196,29 @@ public class FeatureCatalogue
 	 */
 	public static final String PARAM_JAVA_OPTIONS = "javaOptions";
 
+	/**
+	 * If set to <code>true</code>, the output formats (PDF, HTML, XML, RTF,
+	 * DOCX) are written concurrently, using at most as many threads as defined
+	 * by the input parameter {@value Options#PARAM_MAX_THREADS}. The compiled
+	 * stylesheets are cached in any case; if the XSLT processor is Saxon, the
+	 * temporary feature catalogue xml is also parsed only once and shared by
+	 * all transformations. Has no effect if {@value #PARAM_JAVA_EXE_PATH} is
+	 * set. Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_OUTPUT_FORMATS = "parallelOutputFormats";
+
+	/**
+	 * If set to <code>true</code>, the PDF, HTML, XML and RTF output is
+	 * produced while the feature catalogue is written, by sending the SAX
+	 * events of the catalogue directly to the according XSL transformations
+	 * (and FOP). The temporary feature catalogue xml is then only written if
+	 * it is required by one of the other output formats (FRAMEHTML and DOCX).
+	 * Has no effect if {@value #PARAM_JAVA_EXE_PATH} or
+	 * {@value #PARAM_DONT_TRANSFORM} is set, or if only the deferrable output
+	 * is written. Default is <code>false</code>.
+	 */
+	public static final String PARAM_STREAM_TRANSFORMATIONS = "streamTransformations";
+
 	private static boolean initialised = false;
 	private static XMLWriter writer = null;
 	private static String Package = "";
@@ -244,6 +275,12 @@ public class FeatureCatalogue
 	private static boolean includeCodelistURI = true;
 	private static boolean deleteXmlFile = false;
 
+	/**
+	 * <code>true</code> if the PDF has been written from the temporary xml;
+	 * only then the temporary xml is deleted (see deleteXmlFile)
+	 */
+	private static volatile boolean fopWritten = false;
+
 	private static boolean includeDiagrams = false;
 	private static int imgIntegerIdCounter = 0;
 	private static int imgIntegerIdStepwidth = 2;
@@ -254,6 +291,38 @@ public class FeatureCatalogue
 	private static String pathToJavaExe = null;
 	private static String javaOptions = null;
 
+	private static boolean parallelOutputFormats = false;
+
+	/**
+	 * Documents that are parsed only once and then used by all XSL
+	 * transformations of writeOutput(); key: absolute URI of the document
+	 */
+	private static Map<String, Source> sharedDocuments = null;
+
+	/**
+	 * Distributes the SAX events of the feature catalogue to the streamed
+	 * output formats; <code>null</code> if transformations are not streamed.
+	 */
+	private static TeeContentHandler streamTee = null;
+	private static List<StreamedOutput> streamedOutputs = null;
+
+	/**
+	 * An output format that is produced while the catalogue is written.
+	 */
+	protected static class StreamedOutput {
+
+		protected final String fileName;
+		protected final OutputStream out;
+		protected final ContentHandler handler;
+
+		protected StreamedOutput(String fileName, OutputStream out,
+				ContentHandler handler) {
+			this.fileName = fileName;
+			this.out = out;
+			this.handler = handler;
+		}
+	}
+
 	/**
 	 * This map is used to keep track of the names of the application schema
 	 * that are encountered during processing. Whenever this FeatureCatalogue is
@@ -327,7 +396,13 @@ public class FeatureCatalogue
 		includeTitle = true;
 		includeCodelistURI = true;
 		deleteXmlFile = false;
+		fopWritten = false;
 		dontTransform = false;
+		parallelOutputFormats = false;
+		sharedDocuments = null;
+		streamTee = null;
+		streamedOutputs = null;
+		XsltWriter.clearStylesheets();
 
 		refModel = null;
 		refPackage = null;
@@ -468,15 +543,32 @@ public class FeatureCatalogue
 				String encoding_ = encoding == null ? "UTF-8"
 						: model.characterEncoding();
 
-				OutputStream fout = new FileOutputStream(
-						outputDirectory + "/" + xmlName);
-				OutputStream bout = new BufferedOutputStream(fout,
-						streamBufferSize);
-				OutputStreamWriter outputXML = new OutputStreamWriter(bout,
-						encoding_);
+				boolean streaming = isStreamingTransformation();
+
+				Writer outputXML;
+
+				if (streaming && !OutputFormat.toLowerCase()
+						.contains("framehtml")
+						&& !OutputFormat.toLowerCase().contains("docx")) {
+
+					// no output format needs the temporary xml file
+					outputXML = new NullWriter();
+
+				} else {
+
+					OutputStream fout = new FileOutputStream(
+							outputDirectory + "/" + xmlName);
+					OutputStream bout = new BufferedOutputStream(fout,
+							streamBufferSize);
+					outputXML = new OutputStreamWriter(bout, encoding_);
+				}
 
 				writer = new XMLWriter(outputXML, encoding_);
 
+				if (streaming) {
+					setUpStreamedOutputs();
+				}
+
 				writer.forceNSDecl("http://www.w3.org/2001/XMLSchema-instance",
 						"xsi");
 
@@ -2082,6 +2174,8 @@ public class FeatureCatalogue
 				}
 			}
 
+			finishStreamedOutputs();
+
 			if (refModel != null) {
 				refModel.shutdown();
 				refModel = null;
@@ -2118,6 +2212,162 @@ public class FeatureCatalogue
 		return null;
 	}
 
+	/**
+	 * @return <code>true</code> if the PDF, HTML, XML and RTF output shall be
+	 *         produced while the catalogue is written (see
+	 *         {@value #PARAM_STREAM_TRANSFORMATIONS}), else <code>false</code>
+	 */
+	private boolean isStreamingTransformation() {
+
+		String s = options.parameter(this.getClass().getName(),
+				PARAM_STREAM_TRANSFORMATIONS);
+		String javaExe = options.parameter(this.getClass().getName(),
+				PARAM_JAVA_EXE_PATH);
+
+		return s != null && s.equalsIgnoreCase("true") && !dontTransform
+				&& (javaExe == null || javaExe.trim().length() == 0)
+				&& !options.isOnlyDeferrableOutputWrite();
+	}
+
+	/**
+	 * Creates the transformations for the output formats that do not need the
+	 * temporary feature catalogue xml file, and connects them to the writer of
+	 * the catalogue.
+	 */
+	private void setUpStreamedOutputs() {
+
+		initialiseTransformationParameters();
+
+		streamTee = new TeeContentHandler();
+		streamedOutputs = new ArrayList<StreamedOutput>();
+
+		String format = OutputFormat.toLowerCase();
+
+		if (format.contains("pdf")) {
+			addStreamedOutput(xslfofileName, outputFilename + ".pdf", true);
+		}
+		if (format.contains("html") && !format.contains("framehtml")) {
+			addStreamedOutput(xslhtmlfileName, outputFilename + ".html",
+					false);
+		}
+		if (format.contains("xml")) {
+			addStreamedOutput(xslxmlfileName, outputFilename + ".xml", false);
+		}
+		if (format.contains("rtf")) {
+			addStreamedOutput(xslrtffileName, outputFilename + ".rtf", false);
+		}
+
+		writer.setContentHandler(streamTee);
+	}
+
+	/**
+	 * @param xsltfileName
+	 * @param outfileName
+	 *            name of the output file, located in the output directory
+	 * @param fo
+	 *            <code>true</code> if the stylesheet creates XSL-FO, which
+	 *            shall be rendered as PDF by FOP
+	 */
+	private void addStreamedOutput(String xsltfileName, String outfileName,
+			boolean fo) {
+
+		if (xsltfileName == null || xsltfileName.length() == 0) {
+			return;
+		}
+
+		OutputStream out = null;
+
+		try {
+
+			URI xsltMainFileUri = xsltMainFileUri(xsltfileName);
+			if (xsltMainFileUri == null) {
+				return;
+			}
+
+			out = new BufferedOutputStream(new FileOutputStream(
+					new File(outputDirectory, outfileName)), streamBufferSize);
+
+			TransformerHandler handler;
+
+			if (fo) {
+
+				// redirect FOP-logging to our system, Level 'Warning' by
+				// default
+				Logger fl = Logger.getLogger("org.apache.fop");
+				fl.setLevel(Level.WARNING);
+				fl.addHandler(new FopMsgHandler(result, this));
+
+				Map<String, String> params = new HashMap<String, String>();
+				params.put("versionParam", "2.0");
+
+				handler = new XsltWriter(xslTransformerFactory, hrefMappings,
+						params, result).newTransformerHandler(xsltMainFileUri);
+				handler.getTransformer().setErrorListener(
+						new FopErrorListener(outfileName, result, this));
+
+				FopFactory fopFactory = FopFactory.newInstance();
+				Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF,
+						fopFactory.newFOUserAgent(), out);
+				handler.setResult(new SAXResult(fop.getDefaultHandler()));
+
+			} else {
+
+				handler = new XsltWriter(xslTransformerFactory, hrefMappings,
+						transformationParameters, result)
+								.newTransformerHandler(xsltMainFileUri);
+				handler.setResult(new StreamResult(out));
+			}
+
+			streamTee.addHandler(handler);
+			streamedOutputs.add(new StreamedOutput(outfileName, out, handler));
+
+		} catch (Exception e) {
+
+			result.addError(null, 304, outfileName, e.getMessage());
+
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e1) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes the output files of the streamed output formats and reports the
+	 * results.
+	 */
+	private void finishStreamedOutputs() {
+
+		if (streamedOutputs == null) {
+			return;
+		}
+
+		for (StreamedOutput so : streamedOutputs) {
+
+			try {
+				so.out.close();
+			} catch (IOException e) {
+				result.addError(null, 304, so.fileName, e.getMessage());
+				continue;
+			}
+
+			SAXException failure = streamTee.getFailures().get(so.handler);
+
+			if (failure != null) {
+				result.addError(null, 304, so.fileName, failure.getMessage());
+			} else {
+				result.addResult(getTargetID(), outputDirectory, so.fileName,
+						null);
+			}
+		}
+
+		streamedOutputs = null;
+		streamTee = null;
+	}
+
 	private void writePDF(String xmlName, String outfileBasename) {
 
 		if (!OutputFormat.toLowerCase().contains("pdf"))
@@ -2146,17 +2396,23 @@ public class FeatureCatalogue
 
 			StatusBoard.getStatusBoard().statusChanged(STATUS_WRITE_FRAMEHTML);
 
-			transformationParameters.put("outputdir", outfileBasename);
+			/*
+			 * use a copy of the transformation parameters, so that other
+			 * output formats can be written at the same time
+			 */
+			Map<String, String> params = new TreeMap<String, String>(
+					transformationParameters);
+
+			params.put("outputdir", outfileBasename);
 
 			File outDir = new File(outputDirectory);
 			File xmlFile = new File(outDir, xmlName);
-			transformationParameters.put("catalogXmlPath",
-					xmlFile.toURI().toString());
+			params.put("catalogXmlPath", xmlFile.toURI().toString());
 
 			if (xmlName != null && xmlName.length() > 0
 					&& xslframeHtmlFileName != null
 					&& xslframeHtmlFileName.length() > 0) {
-				xsltWrite(xmlName, xslframeHtmlFileName, htmlfileName);
+				xsltWrite(xmlName, xslframeHtmlFileName, htmlfileName, params);
 			}
 
 			File outputDir = new File(outDir, outfileBasename);
@@ -2165,8 +2421,8 @@ public class FeatureCatalogue
 			try {
 
 				if (cssPath.toLowerCase().startsWith("http")) {
-					URL css = new URL(cssPath + "/" + cssFileName);
-					FileUtils.copyURLToFile(css, cssDestination);
+					ResourceResolver.getInstance().copyToFile(
+							cssPath + "/" + cssFileName, cssDestination);
 				} else {
 					File css = new File(cssPath + "/" + cssFileName);
 					if (css.exists()) {
@@ -2249,8 +2505,8 @@ public class FeatureCatalogue
 
 			// populate temporary file either from remote or local URI
 			if (docxTemplateFilePath.toLowerCase().startsWith("http")) {
-				URL templateUrl = new URL(docxTemplateFilePath);
-				FileUtils.copyURLToFile(templateUrl, docxtemplate_copy);
+				ResourceResolver.getInstance().copyToFile(docxTemplateFilePath,
+						docxtemplate_copy);
 			} else {
 				File docxtemplate = new File(docxTemplateFilePath);
 				if (docxtemplate.exists()) {
@@ -2317,19 +2573,21 @@ public class FeatureCatalogue
 			}
 
 			/*
-			 * Prepare the transformation.
+			 * Prepare the transformation. A copy of the transformation
+			 * parameters is used, so that other output formats can be written
+			 * at the same time.
 			 */
-			transformationParameters.put("styleXmlPath",
-					styleXmlFile.toURI().toString());
-			transformationParameters.put("catalogXmlPath",
-					xmlFile.toURI().toString());
-			transformationParameters.put("DOCX_PLACEHOLDER", DOCX_PLACEHOLDER);
+			Map<String, String> params = new TreeMap<String, String>(
+					transformationParameters);
+			params.put("styleXmlPath", styleXmlFile.toURI().toString());
+			params.put("catalogXmlPath", xmlFile.toURI().toString());
+			params.put("DOCX_PLACEHOLDER", DOCX_PLACEHOLDER);
 
 			/*
 			 * Execute the transformation.
 			 */
 			this.xsltWrite(indocumentxmlFile, xsldocxfileName,
-					outdocumentxmlFile);
+					outdocumentxmlFile, params);
 
 			if (includeDiagrams) {
 				/*
@@ -2443,14 +2701,13 @@ public class FeatureCatalogue
 				/*
 				 * Prepare the transformation.
 				 */
-				transformationParameters.put("imageInfoXmlPath",
-						relsFile.toURI().toString());
+				params.put("imageInfoXmlPath", relsFile.toURI().toString());
 
 				/*
 				 * Execute the transformation.
 				 */
 				this.xsltWrite(inRelsXmlFile, xsldocxrelsfileName,
-						outRelsXmlFile);
+						outRelsXmlFile, params);
 			}
 
 			/*
@@ -2579,19 +2836,11 @@ public class FeatureCatalogue
 						Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF,
 								foUserAgent, out);
 
-						// Setup XSLT
-						if (xslTransformerFactory != null) {
-							// use TransformerFactory specified in configuration
-							System.setProperty(
-									"javax.xml.transform.TransformerFactory",
-									xslTransformerFactory);
-						} else {
-							// use TransformerFactory determined by system
-						}
-						TransformerFactory factory = TransformerFactory
-								.newInstance();
-						Transformer transformer = factory
-								.newTransformer(new StreamSource(xsltFile));
+						// Setup XSLT - the stylesheet is compiled only once
+						Transformer transformer = new XsltWriter(
+								xslTransformerFactory, hrefMappings, null,
+								result).templates(xsltFile.toURI())
+								.newTransformer();
 
 						FopErrorListener el = new FopErrorListener(
 								xmlFile.getName(), result, this);
@@ -2601,7 +2850,14 @@ public class FeatureCatalogue
 						transformer.setParameter("versionParam", "2.0");
 
 						// Setup input for XSLT transformation
-						Source src = new StreamSource(xmlFile);
+						Source src = null;
+						if (sharedDocuments != null) {
+							src = sharedDocuments.get(xmlFile.toURI()
+									.toString());
+						}
+						if (src == null) {
+							src = new StreamSource(xmlFile);
+						}
 
 						// Resulting SAX events (the generated FO) must be piped
 						// through to FOP
@@ -2617,8 +2873,7 @@ public class FeatureCatalogue
 						out.close();
 						result.addResult(getTargetID(), outputDirectory,
 								outfileName, null);
-						if (deleteXmlFile)
-							xmlFile.delete();
+						fopWritten = true;
 					}
 				}
 			}
@@ -2632,9 +2887,49 @@ public class FeatureCatalogue
 		}
 	}
 
+	/**
+	 * @param xsltfileName
+	 * @return the URI of the stylesheet with given name, located in the
+	 *         xsltPath; <code>null</code> if the stylesheet is a local file
+	 *         that does not exist (an error is logged in that case)
+	 * @throws Exception
+	 *             if the URI is invalid
+	 */
+	private URI xsltMainFileUri(String xsltfileName) throws Exception {
+
+		if (xsltPath.toLowerCase().startsWith("http")) {
+			URL url = new URL(xsltPath + "/" + xsltfileName);
+			return url.toURI();
+		} else {
+			File xsl = new File(xsltPath + "/" + xsltfileName);
+			if (xsl.exists()) {
+				return xsl.toURI();
+			} else {
+				result.addError(this, 18, xsl.getAbsolutePath());
+				return null;
+			}
+		}
+	}
+
 	public void xsltWrite(String xmlName, String xsltfileName,
 			String outfileName) {
 
+		xsltWrite(xmlName, xsltfileName, outfileName,
+				transformationParameters);
+	}
+
+	/**
+	 * @param xmlName
+	 *            name of the transformation source file, located in the output
+	 *            directory
+	 * @param xsltfileName
+	 * @param outfileName
+	 * @param params
+	 *            transformation parameters to use for this transformation
+	 */
+	public void xsltWrite(String xmlName, String xsltfileName,
+			String outfileName, Map<String, String> params) {
+
 		// =========================================
 		// ensure that the source file is available
 		// =========================================
@@ -2651,30 +2946,35 @@ public class FeatureCatalogue
 		}
 
 		xsltWrite(transformationSourceFile, xsltfileName,
-				transformationTargetFile);
+				transformationTargetFile, params);
 	}
 
 	public void xsltWrite(File transformationSource, String xsltfileName,
 			File transformationTarget) {
 
+		xsltWrite(transformationSource, xsltfileName, transformationTarget,
+				transformationParameters);
+	}
+
+	/**
+	 * @param transformationSource
+	 * @param xsltfileName
+	 * @param transformationTarget
+	 * @param params
+	 *            transformation parameters to use for this transformation
+	 */
+	public void xsltWrite(File transformationSource, String xsltfileName,
+			File transformationTarget, Map<String, String> params) {
+
 		try {
 
 			// ==============================
 			// 1. perform additional checks
 			// ==============================
 
-			URI xsltMainFileUri = null;
-			if (xsltPath.toLowerCase().startsWith("http")) {
-				URL url = new URL(xsltPath + "/" + xsltfileName);
-				xsltMainFileUri = url.toURI();
-			} else {
-				File xsl = new File(xsltPath + "/" + xsltfileName);
-				if (xsl.exists()) {
-					xsltMainFileUri = xsl.toURI();
-				} else {
-					result.addError(this, 18, xsl.getAbsolutePath());
-					return;
-				}
+			URI xsltMainFileUri = xsltMainFileUri(xsltfileName);
+			if (xsltMainFileUri == null) {
+				return;
 			}
 
 			// ==============================
@@ -2686,7 +2986,7 @@ public class FeatureCatalogue
 
 				// continue using current runtime environment
 				XsltWriter writer = new XsltWriter(xslTransformerFactory,
-						hrefMappings, transformationParameters, result);
+						hrefMappings, params, sharedDocuments, result);
 
 				writer.xsltWrite(transformationSource, xsltMainFileUri,
 						transformationTarget);
@@ -2788,10 +3088,10 @@ public class FeatureCatalogue
 					cmds.add("\"" + hrefMappingsString + "\"");
 				}
 
-				if (!transformationParameters.isEmpty()) {
+				if (!params.isEmpty()) {
 
 					List<NameValuePair> transformationParametersList = new ArrayList<NameValuePair>();
-					for (Entry<String, String> transParam : transformationParameters
+					for (Entry<String, String> transParam : params
 							.entrySet()) {
 						transformationParametersList.add(new BasicNameValuePair(
 								transParam.getKey(), transParam.getValue()));
@@ -2931,14 +3231,91 @@ public class FeatureCatalogue
 			return;
 		}
 
-		String xmlName = outputFilename + ".tmp.xml";
+		final String xmlName = outputFilename + ".tmp.xml";
+		File xmlFile = new File(outputDirectory, xmlName);
+
+		if (pathToJavaExe == null && xmlFile.canRead()) {
+
+			/*
+			 * Parse the temporary feature catalogue xml only once for all
+			 * transformations, if the XSLT processor supports it.
+			 */
+			Source tree = new XsltWriter(xslTransformerFactory, hrefMappings,
+					null, result).buildSharedSource(xmlFile);
+
+			if (tree != null) {
+				sharedDocuments = new HashMap<String, Source>();
+				sharedDocuments.put(xmlFile.toURI().toString(), tree);
+			}
+		}
+
+		/*
+		 * If transformations are streamed, PDF, HTML, XML and RTF have
+		 * already been written together with the catalogue.
+		 */
+		boolean streamed = isStreamingTransformation();
 
-		writePDF(xmlName, outputFilename);
-		writeHTML(xmlName, outputFilename);
-		writeXML(xmlName, outputFilename);
-		writeRTF(xmlName, outputFilename);
-		writeDOCX(xmlName, outputFilename);
+		List<Runnable> writers = new ArrayList<Runnable>();
 
+		if (!streamed) {
+			writers.add(new Runnable() {
+				public void run() {
+					writePDF(xmlName, outputFilename);
+				}
+			});
+		}
+		if (!streamed
+				|| OutputFormat.toLowerCase().contains("framehtml")) {
+			writers.add(new Runnable() {
+				public void run() {
+					writeHTML(xmlName, outputFilename);
+				}
+			});
+		}
+		if (!streamed) {
+			writers.add(new Runnable() {
+				public void run() {
+					writeXML(xmlName, outputFilename);
+				}
+			});
+			writers.add(new Runnable() {
+				public void run() {
+					writeRTF(xmlName, outputFilename);
+				}
+			});
+		}
+		writers.add(new Runnable() {
+			public void run() {
+				writeDOCX(xmlName, outputFilename);
+			}
+		});
+
+		if (parallelOutputFormats && pathToJavaExe == null
+				&& writers.size() > 1) {
+
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+			for (Runnable w : writers) {
+				tasks.add(Executors.callable(w));
+			}
+
+			ParallelExecution.invokeAll(tasks, options.maxThreads(), options,
+					result);
+
+		} else {
+
+			for (Runnable w : writers) {
+				w.run();
+			}
+		}
+
+		sharedDocuments = null;
+
+		/*
+		 * The temporary xml is deleted only once all output formats have been
+		 * written.
+		 */
+		if (deleteXmlFile && fopWritten)
+			xmlFile.delete();
 	}
 
 	public void initialise(Options o, ShapeChangeResult r) {
@@ -3023,6 +3400,11 @@ public class FeatureCatalogue
 		if (s != null && s.equals("true"))
 			dontTransform = true;
 
+		s = options.parameter(this.getClass().getName(),
+				PARAM_PARALLEL_OUTPUT_FORMATS);
+		if (s != null && s.equalsIgnoreCase("true"))
+			parallelOutputFormats = true;
+
 		s = options.parameter(this.getClass().getName(),
 				PARAM_INCLUDE_CODELIST_URI);
 		if (s != null && s.equalsIgnoreCase("false"))
@@ -0,0 +1,263 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+package de.interactive_instruments.ShapeChange.Target.FeatureCatalogue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Passes SAX events on to a number of content handlers, for example to the
+ * XSL transformations that produce the different feature catalogue formats
+ * while the catalogue is being written.
+ * <p>
+ * Events created by {@link XMLWriter} do not always have a qualified name;
+ * in that case the local name is used as qualified name. Prefixes used by
+ * attributes of the root element are declared via startPrefixMapping(...),
+ * because the XMLWriter only writes the according namespace declarations.
+ * <p>
+ * If a handler fails, the exception is recorded (see {@link #getFailures()})
+ * and the handler does not receive any further events; the other handlers
+ * are not affected.
+ */
+public class TeeContentHandler implements ContentHandler {
+
+	private List<ContentHandler> handlers = new ArrayList<ContentHandler>();
+
+	/**
+	 * the handlers that receive events; it is only replaced - never
+	 * modified - when a handler is added or fails, so that events can be
+	 * passed on while iterating over it
+	 */
+	private ContentHandler[] active = new ContentHandler[0];
+
+	/**
+	 * key: handler that failed, value: the exception it threw
+	 */
+	private Map<ContentHandler, SAXException> failures = new LinkedHashMap<ContentHandler, SAXException>();
+
+	private int depth = 0;
+	private List<String> rootPrefixes = new ArrayList<String>();
+
+	public TeeContentHandler() {
+	}
+
+	public void addHandler(ContentHandler handler) {
+		handlers.add(handler);
+		active = handlers.toArray(new ContentHandler[handlers.size()]);
+	}
+
+	/**
+	 * @return the handlers that failed, together with the exception they
+	 *         threw; can be empty but not <code>null</code>
+	 */
+	public Map<ContentHandler, SAXException> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @param handler
+	 * @return <code>true</code> if the given handler has not failed so far
+	 */
+	public boolean isActive(ContentHandler handler) {
+		return handlers.contains(handler);
+	}
+
+	private void fail(ContentHandler handler, SAXException e) {
+		handlers.remove(handler);
+		active = handlers.toArray(new ContentHandler[handlers.size()]);
+		failures.put(handler, e);
+	}
+
+	public void setDocumentLocator(Locator locator) {
+		for (ContentHandler h : active) {
+			h.setDocumentLocator(locator);
+		}
+	}
+
+	public void startDocument() throws SAXException {
+		depth = 0;
+		rootPrefixes.clear();
+		for (ContentHandler h : active) {
+			try {
+				h.startDocument();
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void endDocument() throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.endDocument();
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void startPrefixMapping(String prefix, String uri)
+			throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.startPrefixMapping(prefix, uri);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void endPrefixMapping(String prefix) throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.endPrefixMapping(prefix);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void startElement(String uri, String localName, String qName,
+			Attributes atts) throws SAXException {
+
+		AttributesImpl attsToSend = new AttributesImpl();
+
+		for (int i = 0; i < atts.getLength(); i++) {
+
+			String attQName = atts.getQName(i);
+			if (attQName == null || attQName.length() == 0) {
+				attQName = atts.getLocalName(i);
+			}
+
+			if (depth == 0 && atts.getURI(i) != null
+					&& atts.getURI(i).length() > 0
+					&& attQName.indexOf(':') > 0) {
+				String prefix = attQName.substring(0, attQName.indexOf(':'));
+				if (!rootPrefixes.contains(prefix)) {
+					rootPrefixes.add(prefix);
+					startPrefixMapping(prefix, atts.getURI(i));
+				}
+			}
+
+			attsToSend.addAttribute(atts.getURI(i), atts.getLocalName(i),
+					attQName, atts.getType(i), atts.getValue(i));
+		}
+
+		String qNameToSend = qName == null || qName.length() == 0 ? localName
+				: qName;
+
+		depth++;
+
+		for (ContentHandler h : active) {
+			try {
+				h.startElement(uri, localName, qNameToSend, attsToSend);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+
+		String qNameToSend = qName == null || qName.length() == 0 ? localName
+				: qName;
+
+		for (ContentHandler h : active) {
+			try {
+				h.endElement(uri, localName, qNameToSend);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+
+		depth--;
+
+		if (depth == 0) {
+			for (String prefix : rootPrefixes) {
+				endPrefixMapping(prefix);
+			}
+			rootPrefixes.clear();
+		}
+	}
+
+	public void characters(char[] ch, int start, int length)
+			throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.characters(ch, start, length);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void ignorableWhitespace(char[] ch, int start, int length)
+			throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.ignorableWhitespace(ch, start, length);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void processingInstruction(String target, String data)
+			throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.processingInstruction(target, data);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+
+	public void skippedEntity(String name) throws SAXException {
+		for (ContentHandler h : active) {
+			try {
+				h.skippedEntity(name);
+			} catch (SAXException e) {
+				fail(h, e);
+			}
+		}
+	}
+}
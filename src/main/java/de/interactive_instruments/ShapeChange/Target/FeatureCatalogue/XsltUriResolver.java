@@ -34,6 +34,8 @@ package de.interactive_instruments.ShapeChange.Target.FeatureCatalogue;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.transform.Source;
@@ -41,6 +43,8 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamSource;
 
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
+
 /**
  * @author Johannes Echterhoff (echterhoff <at> interactive-instruments <dot>
  *         de)
@@ -50,10 +54,61 @@ public class XsltUriResolver implements URIResolver {
 
 	private Map<String, URI> hrefMappings = null;
 
+	/**
+	 * key: absolute URI of a document, value: the document, already parsed;
+	 * can be <code>null</code>
+	 */
+	private Map<String, Source> documents = null;
+
+	/**
+	 * system ids of the documents resolved since recording was started;
+	 * <code>null</code> if not recording
+	 */
+	private List<String> resolvedUris = null;
+
 	public XsltUriResolver(Map<String, URI> hrefMappings) {
 		this.hrefMappings = hrefMappings;
 	}
 
+	/**
+	 * @param hrefMappings
+	 * @param documents
+	 *            documents that have already been parsed, with their absolute
+	 *            URI as key; they are returned instead of parsing the
+	 *            document again, for example when it is loaded via the
+	 *            document() function
+	 */
+	public XsltUriResolver(Map<String, URI> hrefMappings,
+			Map<String, Source> documents) {
+		this.hrefMappings = hrefMappings;
+		this.documents = documents;
+	}
+
+	/**
+	 * Starts recording the system ids of the documents that are resolved,
+	 * for example the stylesheets included or imported by a stylesheet while
+	 * it is compiled.
+	 */
+	public synchronized void startRecording() {
+		resolvedUris = new ArrayList<String>();
+	}
+
+	/**
+	 * @return the system ids of the documents resolved since
+	 *         {@link #startRecording()} was called; recording is stopped
+	 */
+	public synchronized List<String> stopRecording() {
+		List<String> res = resolvedUris;
+		resolvedUris = null;
+		return res == null ? new ArrayList<String>() : res;
+	}
+
+	private synchronized void record(String systemId) {
+		if (resolvedUris != null && systemId != null) {
+			resolvedUris.add(systemId);
+		}
+	}
+
 	public Source resolve(String href, String base) throws TransformerException {
 
 		InputStream inputStream = null;
@@ -61,9 +116,14 @@ public class XsltUriResolver implements URIResolver {
 
 		try {
 
-			if (hrefMappings.containsKey(href)) {
+			if (documents != null && documents.containsKey(href)) {
+
+				return documents.get(href);
+
+			} else if (hrefMappings.containsKey(href)) {
 				// handle case where we have a mapping
-				inputStream = hrefMappings.get(href).toURL().openStream();
+				inputStream = ResourceResolver.getInstance()
+						.open(hrefMappings.get(href).toString());
 				source = new StreamSource(inputStream);
 				source.setSystemId(hrefMappings.get(href).toString());
 
@@ -75,7 +135,8 @@ public class XsltUriResolver implements URIResolver {
 				 */
 				URI resourceUri = new URI(href);
 				if (resourceUri.isAbsolute()) {
-					inputStream = resourceUri.toURL().openStream();
+					inputStream = ResourceResolver.getInstance()
+							.open(resourceUri.toString());
 					source = new StreamSource(inputStream);
 					source.setSystemId(resourceUri.toString());
 				} else {
@@ -87,11 +148,13 @@ public class XsltUriResolver implements URIResolver {
 
 			} else {
 				URI resolvedUri = new URI(base).resolve(href);
-				inputStream = resolvedUri.toURL().openStream();
+				inputStream = ResourceResolver.getInstance()
+						.open(resolvedUri.toString());
 				source = new StreamSource(inputStream);
 				source.setSystemId(resolvedUri.toString());
 			}
 
+			record(source.getSystemId());
 			return source;
 
 		} catch (Exception ex) {
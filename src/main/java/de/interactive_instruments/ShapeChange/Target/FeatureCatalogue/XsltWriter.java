@@ -35,17 +35,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -53,6 +56,7 @@ import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
 
 import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.Util.ResourceResolver;
 
 /**
  * This class is used to support processing an XSL transformation in two ways:
@@ -89,10 +93,68 @@ public class XsltWriter {
 	public static final String PARAM_xsltMainFileUri = "-xsltMainFileUri";
 	public static final String PARAM_transformationTargetPath = "-transformationTargetPath";
 
+	/**
+	 * Transformer factories together with the stylesheets compiled by them,
+	 * shared by all XsltWriters of the process. key: name of the transformer
+	 * factory class (empty for the system default) and the href mappings
+	 */
+	private static final Map<String, CompiledStylesheets> stylesheets = new HashMap<String, CompiledStylesheets>();
+
+	/**
+	 * A transformer factory and the stylesheets compiled by it. Compiled
+	 * stylesheets (Templates) are thread-safe and can be used for any number
+	 * of transformations.
+	 */
+	protected static class CompiledStylesheets {
+
+		protected final TransformerFactory factory;
+
+		/**
+		 * the URI resolver of the factory; records the stylesheets that are
+		 * included or imported while a stylesheet is compiled
+		 */
+		protected final XsltUriResolver resolver;
+
+		/**
+		 * key: stylesheet URI
+		 */
+		protected final Map<String, Templates> templates = new HashMap<String, Templates>();
+
+		/**
+		 * key: stylesheet URI, value: the files of the stylesheet and of the
+		 * stylesheets it includes or imports - transitively - with their
+		 * time of last modification when the stylesheet was compiled; only
+		 * for file URIs
+		 */
+		protected final Map<String, Map<File, Long>> lastModified = new HashMap<String, Map<File, Long>>();
+
+		protected CompiledStylesheets(TransformerFactory factory,
+				XsltUriResolver resolver) {
+			this.factory = factory;
+			this.resolver = resolver;
+		}
+	}
+
+	/**
+	 * Removes all compiled stylesheets, so that they are compiled again when
+	 * they are used next.
+	 */
+	public static void clearStylesheets() {
+		synchronized (stylesheets) {
+			stylesheets.clear();
+		}
+	}
+
 	private String xslTransformerFactory;
 	private Map<String, URI> hrefMappings;
 	private Map<String, String> transformationParameters;
 
+	/**
+	 * key: absolute URI of a document, value: the document, already parsed
+	 * (see {@link #buildSharedSource(File)})
+	 */
+	private Map<String, Source> sharedDocuments = null;
+
 	private ShapeChangeResult result;
 
 	/**
@@ -116,6 +178,30 @@ public class XsltWriter {
 		this.result = result;
 	}
 
+	/**
+	 * @param xslTransformerFactory
+	 * @param hrefMappings
+	 * @param transformationParameters
+	 * @param sharedDocuments
+	 *            documents that have already been parsed (see
+	 *            {@link #buildSharedSource(File)}), with their absolute URI
+	 *            as key; they are used as transformation source and are
+	 *            returned when the stylesheet loads them via the document()
+	 *            function; can be <code>null</code>
+	 * @param result
+	 *            used to log exception messages; can be <code>null</code> if
+	 *            the XSL transformation was invoked via the main(...) method
+	 */
+	public XsltWriter(String xslTransformerFactory,
+			Map<String, URI> hrefMappings,
+			Map<String, String> transformationParameters,
+			Map<String, Source> sharedDocuments, ShapeChangeResult result) {
+
+		this(xslTransformerFactory, hrefMappings, transformationParameters,
+				result);
+		this.sharedDocuments = sharedDocuments;
+	}
+
 	/**
 	 * Parameter identifiers have a leading "-". Parameter values are separated
 	 * from the parameter identifier via a single space.
@@ -298,56 +384,198 @@ public class XsltWriter {
 		}
 	}
 
-	public void xsltWrite(File transformationSource, URI xsltMainFileUri,
-			File transformationTarget) {
+	/**
+	 * @return the transformer factory to use - as defined by the
+	 *         xslTransformerFactory, or the system default - together with
+	 *         the stylesheets it has compiled so far
+	 * @throws TransformerConfigurationException
+	 */
+	protected CompiledStylesheets compiledStylesheets()
+			throws TransformerConfigurationException {
 
-		try {
+		String key = (xslTransformerFactory == null ? ""
+				: xslTransformerFactory) + "|" + hrefMappings;
 
-			// Set up input and output files
+		synchronized (stylesheets) {
 
-			InputStream stream = null;
+			CompiledStylesheets cs = stylesheets.get(key);
 
-			if (xsltMainFileUri.getScheme().startsWith("http")) {
-				URL url = xsltMainFileUri.toURL();
-				URLConnection urlConnection = url.openConnection();
-				stream = urlConnection.getInputStream();
-			} else {
-				File xsl = new File(xsltMainFileUri);
-				// FeatureCatalogue.java already checked that file exists
-				stream = new FileInputStream(xsl);
+			if (cs == null) {
+
+				TransformerFactory transFact;
+
+				if (xslTransformerFactory != null) {
+					// use TransformerFactory specified in configuration
+					transFact = TransformerFactory.newInstance(
+							xslTransformerFactory,
+							XsltWriter.class.getClassLoader());
+				} else {
+					// use TransformerFactory determined by system
+					transFact = TransformerFactory.newInstance();
+				}
+
+				/*
+				 * Set URI resolver for transformation, configured with
+				 * standard mappings (e.g. for the localization files) and
+				 * possibly other mappings.
+				 */
+				XsltUriResolver resolver = new XsltUriResolver(hrefMappings);
+				transFact.setURIResolver(resolver);
+
+				cs = new CompiledStylesheets(transFact, resolver);
+				stylesheets.put(key, cs);
 			}
 
-			Source xsltSource = new StreamSource(stream);
-			xsltSource.setSystemId(xsltMainFileUri.toString());
-			Source xmlSource = new StreamSource(transformationSource);
-			Result res = new StreamResult(transformationTarget);
+			return cs;
+		}
+	}
+
+	/**
+	 * Returns the compiled form of the given stylesheet. A stylesheet is
+	 * compiled only once per process; it is compiled again if the file of the
+	 * stylesheet, or of a stylesheet it includes or imports, has been
+	 * modified.
+	 * 
+	 * @param xsltMainFileUri
+	 * @return the compiled stylesheet
+	 * @throws Exception
+	 *             if the stylesheet could not be read or compiled
+	 */
+	public Templates templates(URI xsltMainFileUri) throws Exception {
+
+		CompiledStylesheets cs = compiledStylesheets();
+		String key = xsltMainFileUri.toString();
 
-			// create an instance of TransformerFactory
-			if (xslTransformerFactory != null) {
-				// use TransformerFactory specified in configuration
-				System.setProperty("javax.xml.transform.TransformerFactory",
-						xslTransformerFactory);
+		synchronized (cs) {
+
+			Templates templates = cs.templates.get(key);
+
+			File xsl = null;
+			if (!xsltMainFileUri.getScheme().startsWith("http")) {
+				xsl = new File(xsltMainFileUri);
+			}
+
+			Map<File, Long> compiled = cs.lastModified.get(key);
+			if (compiled == null) {
+				templates = null;
 			} else {
-				// use TransformerFactory determined by system
+				for (Entry<File, Long> e : compiled.entrySet()) {
+					if (e.getValue().longValue() != e.getKey()
+							.lastModified()) {
+						templates = null;
+						break;
+					}
+				}
 			}
-			TransformerFactory transFact = TransformerFactory.newInstance();
 
-			/*
-			 * Set URI resolver for transformation, configured with standard
-			 * mappings (e.g. for the localization files) and possibly other
-			 * mappings.
-			 */
-			transFact.setURIResolver(new XsltUriResolver(hrefMappings));
+			if (templates == null) {
+
+				InputStream stream = null;
+
+				if (xsl == null) {
+					stream = ResourceResolver.getInstance()
+							.open(xsltMainFileUri.toString());
+				} else {
+					// FeatureCatalogue.java already checked that file exists
+					stream = new FileInputStream(xsl);
+				}
+
+				compiled = new HashMap<File, Long>();
+				if (xsl != null) {
+					compiled.put(xsl, xsl.lastModified());
+				}
+
+				cs.resolver.startRecording();
+				try {
+					Source xsltSource = new StreamSource(stream);
+					xsltSource.setSystemId(key);
+					templates = cs.factory.newTemplates(xsltSource);
+				} finally {
+					stream.close();
+					for (String uri : cs.resolver.stopRecording()) {
+						if (uri.startsWith("file:")) {
+							try {
+								File f = new File(new URI(uri));
+								compiled.put(f, f.lastModified());
+							} catch (IllegalArgumentException e) {
+								// not a hierarchical file URI - not tracked
+							}
+						}
+					}
+				}
+
+				cs.templates.put(key, templates);
+				cs.lastModified.put(key, compiled);
+			}
 
-			Transformer trans = transFact.newTransformer(xsltSource);
+			return templates;
+		}
+	}
+
+	/**
+	 * Parses the given file into a tree that can be used as source of several
+	 * transformations - also concurrently - without parsing the file again.
+	 * This is only supported if the transformer factory is the one of Saxon,
+	 * whose trees are immutable and built with the configuration that also
+	 * compiles the stylesheets.
+	 * 
+	 * @param file
+	 * @return the tree, or <code>null</code> if the transformer factory does
+	 *         not support shared trees or the tree could not be built
+	 */
+	public Source buildSharedSource(File file) {
+
+		try {
+
+			TransformerFactory factory = compiledStylesheets().factory;
+
+			if (!factory.getClass().getName().startsWith("net.sf.saxon.")) {
+				return null;
+			}
 
 			/*
-			 * Specify any standard transformation parameters (e.g. for
-			 * localization).
+			 * Saxon is not a compile time dependency, so the tree is built
+			 * via reflection: factory.getConfiguration().buildDocument(source)
 			 */
-			for (String key : transformationParameters.keySet()) {
-				trans.setParameter(key, transformationParameters.get(key));
-			}
+			Object config = factory.getClass().getMethod("getConfiguration")
+					.invoke(factory);
+			Object tree = config.getClass()
+					.getMethod("buildDocument", Source.class)
+					.invoke(config, new StreamSource(file));
+
+			return tree instanceof Source ? (Source) tree : null;
+
+		} catch (Exception e) {
+			// fall back to parsing the file for each transformation
+			return null;
+		}
+	}
+
+	public void xsltWrite(File transformationSource, URI xsltMainFileUri,
+			File transformationTarget) {
+
+		Source xmlSource = null;
+
+		if (sharedDocuments != null) {
+			xmlSource = sharedDocuments
+					.get(transformationSource.toURI().toString());
+		}
+
+		if (xmlSource == null) {
+			xmlSource = new StreamSource(transformationSource);
+		}
+
+		xsltWrite(xmlSource, xsltMainFileUri, transformationTarget);
+	}
+
+	public void xsltWrite(Source xmlSource, URI xsltMainFileUri,
+			File transformationTarget) {
+
+		try {
+
+			Result res = new StreamResult(transformationTarget);
+
+			Transformer trans = newTransformer(xsltMainFileUri);
 
 			/* Execute the transformation. */
 			trans.transform(xmlSource, res);
@@ -372,4 +600,74 @@ public class XsltWriter {
 		}
 
 	}
+
+	/**
+	 * @param xsltMainFileUri
+	 * @return a transformer for the given (compiled) stylesheet, with the
+	 *         transformation parameters set and a URI resolver that takes into
+	 *         account the href mappings and shared documents
+	 * @throws Exception
+	 */
+	public Transformer newTransformer(URI xsltMainFileUri) throws Exception {
+
+		Transformer trans = templates(xsltMainFileUri).newTransformer();
+
+		trans.setURIResolver(
+				new XsltUriResolver(hrefMappings, sharedDocuments));
+
+		/*
+		 * Specify any standard transformation parameters (e.g. for
+		 * localization).
+		 */
+		if (transformationParameters != null) {
+			for (String key : transformationParameters.keySet()) {
+				trans.setParameter(key, transformationParameters.get(key));
+			}
+		}
+
+		return trans;
+	}
+
+	/**
+	 * Creates a handler that receives the transformation source as SAX events
+	 * and transforms it with the given (compiled) stylesheet once the end of
+	 * the document has been reached. The transformation result must be set
+	 * via {@link TransformerHandler#setResult(Result)} before the first event
+	 * is sent.
+	 * 
+	 * @param xsltMainFileUri
+	 * @return the transformer handler, with the transformation parameters set
+	 *         and a URI resolver that takes into account the href mappings
+	 *         and shared documents
+	 * @throws Exception
+	 *             if the transformer factory does not support SAX input or
+	 *             the stylesheet could not be compiled
+	 */
+	public TransformerHandler newTransformerHandler(URI xsltMainFileUri)
+			throws Exception {
+
+		TransformerFactory factory = compiledStylesheets().factory;
+
+		if (!factory.getFeature(SAXTransformerFactory.FEATURE)) {
+			throw new TransformerConfigurationException(
+					"Transformer factory " + factory.getClass().getName()
+							+ " does not support SAX input.");
+		}
+
+		TransformerHandler handler = ((SAXTransformerFactory) factory)
+				.newTransformerHandler(templates(xsltMainFileUri));
+
+		Transformer trans = handler.getTransformer();
+
+		trans.setURIResolver(
+				new XsltUriResolver(hrefMappings, sharedDocuments));
+
+		if (transformationParameters != null) {
+			for (String key : transformationParameters.keySet()) {
+				trans.setParameter(key, transformationParameters.get(key));
+			}
+		}
+
+		return handler;
+	}
 }
@@ -32,14 +32,21 @@
 
 package de.interactive_instruments.ShapeChange.Target.JSON;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.lang.CharUtils;
 import org.apache.commons.lang.StringUtils;
@@ -55,8 +62,11 @@ import de.interactive_instruments.ShapeChange.Type;
 import de.interactive_instruments.ShapeChange.Target.Target;
 import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
+import de.interactive_instruments.ShapeChange.Model.Info;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
 
 public class JsonSchema implements Target, MessageSource {
 
@@ -65,14 +75,51 @@ public class JsonSchema implements Target, MessageSource {
 	private static final String JSON_SCHEMA_URI_DRAFT_03 = "http://json-schema.org/draft-03/schema#";
 	private static final String JSON_SCHEMA_URI_DRAFT_04 = "http://json-schema.org/draft-04/schema#";
 
+	/**
+	 * If set to <code>true</code>, the JSON schemas of the classes are
+	 * rendered concurrently once all classes have been processed, using at
+	 * most as many threads as defined by the input parameter
+	 * {@value Options#PARAM_MAX_THREADS}. Only supported for generic models;
+	 * other models load information lazily and are not safe for concurrent
+	 * access. Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_CLASS_OUTPUT = "parallelClassOutput";
+
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
 	private class Context {
 		protected String links = null;
 		protected boolean first = true;
-		protected BufferedWriter writer = null;
+		protected StringBuilder buffer = null;
 	}
 	
 	// geometry type per feature type
-	private HashMap<String,String> contexts = new HashMap<String,String>(); 
+	private Map<String, String> contexts = Collections
+			.synchronizedMap(new HashMap<String, String>());
+
+	/**
+	 * Cache for the results of matching the JSON encoding rule of a model
+	 * element against one of the base rules; key is the id of the model
+	 * element plus the name of the base rule.
+	 */
+	private Map<String, Boolean> encRuleMatches = Collections
+			.synchronizedMap(new HashMap<String, Boolean>());
+
+	/**
+	 * Buffer per thread in which the JSON schema of a class is rendered; it is
+	 * reused for all classes handled by that thread.
+	 */
+	private ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+		protected StringBuilder initialValue() {
+			return new StringBuilder(8192);
+		}
+	};
+
+	private boolean parallelClassOutput = false;
+	private List<ClassInfo> deferredClasses = new ArrayList<ClassInfo>();
 	
 	private PackageInfo pi = null;
 	private Model model = null;
@@ -126,6 +173,14 @@ public class JsonSchema implements Target, MessageSource {
 		documentationTemplate = options.parameter(this.getClass().getName(), "documentationTemplate");
 		documentationNoValue = options.parameter(this.getClass().getName(), "documentationNoValue");
 
+		s = options.parameter(this.getClass().getName(), PARAM_PARALLEL_CLASS_OUTPUT);
+		if (s!=null && s.equalsIgnoreCase("true")) {
+			if (model instanceof GenericModel)
+				parallelClassOutput = true;
+			else
+				result.addInfo(this, 10004, PARAM_PARALLEL_CLASS_OUTPUT);
+		}
+
 		result.addDebug(this, 10001, pi.name());
 
 		if(!this.diagnosticsOnly){
@@ -194,22 +249,41 @@ public class JsonSchema implements Target, MessageSource {
 
 	public void process(ClassInfo ci) {
 		int cat = ci.category();
-		if (options.matchesEncRule(ci.encodingRule("json"),"geoservices")) {
+		if (matchesEncRule(ci,"geoservices")) {
 			if (cat != Options.FEATURE && cat != Options.OBJECT) {
 				return;
 			}
-		} else if (options.matchesEncRule(ci.encodingRule("json"),"geoservices_extended")) {
+		} else if (matchesEncRule(ci,"geoservices_extended")) {
 			if (cat != Options.FEATURE && cat != Options.OBJECT && 
 				cat != Options.DATATYPE && cat != Options.UNION) {
 				return;
 			}
 		}
 
+		if (parallelClassOutput && !diagnosticsOnly) {
+			// the schema is rendered in write()
+			deferredClasses.add(ci);
+		} else {
+			processClass(ci);
+		}
+	}
+
+	/**
+	 * Renders the JSON schema of the given class and - unless in diagnostics
+	 * only mode - writes it to the output directory.
+	 * 
+	 * @param ci
+	 */
+	private void processClass(ClassInfo ci) {
+		int cat = ci.category();
+
 		Context ctx = new Context();
 		try {
 			
-			if (!diagnosticsOnly)
-				ctx.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(subDirectoryFile, ci.name()+".json")), "UTF-8"));
+			if (!diagnosticsOnly) {
+				ctx.buffer = buffers.get();
+				ctx.buffer.setLength(0);
+			}
 			
 			write(ctx,"{");
 			newLine(ctx);
@@ -312,8 +386,8 @@ public class JsonSchema implements Target, MessageSource {
 			write(ctx,"}");
 			newLine(ctx);			
 			
-			if (ctx.writer!=null) {
-				ctx.writer.close();
+			if (ctx.buffer!=null) {
+				writeFile(new File(subDirectoryFile, ci.name()+".json"), ctx.buffer);
 				result.addResult(getTargetID(), subDirectoryFile.getPath(), ci.name()+".json", ci.qname());
 			}
 			
@@ -325,17 +399,55 @@ public class JsonSchema implements Target, MessageSource {
 	}
 	
 	private void write(Context ctx, String text) throws IOException {
-		if (!diagnosticsOnly && ctx!=null && ctx.writer!=null) {
-			ctx.writer.write(text);
+		if (!diagnosticsOnly && ctx!=null && ctx.buffer!=null) {
+			ctx.buffer.append(text);
 		}		
 	}
 
 	private void newLine(Context ctx) throws IOException {
-		if (!diagnosticsOnly && ctx!=null && ctx.writer!=null) {
-			ctx.writer.newLine();
+		if (!diagnosticsOnly && ctx!=null && ctx.buffer!=null) {
+			ctx.buffer.append(LINE_SEPARATOR);
 		}		
 	}
 
+	/**
+	 * Writes the content of the buffer, encoded in UTF-8, to the given file
+	 * with a single channel write.
+	 * 
+	 * @param file
+	 * @param buffer
+	 * @throws IOException
+	 */
+	private void writeFile(File file, StringBuilder buffer) throws IOException {
+		ByteBuffer bytes = UTF8.encode(CharBuffer.wrap(buffer));
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			FileChannel channel = fos.getChannel();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		} finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * @param info
+	 * @param baseRule
+	 * @return <code>true</code> if the JSON encoding rule of the model
+	 *         element matches the given base rule; the result is cached per
+	 *         model element and base rule
+	 */
+	private boolean matchesEncRule(Info info, String baseRule) {
+		String key = info.id() + "#" + baseRule;
+		Boolean b = encRuleMatches.get(key);
+		if (b == null) {
+			b = options.matchesEncRule(info.encodingRule("json"), baseRule);
+			encRuleMatches.put(key, b);
+		}
+		return b;
+	}
+
 	private Context ProcessProperties(Context ctx, ClassInfo ci) throws IOException {
 		return ProcessProperties(ctx, ci, null, ci.category()!=Options.UNION);
 	}
@@ -380,19 +492,19 @@ public class JsonSchema implements Target, MessageSource {
 				// or a well-known JSON schema
 				cix = model.classById(ti.id);
 				if (cix==null) {
-					if (options.matchesEncRule(propi.encodingRule("json"),"geoservices")) {
+					if (matchesEncRule(propi,"geoservices")) {
 						result.addWarning(this, 103, propi.inClass().name(), propi.name(), ti.name);
 						type = "string";
-					} else if (options.matchesEncRule(propi.encodingRule("json"),"geoservices_extended")) {
+					} else if (matchesEncRule(propi,"geoservices_extended")) {
 						result.addWarning(this, 105, propi.inClass().name(), propi.name(), ti.name);
 						type = "any";
 					}
 				} else {
 					int cat = cix.category();
 					if (cat==Options.CODELIST) {
-						if (options.matchesEncRule(cix.encodingRule("json"),"geoservices")) {
+						if (matchesEncRule(cix,"geoservices")) {
 							type = "string";
-						} else if (options.matchesEncRule(cix.encodingRule("json"),"geoservices_extended")) {
+						} else if (matchesEncRule(cix,"geoservices_extended")) {
 							type = "string";
 							format = "uri";
 						}					
@@ -414,7 +526,7 @@ public class JsonSchema implements Target, MessageSource {
 						enums += "]";
 						}
 					} else if (cat==Options.FEATURE || cat==Options.OBJECT) {
-						if (options.matchesEncRule(cix.encodingRule("json"),"geoservices")) {
+						if (matchesEncRule(cix,"geoservices")) {
 							type = "integer";
 							String lyrURI = cix.taggedValue("jsonLayerTableURI");
 							if (lyrURI!=null) {
@@ -428,15 +540,15 @@ public class JsonSchema implements Target, MessageSource {
 								ctx.links += "\t\t\t\"href\":\""+lyrURI+"/{#/attributes/"+propi.name()+"}?f=json\"\n";
 								ctx.links += "\t\t}";
 							}
-						} else if (options.matchesEncRule(cix.encodingRule("json"),"geoservices_extended")) {
+						} else if (matchesEncRule(cix,"geoservices_extended")) {
 							type = "string";
 							format = "uri";
 						}					
 					} else if (cat==Options.DATATYPE || cat==Options.UNION) {
-						if (options.matchesEncRule(cix.encodingRule("json"),"geoservices")) {
+						if (matchesEncRule(cix,"geoservices")) {
 							flatten = true;
 							verifyNoGeometry(cix);
-						} else if (options.matchesEncRule(cix.encodingRule("json"),"geoservices_extended")) {
+						} else if (matchesEncRule(cix,"geoservices_extended")) {
 							String refBaseURI = cix.pkg().rootPackage().taggedValue("jsonBaseURI");
 							if (refBaseURI == null)
 								refBaseURI = baseURI;
@@ -451,16 +563,16 @@ public class JsonSchema implements Target, MessageSource {
 				}
 			}
 			
-			if (options.matchesEncRule(propi.encodingRule("json"),"geoservices_extended") && propi.voidable())
+			if (matchesEncRule(propi,"geoservices_extended") && propi.voidable())
 				nillable = true; 
 			
 			int repeat = 1;
 			boolean array = false;
 			if (type!=null || ref!=null || flatten) {
 				if (m.maxOccurs>1) {
-					if (options.matchesEncRule(propi.encodingRule("json"),"geoservices")) {
+					if (matchesEncRule(propi,"geoservices")) {
 						repeat = 3;
-					} else if (options.matchesEncRule(propi.encodingRule("json"),"geoservices_extended")) {
+					} else if (matchesEncRule(propi,"geoservices_extended")) {
 						array = true;
 					}
 				}
@@ -668,6 +780,43 @@ public class JsonSchema implements Target, MessageSource {
 	}
 
 	public void write() {
+
+		if (deferredClasses.isEmpty()) {
+			return;
+		}
+
+		/*
+		 * the geometry type of a class depends on the one of its base class;
+		 * determine them in the order in which the classes were processed, so
+		 * that the result does not depend on the scheduling of the threads
+		 */
+		for (ClassInfo ci : deferredClasses) {
+			int cat = ci.category();
+			if (cat == Options.FEATURE || cat == Options.OBJECT) {
+				determineGeometryType(ci);
+			}
+		}
+
+		int threads = Math.min(options.maxThreads(), deferredClasses.size());
+
+		result.addDebug("Writing " + deferredClasses.size()
+				+ " JSON schema(s) using " + threads + " thread(s).");
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for (final ClassInfo ci : deferredClasses) {
+
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					processClass(ci);
+					return null;
+				}
+			});
+		}
+
+		ParallelExecution.invokeAll(tasks, threads, model.options(), result);
+
+		deferredClasses.clear();
 	}
 
 	/** 
@@ -727,6 +876,8 @@ public class JsonSchema implements Target, MessageSource {
 			return "Diagnostics-only mode. All output to files is suppressed.";
 		case 10003:
 			return "??Property '$2$' in class '$1$' is a geometry property and will be ignored.";			
+		case 10004:
+			return "The input model is not a generic model, the parameter '$1$' is ignored and the JSON schemas are created sequentially.";
 
 		}
 		return null;
@@ -46,8 +46,6 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -64,6 +62,7 @@ import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 public class Excel implements Target {
 
@@ -1072,10 +1071,8 @@ public class Excel implements Target {
 			File file = new File(
 					outputDirectory + "/" + pi.name() + " Mapping Table.xml");
 			FileWriter outputXML = new FileWriter(file);
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
+			StreamingXmlWriter.serialize(document, outputXML, outputFormat,
+					options.isStreamingXmlOutput());
 			outputXML.close();
 			result.addResult(getTargetID(), outputDirectory,
 					pi.name() + " Mapping Table.xml", pi.targetNamespace());
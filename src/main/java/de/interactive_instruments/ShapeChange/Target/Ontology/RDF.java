@@ -47,8 +47,6 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -66,6 +64,7 @@ import de.interactive_instruments.ShapeChange.Model.Model;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
 import de.interactive_instruments.ShapeChange.Target.Target;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 /**
  *
@@ -794,9 +793,8 @@ public class RDF implements Target, MessageSource {
 	        OutputStream bout= new BufferedOutputStream(fout);
 	        OutputStreamWriter outputXML = new OutputStreamWriter(bout, outputFormat.getProperty("encoding"));
 
-			Serializer serializer = SerializerFactory.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
+			StreamingXmlWriter.serialize(document, outputXML, outputFormat,
+					options.isStreamingXmlOutput());
 			outputXML.close();
 			result.addResult(getTargetID(), outputDirectory, fileName, pi.targetNamespace()+"#");
 		} catch (Exception e) {
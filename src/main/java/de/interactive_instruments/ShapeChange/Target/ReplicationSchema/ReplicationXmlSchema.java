@@ -51,7 +51,6 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.apache.commons.io.FileUtils;
 import org.apache.xml.serializer.OutputPropertiesFactory;
 import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
@@ -73,6 +72,7 @@ import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
 import de.interactive_instruments.ShapeChange.TargetIdentification;
 import de.interactive_instruments.ShapeChange.Target.Target;
 import de.interactive_instruments.ShapeChange.Transformation.Flattening.Flattener;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 /**
  * @author Johannes Echterhoff (echterhoff <at> interactive-instruments
@@ -958,10 +958,8 @@ public class ReplicationXmlSchema implements Target, MessageSource {
 			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
 					new FileOutputStream(repXsd), "UTF-8"));
 
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(writer);
-			serializer.asDOMSerializer().serialize(document);
+			StreamingXmlWriter.serialize(document, writer, outputFormat,
+					options.isStreamingXmlOutput());
 
 			writer.close();
 
@@ -35,22 +35,27 @@ package de.interactive_instruments.ShapeChange.Target.XmlSchema;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Map.Entry;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
-import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -66,6 +71,8 @@ import de.interactive_instruments.ShapeChange.Model.OclConstraint;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
 import de.interactive_instruments.ShapeChange.Ocl.OclNode;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 
 public class SchematronSchema implements MessageSource {
@@ -74,9 +81,6 @@ public class SchematronSchema implements MessageSource {
 	Options options;
 	ShapeChangeResult result;
 	PackageInfo pi;
-	Document document;
-	Element pattern;
-	Element root;
 	boolean printed = false;
 	boolean assertion = false;
 
@@ -85,14 +89,30 @@ public class SchematronSchema implements MessageSource {
 	
 	public static class RuleCreationStatus {
 		public SchematronConstraintNode.XpathFragment lastPathStatus;
-		public Element ruleElement;
-		public Element firstAssertElement = null;
+		/** Context of the &lt;rule> */
+		public String context;
+		/** Name and value of the &lt;let> elements */
+		public List<String[]> lets = new ArrayList<String[]>();
+		/** Test and text of the &lt;assert> elements */
+		public List<String[]> asserts = new ArrayList<String[]>();
 		HashSet<String> letVarsAlreadyOutput = new HashSet<String>();
 	}
 	HashMap<String,RuleCreationStatus> ruleCreationStatusMap =
 		new HashMap<String,RuleCreationStatus>();
 	
+	/** The rules, in the order in which they are written */
+	List<RuleCreationStatus> rules = new ArrayList<RuleCreationStatus>();
+
 	HashSet<String> namespaces = new HashSet<String>();
+
+	/** Prefix and uri of the &lt;ns> elements, in the order of registration */
+	List<String[]> nsDeclarations = new ArrayList<String[]>();
+
+	/** Content of the &lt;title> element */
+	String title;
+
+	/** Value of the queryBinding attribute, null if it is not set */
+	String queryBinding = null;
 	
 	// Prefix and postfix for xlink:href references
 	String alpha = "#";
@@ -113,6 +133,55 @@ public class SchematronSchema implements MessageSource {
 	}
 	HashMap<String,ExtensionFunctionTemplate> extensionFunctions =
 		new HashMap<String,ExtensionFunctionTemplate>();
+
+	/**
+	 * An assertion that has been recorded instead of being added to the
+	 * Schematron document (see {@link SchematronSchema#startRecording()}).
+	 * Either the constraint or the xpath is set.
+	 */
+	protected static class DeferredAssertion {
+		protected ClassInfo ci;
+		protected OclConstraint constraint;
+		protected SchematronConstraintNode.XpathFragment xpath;
+		protected String text;
+		protected DeferredAssertion( ClassInfo ci, OclConstraint c,
+				SchematronConstraintNode.XpathFragment xpath, String text ) {
+			this.ci = ci; this.constraint = c; this.xpath = xpath;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Assertions recorded by the current thread; no list is set for threads
+	 * that do not record.
+	 */
+	ThreadLocal<List<DeferredAssertion>> recordedAssertions =
+		new ThreadLocal<List<DeferredAssertion>>();
+
+	/**
+	 * The result of translating an OCL constraint to an Xpath fragment. The
+	 * translation does not depend on the class the assertion is added to, so
+	 * inherited constraints - which are added for each subtype - are only
+	 * translated once (see {@link SchematronSchema#translate(OclConstraint)}).
+	 */
+	protected static class Translation {
+		/** The translated constraint, null if the translation failed */
+		protected SchematronConstraintNode.XpathFragment xpath = null;
+		/** Namespaces (prefix and uri) registered by a translator while
+		 * translating the constraint, null if translated by this schema */
+		protected List<String[]> namespaces = null;
+	}
+
+	/** Translations of the constraints added so far, by translation key */
+	HashMap<String,Translation> translations = 
+		new HashMap<String,Translation>();
+	
+	/** Set if this object only translates constraints on behalf of another
+	 * SchematronSchema, see {@link #SchematronSchema(SchematronSchema)} */
+	boolean translator = false;
+	
+	/** Namespaces registered by a translator for the current translation */
+	List<String[]> namespaceRecord = null;
 	
 	/**
 	 * Ctor
@@ -128,7 +197,6 @@ public class SchematronSchema implements MessageSource {
 		pi = p;
 		options = o;
 		result = r;
-		document = null;
 		classname = XmlSchema.class.getName();
 
 		// Get prefix and postfix of xlink:href references
@@ -181,56 +249,36 @@ public class SchematronSchema implements MessageSource {
 				fctname, new ExtensionFunctionTemplate(nspx, ns, fcts) );
 		}
 		
-		// Create the Schematron document
-		try {
-			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			document = db.newDocument();
-		} catch (ParserConfigurationException e) {
-			result.addFatalError(null, 2);
-			String m = e.getMessage();
-			if (m != null) {
-				result.addFatalError(m);
-			}
-			e.printStackTrace(System.err);
-			System.exit(1);
-		} catch (Exception e) {
-			result.addFatalError(e.getMessage());
-			e.printStackTrace(System.err);
-			System.exit(1);
-		}
-
-		// Create a root and attach the Schematron and application schema
-		// namespace definitions.
-		root = document.createElementNS(Options.SCHEMATRON_NS, "schema");
-		document.appendChild(root);
-		addAttribute(document, root, "xmlns:sch", Options.SCHEMATRON_NS);
-
-		// Add a title element to document the schema the rules belong to
-		Element e1 = document.createElementNS(Options.SCHEMATRON_NS, "title");
-		root.appendChild(e1);
-		e1.appendChild(
-			document.createTextNode("Schematron constraints for schema '"
-			+ pi.name() + "'"));
-
-		// Add a namespace declaration for Schematron
-		e1 = document.createElementNS(Options.SCHEMATRON_NS, "ns");
-		root.appendChild(e1);
+		/*
+		 * Record the title and the namespace declarations for Schematron and
+		 * the package; the document is only created when it is written (see
+		 * write(String)).
+		 */
+		title = "Schematron constraints for schema '" + pi.name() + "'";
 		namespaces.add("sch");
-		addAttribute(document, e1, "prefix", "sch");
-		addAttribute(document, e1, "uri", Options.SCHEMATRON_NS);
-
-		// Add a namespace declaration for the package
-		e1 = document.createElementNS(Options.SCHEMATRON_NS, "ns");
-		root.appendChild(e1);
+		nsDeclarations.add(new String[] { "sch", Options.SCHEMATRON_NS });
 		namespaces.add(pi.xmlns());
-		addAttribute(document, e1, "prefix", pi.xmlns());
-		addAttribute(document, e1, "uri", pi.targetNamespace());
+		nsDeclarations.add(new String[] { pi.xmlns(), pi.targetNamespace() });
+	}
 
-		// Finally add the <pattern> element. It is to hold all the rules 
-		// to be generated
-		pattern = document.createElementNS(Options.SCHEMATRON_NS, "pattern");
-		root.appendChild(pattern);
+	/**
+	 * Ctor for a translator, which translates constraints on behalf of the
+	 * given Schematron schema (in a separate thread, see 
+	 * {@link #translateInParallel(List, int)}). The translator has no 
+	 * document; namespaces are recorded with the translation instead.
+	 * @param schema Schematron schema to translate constraints for
+	 */
+	protected SchematronSchema( SchematronSchema schema ) {
+		model = schema.model;
+		pi = schema.pi;
+		options = schema.options;
+		result = schema.result;
+		classname = schema.classname;
+		alpha = schema.alpha;
+		beta = schema.beta;
+		trojanSuppressedType = schema.trojanSuppressedType;
+		extensionFunctions = schema.extensionFunctions;
+		translator = true;
 	}
 
 	/** Add attribute to an element */
@@ -252,6 +300,14 @@ public class SchematronSchema implements MessageSource {
 		
 		// Drop null constraints and abstract classes
 		if( c==null ) return;
+
+		// Only record the assertion if so requested by the current thread
+		List<DeferredAssertion> rec = recordedAssertions.get();
+		if( rec!=null ) {
+			rec.add( new DeferredAssertion( ci, c, null, null ) );
+			return;
+		}
+
 		if( ci.isAbstract() ) return;
 
 		// Set environment for possible error messages during the constraint
@@ -272,27 +328,11 @@ public class SchematronSchema implements MessageSource {
 			}
 		}
 
-		// Get hold of the syntax tree
-		OclNode.Expression oclex = c.syntaxTree();
-		
-		// Derive the target Schematron syntax tree from the OCL tree,
-		// quit if in error due to implementation restrictions
-		SchematronConstraintNode scn =
-			translateConstraintToSchematronNode( oclex, null, false );
-		if (scn==null) 
-			return;
-
-		// Now, translate this to an Xpath fragment object, which is supposed
-		// to contain all necessary information to generate the Rule.
-		SchematronConstraintNode.BindingContext ctx = 
-			new SchematronConstraintNode.BindingContext(
-				SchematronConstraintNode.BindingContext.CtxState.ATCURRENT );
-		SchematronConstraintNode.XpathFragment xpath = scn.translate(ctx);
-
-		// The generated Xpath syntax may still contain errors, which have
-		// been detected during the compilation process and which are coded
-		// in the result by means of a particular string pattern. Find out.
-		if( checkErrorsInXpathFragment(xpath) ) return;
+		// Translate the constraint to an Xpath fragment object, which is 
+		// supposed to contain all necessary information to generate the Rule.
+		// Quit if the constraint could not be translated.
+		SchematronConstraintNode.XpathFragment xpath = translate( c );
+		if( xpath==null ) return;
 
 		// We will have to create an assertion. Besides the test, which is
 		// contained in the xpath object, we can output some explanatory text,
@@ -337,6 +377,163 @@ public class SchematronSchema implements MessageSource {
 		}
 	}
 
+	/**
+	 * Translate an OCL constraint to an Xpath fragment object, unless it has
+	 * been translated before. Namespaces recorded by a translator are 
+	 * registered with this schema.
+	 * @param c OCL constraint. Must be invariant.
+	 * @return Copy of the translated constraint, which can be merged into a
+	 * rule. null if the constraint could not be translated.
+	 */
+	protected SchematronConstraintNode.XpathFragment translate( 
+		OclConstraint c ) {
+		
+		String key = translationKey( c );
+		Translation t = translations.get( key );
+		if( t==null ) {
+			t = translateConstraint( c );
+			translations.put( key, t );
+		}
+		
+		if( t.namespaces!=null )
+			for( String[] ns : t.namespaces )
+				registerNamespace( ns[0], ns[1] );
+		
+		return t.xpath==null ? null : t.xpath.copy();
+	}
+
+	/**
+	 * Key for the translation of a constraint. The OCL syntax tree, and 
+	 * thus the translation, is determined by the text of the constraint and
+	 * its context.
+	 * @param c OCL constraint
+	 * @return Key for the translation of the constraint
+	 */
+	protected String translationKey( OclConstraint c ) {
+		ClassInfo cc = c.contextClass();
+		Info cme = c.contextModelElmt();
+		return ( cc==null ? "" : cc.id() ) + "\0"
+			+ ( cme==null ? "" : cme.id() ) + "\0" + c.text();
+	}
+
+	/**
+	 * Translate an OCL constraint to an Xpath fragment object.
+	 * @param c OCL constraint. Must be invariant.
+	 * @return Translation of the constraint
+	 */
+	protected Translation translateConstraint( OclConstraint c ) {
+		
+		Translation t = new Translation();
+
+		// Set environment for possible error messages during the constraint
+		// translation process
+		currentOclConstraintName = c.name(); 
+		currentOclConstraintClass = c.contextClass();
+		
+		// A translator records all namespaces used by the translation
+		if( translator ) {
+			namespaces = new HashSet<String>();
+			namespaceRecord = new LinkedList<String[]>();
+			t.namespaces = namespaceRecord;
+		}
+
+		// Get hold of the syntax tree. It is null if the constraint could not
+		// be parsed (with lazy OCL parsing, the constraint is only parsed -
+		// and parsing errors are only reported - at this point).
+		OclNode.Expression oclex = c.syntaxTree();
+		if (oclex==null)
+			return t;
+		
+		// Derive the target Schematron syntax tree from the OCL tree,
+		// quit if in error due to implementation restrictions
+		SchematronConstraintNode scn =
+			translateConstraintToSchematronNode( oclex, null, false );
+		if (scn==null) 
+			return t;
+
+		// Now, translate this to an Xpath fragment object, which is supposed
+		// to contain all necessary information to generate the Rule.
+		SchematronConstraintNode.BindingContext ctx = 
+			new SchematronConstraintNode.BindingContext(
+				SchematronConstraintNode.BindingContext.CtxState.ATCURRENT );
+		SchematronConstraintNode.XpathFragment xpath = scn.translate(ctx);
+
+		// The generated Xpath syntax may still contain errors, which have
+		// been detected during the compilation process and which are coded
+		// in the result by means of a particular string pattern. Find out.
+		if( ! checkErrorsInXpathFragment(xpath) )
+			t.xpath = xpath;
+		
+		return t;
+	}
+
+	/**
+	 * Translate the constraints of the given recorded assertions up front, 
+	 * using up to the given number of threads. The translations are kept 
+	 * and used when the assertions are added, see 
+	 * {@link #addAssertions(List)}. Constraints which have already been
+	 * translated, or which will not be translated when added, are skipped.
+	 * @param assertions Recorded assertions
+	 * @param maxThreads Maximum number of threads to use
+	 */
+	protected void translateInParallel( List<DeferredAssertion> assertions,
+		int maxThreads ) {
+		
+		// Collect the distinct constraints to translate
+		LinkedHashMap<String,OclConstraint> todo = 
+			new LinkedHashMap<String,OclConstraint>();
+		for( DeferredAssertion da : assertions ) {
+			if( da.constraint==null || da.ci.isAbstract() )
+				continue;
+			if( da.ci.suppressed() && 
+				da.ci.unsuppressedSupertype( trojanSuppressedType )==null )
+				continue;
+			String key = translationKey( da.constraint );
+			if( !translations.containsKey( key ) && !todo.containsKey( key ) )
+				todo.put( key, da.constraint );
+		}
+		
+		final int threads = Math.min( maxThreads, todo.size() );
+		if( threads<=1 )
+			// Translate sequentially, when the assertions are added
+			return;
+		
+		result.addDebug( "Translating " + todo.size() 
+			+ " OCL constraint(s) to Schematron using " + threads 
+			+ " thread(s)." );
+		
+		final List<Entry<String,OclConstraint>> entries = 
+			new ArrayList<Entry<String,OclConstraint>>( todo.entrySet() );
+		
+		List<Callable<Map<String,Translation>>> tasks = 
+			new ArrayList<Callable<Map<String,Translation>>>();
+		
+		for( int i=0; i<threads; i++ ) {
+			final int offset = i;
+			tasks.add( new Callable<Map<String,Translation>>() {
+				public Map<String,Translation> call() throws Exception {
+					SchematronSchema trl = 
+						new SchematronSchema( SchematronSchema.this );
+					Map<String,Translation> res = 
+						new HashMap<String,Translation>();
+					for( int j=offset; j<entries.size(); j+=threads ) {
+						Entry<String,OclConstraint> e = entries.get(j);
+						res.put( e.getKey(), 
+							trl.translateConstraint( e.getValue() ) );
+					}
+					return res;
+				}
+			});
+		}
+		
+		// Constraints of a failed task are translated when added
+		for( Map<String,Translation> res : ParallelExecution.invokeAll( 
+			tasks, threads, model.options(), result ) ) {
+			if( res!=null )
+				translations.putAll( res );
+		}
+	}
+
 	/**
 	 * Add an assertion statement embodied in an XpathFragment object and output
 	 * it as a Schematron &lt;assert> element, which is contained in a proper
@@ -354,6 +551,13 @@ public class SchematronSchema implements MessageSource {
 		if( ci.isAbstract() )
 			return;
 
+		// Only record the assertion if so requested by the current thread
+		List<DeferredAssertion> rec = recordedAssertions.get();
+		if( rec!=null ) {
+			rec.add( new DeferredAssertion( ci, null, xpath, text ) );
+			return;
+		}
+
 		// We will have to create an assertion. Find out about the rule, where
 		// the new assertion will go. This info is kept in RuleCreationStatus
 		// object for each feature type name ...
@@ -362,12 +566,9 @@ public class SchematronSchema implements MessageSource {
 		String asserttext;
 		if( rulecs==null ) {
 			// First time we encounter this feature type: Create a <rule>
-			Element rule = document.createElementNS( Options.SCHEMATRON_NS, "rule" );
-			pattern.appendChild(rule);
-			addAttribute( document, rule, "context", ci.qname() );
-			// Initialize the necessary DOM hooks and info
 			rulecs = new RuleCreationStatus();
-			rulecs.ruleElement = rule;
+			rulecs.context = ci.qname();
+			rules.add( rulecs );
 			// Initialize accumulation of the result fragments
 			rulecs.lastPathStatus = xpath;
 			asserttext = xpath.fragment;
@@ -384,26 +585,53 @@ public class SchematronSchema implements MessageSource {
 					: rulecs.lastPathStatus.lets.entrySet() ) {
 				if( rulecs.letVarsAlreadyOutput.contains( l.getKey() ) )
 					continue;
-				Element let = 
-					document.createElementNS( Options.SCHEMATRON_NS, "let" );
-				rulecs.ruleElement.insertBefore( let, rulecs.firstAssertElement );
-				addAttribute( document, let, "name", l.getKey() );
-				addAttribute( document, let, "value", l.getValue() );
+				rulecs.lets.add( new String[] { l.getKey(), l.getValue() } );
 				rulecs.letVarsAlreadyOutput.add( l.getKey() );
 			}
 		
 		// Add the assertion
-		Element ass = document.createElementNS( Options.SCHEMATRON_NS, "assert" );
-		rulecs.ruleElement.appendChild( ass );
-		if(rulecs.firstAssertElement==null)
-			rulecs.firstAssertElement = ass;
-		addAttribute( document, ass, "test", asserttext );
-		ass.appendChild( document.createTextNode(text) );
+		rulecs.asserts.add( new String[] { asserttext, text } );
 		
 		// Memorize we have output at least one rule
 		assertion = true;
 	}
 	
+	/**
+	 * From now on, assertions added by the current thread are only recorded,
+	 * not added to the Schematron document. This allows several threads to
+	 * create assertions at the same time, while the content of the document
+	 * still depends only on the order in which the recorded assertions are
+	 * eventually added (see {@link #addAssertions(List)}).
+	 */
+	protected void startRecording() {
+		recordedAssertions.set( new LinkedList<DeferredAssertion>() );
+	}
+
+	/**
+	 * Stop recording the assertions of the current thread.
+	 * @return Assertions recorded since the last call of startRecording(),
+	 * in the order in which they were added.
+	 */
+	protected List<DeferredAssertion> stopRecording() {
+		List<DeferredAssertion> rec = recordedAssertions.get();
+		recordedAssertions.remove();
+		return rec==null ? new LinkedList<DeferredAssertion>() : rec;
+	}
+
+	/**
+	 * Add previously recorded assertions to the Schematron document.
+	 * @param assertions Recorded assertions, in the order in which they shall
+	 * be added.
+	 */
+	protected void addAssertions( List<DeferredAssertion> assertions ) {
+		for( DeferredAssertion da : assertions ) {
+			if( da.constraint!=null )
+				addAssertion( da.ci, da.constraint );
+			else
+				addAssertion( da.ci, da.xpath, da.text );
+		}
+	}
+
 	/**
 	 * Auxiliary method to find out the full, namespace adorned name of a 
 	 * property from the model. As a side effect the method makes the namespace
@@ -459,14 +687,17 @@ public class SchematronSchema implements MessageSource {
 	 */
 	public void registerNamespace( String xmlns, String ns ) {
 		if( ! namespaces.contains(xmlns) ) {
-			Element e = document.createElementNS( Options.SCHEMATRON_NS, "ns" );
-			addAttribute( document, e, "prefix", xmlns );
+			if( translator ) {
+				// No document - record the namespace with the translation
+				namespaceRecord.add( new String[] { xmlns, ns } );
+				namespaces.add( xmlns );
+				return;
+			}
 			if( ns==null ) ns = "FIXME";
-			addAttribute( document, e, "uri", ns );
-			root.insertBefore( e, pattern );
+			nsDeclarations.add( new String[] { xmlns, ns } );
 			namespaces.add( xmlns );
 			if( ns.equals("http://www.w3.org/2005/xpath-functions") ) {
-				addAttribute( document, root, "queryBinding", "xslt2" );
+				queryBinding = "xslt2";
 			}
 		}
 	}
@@ -1231,22 +1462,142 @@ public class SchematronSchema implements MessageSource {
 		try {
 			OutputStream fout = new FileOutputStream(outputDirectory + "/" + pi.xsdDocument() + "_SchematronSchema.xml");
 			OutputStreamWriter outputXML = new OutputStreamWriter(fout, outputFormat.getProperty("encoding"));
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
+			if (options.isStreamingXmlOutput()) {
+				writeStreaming(outputXML, outputFormat);
+			} else {
+				StreamingXmlWriter.serialize(createDocument(), outputXML,
+						outputFormat, false);
+			}
 			outputXML.close();
 		} catch (Exception e) {
 			String m = e.getMessage();
-			if (m != null) {
-				result.addError(m);
-			}
-			e.printStackTrace(System.err);
+			result.addError(m != null ? m : e.toString());
 		}
 
 		// Indicate we did it to avoid doing it again
 		printed = true;
 	}
+
+	/**
+	 * Creates the DOM document of the Schematron schema, for serialization
+	 * with the Xalan serializer.
+	 * @return the document
+	 * @throws ParserConfigurationException
+	 */
+	private Document createDocument() throws ParserConfigurationException {
+
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		DocumentBuilder db = dbf.newDocumentBuilder();
+		Document document = db.newDocument();
+
+		// Create a root and attach the Schematron and application schema
+		// namespace definitions.
+		Element root = document.createElementNS(Options.SCHEMATRON_NS, "schema");
+		document.appendChild(root);
+		addAttribute(document, root, "xmlns:sch", Options.SCHEMATRON_NS);
+		if (queryBinding != null) {
+			addAttribute(document, root, "queryBinding", queryBinding);
+		}
+
+		// Add a title element to document the schema the rules belong to
+		Element e1 = document.createElementNS(Options.SCHEMATRON_NS, "title");
+		root.appendChild(e1);
+		e1.appendChild(document.createTextNode(title));
+
+		// Add the namespace declarations
+		for (String[] ns : nsDeclarations) {
+			e1 = document.createElementNS(Options.SCHEMATRON_NS, "ns");
+			root.appendChild(e1);
+			addAttribute(document, e1, "prefix", ns[0]);
+			addAttribute(document, e1, "uri", ns[1]);
+		}
+
+		// Finally add the <pattern> element with all the rules
+		Element pattern = document.createElementNS(Options.SCHEMATRON_NS,
+				"pattern");
+		root.appendChild(pattern);
+
+		for (RuleCreationStatus rulecs : rules) {
+			Element rule = document.createElementNS(Options.SCHEMATRON_NS,
+					"rule");
+			pattern.appendChild(rule);
+			addAttribute(document, rule, "context", rulecs.context);
+			for (String[] l : rulecs.lets) {
+				Element let = document.createElementNS(Options.SCHEMATRON_NS,
+						"let");
+				rule.appendChild(let);
+				addAttribute(document, let, "name", l[0]);
+				addAttribute(document, let, "value", l[1]);
+			}
+			for (String[] a : rulecs.asserts) {
+				Element ass = document.createElementNS(Options.SCHEMATRON_NS,
+						"assert");
+				rule.appendChild(ass);
+				addAttribute(document, ass, "test", a[0]);
+				ass.appendChild(document.createTextNode(a[1]));
+			}
+		}
+
+		return document;
+	}
+
+	/**
+	 * Writes the Schematron schema directly, without creating a DOM
+	 * document. The output is the same as that of a StreamingXmlWriter for
+	 * the document created by {@link #createDocument()}.
+	 * @param out
+	 * @param outputFormat
+	 * @throws XMLStreamException
+	 */
+	private void writeStreaming(Writer out, Properties outputFormat)
+			throws XMLStreamException {
+
+		String sch = Options.SCHEMATRON_NS;
+
+		StreamingXmlWriter writer = new StreamingXmlWriter(out, outputFormat);
+		writer.writeStartDocument();
+
+		writer.writeStartElement(sch, "schema");
+		if (queryBinding != null) {
+			writer.writeAttribute("queryBinding", queryBinding);
+		}
+		writer.writeNamespace("sch", sch);
+
+		writer.writeStartElement(sch, "title");
+		writer.writeCharacters(title);
+		writer.writeEndElement();
+
+		for (String[] ns : nsDeclarations) {
+			writer.writeStartElement(sch, "ns");
+			writer.writeAttribute("prefix", ns[0]);
+			writer.writeAttribute("uri", ns[1]);
+			writer.writeEndElement();
+		}
+
+		writer.writeStartElement(sch, "pattern");
+		for (RuleCreationStatus rulecs : rules) {
+			writer.writeStartElement(sch, "rule");
+			writer.writeAttribute("context", rulecs.context);
+			for (String[] l : rulecs.lets) {
+				writer.writeStartElement(sch, "let");
+				writer.writeAttribute("name", l[0]);
+				writer.writeAttribute("value", l[1]);
+				writer.writeEndElement();
+			}
+			for (String[] a : rulecs.asserts) {
+				writer.writeStartElement(sch, "assert");
+				writer.writeAttribute("test", a[0]);
+				writer.writeCharacters(a[1]);
+				writer.writeEndElement();
+			}
+			writer.writeEndElement();
+		}
+		writer.writeEndElement();
+
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+	}
 	
 	/**
 	 * Auxiliary function to determine if the generated Xpath code contains
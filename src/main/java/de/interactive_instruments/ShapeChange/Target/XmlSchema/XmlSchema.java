@@ -33,13 +33,18 @@
 package de.interactive_instruments.ShapeChange.Target.XmlSchema;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.OutputPropertiesFactory;
@@ -59,9 +64,24 @@ import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.OclConstraint;
 import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
 
 public class XmlSchema implements Target {
 
+	/**
+	 * If set to <code>true</code>, the classes are not converted when they are
+	 * processed, but only once all classes of the schema are known: then the
+	 * XML Schema documents are created concurrently, each by its own thread
+	 * (at most as many as defined by the input parameter
+	 * {@value Options#PARAM_MAX_THREADS}). The resulting documents - including
+	 * the Schematron schema - are identical to those created sequentially.
+	 * The parameter only has an effect if the model is a GenericModel; other
+	 * models load information lazily and are not safe for concurrent access.
+	 * Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_DOCUMENTS = "parallelDocumentCreation";
+
 	private ShapeChangeResult result = null;
 	private PackageInfo pi = null;
 	private Model model = null;
@@ -72,6 +92,15 @@ public class XmlSchema implements Target {
 	private boolean diagnosticsOnly = false;
 	private String outputDirectory;
 
+	private boolean parallelDocuments = false;
+	/**
+	 * Classes to convert once all classes are known, in the order in which
+	 * they were processed, per XML Schema document; only used if
+	 * {@value #PARAM_PARALLEL_DOCUMENTS} is <code>true</code>
+	 */
+	private final LinkedHashMap<XsdDocument, List<ClassInfo>> deferredClasses = new LinkedHashMap<XsdDocument, List<ClassInfo>>();
+	private final List<ClassInfo> deferredClassOrder = new ArrayList<ClassInfo>();
+
 	public void initialise(PackageInfo p, Model m, Options o,
 			ShapeChangeResult r, boolean diagOnly) throws ShapeChangeAbortException {
 
@@ -92,6 +121,11 @@ public class XmlSchema implements Target {
 		if (outputDirectory==null)
 			outputDirectory = options.parameter(".");
 
+		String s = options.parameter(this.getClass().getName(),
+				PARAM_PARALLEL_DOCUMENTS);
+		parallelDocuments = s != null && s.trim().equalsIgnoreCase("true")
+				&& model instanceof GenericModel;
+
 		if (pi.matches("rule-xsd-pkg-schematron"))
 			schDoc = new SchematronSchema(model, options, result, pi);
 		
@@ -124,7 +158,6 @@ public class XmlSchema implements Target {
 		if (ci.processed(getTargetID()))
 			return;
 
-		int cat = ci.category();
 		result.addDebug(null,10016, ci.name(), ci.encodingRule("xsd"));
 
 		if (ci.matches("rule-xsd-all-notEncoded")&&ci.encodingRule("xsd").equalsIgnoreCase("notencoded"))
@@ -141,6 +174,32 @@ public class XmlSchema implements Target {
 			xsd = xsdMap.get(pi.id());
 		}
 
+		if (parallelDocuments) {
+			List<ClassInfo> cis = deferredClasses.get(xsd);
+			if (cis == null) {
+				cis = new ArrayList<ClassInfo>();
+				deferredClasses.put(xsd, cis);
+			}
+			cis.add(ci);
+			deferredClassOrder.add(ci);
+		} else {
+			processClass(ci, xsd);
+		}
+
+		ci.processed(getTargetID(), true);
+	};
+
+	/**
+	 * Converts the given class into the given XML Schema document (and the
+	 * Schematron schema, if there is one).
+	 * 
+	 * @param ci
+	 * @param xsd
+	 */
+	private void processClass(ClassInfo ci, XsdDocument xsd) {
+
+		int cat = ci.category();
+
 		ClassInfo cibase = ci.baseClass();		
 
 		if (ci.matches("rule-xsd-cls-no-base-class")) {
@@ -304,23 +363,101 @@ public class XmlSchema implements Target {
 		}
 		;
 
-		ci.processed(getTargetID(), true);
-	};
+		if (options.isStreamingXmlOutput() && !diagnosticsOnly) {
+			// the components of the class are complete, write them right away
+			try {
+				xsd.writeCompletedComponents(outputFormat());
+			} catch (Exception e) {
+				String m = e.getMessage();
+				result.addError(m != null ? m : e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Converts the classes whose conversion has been deferred, each XML Schema
+	 * document by a separate thread. Schematron assertions are recorded by the
+	 * threads and added afterwards, in the order in which the classes were
+	 * processed, so that the Schematron schema is the same as with sequential
+	 * processing. The constraints of these assertions are translated by
+	 * multiple threads as well, before the assertions are added.
+	 */
+	private void processDeferredClasses() {
+
+		if (deferredClasses.isEmpty()) {
+			return;
+		}
+
+		final Map<ClassInfo, List<SchematronSchema.DeferredAssertion>> assertions = Collections
+				.synchronizedMap(
+						new HashMap<ClassInfo, List<SchematronSchema.DeferredAssertion>>());
+
+		int threads = Math.min(options.maxThreads(), deferredClasses.size());
+
+		result.addDebug("Creating " + deferredClasses.size()
+				+ " XML Schema document(s) using " + threads + " thread(s).");
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		for (final Entry<XsdDocument, List<ClassInfo>> e : deferredClasses
+				.entrySet()) {
+
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+
+					for (ClassInfo ci : e.getValue()) {
+						if (schDoc != null) {
+							schDoc.startRecording();
+						}
+						try {
+							processClass(ci, e.getKey());
+						} finally {
+							if (schDoc != null) {
+								assertions.put(ci, schDoc.stopRecording());
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		ParallelExecution.invokeAll(tasks, threads, model.options(), result);
+
+		if (schDoc != null) {
+
+			/*
+			 * translate the constraints in parallel, then add the assertions
+			 * in order
+			 */
+			List<SchematronSchema.DeferredAssertion> all = new ArrayList<SchematronSchema.DeferredAssertion>();
+			for (ClassInfo ci : deferredClassOrder) {
+				List<SchematronSchema.DeferredAssertion> l = assertions
+						.get(ci);
+				if (l != null) {
+					all.addAll(l);
+				}
+			}
+			schDoc.translateInParallel(all, options.maxThreads());
+			schDoc.addAssertions(all);
+		}
+
+		deferredClasses.clear();
+		deferredClassOrder.clear();
+	}
 
 	public void write() {
 		if (printed) {
 			return;
 		}
+
+		processDeferredClasses();
+
 		if (diagnosticsOnly) {
 			return;
 		}
 				
-		Properties outputFormat = OutputPropertiesFactory
-				.getDefaultMethodProperties("xml");
-		outputFormat.setProperty("indent", "yes");
-		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
-				"2");
-		outputFormat.setProperty("encoding", "UTF-8");
+		Properties outputFormat = outputFormat();
 
 		for (Iterator<XsdDocument> i = xsdMap.values().iterator(); i.hasNext();) {
 			XsdDocument xsd = i.next();
@@ -344,6 +481,19 @@ public class XmlSchema implements Target {
 		printed = true;
 	};
 
+	/**
+	 * @return output properties for the XML Schema documents
+	 */
+	private Properties outputFormat() {
+		Properties outputFormat = OutputPropertiesFactory
+				.getDefaultMethodProperties("xml");
+		outputFormat.setProperty("indent", "yes");
+		outputFormat.setProperty("{http://xml.apache.org/xalan}indent-amount",
+				"2");
+		outputFormat.setProperty("encoding", "UTF-8");
+		return outputFormat;
+	}
+
 	/** Create XML Schema documents */
 	protected boolean createXSDs(PackageInfo pi, XsdDocument xsdcurr)
 			throws ShapeChangeAbortException {
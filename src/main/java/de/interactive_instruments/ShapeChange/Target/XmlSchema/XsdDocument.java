@@ -38,6 +38,11 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.FileOutputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
@@ -55,11 +60,11 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.xml.serializer.Serializer;
-import org.apache.xml.serializer.SerializerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import de.interactive_instruments.ShapeChange.MapEntry;
 import de.interactive_instruments.ShapeChange.MessageSource;
@@ -78,6 +83,7 @@ import de.interactive_instruments.ShapeChange.Model.PropertyInfo;
 import de.interactive_instruments.ShapeChange.Model.Qualifier;
 import de.interactive_instruments.ShapeChange.Model.TaggedValues;
 import de.interactive_instruments.ShapeChange.Target.XmlSchema.SchematronConstraintNode.XpathFragment;
+import de.interactive_instruments.ShapeChange.Util.StreamingXmlWriter;
 
 public class XsdDocument implements MessageSource {
 
@@ -101,6 +107,15 @@ public class XsdDocument implements MessageSource {
 	protected String okstraPrefix;
 	protected String okstra;
 
+	/**
+	 * Temporary file with the schema components that have already been
+	 * written (see {@link #writeCompletedComponents(Properties)});
+	 * <code>null</code> if there are none
+	 */
+	protected File spoolFile = null;
+	protected Writer spoolWriter = null;
+	protected StreamingXmlWriter spool = null;
+
 	public XsdDocument(PackageInfo pi, Model m, Options o, ShapeChangeResult r,
 			String n) throws ShapeChangeAbortException,
 					ParserConfigurationException {
@@ -3232,18 +3247,110 @@ public class XsdDocument implements MessageSource {
 			OutputStreamWriter outputXML = new OutputStreamWriter(bout,
 					outputFormat.getProperty("encoding"));
 
-			Serializer serializer = SerializerFactory
-					.getSerializer(outputFormat);
-			serializer.setWriter(outputXML);
-			serializer.asDOMSerializer().serialize(document);
+			if (spool == null) {
+				StreamingXmlWriter.serialize(document, outputXML,
+						outputFormat, options.isStreamingXmlOutput());
+			} else {
+				writeWithSpooledComponents(outputXML, outputFormat);
+			}
 			outputXML.close();
 		} catch (IOException ioe) {
 			result.addError(null, 171, name);
+		} finally {
+			if (spoolFile != null) {
+				spoolFile.delete();
+				spoolFile = null;
+			}
 		}
 
 		printed = true;
 	}
 
+	/**
+	 * Writes the schema components that have been added to the document since
+	 * the last call - i.e. the nodes following the hook - to a temporary
+	 * file, and removes them from the document. The file is inserted into the
+	 * XML Schema document when it is printed, so that the components of the
+	 * classes that have already been processed do not need to be kept in
+	 * memory.
+	 * 
+	 * @param outputFormat
+	 *            output properties, as for {@link #printFile(Properties)}
+	 * @throws Exception
+	 */
+	public void writeCompletedComponents(Properties outputFormat)
+			throws Exception {
+
+		if (printed || hook.getNextSibling() == null) {
+			return;
+		}
+
+		if (spool == null) {
+			spoolFile = File.createTempFile("shapechange", ".xsd.part");
+			spoolFile.deleteOnExit();
+			spoolWriter = new OutputStreamWriter(new BufferedOutputStream(
+					new FileOutputStream(spoolFile)), "UTF-8");
+			spool = new StreamingXmlWriter(spoolWriter, outputFormat);
+			spool.writeStartFragment(root);
+		}
+
+		Node n = hook.getNextSibling();
+		while (n != null) {
+			Node next = n.getNextSibling();
+			spool.writeNode(n);
+			root.removeChild(n);
+			n = next;
+		}
+		spool.flush();
+	}
+
+	/**
+	 * Writes the document, inserting the components that have been written
+	 * to the temporary file after the hook.
+	 */
+	private void writeWithSpooledComponents(Writer outputXML,
+			Properties outputFormat) throws Exception {
+
+		spool.writeEndFragment();
+		spoolWriter.close();
+
+		StreamingXmlWriter writer = new StreamingXmlWriter(outputXML,
+				outputFormat);
+		writer.writeStartDocument();
+		writer.writeStartElement(root);
+
+		Node n = root.getFirstChild();
+		while (n != null) {
+			writer.writeNode(n);
+			if (n == hook) {
+				n = n.getNextSibling();
+				break;
+			}
+			n = n.getNextSibling();
+		}
+
+		Reader spooled = new InputStreamReader(
+				new BufferedInputStream(new FileInputStream(spoolFile)),
+				"UTF-8");
+		try {
+			writer.writeFragment(spooled);
+		} finally {
+			spooled.close();
+		}
+
+		// components added after the last call of writeCompletedComponents
+		for (; n != null; n = n.getNextSibling()) {
+			writer.writeNode(n);
+		}
+
+		writer.writeEndElement();
+		writer.writeEndDocument();
+		writer.flush();
+
+		spool = null;
+		spoolWriter = null;
+	}
+
 	public boolean printed() {
 		return printed;
 	}
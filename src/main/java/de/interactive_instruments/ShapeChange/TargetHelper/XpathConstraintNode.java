@@ -330,6 +330,15 @@ public abstract class XpathConstraintNode {
 		public XpathFragment( int p, String f ) {
 			priority = p; fragment = f; type = XpathType.NODESET;
 		}
+		// Create an independent copy. Merging a copy into another fragment
+		// (or another fragment into it) does not affect this fragment.
+		public XpathFragment copy() {
+			XpathFragment copy = new XpathFragment( priority, fragment, type );
+			if( lets!=null )
+				copy.lets = new TreeMap<String,String>( lets );
+			copy.atEnd = atEnd==null ? null : atEnd.clone();
+			return copy;
+		}
 		// Bracket the current expression
 		public void bracket() {
 			fragment = "(" + fragment + ")"; priority = 11;
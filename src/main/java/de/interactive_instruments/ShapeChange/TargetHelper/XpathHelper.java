@@ -57,6 +57,15 @@ public class XpathHelper implements MessageSource {
 	private String currentOclConstraintName = null; 
 	private ClassInfo currentOclConstraintClass = null;	
 
+	/**
+	 * Translations of the constraints translated so far (null if the
+	 * translation failed), by context and text of the constraint. Inherited
+	 * constraints are translated for each subtype, but their translation does
+	 * not depend on the subtype.
+	 */
+	private HashMap<String,XpathConstraintNode.XpathFragment> translations =
+		new HashMap<String,XpathConstraintNode.XpathFragment>();
+
 	public static class ExtensionFunctionTemplate {
 		public String nsPrefix;
 		public String namespace;
@@ -216,12 +225,42 @@ public class XpathHelper implements MessageSource {
 		if( ci.isAbstract() )
 			return null;
 
+		// Use a previous translation of the constraint, if there is one.
+		// Namespaces have then already been registered.
+		ClassInfo cc = c.contextClass();
+		Info cme = c.contextModelElmt();
+		String key = ( cc==null ? "" : cc.id() ) + "\0"
+			+ ( cme==null ? "" : cme.id() ) + "\0" + c.text();
+		XpathConstraintNode.XpathFragment xpath;
+		if( translations.containsKey( key ) ) {
+			xpath = translations.get( key );
+		} else {
+			xpath = translateConstraint( c );
+			translations.put( key, xpath );
+		}
+
+		// Return a copy, as fragments are modified when they are merged
+		return xpath==null ? null : xpath.copy();
+	}
+
+	/**
+	 * Translate an OCL constraint into an Xpath expression
+	 * @param c OCL constraint. Must be invariant.
+	 * @return Xpath fragment object, null if the translation failed
+	 */
+	private XpathConstraintNode.XpathFragment translateConstraint(
+		OclConstraint c ) {
+
 		// Set environment for possible error messages
 		currentOclConstraintName = c.name(); 
 		currentOclConstraintClass = c.contextClass();
 
-		// Get hold of the syntax tree
+		// Get hold of the syntax tree. It is null if the constraint could not
+		// be parsed (with lazy OCL parsing, the constraint is only parsed -
+		// and parsing errors are only reported - at this point).
 		OclNode.Expression oclex = c.syntaxTree();
+		if (oclex==null)
+			return null;
 		
 		// Derive the target Schematron syntax tree from the OCL tree,
 		// quit if in error due to implementation restrictions
@@ -32,14 +32,18 @@
 
 package de.interactive_instruments.ShapeChange.Transformation.Constraints;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 import de.interactive_instruments.ShapeChange.Options;
 import de.interactive_instruments.ShapeChange.ShapeChangeAbortException;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult;
 import de.interactive_instruments.ShapeChange.TransformerConfiguration;
-import de.interactive_instruments.ShapeChange.FOL.FolExpression;
 import de.interactive_instruments.ShapeChange.Model.ClassInfo;
 import de.interactive_instruments.ShapeChange.Model.Constraint;
 import de.interactive_instruments.ShapeChange.Model.FolConstraint;
@@ -47,8 +51,10 @@ import de.interactive_instruments.ShapeChange.Model.PackageInfo;
 import de.interactive_instruments.ShapeChange.Model.Generic.GenericModel;
 import de.interactive_instruments.ShapeChange.SBVR.Sbvr2FolParser;
 import de.interactive_instruments.ShapeChange.SBVR.SbvrConstants;
+import de.interactive_instruments.ShapeChange.SBVR.SbvrParsingResult;
 import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
 import de.interactive_instruments.ShapeChange.Transformation.Transformer;
+import de.interactive_instruments.ShapeChange.Util.ParallelExecution;
 
 /**
  * Parses First Order Logic expressions from constraints contained in the model.
@@ -62,6 +68,15 @@ import de.interactive_instruments.ShapeChange.Transformation.Transformer;
  */
 public class FolConstraintParsing implements Transformer {
 
+	/**
+	 * If set to <code>true</code>, SBVR constraints are parsed concurrently,
+	 * using up to the number of threads given by the <code>maxThreads</code>
+	 * input parameter. The resulting expressions and log messages are the same
+	 * as, and are recorded in the same order as, when parsing sequentially.
+	 * Default is <code>false</code>.
+	 */
+	public static final String PARAM_PARALLEL_PARSING = "parallelParsing";
+
 	@Override
 	public void process(GenericModel m, Options o,
 			TransformerConfiguration trfConfig, ShapeChangeResult r)
@@ -72,7 +87,14 @@ public class FolConstraintParsing implements Transformer {
 		 * For those where the parser does not need to be set up per constraint,
 		 * we can create them outside of the following loops.
 		 */
-		Sbvr2FolParser sbvrParser = new Sbvr2FolParser(m);
+		final Sbvr2FolParser sbvrParser = new Sbvr2FolParser(m);
+
+		/*
+		 * gather the constraints first, so that they can be processed - and
+		 * their parsing results logged - in a well-defined order
+		 */
+		List<FolConstraint> folCons = new ArrayList<FolConstraint>();
+		int sbvrConCount = 0;
 
 		for (PackageInfo pi : m.selectedSchemas()) {
 
@@ -108,32 +130,98 @@ public class FolConstraintParsing implements Transformer {
 								SbvrConstants.FOL_SOURCE_TYPE)) {
 
 							folCon.setComments(new String[] { folCon.text() });
+							sbvrConCount++;
+						}
+
+						folCons.add(folCon);
+					}
+				}
+			}
+		}
+
+		/*
+		 * In parallel mode, the SBVR constraints are parsed up front; the
+		 * parser helper and vocabulary are shared by all threads, which only
+		 * read them.
+		 */
+		boolean parallel = trfConfig.hasParameter(PARAM_PARALLEL_PARSING)
+				&& trfConfig.getParameterValue(PARAM_PARALLEL_PARSING).trim()
+						.equalsIgnoreCase("true") && sbvrConCount > 1
+				&& o.maxThreads() > 1;
+
+		Map<FolConstraint, SbvrParsingResult> parsingResults = new HashMap<FolConstraint, SbvrParsingResult>();
+
+		if (parallel) {
+
+			int threads = Math.min(o.maxThreads(), sbvrConCount);
+
+			r.addDebug("Parsing " + sbvrConCount + " SBVR constraints using "
+					+ threads + " thread(s).");
+
+			List<FolConstraint> sbvrCons = new ArrayList<FolConstraint>();
+			List<Callable<SbvrParsingResult>> tasks = new ArrayList<Callable<SbvrParsingResult>>();
+
+			for (final FolConstraint folCon : folCons) {
+
+				if (folCon.sourceType().equals(SbvrConstants.FOL_SOURCE_TYPE)) {
 
-							FolExpression folExpr = sbvrParser.parse(folCon);
-
-							if (folExpr != null) {
-								folCon.setFolExpression(folExpr);
-							} else {
-								/*
-								 * the parser already logged why the expression
-								 * was not created
-								 */
-							}
-
-						} else {
-
-							/*
-							 * Apparently a new source for FOL constraints
-							 * exists - add parsing it here; in the meantime,
-							 * log this as an error
-							 */
-							MessageContext ctx = r.addError(null, 38,
-									folCon.sourceType());
-							ctx.addDetail(null, 39, folCon.name(), folCon
-									.contextModelElmt().fullNameInSchema());
+					sbvrCons.add(folCon);
+					tasks.add(new Callable<SbvrParsingResult>() {
+						public SbvrParsingResult call() throws Exception {
+							return sbvrParser.parseConstraint(folCon);
 						}
+					});
+				}
+			}
+
+			List<SbvrParsingResult> results = ParallelExecution
+					.invokeAll(tasks, threads, m.options(), r);
+
+			for (int i = 0; i < sbvrCons.size(); i++) {
+				parsingResults.put(sbvrCons.get(i), results.get(i));
+			}
+		}
+
+		for (FolConstraint folCon : folCons) {
+
+			if (folCon.sourceType().equals(SbvrConstants.FOL_SOURCE_TYPE)) {
+
+				SbvrParsingResult parsingResult;
+
+				if (parallel) {
+
+					parsingResult = parsingResults.get(folCon);
+					if (parsingResult == null) {
+						// the failure has already been logged
+						continue;
 					}
+
+				} else {
+					parsingResult = sbvrParser.parseConstraint(folCon);
+				}
+
+				sbvrParser.logParsingResult(parsingResult);
+
+				if (parsingResult.hasFirstOrderLogicExpression()) {
+					folCon.setFolExpression(parsingResult
+							.getFirstOrderLogicExpression());
+				} else {
+					/*
+					 * the parser already logged why the expression was not
+					 * created
+					 */
 				}
+
+			} else {
+
+				/*
+				 * Apparently a new source for FOL constraints exists - add
+				 * parsing it here; in the meantime, log this as an error
+				 */
+				MessageContext ctx = r.addError(null, 38,
+						folCon.sourceType());
+				ctx.addDetail(null, 39, folCon.name(), folCon
+						.contextModelElmt().fullNameInSchema());
 			}
 		}
 	}
@@ -38,6 +38,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -809,6 +810,8 @@ public class Flattener implements Transformer {
 		 * these types, remove the types themselves, and also remove any direct
 		 * inheritance relationships with these types.
 		 */
+		Set<GenericClassInfo> genCisToRemove = new LinkedHashSet<GenericClassInfo>();
+
 		for (String typeToRemove : typesToRemove) {
 
 			ClassInfo ciToRemove = genModel.classByName(typeToRemove);
@@ -821,9 +824,7 @@ public class Flattener implements Transformer {
 
 				if (ciToRemove instanceof GenericClassInfo) {
 
-					GenericClassInfo genCiToRemove = (GenericClassInfo) ciToRemove;
-
-					genModel.remove(genCiToRemove);
+					genCisToRemove.add((GenericClassInfo) ciToRemove);
 
 				} else {
 
@@ -831,6 +832,8 @@ public class Flattener implements Transformer {
 				}
 			}
 		}
+
+		genModel.remove(genCisToRemove);
 	}
 
 	private void applyRulePropFlattenHomogeneousGeometries(
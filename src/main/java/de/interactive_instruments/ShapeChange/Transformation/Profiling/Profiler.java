@@ -509,9 +509,7 @@ public class Profiler implements Transformer {
 			}
 		}
 
-		for (GenericClassInfo ci : cisToRemove) {
-			genModel.remove(ci);
-		}
+		genModel.remove(cisToRemove);
 
 		/*
 		 * For each (remaining) property in the generic model:
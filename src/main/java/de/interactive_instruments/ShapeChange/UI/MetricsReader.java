@@ -0,0 +1,55 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.UI;
+
+/**
+ * A StatusReader that is also informed about the measurements of processing
+ * phases (see input parameter 'processMetrics').
+ */
+public interface MetricsReader extends StatusReader {
+
+	/**
+	 * @param category
+	 *            model, transformer, target or deferredOutputWriter
+	 * @param name
+	 *            name of the model, transformer or target
+	 * @param step
+	 *            processing step, for example 'process' or 'write'
+	 * @param durationNanos
+	 *            duration of the phase, in nanoseconds
+	 * @param heapDelta
+	 *            change of the used heap during the phase, in bytes
+	 */
+	public void phaseCompleted(String category, String name, String step,
+			long durationNanos, long heapDelta);
+}
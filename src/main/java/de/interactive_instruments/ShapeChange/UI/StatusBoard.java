@@ -42,7 +42,7 @@ public class StatusBoard {
 	
 	private ArrayList<StatusReader> register = null;
 
-	public static StatusBoard getStatusBoard(){
+	public static synchronized StatusBoard getStatusBoard(){
 		if(statusBoard==null)
 			statusBoard = new StatusBoard();
 		return statusBoard;
@@ -52,17 +52,34 @@ public class StatusBoard {
 		register = new ArrayList<StatusReader>();
 	}
 	
-	public void registerStatusReader(StatusReader r){
+	public synchronized void registerStatusReader(StatusReader r){
 		register.add(r);
 	}
 	
-	public void statusChanged(int status){
+	public synchronized void statusChanged(int status){
 		
 		for (@SuppressWarnings("rawtypes")
 		Iterator iter = register.iterator(); iter.hasNext();) {
 			((StatusReader) iter.next()).statusChanged(status); 
 		}
 	}
+
+	/**
+	 * Informs all registered MetricsReaders about a completed processing
+	 * phase.
+	 * 
+	 * @see MetricsReader#phaseCompleted(String, String, String, long, long)
+	 */
+	public synchronized void phaseCompleted(String category, String name,
+			String step, long durationNanos, long heapDelta) {
+
+		for (StatusReader r : register) {
+			if (r instanceof MetricsReader) {
+				((MetricsReader) r).phaseCompleted(category, name, step,
+						durationNanos, heapDelta);
+			}
+		}
+	}
 	
 	
 	
@@ -0,0 +1,196 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+
+/**
+ * Executes tasks on a fixed number of threads, on behalf of the current
+ * thread. The process view of the options that is bound to the current
+ * thread (see {@link Options#boundProcessView()}) is bound to the executing
+ * threads as well, so that the tasks use the same process specific options as
+ * the current thread - for example when model elements check if a rule
+ * matches.
+ */
+public class ParallelExecution {
+
+	/**
+	 * Executes the given tasks on up to the given number of threads and waits
+	 * until all of them have completed. If a task fails, the cause is logged
+	 * as an error, and the other tasks are still executed.
+	 * 
+	 * @param tasks
+	 * @param threads
+	 *            maximum number of threads to use
+	 * @param options
+	 *            options whose process view shall be bound to the threads
+	 * @param result
+	 *            result to log the failures of tasks to
+	 * @return the results of the tasks, in the order of the tasks; the result
+	 *         of a task that failed is <code>null</code>
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks,
+			int threads, Options options, ShapeChangeResult result) {
+
+		List<T> results = new ArrayList<T>();
+		List<Throwable> failures = new ArrayList<Throwable>();
+
+		execute(tasks, threads, options, results, failures);
+
+		for (Throwable cause : failures) {
+			if (cause != null) {
+				logFailure(cause, result);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Executes the given tasks on up to the given number of threads and waits
+	 * until all of them have completed. If a task fails, the other tasks are
+	 * still executed; the failure is thrown afterwards.
+	 * 
+	 * @param tasks
+	 * @param threads
+	 *            maximum number of threads to use
+	 * @param options
+	 *            options whose process view shall be bound to the threads
+	 * @return the results of the tasks, in the order of the tasks
+	 * @throws Exception
+	 *             the exception that caused the first failed task (in the
+	 *             order of the tasks) to fail
+	 */
+	public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks,
+			int threads, Options options) throws Exception {
+
+		List<T> results = new ArrayList<T>();
+		List<Throwable> failures = new ArrayList<Throwable>();
+
+		execute(tasks, threads, options, results, failures);
+
+		for (Throwable cause : failures) {
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause != null) {
+				throw new ExecutionException(cause);
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Logs the cause of a failed task as an error; the stack trace is logged
+	 * on debug level.
+	 * 
+	 * @param cause
+	 * @param result
+	 */
+	public static void logFailure(Throwable cause, ShapeChangeResult result) {
+
+		String m = cause.getMessage();
+		result.addError(m == null ? cause.toString() : m);
+
+		StackTraceElement[] stes = cause.getStackTrace();
+		if (stes != null) {
+			for (StackTraceElement ste : stes) {
+				result.addDebug(ste.toString());
+			}
+		}
+	}
+
+	private static <T> void execute(List<? extends Callable<T>> tasks,
+			int threads, final Options options, List<T> results,
+			List<Throwable> failures) {
+
+		if (tasks.isEmpty()) {
+			return;
+		}
+
+		final Options view = options == null ? null
+				: options.boundProcessView();
+
+		ExecutorService executor = Executors
+				.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+		List<Future<T>> futures = new ArrayList<Future<T>>();
+
+		try {
+
+			for (final Callable<T> task : tasks) {
+
+				futures.add(executor.submit(new Callable<T>() {
+					public T call() throws Exception {
+
+						if (view != null) {
+							options.bindProcessView(view);
+						}
+
+						try {
+							return task.call();
+						} finally {
+							if (view != null) {
+								options.unbindProcessView();
+							}
+						}
+					}
+				}));
+			}
+
+			for (Future<T> future : futures) {
+				try {
+					results.add(future.get());
+					failures.add(null);
+				} catch (ExecutionException e) {
+					results.add(null);
+					failures.add(e.getCause());
+				}
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failures.add(e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
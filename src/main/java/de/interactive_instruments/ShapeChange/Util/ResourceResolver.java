@@ -0,0 +1,490 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves remote resources - configuration files included via XInclude,
+ * XSLT stylesheets (including the ones they import), CSS files and templates
+ * - from local copies where possible.
+ * <p>
+ * The resolver is configured via system properties, because it is already
+ * needed while the configuration file is parsed:
+ * <ul>
+ * <li>{@value #PROPERTY_CATALOG}: path to an XML catalog (OASIS XML Catalogs;
+ * the elements <code>uri</code>, <code>system</code>,
+ * <code>rewriteURI</code> and <code>rewriteSystem</code> are supported) that
+ * maps remote URIs to local ones</li>
+ * <li>{@value #PROPERTY_CACHE_DIRECTORY}: directory in which resources that
+ * had to be fetched are stored, by the SHA-256 hash of their content; they
+ * are served from there from then on</li>
+ * <li>{@value #PROPERTY_OFFLINE}: if <code>true</code>, remote resources
+ * that cannot be resolved locally are not fetched; an exception is thrown
+ * instead</li>
+ * </ul>
+ * If any of them is set, the resources bundled with ShapeChange
+ * (configuration files, stylesheets and schemas below
+ * {@value #BUNDLED_RESOURCES_URI}) are used instead of the ones published
+ * online. Otherwise, remote resources are fetched as before.
+ * <p>
+ * A different resolver can be plugged in via
+ * {@link #setInstance(ResourceResolver)}.
+ */
+public class ResourceResolver implements EntityResolver, URIResolver {
+
+	public static final String PROPERTY_CATALOG = "shapechange.catalog";
+	public static final String PROPERTY_CACHE_DIRECTORY = "shapechange.resourceCache";
+	public static final String PROPERTY_OFFLINE = "shapechange.offline";
+
+	/**
+	 * Location of the online copies of the resources that are bundled with
+	 * ShapeChange
+	 */
+	public static final String BUNDLED_RESOURCES_URI = "http://shapechange.net/resources/";
+
+	protected static final String[] BUNDLED_RESOURCE_DIRECTORIES = {
+			"config/", "schema/", "xslt/" };
+
+	/**
+	 * Name of the file in the cache directory that maps URIs to the hash of
+	 * the cached content
+	 */
+	protected static final String CACHE_INDEX = "index.properties";
+
+	private static ResourceResolver instance = null;
+
+	protected boolean active = false;
+	protected boolean offline = false;
+	protected File cacheDirectory = null;
+	protected Properties cacheIndex = new Properties();
+
+	/**
+	 * URI mappings; key: remote URI, value: local URI
+	 */
+	protected Map<String, String> uris = new HashMap<String, String>();
+
+	/**
+	 * Rewrite rules; key: start of a remote URI, value: prefix that replaces
+	 * it; sorted so that the longest matching start string can be found
+	 */
+	protected TreeMap<String, String> rewrites = new TreeMap<String, String>();
+
+	/**
+	 * @return the resolver, configured from the system properties when it is
+	 *         used for the first time
+	 */
+	public static synchronized ResourceResolver getInstance() {
+		if (instance == null) {
+			instance = new ResourceResolver();
+			instance.configure(System.getProperty(PROPERTY_CATALOG),
+					System.getProperty(PROPERTY_CACHE_DIRECTORY),
+					"true".equalsIgnoreCase(
+							System.getProperty(PROPERTY_OFFLINE)));
+		}
+		return instance;
+	}
+
+	/**
+	 * @param resolver
+	 *            the resolver to use from now on; <code>null</code> to
+	 *            configure a new one from the system properties
+	 */
+	public static synchronized void setInstance(ResourceResolver resolver) {
+		instance = resolver;
+	}
+
+	/**
+	 * @param catalog
+	 *            path to an XML catalog, can be <code>null</code>
+	 * @param cacheDirectory
+	 *            path to the cache directory, can be <code>null</code>
+	 * @param offline
+	 */
+	protected void configure(String catalog, String cacheDirectory,
+			boolean offline) {
+
+		this.offline = offline;
+		active = offline || catalog != null || cacheDirectory != null;
+
+		if (!active) {
+			return;
+		}
+
+		if (catalog != null) {
+			try {
+				loadCatalog(new File(catalog));
+			} catch (Exception e) {
+				System.err.println("XML catalog '" + catalog
+						+ "' could not be loaded: " + e.getMessage());
+			}
+		}
+
+		if (cacheDirectory != null) {
+
+			this.cacheDirectory = new File(cacheDirectory);
+			File index = new File(this.cacheDirectory, CACHE_INDEX);
+
+			if (index.isFile()) {
+				try {
+					InputStream in = new FileInputStream(index);
+					try {
+						cacheIndex.load(in);
+					} finally {
+						in.close();
+					}
+				} catch (IOException e) {
+					System.err.println("Index of resource cache '"
+							+ cacheDirectory + "' could not be read: "
+							+ e.getMessage());
+				}
+			}
+		}
+	}
+
+	protected void loadCatalog(File catalog) throws Exception {
+
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Document doc = factory.newDocumentBuilder().parse(catalog);
+
+		URI base = catalog.toURI();
+
+		for (Node n = doc.getDocumentElement()
+				.getFirstChild(); n != null; n = n.getNextSibling()) {
+
+			if (!(n instanceof Element)) {
+				continue;
+			}
+
+			Element e = (Element) n;
+			String name = e.getLocalName();
+
+			if (name.equals("uri")) {
+				uris.put(e.getAttribute("name"),
+						base.resolve(e.getAttribute("uri")).toString());
+			} else if (name.equals("system")) {
+				uris.put(e.getAttribute("systemId"),
+						base.resolve(e.getAttribute("uri")).toString());
+			} else if (name.equals("rewriteURI")) {
+				rewrites.put(e.getAttribute("uriStartString"),
+						base.resolve(e.getAttribute("rewritePrefix"))
+								.toString());
+			} else if (name.equals("rewriteSystem")) {
+				rewrites.put(e.getAttribute("systemIdStartString"),
+						base.resolve(e.getAttribute("rewritePrefix"))
+								.toString());
+			}
+		}
+	}
+
+	/**
+	 * @param uri
+	 * @return the local URI to use instead of the given one, according to
+	 *         the catalog or - with lower priority - the bundled resources;
+	 *         <code>null</code> if there is none
+	 */
+	public String localUri(String uri) {
+
+		if (!active || uri == null) {
+			return null;
+		}
+
+		String local = uris.get(uri);
+		if (local != null) {
+			return local;
+		}
+
+		// the longest start string that matches wins
+		for (String start : rewrites.descendingKeySet()) {
+			if (uri.startsWith(start)) {
+				return rewrites.get(start) + uri.substring(start.length());
+			}
+		}
+
+		for (String dir : BUNDLED_RESOURCE_DIRECTORIES) {
+			if (uri.startsWith(BUNDLED_RESOURCES_URI + dir)) {
+				URL url = getClass().getResource(
+						"/" + uri.substring(BUNDLED_RESOURCES_URI.length()));
+				return url == null ? null : url.toString();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Opens the resource with the given URI: from its local copy if there is
+	 * one, else from the cache directory, else - unless in offline mode -
+	 * from the URI itself.
+	 * 
+	 * @param uri
+	 *            absolute URI of the resource
+	 * @return stream to read the resource
+	 * @throws IOException
+	 *             if the resource is not available
+	 */
+	public InputStream open(String uri) throws IOException {
+
+		if (!active || !isRemote(uri)) {
+			URLConnection connection = new URL(uri).openConnection();
+			return connection.getInputStream();
+		}
+
+		String local = localUri(uri);
+		if (local != null) {
+			try {
+				return new URL(local).openStream();
+			} catch (IOException e) {
+				// the local copy does not exist, try the others
+			}
+		}
+
+		InputStream cached = openCached(uri);
+		if (cached != null) {
+			return cached;
+		}
+
+		if (offline) {
+			throw new IOException("Resource '" + uri
+					+ "' is not available offline.");
+		}
+
+		return fetch(uri);
+	}
+
+	/**
+	 * Copies the resource with the given URI to the given file.
+	 * 
+	 * @param uri
+	 * @param file
+	 * @throws IOException
+	 */
+	public void copyToFile(String uri, File file) throws IOException {
+
+		InputStream in = open(uri);
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				copy(in, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	protected synchronized InputStream openCached(String uri)
+			throws IOException {
+
+		if (cacheDirectory == null) {
+			return null;
+		}
+
+		String hash = cacheIndex.getProperty(uri);
+		if (hash == null) {
+			return null;
+		}
+
+		File file = new File(cacheDirectory, hash);
+		return file.isFile() ? new FileInputStream(file) : null;
+	}
+
+	/**
+	 * Fetches the resource from its URI and - if a cache directory is set -
+	 * stores it in the cache.
+	 * 
+	 * @param uri
+	 * @return stream to read the resource
+	 * @throws IOException
+	 */
+	protected InputStream fetch(String uri) throws IOException {
+
+		URLConnection connection = new URL(uri).openConnection();
+
+		if (cacheDirectory == null) {
+			return connection.getInputStream();
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		InputStream in = connection.getInputStream();
+		try {
+			copy(in, content);
+		} finally {
+			in.close();
+		}
+
+		byte[] bytes = content.toByteArray();
+		store(uri, bytes);
+
+		return new ByteArrayInputStream(bytes);
+	}
+
+	protected synchronized void store(String uri, byte[] bytes) {
+
+		try {
+
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest(bytes)) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+				sb.append(Character.forDigit(b & 0xF, 16));
+			}
+			String hash = sb.toString();
+
+			if (!cacheDirectory.exists()) {
+				cacheDirectory.mkdirs();
+			}
+
+			File file = new File(cacheDirectory, hash);
+			if (!file.exists()) {
+				OutputStream out = new FileOutputStream(file);
+				try {
+					out.write(bytes);
+				} finally {
+					out.close();
+				}
+			}
+
+			cacheIndex.setProperty(uri, hash);
+
+			OutputStream out = new FileOutputStream(
+					new File(cacheDirectory, CACHE_INDEX));
+			try {
+				cacheIndex.store(out, "ShapeChange resource cache");
+			} finally {
+				out.close();
+			}
+
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is always supported
+		} catch (IOException e) {
+			System.err.println("Resource '" + uri
+					+ "' could not be stored in cache '" + cacheDirectory
+					+ "': " + e.getMessage());
+		}
+	}
+
+	private static void copy(InputStream in, OutputStream out)
+			throws IOException {
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+	}
+
+	private static boolean isRemote(String uri) {
+		return uri != null && uri.toLowerCase().startsWith("http");
+	}
+
+	/**
+	 * Resolves remote entities, in particular documents included via
+	 * XInclude; other entities are resolved by the parser as usual.
+	 * 
+	 * @see org.xml.sax.EntityResolver#resolveEntity(java.lang.String,
+	 *      java.lang.String)
+	 */
+	public InputSource resolveEntity(String publicId, String systemId)
+			throws SAXException, IOException {
+
+		if (!isRemote(systemId)) {
+			return null;
+		}
+
+		InputSource source = new InputSource(open(systemId));
+		source.setPublicId(publicId);
+		source.setSystemId(systemId);
+		return source;
+	}
+
+	/**
+	 * Resolves remote stylesheets and documents, for example ones imported
+	 * by a stylesheet; others are resolved by the XSLT processor as usual.
+	 * 
+	 * @see javax.xml.transform.URIResolver#resolve(java.lang.String,
+	 *      java.lang.String)
+	 */
+	public Source resolve(String href, String base)
+			throws TransformerException {
+
+		String uri = href;
+		try {
+			if (base != null && base.trim().length() > 0) {
+				uri = new URI(base).resolve(href).toString();
+			}
+		} catch (URISyntaxException e) {
+			// use href as is
+		}
+
+		if (!isRemote(uri)) {
+			return null;
+		}
+
+		try {
+			return new StreamSource(open(uri), uri);
+		} catch (IOException e) {
+			throw new TransformerException(e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,638 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Stack;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.xml.serializer.Serializer;
+import org.apache.xml.serializer.SerializerFactory;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * Writes XML with a StAX XMLStreamWriter, so that a target can emit elements
+ * while it processes the model instead of building a complete DOM document
+ * first. DOM nodes - for example a subtree that has just been completed - can
+ * be written as well (see {@link #writeNode(Node)}), and content that has
+ * been written to a separate output beforehand can be inserted (see
+ * {@link #writeStartFragment(Element)}).
+ * <p>
+ * The writer is configured with the same output properties that the targets
+ * use for the Xalan serializer: 'encoding', 'indent', 'omit-xml-declaration'
+ * and the Xalan 'indent-amount'. If indentation is enabled, each element,
+ * comment and processing instruction starts on a new line unless its parent
+ * contains character data; elements without content are written as empty
+ * elements. Namespace declarations are written where they are given (as
+ * 'xmlns' attributes or via {@link #writeNamespace(String, String)}), and are
+ * added automatically for prefixes that are not in scope.
+ */
+public class StreamingXmlWriter {
+
+	public static final String XALAN_INDENT_AMOUNT = "{http://xml.apache.org/xalan}indent-amount";
+
+	/**
+	 * Status of an element that has been started but not yet ended.
+	 */
+	protected static class ElementStatus {
+
+		protected boolean hasChildren = false;
+		protected boolean hasText = false;
+
+		/**
+		 * key: prefix ("" for the default namespace), value: namespace
+		 */
+		protected Map<String, String> namespaces = new HashMap<String, String>();
+	}
+
+	/**
+	 * A start tag that has not been written yet, because it is not known yet
+	 * whether the element is empty.
+	 */
+	protected static class PendingStartTag {
+
+		protected String namespaceURI;
+		protected String qName;
+		protected List<String[]> namespaces = new ArrayList<String[]>();
+		protected List<String[]> attributes = new ArrayList<String[]>();
+
+		protected PendingStartTag(String namespaceURI, String qName) {
+			this.namespaceURI = namespaceURI;
+			this.qName = qName;
+		}
+	}
+
+	private Writer out;
+	private XMLStreamWriter xsw;
+	private String encoding;
+	private boolean indent;
+	private boolean omitXmlDeclaration;
+	private String indentString;
+
+	private Stack<ElementStatus> elements = new Stack<ElementStatus>();
+	private PendingStartTag pending = null;
+	private boolean atDocumentStart = true;
+
+	/**
+	 * @param out
+	 *            the writer to write to; it must use the encoding given by
+	 *            the output properties
+	 * @param outputFormat
+	 *            output properties as used for the Xalan serializer
+	 * @throws XMLStreamException
+	 */
+	public StreamingXmlWriter(Writer out, Properties outputFormat)
+			throws XMLStreamException {
+
+		this.out = out;
+		xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+
+		encoding = outputFormat.getProperty("encoding", "UTF-8");
+		indent = "yes".equalsIgnoreCase(outputFormat.getProperty("indent"));
+		omitXmlDeclaration = "yes".equalsIgnoreCase(
+				outputFormat.getProperty("omit-xml-declaration"));
+
+		int indentAmount = 0;
+		try {
+			indentAmount = Integer.parseInt(
+					outputFormat.getProperty(XALAN_INDENT_AMOUNT, "0").trim());
+		} catch (NumberFormatException e) {
+			// ignore - no indentation
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < indentAmount; i++) {
+			sb.append(' ');
+		}
+		indentString = sb.toString();
+	}
+
+	/**
+	 * Serializes the given DOM node. Depending on the streaming parameter, the
+	 * node is written with a StreamingXmlWriter or - as before - with the
+	 * Xalan serializer.
+	 * 
+	 * @param node
+	 *            usually a document
+	 * @param out
+	 *            the writer to write to; it is not closed by this method
+	 * @param outputFormat
+	 *            output properties for the Xalan serializer
+	 * @param streaming
+	 *            <code>true</code> to use a StreamingXmlWriter (see
+	 *            Options.isStreamingXmlOutput())
+	 * @throws Exception
+	 */
+	public static void serialize(Node node, Writer out,
+			Properties outputFormat, boolean streaming) throws Exception {
+
+		if (streaming) {
+
+			StreamingXmlWriter writer = new StreamingXmlWriter(out,
+					outputFormat);
+			writer.writeStartDocument();
+			if (node.getNodeType() == Node.DOCUMENT_NODE) {
+				NodeList children = node.getChildNodes();
+				for (int i = 0; i < children.getLength(); i++) {
+					writer.writeNode(children.item(i));
+				}
+			} else {
+				writer.writeNode(node);
+			}
+			writer.writeEndDocument();
+			writer.flush();
+
+		} else {
+
+			Serializer serializer = SerializerFactory
+					.getSerializer(outputFormat);
+			serializer.setWriter(out);
+			serializer.asDOMSerializer().serialize(node);
+		}
+	}
+
+	public void writeStartDocument() throws XMLStreamException {
+		if (!omitXmlDeclaration) {
+			xsw.writeStartDocument(encoding, "1.0");
+		}
+		atDocumentStart = omitXmlDeclaration;
+	}
+
+	public void writeEndDocument() throws XMLStreamException {
+		writePending(false);
+		if (indent && !atDocumentStart) {
+			xsw.writeCharacters("\n");
+		}
+		xsw.writeEndDocument();
+	}
+
+	/**
+	 * Starts an element. Attributes and namespace declarations of the element
+	 * can be added until any other content is written.
+	 * 
+	 * @param namespaceURI
+	 *            can be <code>null</code>
+	 * @param qName
+	 *            qualified name of the element, i.e. with prefix if the
+	 *            namespace shall not be the default namespace
+	 * @throws XMLStreamException
+	 */
+	public void writeStartElement(String namespaceURI, String qName)
+			throws XMLStreamException {
+
+		writePending(true);
+		pending = new PendingStartTag(namespaceURI, qName);
+	}
+
+	/**
+	 * @param prefix
+	 *            <code>null</code> or empty for the default namespace
+	 * @param namespaceURI
+	 * @throws XMLStreamException
+	 */
+	public void writeNamespace(String prefix, String namespaceURI)
+			throws XMLStreamException {
+		if (pending == null) {
+			throw new XMLStreamException(
+					"Namespace declaration outside of a start tag.");
+		}
+		pending.namespaces.add(new String[] { prefix == null ? "" : prefix,
+				namespaceURI });
+	}
+
+	/**
+	 * @param namespaceURI
+	 *            can be <code>null</code>
+	 * @param qName
+	 *            qualified name of the attribute
+	 * @param value
+	 * @throws XMLStreamException
+	 */
+	public void writeAttribute(String namespaceURI, String qName, String value)
+			throws XMLStreamException {
+		if (pending == null) {
+			throw new XMLStreamException("Attribute outside of a start tag.");
+		}
+		pending.attributes.add(new String[] { namespaceURI, qName, value });
+	}
+
+	public void writeAttribute(String qName, String value)
+			throws XMLStreamException {
+		writeAttribute(null, qName, value);
+	}
+
+	public void writeCharacters(String text) throws XMLStreamException {
+
+		if (text == null || text.length() == 0) {
+			return;
+		}
+
+		writePending(false);
+
+		if (!elements.isEmpty()) {
+			elements.peek().hasText = true;
+			xsw.writeCharacters(text);
+		} else if (text.trim().length() > 0) {
+			throw new XMLStreamException(
+					"Character data outside of the document element.");
+		}
+	}
+
+	public void writeEndElement() throws XMLStreamException {
+
+		if (pending != null) {
+			// element without content
+			writeStartTag(pending, true);
+			pending = null;
+			return;
+		}
+
+		ElementStatus status = elements.pop();
+
+		if (status.hasChildren && !status.hasText) {
+			newLineAndIndent();
+		}
+		xsw.writeEndElement();
+	}
+
+	public void writeComment(String comment) throws XMLStreamException {
+		writePending(true);
+		newLineIfIndenting();
+		xsw.writeComment(comment);
+	}
+
+	public void writeProcessingInstruction(String target, String data)
+			throws XMLStreamException {
+		writePending(true);
+		newLineIfIndenting();
+		if (data == null) {
+			xsw.writeProcessingInstruction(target);
+		} else {
+			xsw.writeProcessingInstruction(target, data);
+		}
+	}
+
+	/**
+	 * Starts the given DOM element, with its attributes and namespace
+	 * declarations, but without its content.
+	 * 
+	 * @param element
+	 * @throws XMLStreamException
+	 */
+	public void writeStartElement(Element element) throws XMLStreamException {
+
+		writeStartElement(element.getNamespaceURI(), element.getNodeName());
+
+		NamedNodeMap atts = element.getAttributes();
+		for (int i = 0; i < atts.getLength(); i++) {
+			Attr att = (Attr) atts.item(i);
+			String name = att.getName();
+			if (name.equals("xmlns")) {
+				writeNamespace("", att.getValue());
+			} else if (name.startsWith("xmlns:")) {
+				writeNamespace(name.substring(6), att.getValue());
+			} else {
+				writeAttribute(att.getNamespaceURI(), name, att.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Starts writing a fragment: content of the given element, whose start
+	 * tag is not written by this writer. The namespace declarations of the
+	 * element and its ancestors are in scope, and the content is indented
+	 * according to the depth of the element, so that the fragment can later
+	 * be inserted into the document with {@link #writeFragment(Reader)}.
+	 * 
+	 * @param parent
+	 */
+	public void writeStartFragment(Element parent) {
+
+		Stack<ElementStatus> ancestors = new Stack<ElementStatus>();
+
+		for (Node n = parent; n != null
+				&& n.getNodeType() == Node.ELEMENT_NODE; n = n
+						.getParentNode()) {
+
+			ElementStatus status = new ElementStatus();
+			status.hasChildren = true;
+
+			NamedNodeMap atts = n.getAttributes();
+			for (int i = 0; i < atts.getLength(); i++) {
+				Attr att = (Attr) atts.item(i);
+				String name = att.getName();
+				if (name.equals("xmlns")) {
+					status.namespaces.put("", att.getValue());
+				} else if (name.startsWith("xmlns:")) {
+					status.namespaces.put(name.substring(6), att.getValue());
+				}
+			}
+			ancestors.push(status);
+		}
+
+		while (!ancestors.isEmpty()) {
+			elements.push(ancestors.pop());
+		}
+		atDocumentStart = false;
+	}
+
+	/**
+	 * Ends a fragment started with {@link #writeStartFragment(Element)}.
+	 * 
+	 * @throws XMLStreamException
+	 */
+	public void writeEndFragment() throws XMLStreamException {
+		writePending(false);
+		// closes the tag of the last element, if it is an empty element
+		xsw.writeCharacters("");
+		elements.clear();
+		xsw.flush();
+	}
+
+	/**
+	 * Copies a fragment - as written by a writer that was started with
+	 * {@link #writeStartFragment(Element)} for the current element - to
+	 * the output. The fragment is not checked.
+	 * 
+	 * @param fragment
+	 *            it is not closed by this method
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	public void writeFragment(Reader fragment)
+			throws XMLStreamException, IOException {
+
+		writePending(true);
+		// closes the start tag of the current element, if it is still open
+		xsw.writeCharacters("");
+		xsw.flush();
+
+		char[] buf = new char[8192];
+		int n;
+		while ((n = fragment.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the given DOM node with all its content. Document nodes are not
+	 * supported; write their children instead.
+	 * 
+	 * @param node
+	 * @throws XMLStreamException
+	 */
+	public void writeNode(Node node) throws XMLStreamException {
+
+		switch (node.getNodeType()) {
+
+		case Node.ELEMENT_NODE:
+
+			writeStartElement((Element) node);
+
+			NodeList children = node.getChildNodes();
+			for (int i = 0; i < children.getLength(); i++) {
+				writeNode(children.item(i));
+			}
+
+			writeEndElement();
+			break;
+
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE:
+			writeCharacters(node.getNodeValue());
+			break;
+
+		case Node.COMMENT_NODE:
+			writeComment(node.getNodeValue());
+			break;
+
+		case Node.PROCESSING_INSTRUCTION_NODE:
+			ProcessingInstruction pi = (ProcessingInstruction) node;
+			writeProcessingInstruction(pi.getTarget(), pi.getData());
+			break;
+
+		case Node.ENTITY_REFERENCE_NODE:
+			NodeList ercs = node.getChildNodes();
+			for (int i = 0; i < ercs.getLength(); i++) {
+				writeNode(ercs.item(i));
+			}
+			break;
+
+		default:
+			// other node types (e.g. document type) are not written
+		}
+	}
+
+	public void flush() throws XMLStreamException {
+		writePending(false);
+		xsw.flush();
+	}
+
+	/**
+	 * Closes the writer, but not the underlying output.
+	 * 
+	 * @throws XMLStreamException
+	 */
+	public void close() throws XMLStreamException {
+		flush();
+		xsw.close();
+	}
+
+	/**
+	 * Writes the pending start tag, if there is one.
+	 * 
+	 * @param childFollows
+	 *            <code>true</code> if an element, comment or processing
+	 *            instruction will be written next
+	 * @throws XMLStreamException
+	 */
+	private void writePending(boolean childFollows)
+			throws XMLStreamException {
+
+		if (pending != null) {
+			writeStartTag(pending, false);
+			pending = null;
+		}
+
+		if (childFollows && !elements.isEmpty()) {
+			elements.peek().hasChildren = true;
+		}
+	}
+
+	private void writeStartTag(PendingStartTag tag, boolean empty)
+			throws XMLStreamException {
+
+		newLineIfIndenting();
+
+		ElementStatus status = new ElementStatus();
+		for (String[] ns : tag.namespaces) {
+			status.namespaces.put(ns[0], ns[1]);
+		}
+
+		// namespace declarations that need to be added
+		List<String[]> fixups = new ArrayList<String[]>();
+		checkPrefixDeclared(tag.qName, tag.namespaceURI, true, status,
+				fixups);
+		for (String[] att : tag.attributes) {
+			checkPrefixDeclared(att[1], att[0], false, status, fixups);
+		}
+
+		String[] pl = splitQName(tag.qName);
+		if (empty) {
+			xsw.writeEmptyElement(pl[0], pl[1],
+					tag.namespaceURI == null ? "" : tag.namespaceURI);
+		} else {
+			xsw.writeStartElement(pl[0], pl[1],
+					tag.namespaceURI == null ? "" : tag.namespaceURI);
+		}
+
+		for (String[] att : tag.attributes) {
+			String[] apl = splitQName(att[1]);
+			if (att[0] == null || att[0].length() == 0
+					|| apl[0].length() == 0) {
+				xsw.writeAttribute(att[1], att[2]);
+			} else {
+				xsw.writeAttribute(apl[0], att[0], apl[1], att[2]);
+			}
+		}
+		for (String[] ns : tag.namespaces) {
+			writeNamespaceDeclaration(ns[0], ns[1]);
+		}
+		for (String[] ns : fixups) {
+			writeNamespaceDeclaration(ns[0], ns[1]);
+		}
+
+		if (!empty) {
+			elements.push(status);
+		}
+	}
+
+	private void writeNamespaceDeclaration(String prefix, String namespaceURI)
+			throws XMLStreamException {
+		if (prefix.length() == 0) {
+			xsw.writeDefaultNamespace(namespaceURI);
+		} else {
+			xsw.writeNamespace(prefix, namespaceURI);
+		}
+	}
+
+	private void checkPrefixDeclared(String qName, String namespaceURI,
+			boolean isElement, ElementStatus status, List<String[]> fixups) {
+
+		if (namespaceURI == null || namespaceURI.length() == 0) {
+			return;
+		}
+
+		String prefix = splitQName(qName)[0];
+
+		if (prefix.equals("xml") || prefix.equals("xmlns")
+				|| (!isElement && prefix.length() == 0)) {
+			return;
+		}
+
+		if (!namespaceURI.equals(inScopeNamespace(prefix, status))) {
+			status.namespaces.put(prefix, namespaceURI);
+			fixups.add(new String[] { prefix, namespaceURI });
+		}
+	}
+
+	private String inScopeNamespace(String prefix, ElementStatus current) {
+
+		if (current.namespaces.containsKey(prefix)) {
+			return current.namespaces.get(prefix);
+		}
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			ElementStatus es = elements.get(i);
+			if (es.namespaces.containsKey(prefix)) {
+				return es.namespaces.get(prefix);
+			}
+		}
+		return null;
+	}
+
+	private static String[] splitQName(String qName) {
+		int idx = qName.indexOf(':');
+		if (idx > 0) {
+			return new String[] { qName.substring(0, idx),
+					qName.substring(idx + 1) };
+		} else {
+			return new String[] { "", qName };
+		}
+	}
+
+	/**
+	 * Starts a new line - unless the parent contains character data - and
+	 * indents it according to the current depth, if indentation is enabled.
+	 */
+	private void newLineIfIndenting() throws XMLStreamException {
+
+		if (atDocumentStart) {
+			atDocumentStart = false;
+			return;
+		}
+
+		if (!elements.isEmpty() && elements.peek().hasText) {
+			return;
+		}
+
+		newLineAndIndent();
+	}
+
+	private void newLineAndIndent() throws XMLStreamException {
+
+		if (!indent) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("\n");
+		for (int i = 0; i < elements.size(); i++) {
+			sb.append(indentString);
+		}
+		xsw.writeCharacters(sb.toString());
+	}
+}
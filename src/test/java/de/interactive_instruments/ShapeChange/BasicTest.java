@@ -46,6 +46,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -71,6 +72,7 @@ import org.junit.Test;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXParseException;
 
+import de.interactive_instruments.ShapeChange.Model.Generic.GenericModelSnapshot;
 import de.interactive_instruments.ShapeChange.Util.ZipHandler;
 import de.interactive_instruments.ShapeChange.TestInstance;
 
@@ -110,6 +112,82 @@ public class BasicTest {
 		xsdTest("src/test/resources/config/testXMI.xml", xsdTest, null,
 				"testResults/xmi/INPUT", "src/test/resources/reference/xsd");
 
+		/*
+		 * Process the XMI 1.0 test model as a generic model (via the identity
+		 * transformation), first sequentially and then with parallel target
+		 * execution, parallel creation of XML Schema documents and JSON
+		 * schemas, and lazy OCL parsing; the results must be the same
+		 */
+		HashMap<String, String> replaceGeneric = new HashMap<String, String>();
+		replaceGeneric.put("$parallel$", "false");
+		replaceGeneric.put("$log$", "testResults/xmi/sequential/log.xml");
+		replaceGeneric.put("$out$", "testResults/xmi/sequential");
+		replaceGeneric.put("$jsonout$",
+				"testResults/xmi/sequential/json/geoservices");
+		replaceGeneric.put("$jsonextout$",
+				"testResults/xmi/sequential/json/geoservices_extended");
+		xsdTest("src/test/resources/config/testXMI_generic.xml", null, null,
+				replaceGeneric, null, null);
+
+		replaceGeneric.put("$parallel$", "true");
+		replaceGeneric.put("$log$", "testResults/xmi/parallel/log.xml");
+		replaceGeneric.put("$out$", "testResults/xmi/parallel");
+		replaceGeneric.put("$jsonout$",
+				"testResults/xmi/parallel/json/geoservices");
+		replaceGeneric.put("$jsonextout$",
+				"testResults/xmi/parallel/json/geoservices_extended");
+		multiTest("src/test/resources/config/testXMI_generic.xml",
+				new String[] { "xsd" }, replaceGeneric,
+				"testResults/xmi/parallel/IDENTITY",
+				"testResults/xmi/sequential/IDENTITY");
+		multiTestInDirs(Collections.singleton("json"),
+				"testResults/xmi/parallel/json",
+				"testResults/xmi/sequential/json");
+
+		/*
+		 * Process the XMI 1.0 test model with a model cache: the first run
+		 * loads the model and writes a snapshot of it, the second run
+		 * restores the model from the snapshot, as a generic model
+		 */
+		FileUtils.deleteQuietly(new File("testResults/xmi/cache"));
+		HashMap<String, String> replaceCache = new HashMap<String, String>();
+		replaceCache.put("$incremental$", "false");
+		xsdTest("src/test/resources/config/testXMI_cache.xml", xsdTest, null,
+				replaceCache, "testResults/xmi/cache/INPUT",
+				"src/test/resources/reference/xsd");
+		File[] snapshots = new File("testResults/xmi/cache/snapshots")
+				.listFiles();
+		assertTrue("No model snapshot written",
+				snapshots != null && snapshots.length == 1
+						&& snapshots[0].getName().endsWith(
+								GenericModelSnapshot.FILE_EXTENSION));
+		xsdTest("src/test/resources/config/testXMI_cache.xml", xsdTest, null,
+				replaceCache, "testResults/xmi/cache/INPUT",
+				"testResults/xmi/sequential/IDENTITY");
+
+		/*
+		 * With incremental regeneration, the first run stores the
+		 * fingerprints of the schemas; the second run finds the schema
+		 * unchanged and does not create the XML Schema again. Once the XML
+		 * Schema has been deleted, it is created again.
+		 */
+		replaceCache.put("$incremental$", "true");
+		xsdTest("src/test/resources/config/testXMI_cache.xml", xsdTest, null,
+				replaceCache, "testResults/xmi/cache/INPUT",
+				"testResults/xmi/sequential/IDENTITY");
+		File cachedXsd = new File("testResults/xmi/cache/INPUT/test.xsd");
+		long lastModified = 946684800000L;
+		assertTrue("Could not set the modification time of " + cachedXsd,
+				cachedXsd.setLastModified(lastModified));
+		xsdTest("src/test/resources/config/testXMI_cache.xml", null, null,
+				replaceCache, null, null);
+		assertEquals("Unchanged schema was regenerated", lastModified,
+				cachedXsd.lastModified());
+		assertTrue("Could not delete " + cachedXsd, cachedXsd.delete());
+		xsdTest("src/test/resources/config/testXMI_cache.xml", xsdTest, null,
+				replaceCache, "testResults/xmi/cache/INPUT",
+				"testResults/xmi/sequential/IDENTITY");
+
 		/*
 		 * On Windows process also the EA test models
 		 */
@@ -509,6 +587,13 @@ public class BasicTest {
 
 	private void multiTest(String config, String[] fileFormatsToCheck,
 			String basedirResults, String basedirReference) {
+		multiTest(config, fileFormatsToCheck, null, basedirResults,
+				basedirReference);
+	}
+
+	private void multiTest(String config, String[] fileFormatsToCheck,
+			HashMap<String, String> replacevalues, String basedirResults,
+			String basedirReference) {
 
 		Set<String> fileFormatsToCheckLC = null;
 
@@ -523,7 +608,7 @@ public class BasicTest {
 		}
 
 		long start = (new Date()).getTime();
-		TestInstance test = new TestInstance(config);
+		TestInstance test = new TestInstance(config, replacevalues);
 		long end = (new Date()).getTime();
 		System.out.println(
 				"Execution time " + config + ": " + (end - start) + "ms");
@@ -627,6 +712,13 @@ public class BasicTest {
 									dirReference + File.separator
 											+ fres.getName(),
 									true, true);
+						} else if (fresExtension.equals("json")
+								&& fileFormatsToCheck.contains("json")) {
+							similarJson(
+									dirResults + File.separator
+											+ fres.getName(),
+									dirReference + File.separator
+											+ fres.getName());
 						} else {
 							// TBD add more similarity tests for further file
 							// formats, or add them to one of the above
@@ -1053,6 +1145,33 @@ public class BasicTest {
 		}
 	}
 
+	/**
+	 * Checks that two JSON files contain the same JSON value.
+	 * 
+	 * @param jsonFileName
+	 * @param referenceJsonFileName
+	 */
+	private void similarJson(String jsonFileName,
+			String referenceJsonFileName) {
+
+		ObjectMapper m = new ObjectMapper();
+		try {
+			JsonNode rootNodeResult = m.readValue(new File(jsonFileName),
+					JsonNode.class);
+			JsonNode rootNodeReference = m.readValue(
+					new File(referenceJsonFileName), JsonNode.class);
+			assertTrue("JSON: " + jsonFileName + " differs from "
+					+ referenceJsonFileName,
+					rootNodeResult.equals(rootNodeReference));
+		} catch (JsonParseException e) {
+			fail("JSON Parse Exception: " + e.getMessage());
+		} catch (JsonMappingException e) {
+			fail("JSON Mapping Exception: " + e.getMessage());
+		} catch (IOException e) {
+			fail("IO Exception: " + e.getMessage());
+		}
+	}
+
 	private void similar(String xsdFileName, String referenceXsdFileName) {
 		String myControlXML = null;
 		String myTestXML = null;
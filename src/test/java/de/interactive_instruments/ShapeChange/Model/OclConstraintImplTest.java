@@ -0,0 +1,127 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests deferred parsing of OCL constraints (see
+ * {@link de.interactive_instruments.ShapeChange.Options#isLazyOclParsing()}).
+ */
+public class OclConstraintImplTest {
+
+	/**
+	 * Counts how often the constraint text is parsed.
+	 */
+	static class CountingConstraint extends OclConstraintImpl {
+
+		AtomicInteger compiled = new AtomicInteger();
+
+		CountingConstraint(boolean deferred) {
+			constraintName = "test";
+			constraintText = "inv: true";
+			parsingDeferred = deferred;
+		}
+
+		@Override
+		protected void compile() {
+			compiled.incrementAndGet();
+			conditionType = ConditionType.INVARIANT;
+			comments = new String[0];
+		}
+	}
+
+	@Test
+	public void parsedOnFirstAccess() {
+
+		CountingConstraint c = new CountingConstraint(true);
+
+		assertTrue(c.isParsingDeferred());
+		assertEquals("inv: true", c.text());
+		assertEquals(0, c.compiled.get());
+
+		assertEquals(OclConstraint.ConditionType.INVARIANT,
+				c.conditionType());
+		assertFalse(c.isParsingDeferred());
+		c.syntaxTree();
+		c.comments();
+		assertEquals(1, c.compiled.get());
+	}
+
+	@Test
+	public void notParsedIfNotDeferred() {
+
+		CountingConstraint c = new CountingConstraint(false);
+
+		assertFalse(c.isParsingDeferred());
+		c.syntaxTree();
+		assertEquals(0, c.compiled.get());
+	}
+
+	@Test
+	public void parsedOnceWithConcurrentAccess() throws InterruptedException {
+
+		final CountingConstraint c = new CountingConstraint(true);
+		final CountDownLatch start = new CountDownLatch(1);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++) {
+			Thread t = new Thread() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					c.syntaxTree();
+				}
+			};
+			t.start();
+			threads.add(t);
+		}
+
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(1, c.compiled.get());
+	}
+}
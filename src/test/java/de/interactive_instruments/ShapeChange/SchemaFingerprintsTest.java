@@ -0,0 +1,175 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Test;
+
+import de.interactive_instruments.ShapeChange.Target.XmlSchema.XmlSchema;
+
+/**
+ * Tests the configuration specific parts of {@link SchemaFingerprints}: the
+ * name of the fingerprints file, the configuration hash, storing and loading
+ * fingerprints and keeping track of the output files of a schema.
+ */
+public class SchemaFingerprintsTest {
+
+	private TargetConfiguration target(String outputDirectory,
+			String defaultEncodingRule) {
+
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("outputDirectory", outputDirectory);
+		parameters.put("defaultEncodingRule", defaultEncodingRule);
+
+		Set<String> inputIds = new HashSet<String>();
+		inputIds.add("INPUT");
+
+		return new TargetConfiguration(XmlSchema.class.getName(),
+				ProcessMode.enabled, parameters, null, null, inputIds, null,
+				null);
+	}
+
+	@Test
+	public void fileDependsOnTargetConfiguration() {
+
+		String dir = "testResults/fingerprints";
+
+		File f1 = SchemaFingerprints.file(XmlSchema.class,
+				target(dir, "iso19136_2007"), dir);
+		File f2 = SchemaFingerprints.file(XmlSchema.class,
+				target(dir, "iso19136_2007"), dir);
+		File f3 = SchemaFingerprints.file(XmlSchema.class,
+				target(dir, "gml33"), dir);
+
+		assertEquals(f1, f2);
+		assertFalse(f1.equals(f3));
+		assertEquals(new File(dir), f1.getParentFile());
+		assertTrue(f1.getName().startsWith(
+				SchemaFingerprints.FILE_NAME_PREFIX + "XmlSchema-"));
+		assertTrue(f1.getName().endsWith(".properties"));
+	}
+
+	@Test
+	public void configurationDependsOnTargetConfiguration() {
+
+		Options options = new Options();
+		String dir = "testResults/fingerprints";
+
+		assertEquals(
+				SchemaFingerprints.configuration(
+						target(dir, "iso19136_2007"), options),
+				SchemaFingerprints.configuration(
+						target(dir, "iso19136_2007"), options));
+		assertFalse(SchemaFingerprints
+				.configuration(target(dir, "iso19136_2007"), options)
+				.equals(SchemaFingerprints
+						.configuration(target(dir, "gml33"), options)));
+	}
+
+	@Test
+	public void storeAndLoad() throws IOException {
+
+		File file = new File("testResults/fingerprints/store",
+				SchemaFingerprints.FILE_NAME_PREFIX + "test.properties");
+		file.delete();
+
+		assertTrue(SchemaFingerprints.load(file).isEmpty());
+
+		Properties fingerprints = new Properties();
+		fingerprints.setProperty("Test Schema", "0123456789abcdef");
+		fingerprints.setProperty("Other Schema", "fedcba9876543210");
+		SchemaFingerprints.store(fingerprints, file);
+
+		assertEquals(fingerprints, SchemaFingerprints.load(file));
+	}
+
+	@Test
+	public void outputFiles() throws IOException {
+
+		File dir = new File("testResults/fingerprints/outputs");
+		dir.mkdirs();
+		File out1 = new File(dir, "a.xsd");
+		File out2 = new File(dir, "b.xsd");
+		out1.createNewFile();
+		out2.createNewFile();
+
+		Properties fingerprints = new Properties();
+		fingerprints.setProperty("Test Schema", "0123456789abcdef");
+		fingerprints.setProperty("Empty Schema", "fedcba9876543210");
+
+		// output files are not known yet
+		assertNull(SchemaFingerprints.outputFiles(fingerprints,
+				"Test Schema"));
+		assertFalse(SchemaFingerprints.outputFilesExist(fingerprints,
+				"Test Schema"));
+
+		SchemaFingerprints.setOutputFiles(fingerprints, "Test Schema",
+				Arrays.asList(out1, out2));
+		SchemaFingerprints.setOutputFiles(fingerprints, "Empty Schema",
+				Collections.<File> emptyList());
+
+		File file = new File(dir,
+				SchemaFingerprints.FILE_NAME_PREFIX + "test.properties");
+		SchemaFingerprints.store(fingerprints, file);
+		Properties loaded = SchemaFingerprints.load(file);
+
+		assertEquals(
+				new HashSet<String>(
+						Arrays.asList("Test Schema", "Empty Schema")),
+				SchemaFingerprints.schemas(loaded));
+		assertEquals(
+				Arrays.asList(out1.getAbsoluteFile(), out2.getAbsoluteFile()),
+				SchemaFingerprints.outputFiles(loaded, "Test Schema"));
+		assertTrue(SchemaFingerprints.outputFiles(loaded, "Empty Schema")
+				.isEmpty());
+		assertTrue(SchemaFingerprints.outputFilesExist(loaded, "Test Schema"));
+		assertTrue(
+				SchemaFingerprints.outputFilesExist(loaded, "Empty Schema"));
+
+		// a deleted output file must be regenerated
+		assertTrue(out2.delete());
+		assertFalse(
+				SchemaFingerprints.outputFilesExist(loaded, "Test Schema"));
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the suppression of repeated messages in a streaming log.
+ */
+public class ShapeChangeResultTest {
+
+	@Test
+	public void repeatedMessagesInStreamingLog() throws IOException {
+
+		String logFile = "testResults/log/streaming.xml";
+
+		Options options = new Options();
+		options.configFile = "none";
+		options.setParameter(Options.PARAM_STREAMING_LOG, "true");
+		options.setParameter(Options.PARAM_LOG_DUPLICATE_CHECK_SIZE, "2");
+		options.setParameter("xsltFile", "");
+
+		ShapeChangeResult result = new ShapeChangeResult(options);
+		result.startStreaming(logFile);
+
+		/*
+		 * 'a' is logged again before 'c' is logged, so 'b' is the least
+		 * recently logged message that is forgotten when the cache is full
+		 */
+		for (String m : new String[] { "a", "b", "a", "c", "a", "b" }) {
+			result.addWarning("??" + m);
+		}
+		result.toFile(logFile);
+
+		String log = FileUtils.readFileToString(new File(logFile), "UTF-8");
+
+		assertEquals(1, count(log, "message=\"a\""));
+		assertEquals(2, count(log, "message=\"b\""));
+		assertEquals(1, count(log, "message=\"c\""));
+	}
+
+	private int count(String s, String part) {
+		int count = 0;
+		for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
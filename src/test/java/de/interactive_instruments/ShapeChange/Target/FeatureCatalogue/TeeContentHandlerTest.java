@@ -0,0 +1,128 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Target.FeatureCatalogue;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Tests that the {@link TeeContentHandler} passes events on to all of its
+ * handlers, and that a failing handler is dropped without affecting the
+ * others.
+ */
+public class TeeContentHandlerTest {
+
+	/**
+	 * Records the local names of the elements it receives; fails when the
+	 * element with the given name starts.
+	 */
+	static class RecordingHandler extends DefaultHandler {
+
+		List<String> elements = new ArrayList<String>();
+		String failAt;
+
+		RecordingHandler(String failAt) {
+			this.failAt = failAt;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName,
+				Attributes attributes) throws SAXException {
+			if (localName.equals(failAt)) {
+				throw new SAXException("failed at " + localName);
+			}
+			elements.add(localName);
+		}
+	}
+
+	@Test
+	public void failingHandlerIsDropped() throws SAXException {
+
+		RecordingHandler ok1 = new RecordingHandler(null);
+		RecordingHandler failing = new RecordingHandler("b");
+		RecordingHandler ok2 = new RecordingHandler(null);
+
+		TeeContentHandler tee = new TeeContentHandler();
+		tee.addHandler(ok1);
+		tee.addHandler(failing);
+		tee.addHandler(ok2);
+
+		tee.startDocument();
+		for (String name : new String[] { "a", "b", "c" }) {
+			tee.startElement("", name, name, new AttributesImpl());
+			tee.endElement("", name, name);
+		}
+		tee.endDocument();
+
+		String[] all = { "a", "b", "c" };
+		assertArrayEquals(all, ok1.elements.toArray());
+		assertArrayEquals(all, ok2.elements.toArray());
+		assertArrayEquals(new String[] { "a" }, failing.elements.toArray());
+
+		assertTrue(tee.isActive(ok1));
+		assertFalse(tee.isActive(failing));
+		assertTrue(tee.isActive(ok2));
+
+		assertEquals(1, tee.getFailures().size());
+		assertEquals("failed at b",
+				tee.getFailures().get(failing).getMessage());
+	}
+
+	@Test
+	public void allHandlersFailing() throws SAXException {
+
+		RecordingHandler failing = new RecordingHandler("a");
+
+		TeeContentHandler tee = new TeeContentHandler();
+		tee.addHandler(failing);
+
+		tee.startDocument();
+		tee.startElement("", "a", "a", new AttributesImpl());
+		tee.endElement("", "a", "a");
+		tee.startElement("", "b", "b", new AttributesImpl());
+		tee.endElement("", "b", "b");
+		tee.endDocument();
+
+		assertTrue(failing.elements.isEmpty());
+		assertFalse(tee.isActive(failing));
+		assertEquals(1, tee.getFailures().size());
+	}
+}
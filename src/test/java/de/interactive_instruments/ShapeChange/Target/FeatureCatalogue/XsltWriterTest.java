@@ -0,0 +1,135 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Target.FeatureCatalogue;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.HashMap;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+/**
+ * Tests that the stylesheets compiled by {@link XsltWriter} are reused, and
+ * compiled again when the stylesheet or a stylesheet it includes changes.
+ */
+public class XsltWriterTest {
+
+	private static final String XSL_START = "<xsl:stylesheet version=\"1.0\""
+			+ " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">";
+	private static final String XSL_END = "</xsl:stylesheet>";
+
+	private File dir = new File("testResults/xslt/cache");
+
+	private void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Writer w = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try {
+			w.write(content);
+		} finally {
+			w.close();
+		}
+	}
+
+	private void writeIncluded(File file, String value) throws IOException {
+		write(file, XSL_START + "<xsl:template match=\"/\">" + value
+				+ "</xsl:template>" + XSL_END);
+	}
+
+	private String transform(XsltWriter writer, URI xsl) throws Exception {
+		StringWriter out = new StringWriter();
+		writer.newTransformer(xsl).transform(
+				new StreamSource(new StringReader("<a/>")),
+				new StreamResult(out));
+		return out.toString();
+	}
+
+	@Test
+	public void recompiledWhenIncludedStylesheetChanges() throws Exception {
+
+		File main = new File(dir, "main.xsl");
+		File included = new File(dir, "included.xsl");
+		write(main, XSL_START + "<xsl:output method=\"text\"/>"
+				+ "<xsl:include href=\"included.xsl\"/>" + XSL_END);
+		writeIncluded(included, "first");
+
+		XsltWriter.clearStylesheets();
+		XsltWriter writer = new XsltWriter(null, new HashMap<String, URI>(),
+				null, null);
+		URI xsl = main.toURI();
+
+		Templates t1 = writer.templates(xsl);
+		assertSame(t1, writer.templates(xsl));
+		assertEquals("first", transform(writer, xsl));
+
+		/*
+		 * make sure that the modification time changes, even on file systems
+		 * with a coarse resolution
+		 */
+		long modified = included.lastModified();
+		writeIncluded(included, "second");
+		assertTrue(included.setLastModified(modified + 10000));
+
+		Templates t2 = writer.templates(xsl);
+		assertFalse(t1 == t2);
+		assertSame(t2, writer.templates(xsl));
+		assertEquals("second", transform(writer, xsl));
+	}
+
+	@Test
+	public void recompiledAfterClearing() throws Exception {
+
+		File main = new File(dir, "clear.xsl");
+		write(main, XSL_START + XSL_END);
+
+		XsltWriter writer = new XsltWriter(null, new HashMap<String, URI>(),
+				null, null);
+		URI xsl = main.toURI();
+
+		Templates t1 = writer.templates(xsl);
+		XsltWriter.clearStylesheets();
+		assertFalse(t1 == writer.templates(xsl));
+	}
+}
@@ -0,0 +1,150 @@
+/**
+ * ShapeChange - processing application schemas for geographic information
+ *
+ * This file is part of ShapeChange. ShapeChange takes a ISO 19109 
+ * Application Schema from a UML model and translates it into a 
+ * GML Application Schema or other implementation representations.
+ *
+ * Additional information about the software can be found at
+ * http://shapechange.net/
+ *
+ * (c) 2002-2016 interactive instruments GmbH, Bonn, Germany
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Contact:
+ * interactive instruments GmbH
+ * Trierer Strasse 70-72
+ * 53115 Bonn
+ * Germany
+ */
+
+package de.interactive_instruments.ShapeChange.Util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+import de.interactive_instruments.ShapeChange.Options;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult;
+import de.interactive_instruments.ShapeChange.ShapeChangeResult.MessageContext;
+
+/**
+ * Tests the execution of tasks via {@link ParallelExecution}.
+ */
+public class ParallelExecutionTest {
+
+	/**
+	 * Returns its index, after a delay that decreases with the index, so that
+	 * the tasks complete in reverse order; fails for the given index.
+	 */
+	static class IndexTask implements Callable<Integer> {
+
+		int index;
+		int failAt;
+
+		IndexTask(int index, int failAt) {
+			this.index = index;
+			this.failAt = failAt;
+		}
+
+		public Integer call() throws Exception {
+			Thread.sleep(Math.max(0, 20 - index));
+			if (index == failAt) {
+				throw new IllegalStateException("task " + index + " failed");
+			}
+			return index;
+		}
+	}
+
+	private List<IndexTask> tasks(int count, int failAt) {
+		List<IndexTask> tasks = new ArrayList<IndexTask>();
+		for (int i = 0; i < count; i++) {
+			tasks.add(new IndexTask(i, failAt));
+		}
+		return tasks;
+	}
+
+	@Test
+	public void resultsInTaskOrder() throws Exception {
+
+		List<Integer> results = ParallelExecution.invokeAll(tasks(20, -1), 4,
+				new Options());
+
+		assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals(Integer.valueOf(i), results.get(i));
+		}
+	}
+
+	@Test
+	public void failureIsLogged() {
+
+		Options options = new Options();
+		final List<String> errors = new ArrayList<String>();
+		ShapeChangeResult result = new ShapeChangeResult(options) {
+			@Override
+			public MessageContext addError(String m) {
+				errors.add(m);
+				return super.addError(m);
+			}
+		};
+
+		List<Integer> results = ParallelExecution.invokeAll(tasks(10, 3), 4,
+				options, result);
+
+		assertEquals(10, results.size());
+		assertNull(results.get(3));
+		assertEquals(Integer.valueOf(4), results.get(4));
+		assertEquals(1, errors.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failureIsThrown() throws Exception {
+		ParallelExecution.invokeAll(tasks(10, 3), 4, new Options());
+	}
+
+	@Test
+	public void processViewIsBound() throws Exception {
+
+		final Options options = new Options();
+		Options view = new Options();
+		view.setParameter("testParameter", "view");
+
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for (int i = 0; i < 10; i++) {
+			tasks.add(new Callable<String>() {
+				public String call() {
+					return options.parameter("testParameter");
+				}
+			});
+		}
+
+		options.bindProcessView(view);
+		try {
+			for (String value : ParallelExecution.invokeAll(tasks, 4,
+					options)) {
+				assertEquals("view", value);
+			}
+		} finally {
+			options.unbindProcessView();
+		}
+
+		assertNull(options.parameter("testParameter"));
+	}
+}